@@ -0,0 +1,222 @@
+package cn.scypher.neo4j.plugin;
+
+import cn.scypher.neo4j.plugin.datetime.SEpochInterval;
+import cn.scypher.neo4j.plugin.datetime.SEpochTimePoint;
+import cn.scypher.neo4j.plugin.datetime.SInterval;
+import org.neo4j.graphdb.Entity;
+import org.neo4j.graphdb.Transaction;
+import org.neo4j.kernel.api.KernelTransaction;
+import org.neo4j.kernel.impl.coreapi.InternalTransaction;
+
+import java.time.*;
+import java.util.Map;
+
+/**
+ * 编译后的时间窗口：时间点t视为区间[t, t]，snapshot/scope视为两个区间之一，编码为纪元值后判定有效时间是否与其中一个区间重合，
+ * 每个元素只需读取两个属性并比较纪元值。与TimeWindowLimit.limitEffectiveTime的语义相同。
+ * 一条查询中的时间窗口通常是常量，每个线程按值缓存最近编译的几个时间窗口，并按事务缓存当前事务的时态上下文，
+ * 逐行调用时不再重复解析时间窗口和读取时态上下文。只设置了snapshot时，使用SnapshotViewCache中该时间点的视图判定有效时间。
+ */
+final class CompiledTimeWindow {
+    // 不限制有效时间
+    static final CompiledTimeWindow UNBOUNDED = new CompiledTimeWindow(SEpochTimePoint.DATETIME, new long[0], null);
+
+    // 每个线程缓存的时间窗口个数
+    private static final int CACHE_SIZE = 8;
+
+    private static final ThreadLocal<Cache> caches = ThreadLocal.withInitial(Cache::new);
+
+    private final byte type;
+    // 每个区间占四个元素(开始时间的纪元值, 纳秒, 结束时间的纪元值, 纳秒)
+    private final long[] windows;
+    // 只设置了snapshot时的快照视图，为null时逐个检查有效时间
+    private final SnapshotViewCache.SnapshotView view;
+
+    private CompiledTimeWindow(byte type, long[] windows, SnapshotViewCache.SnapshotView view) {
+        this.type = type;
+        this.windows = windows;
+        this.view = view;
+    }
+
+    /**
+     * 线程的缓存：最近编译的时间窗口按值（先比较引用）查找，时态上下文按事务和上下文版本查找
+     */
+    private static final class Cache {
+        private final Object[] keys = new Object[CACHE_SIZE];
+        private final CompiledTimeWindow[] values = new CompiledTimeWindow[CACHE_SIZE];
+        private int next = 0;
+
+        private KernelTransaction kernelTransaction;
+        private long sequenceNumber;
+        private long contextVersion;
+        private CompiledTimeWindow context;
+        // 只设置了snapshot时的时间点，否则为null
+        private SEpochTimePoint snapshotTimePoint;
+        // 使用快照视图的时态上下文，尚未获取视图时为null
+        private CompiledTimeWindow contextWithView;
+
+        private CompiledTimeWindow get(Object timeWindow) {
+            for (int i = 0; i < CACHE_SIZE; i++) {
+                if (this.keys[i] == timeWindow) {
+                    return this.values[i];
+                }
+            }
+            for (int i = 0; i < CACHE_SIZE; i++) {
+                if (this.keys[i] != null && this.keys[i].equals(timeWindow)) {
+                    return this.values[i];
+                }
+            }
+            CompiledTimeWindow compiled = compile(timeWindow);
+            this.keys[this.next] = timeWindow;
+            this.values[this.next] = compiled;
+            this.next = (this.next + 1) % CACHE_SIZE;
+            return compiled;
+        }
+    }
+
+    private static void put(long[] windows, int index, long fromEpoch, int fromNano, long toEpoch, int toNano) {
+        windows[4 * index] = fromEpoch;
+        windows[4 * index + 1] = fromNano;
+        windows[4 * index + 2] = toEpoch;
+        windows[4 * index + 3] = toNano;
+    }
+
+    private static CompiledTimeWindow of(SEpochTimePoint timePoint) {
+        long[] windows = new long[4];
+        put(windows, 0, timePoint.getEpoch(), timePoint.getNano(), timePoint.getEpoch(), timePoint.getNano());
+        return new CompiledTimeWindow(timePoint.getType(), windows, null);
+    }
+
+    private static CompiledTimeWindow of(SEpochInterval interval) {
+        long[] windows = new long[4];
+        put(windows, 0, interval.getFromEpoch(), interval.getFromNano(), interval.getToEpoch(), interval.getToNano());
+        return new CompiledTimeWindow(interval.getType(), windows, null);
+    }
+
+    /**
+     * @param timeWindow 时间点/时间区间
+     * @return 返回编译后的时间窗口
+     */
+    private static CompiledTimeWindow compile(Object timeWindow) {
+        if (timeWindow instanceof LocalDate | timeWindow instanceof OffsetTime | timeWindow instanceof LocalTime | timeWindow instanceof ZonedDateTime | timeWindow instanceof LocalDateTime) {
+            return of(SEpochTimePoint.of(timeWindow));
+        } else if (timeWindow instanceof Map) {
+            return of(new SEpochInterval(new SInterval((Map<String, Object>) timeWindow)));
+        } else {
+            throw new RuntimeException("Type mismatch: expected Date, Time, LocalTime, LocalDateTime, DateTime or Interval but was " + timeWindow.getClass().getSimpleName());
+        }
+    }
+
+    /**
+     * @param context 时态上下文
+     * @return 返回snapshot/scope编译后的时间窗口，都未设置时不限制有效时间
+     */
+    private static CompiledTimeWindow compile(STemporalContext context) {
+        if (context.isDefault()) {
+            return UNBOUNDED;
+        }
+        SEpochTimePoint snapshotTimePoint = context.snapshotTimePoint() != null ? context.snapshotTimePoint().getEpochTimePoint() : null;
+        SEpochInterval scopeInterval = context.scopeInterval() != null ? new SEpochInterval(context.scopeInterval()) : null;
+        if (snapshotTimePoint == null) {
+            return of(scopeInterval);
+        } else if (scopeInterval == null) {
+            return of(snapshotTimePoint);
+        }
+        // snapshot和scope的时间点类型都与系统一致
+        long[] windows = new long[8];
+        put(windows, 0, scopeInterval.getFromEpoch(), scopeInterval.getFromNano(), scopeInterval.getToEpoch(), scopeInterval.getToNano());
+        put(windows, 1, snapshotTimePoint.getEpoch(), snapshotTimePoint.getNano(), snapshotTimePoint.getEpoch(), snapshotTimePoint.getNano());
+        return new CompiledTimeWindow(scopeInterval.getType(), windows, null);
+    }
+
+    /**
+     * @param timeWindow 时间点/时间区间，不为null
+     * @return 返回编译后的时间窗口，相同的时间窗口只编译一次
+     */
+    static CompiledTimeWindow of(Object timeWindow) {
+        return caches.get().get(timeWindow);
+    }
+
+    /**
+     * @param transaction 当前事务
+     * @return 返回当前事务的snapshot/scope编译后的时间窗口，同一事务中时态上下文未修改时只编译一次
+     */
+    static CompiledTimeWindow ofContext(Transaction transaction) {
+        if (!(transaction instanceof InternalTransaction internalTransaction)) {
+            return compile(GlobalVariablesManager.getContext(transaction));
+        }
+        Cache cache = caches.get();
+        KernelTransaction kernelTransaction = internalTransaction.kernelTransaction();
+        long sequenceNumber = kernelTransaction.getTransactionSequenceNumber();
+        long contextVersion = GlobalVariablesManager.getContextVersion();
+        if (cache.context == null || cache.kernelTransaction != kernelTransaction || cache.sequenceNumber != sequenceNumber || cache.contextVersion != contextVersion) {
+            STemporalContext context = GlobalVariablesManager.getContext(transaction);
+            cache.context = compile(context);
+            cache.snapshotTimePoint = context.snapshotTimePoint() != null && context.scopeInterval() == null ? context.snapshotTimePoint().getEpochTimePoint() : null;
+            cache.kernelTransaction = kernelTransaction;
+            cache.sequenceNumber = sequenceNumber;
+            cache.contextVersion = contextVersion;
+            cache.contextWithView = null;
+        }
+        // 视图不包含当前事务未提交的修改
+        if (cache.snapshotTimePoint == null || kernelTransaction.dataRead().transactionStateHasChanges()) {
+            return cache.context;
+        }
+        if (cache.contextWithView == null) {
+            SnapshotViewCache.SnapshotView view = SnapshotViewCache.get(transaction, cache.snapshotTimePoint);
+            cache.contextWithView = view != null ? new CompiledTimeWindow(cache.context.type, cache.context.windows, view) : cache.context;
+        }
+        return cache.contextWithView;
+    }
+
+    /**
+     * @param elementTimeWindow @T指定的时间窗口
+     * @param clauseTimeWindow  at time/between子句指定的时间窗口
+     * @param transaction       当前事务
+     * @return 按@T、at time/between、snapshot/scope的优先级返回限制元素有效时间的时间窗口
+     */
+    static CompiledTimeWindow of(Object elementTimeWindow, CompiledTimeWindow clauseTimeWindow, Transaction transaction) {
+        if (elementTimeWindow != null) {
+            return of(elementTimeWindow);
+        } else if (clauseTimeWindow != null) {
+            return clauseTimeWindow;
+        }
+        return ofContext(transaction);
+    }
+
+    boolean isUnbounded() {
+        return this.windows.length == 0;
+    }
+
+    /**
+     * @param entity 节点/边
+     * @return 判定节点/边的有效时间是否与时间窗口重合
+     */
+    boolean test(Entity entity) {
+        if (this.view != null) {
+            // 视图中只有有效时间合法且时间点类型一致的元素，其余元素逐个检查
+            int state = this.view.lookup(entity);
+            if (state != SnapshotViewCache.SnapshotView.UNKNOWN) {
+                return state == SnapshotViewCache.SnapshotView.VALID;
+            }
+        }
+        SEpochTimePoint intervalFrom = SEpochTimePoint.of(entity.getProperty("intervalFrom"));
+        SEpochTimePoint intervalTo = SEpochTimePoint.of(entity.getProperty("intervalTo"));
+        if (intervalFrom.isAfter(intervalTo)) {
+            throw new RuntimeException("The start time can't be latter than the end time");
+        }
+        if (this.windows.length == 0) {
+            return true;
+        }
+        if (intervalFrom.getType() != this.type || intervalTo.getType() != this.type) {
+            throw new RuntimeException("Only the time points of the same type can be compared");
+        }
+        for (int i = 0; i < this.windows.length; i += 4) {
+            if (SEpochTimePoint.compare(intervalFrom.getEpoch(), intervalFrom.getNano(), this.windows[i + 2], (int) this.windows[i + 3]) <= 0
+                    && SEpochTimePoint.compare(this.windows[i], (int) this.windows[i + 1], intervalTo.getEpoch(), intervalTo.getNano()) <= 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,223 @@
+package cn.scypher.neo4j.plugin;
+
+import cn.scypher.neo4j.plugin.datetime.SEpochTimePoint;
+import org.neo4j.graphdb.*;
+import org.neo4j.graphdb.event.PropertyEntry;
+import org.neo4j.graphdb.event.TransactionData;
+import org.neo4j.graphdb.event.TransactionEventListener;
+import org.neo4j.procedure.*;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * 对象节点的当前属性值缓存，缓存每个对象节点所有属性的当前属性值（有效时间包含NOW的值），不缓存属性的历史值。
+ * 缓存跨事务共享，使用TinyLFU准入策略限制大小，按数据库划分。
+ * 由TemporalIndexExtension注册的监听器在提交后失效属性节点或值节点被修改的对象节点。
+ * 当前事务有未提交的修改时，不使用缓存。
+ */
+public class CurrentStateCache {
+    private static final int DEFAULT_CAPACITY = 4096;
+
+    private static final Map<String, ElementCache<ObjectState>> caches = new ConcurrentHashMap<>();
+
+    @Context
+    public Transaction transaction;
+
+    /**
+     * @param type          值节点有效时间的时间点类型，类型不一致时为ValueNodeTimeline.MIXED
+     * @param currentValues 属性名到当前属性值的映射
+     */
+    private record ObjectState(byte type, Map<String, Object> currentValues) {
+    }
+
+    /**
+     * @param databaseName 数据库名
+     * @return 为数据库创建属性值缓存，返回维护缓存的监听器
+     */
+    static TransactionEventListener<Set<String>> register(String databaseName) {
+        ElementCache<ObjectState> cache = new ElementCache<>(DEFAULT_CAPACITY, true);
+        caches.put(databaseName, cache);
+        return new InvalidationListener(cache);
+    }
+
+    static void unregister(String databaseName) {
+        caches.remove(databaseName);
+    }
+
+    /**
+     * @param valueNodes 按开始时间排序的值节点
+     * @return 返回值节点的属性值，形式与ReadingQuery.getPropertyValue相同
+     */
+    private static Object getPropertyValue(List<Object> valueNodes) {
+        if (valueNodes.isEmpty()) {
+            return null;
+        }
+        return valueNodes.size() == 1 ? valueNodes.get(0) : Collections.unmodifiableList(valueNodes);
+    }
+
+    /**
+     * @return 构建对象节点的当前属性值，同名的属性节点只取第一个。只读取时间线中有效时间包含NOW的值节点，
+     * 若值节点已被并发删除，返回null
+     */
+    private static ObjectState getObjectState(Transaction transaction, Node objectNode) {
+        Map<String, Object> currentValues = new HashMap<>();
+        byte type = ValueNodeTimeline.MIXED;
+        for (Relationship relationship : objectNode.getRelationships(Direction.OUTGOING, RelationshipType.withName("OBJECT_PROPERTY"))) {
+            Node propertyNode = relationship.getEndNode();
+            if (!(propertyNode.getProperty("content", null) instanceof String propertyName) || currentValues.containsKey(propertyName)) {
+                continue;
+            }
+            ValueNodeTimeline timeline = PropertyTimelineIndex.loadTimeline(transaction, propertyNode);
+            if (timeline == null) {
+                if (propertyNode.hasRelationship(Direction.OUTGOING, RelationshipType.withName("PROPERTY_VALUE"))) {
+                    return new ObjectState(ValueNodeTimeline.MIXED, Map.of());
+                }
+                currentValues.put(propertyName, null);
+                continue;
+            }
+            if (type == ValueNodeTimeline.MIXED) {
+                type = timeline.getType();
+            } else if (timeline.getType() != type) {
+                return new ObjectState(ValueNodeTimeline.MIXED, Map.of());
+            }
+            boolean[] matches = new boolean[timeline.size()];
+            timeline.contains(new SEpochTimePoint(type, SEpochTimePoint.NOW_EPOCH, 0), matches);
+            List<Object> currentPropertyValues = new ArrayList<>();
+            for (int i = 0; i < matches.length; i++) {
+                if (matches[i]) {
+                    Node valueNode = PropertyTimelineIndex.getValueNode(transaction, propertyNode, timeline, i);
+                    if (valueNode == null) {
+                        return null;
+                    }
+                    currentPropertyValues.add(valueNode.getProperty("content"));
+                }
+            }
+            currentValues.put(propertyName, getPropertyValue(currentPropertyValues));
+        }
+        return new ObjectState(type, currentValues);
+    }
+
+    /**
+     * @param transaction  当前事务
+     * @param objectNode   对象节点
+     * @param propertyName 属性名
+     * @param predicate    值节点的有效时间限制
+     * @param resolver     不能使用缓存时解析属性值
+     * @return 返回对象节点的属性在有效时间限制下的属性值。只有时间窗口为NOW时使用缓存
+     */
+    static Object getPropertyValue(Transaction transaction, Node objectNode, String propertyName, TimeWindowPredicate predicate, Supplier<Object> resolver) {
+        if (!predicate.isNow()) {
+            return resolver.get();
+        }
+        ElementCache<ObjectState> cache = ElementCache.of(caches, transaction);
+        if (cache == null) {
+            return resolver.get();
+        }
+        String objectId = objectNode.getElementId();
+        ObjectState objectState = cache.get(objectId);
+        if (objectState == null) {
+            long generation = cache.generation();
+            objectState = getObjectState(transaction, objectNode);
+            if (objectState == null) {
+                return resolver.get();
+            }
+            cache.put(objectId, objectState, generation);
+        }
+        if (objectState.type() == predicate.getTimePoint().getType()) {
+            return objectState.currentValues().get(propertyName);
+        } else {
+            // 时间点类型不一致时，由遍历查找报告类型错误
+            return resolver.get();
+        }
+    }
+
+    /**
+     * @param enabled 是否使用当前数据库的属性值缓存
+     */
+    @Procedure(name = "scypher.setCurrentStateCache", mode = Mode.READ)
+    @Description("Enable or disable the current state cache of object nodes.")
+    public void setCurrentStateCache(@Name("enabled") Boolean enabled) {
+        if (enabled != null) {
+            ElementCache.require(caches, this.transaction).setEnabled(enabled);
+        } else {
+            throw new RuntimeException("Missing parameter");
+        }
+    }
+
+    /**
+     * @return 返回当前数据库的属性值缓存的统计信息
+     */
+    @UserFunction("scypher.currentStateCache.statistics")
+    @Description("Get the statistics of the current state cache.")
+    public Map<String, Object> currentStateCacheStatistics() {
+        ElementCache<ObjectState> cache = ElementCache.require(caches, this.transaction);
+        Map<String, Object> statistics = cache.getStatistics();
+        statistics.put("enabled", cache.isEnabled());
+        return statistics;
+    }
+
+    /**
+     * 在提交前收集属性节点或值节点被创建、删除或修改的对象节点，在提交后将其从缓存中失效
+     */
+    private static final class InvalidationListener implements TransactionEventListener<Set<String>> {
+        private static final RelationshipType OBJECT_PROPERTY = RelationshipType.withName("OBJECT_PROPERTY");
+        private static final RelationshipType PROPERTY_VALUE = RelationshipType.withName("PROPERTY_VALUE");
+
+        private final ElementCache<ObjectState> cache;
+
+        private InvalidationListener(ElementCache<ObjectState> cache) {
+            this.cache = cache;
+        }
+
+        /**
+         * @param propertyNode 属性节点
+         * @param objectIds    收集属性节点所属的对象节点
+         */
+        private static void collectObjects(Node propertyNode, Set<String> objectIds) {
+            for (Relationship relationship : propertyNode.getRelationships(Direction.INCOMING, OBJECT_PROPERTY)) {
+                objectIds.add(relationship.getStartNode().getElementId());
+            }
+        }
+
+        @Override
+        public Set<String> beforeCommit(TransactionData data, Transaction transaction, GraphDatabaseService databaseService) {
+            Set<String> objectIds = new HashSet<>();
+            for (Iterable<Relationship> relationships : List.of(data.createdRelationships(), data.deletedRelationships())) {
+                for (Relationship relationship : relationships) {
+                    if (relationship.isType(OBJECT_PROPERTY)) {
+                        objectIds.add(relationship.getStartNode().getElementId());
+                    } else if (relationship.isType(PROPERTY_VALUE) && !data.isDeleted(relationship.getStartNode())) {
+                        // 被删除的属性节点的OBJECT_PROPERTY边也被删除，已由上一分支收集
+                        collectObjects(relationship.getStartNode(), objectIds);
+                    }
+                }
+            }
+            for (Iterable<PropertyEntry<Node>> propertyEntries : List.of(data.assignedNodeProperties(), data.removedNodeProperties())) {
+                for (PropertyEntry<Node> propertyEntry : propertyEntries) {
+                    Node node = propertyEntry.entity();
+                    if (!data.isDeleted(node)) {
+                        // 节点为属性节点或值节点
+                        collectObjects(node, objectIds);
+                        for (Relationship relationship : node.getRelationships(Direction.INCOMING, PROPERTY_VALUE)) {
+                            collectObjects(relationship.getStartNode(), objectIds);
+                        }
+                    }
+                }
+            }
+            return objectIds;
+        }
+
+        @Override
+        public void afterCommit(TransactionData data, Set<String> objectIds, GraphDatabaseService databaseService) {
+            if (objectIds != null && !objectIds.isEmpty()) {
+                this.cache.invalidate(objectIds);
+            }
+        }
+
+        @Override
+        public void afterRollback(TransactionData data, Set<String> objectIds, GraphDatabaseService databaseService) {
+        }
+    }
+}
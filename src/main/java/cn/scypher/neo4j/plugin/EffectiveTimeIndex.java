@@ -0,0 +1,482 @@
+package cn.scypher.neo4j.plugin;
+
+import cn.scypher.neo4j.plugin.datetime.SEpochInterval;
+import cn.scypher.neo4j.plugin.datetime.SEpochTimePoint;
+import cn.scypher.neo4j.plugin.datetime.SInterval;
+import org.neo4j.graphdb.*;
+import org.neo4j.graphdb.event.LabelEntry;
+import org.neo4j.graphdb.event.PropertyEntry;
+import org.neo4j.graphdb.event.TransactionData;
+import org.neo4j.graphdb.event.TransactionEventListener;
+import org.neo4j.kernel.api.KernelTransaction;
+import org.neo4j.kernel.impl.coreapi.InternalTransaction;
+import org.neo4j.procedure.*;
+
+import java.time.*;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+/**
+ * 节点和边的有效时间索引：为每个被查找过的标签/边类型构建一棵有效时间的区间树，时间点和时间区间查找不再需要遍历该标签的所有节点。
+ * 由TemporalIndexExtension注册的监听器在提交后把新增、删除或有效时间被修改的元素记录在区间树之外的增量中，增量过大时丢弃区间树，在下次查找时重新构建。
+ * 当前事务有未提交的修改或元素的时间点类型不一致时，退回到遍历查找。
+ */
+public class EffectiveTimeIndex {
+    // 增量的元素个数超过区间树大小的1/8加上该值时，丢弃区间树
+    private static final int DELTA_SLACK = 256;
+
+    private static final Map<String, Indexes> indexes = new ConcurrentHashMap<>();
+
+    @Context
+    public Transaction transaction;
+
+    /**
+     * 一个数据库中按标签和边类型划分的索引
+     */
+    private static final class Indexes {
+        private final Map<String, Entry> nodeIndexes = new ConcurrentHashMap<>();
+        private final Map<String, Entry> relationshipIndexes = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * 一个标签或边类型的索引：区间树与提交后的增量。增量中的元素被移出区间树，若仍满足条件，以新的有效时间记录在updates中
+     *
+     * @param tree    区间树，为null时需要重新构建
+     * @param updates 新增或有效时间被修改的元素的有效时间
+     * @param removed 被删除或有效时间被修改的元素
+     */
+    private record State(IntervalTree tree, Map<String, SEpochTimePoint[]> updates, Set<String> removed) {
+        private static final State EMPTY = new State(null, Map.of(), Set.of());
+        // 元素的时间点类型不一致，不构建区间树，直到该标签或边类型再次被修改
+        private static final State MIXED = new State(null, Map.of(), Set.of());
+    }
+
+    private static final class Entry {
+        private volatile State state = State.EMPTY;
+        // 每次应用修改时递增，构建区间树期间有修改时丢弃区间树
+        private volatile long generation = 0;
+
+        /**
+         * @param changes 元素的elementId到新的有效时间的映射，有效时间为null表示元素不再属于该索引
+         */
+        private synchronized void apply(Map<String, SEpochTimePoint[]> changes) {
+            this.generation++;
+            State current = this.state;
+            if (current == State.MIXED) {
+                this.state = State.EMPTY;
+                return;
+            }
+            if (current.tree() == null) {
+                return;
+            }
+            Map<String, SEpochTimePoint[]> updates = new HashMap<>(current.updates());
+            Set<String> removed = new HashSet<>(current.removed());
+            for (Map.Entry<String, SEpochTimePoint[]> change : changes.entrySet()) {
+                removed.add(change.getKey());
+                if (change.getValue() != null) {
+                    updates.put(change.getKey(), change.getValue());
+                } else {
+                    updates.remove(change.getKey());
+                }
+            }
+            if (removed.size() > current.tree().size() / 8 + DELTA_SLACK) {
+                this.state = State.EMPTY;
+            } else {
+                this.state = new State(current.tree(), updates, removed);
+            }
+        }
+
+        /**
+         * @param tree       区间树，为null表示元素的时间点类型不一致
+         * @param generation 构建区间树之前读取的版本
+         */
+        private synchronized void install(IntervalTree tree, long generation) {
+            if (this.generation == generation) {
+                this.state = tree != null ? new State(tree, Map.of(), Set.of()) : State.MIXED;
+            }
+        }
+    }
+
+    /**
+     * @param databaseName 数据库名
+     * @return 为数据库创建有效时间索引，返回维护索引的监听器
+     */
+    static TransactionEventListener<?> register(String databaseName) {
+        Indexes databaseIndexes = new Indexes();
+        indexes.put(databaseName, databaseIndexes);
+        return new IndexListener(databaseIndexes);
+    }
+
+    static void unregister(String databaseName) {
+        indexes.remove(databaseName);
+    }
+
+    /**
+     * @return 返回元素的有效时间，若元素没有有效时间，返回null
+     */
+    static SEpochTimePoint[] getEffectiveTime(Entity entity) {
+        Object intervalFrom = entity.getProperty("intervalFrom", null);
+        Object intervalTo = entity.getProperty("intervalTo", null);
+        if (intervalFrom == null || intervalTo == null) {
+            return null;
+        }
+        return new SEpochTimePoint[]{SEpochTimePoint.of(intervalFrom), SEpochTimePoint.of(intervalTo)};
+    }
+
+    /**
+     * @param elements 标签的所有节点或边类型的所有边
+     * @return 返回有效时间构成的区间树，若时间点类型不一致，返回null
+     */
+    private static IntervalTree buildTree(ResourceIterator<? extends Entity> elements) {
+        List<String> elementIds = new ArrayList<>();
+        List<SEpochTimePoint> intervalFroms = new ArrayList<>();
+        List<SEpochTimePoint> intervalTos = new ArrayList<>();
+        try (elements) {
+            while (elements.hasNext()) {
+                Entity element = elements.next();
+                SEpochTimePoint[] effectiveTime = getEffectiveTime(element);
+                if (effectiveTime != null) {
+                    elementIds.add(element.getElementId());
+                    intervalFroms.add(effectiveTime[0]);
+                    intervalTos.add(effectiveTime[1]);
+                }
+            }
+        }
+        return IntervalTree.of(elementIds, intervalFroms, intervalTos);
+    }
+
+    /**
+     * @param transaction 当前事务
+     * @param relationship 是否查找边
+     * @param name        标签或边类型
+     * @param interval    查找的时间区间
+     * @return 按开始时间的先后顺序返回有效时间与时间区间重合的元素的elementId，若不能使用索引，返回null
+     */
+    private static List<String> seek(Transaction transaction, boolean relationship, String name, SEpochInterval interval) {
+        KernelTransaction kernelTransaction = ((InternalTransaction) transaction).kernelTransaction();
+        Indexes databaseIndexes = indexes.get(kernelTransaction.getDatabaseName());
+        if (databaseIndexes == null || kernelTransaction.dataRead().transactionStateHasChanges()) {
+            return null;
+        }
+        Entry entry = (relationship ? databaseIndexes.relationshipIndexes : databaseIndexes.nodeIndexes).computeIfAbsent(name, key -> new Entry());
+        State current = entry.state;
+        if (current == State.MIXED) {
+            return null;
+        }
+        if (current.tree() == null) {
+            long generation = entry.generation;
+            IntervalTree built = buildTree(relationship ? transaction.findRelationships(RelationshipType.withName(name)) : transaction.findNodes(Label.label(name)));
+            entry.install(built, generation);
+            if (built == null) {
+                return null;
+            }
+            current = new State(built, Map.of(), Set.of());
+        }
+        State state = current;
+        IntervalTree tree = state.tree();
+        if (tree.size() > 0 && tree.getType() != interval.getType()) {
+            throw new RuntimeException("Only the intervals of the same time point type can perform overlaps operations");
+        }
+        List<String> elementIds = new ArrayList<>();
+        if (state.removed().isEmpty()) {
+            tree.overlaps(interval.getFromEpoch(), interval.getFromNano(), interval.getToEpoch(), interval.getToNano(), index -> elementIds.add(tree.getElementId(index)));
+            return elementIds;
+        }
+        Map<String, SEpochTimePoint> intervalFroms = new HashMap<>();
+        tree.overlaps(interval.getFromEpoch(), interval.getFromNano(), interval.getToEpoch(), interval.getToNano(), index -> {
+            if (!state.removed().contains(tree.getElementId(index))) {
+                elementIds.add(tree.getElementId(index));
+                intervalFroms.put(tree.getElementId(index), tree.getIntervalFrom(index));
+            }
+        });
+        for (Map.Entry<String, SEpochTimePoint[]> update : state.updates().entrySet()) {
+            SEpochTimePoint[] effectiveTime = update.getValue();
+            if (effectiveTime[0].getType() != interval.getType() || effectiveTime[1].getType() != interval.getType()) {
+                // 增量中的元素的时间点类型与区间树不一致
+                return null;
+            }
+            if (SEpochInterval.overlaps(effectiveTime[0].getEpoch(), effectiveTime[0].getNano(), effectiveTime[1].getEpoch(), effectiveTime[1].getNano(),
+                    interval.getFromEpoch(), interval.getFromNano(), interval.getToEpoch(), interval.getToNano())) {
+                intervalFroms.put(update.getKey(), effectiveTime[0]);
+            }
+        }
+        if (intervalFroms.size() > elementIds.size()) {
+            // 增量中有满足条件的元素，按开始时间重新排序
+            List<String> mergedIds = new ArrayList<>(intervalFroms.keySet());
+            mergedIds.sort(Comparator.comparing(intervalFroms::get));
+            return mergedIds;
+        }
+        return elementIds;
+    }
+
+    /**
+     * @return 返回元素的有效时间是否与时间区间重合，元素没有有效时间时返回false
+     */
+    static boolean isValidDuring(Entity element, SEpochInterval interval) {
+        SEpochTimePoint[] effectiveTime = getEffectiveTime(element);
+        if (effectiveTime == null) {
+            return false;
+        }
+        if (effectiveTime[0].getType() != interval.getType() || effectiveTime[1].getType() != interval.getType()) {
+            throw new RuntimeException("Only the intervals of the same time point type can perform overlaps operations");
+        }
+        return SEpochInterval.overlaps(effectiveTime[0].getEpoch(), effectiveTime[0].getNano(), effectiveTime[1].getEpoch(), effectiveTime[1].getNano(),
+                interval.getFromEpoch(), interval.getFromNano(), interval.getToEpoch(), interval.getToNano());
+    }
+
+    /**
+     * @return 遍历查找有效时间与时间区间重合的元素
+     */
+    static <T extends Entity> Stream<T> scan(ResourceIterator<T> elements, SEpochInterval interval) {
+        return elements.stream().filter(element -> isValidDuring(element, interval));
+    }
+
+    /**
+     * @param elementIds 索引查找到的元素的elementId
+     * @param lookup     按elementId获取元素
+     * @return 返回元素，跳过被并发删除的元素
+     */
+    private static <T> Stream<T> resolve(List<String> elementIds, Function<String, T> lookup) {
+        return elementIds.stream().map(elementId -> {
+            try {
+                return lookup.apply(elementId);
+            } catch (NotFoundException e) {
+                return null;
+            }
+        }).filter(Objects::nonNull);
+    }
+
+    /**
+     * @param transaction     当前事务
+     * @param timePointObject 时间点，为NULL时使用默认操作时间（snapshot设置的时间点或当前时刻）
+     * @return 返回查找使用的时间点
+     */
+    static Object getTimePoint(Transaction transaction, Object timePointObject) {
+        if (timePointObject == null) {
+            STemporalContext context = GlobalVariablesManager.getContext(transaction);
+            return context.snapshotTimePoint() != null ? context.snapshotTimePoint().getSystemTimePoint() : TransactionClock.getCurrentTimePoint(transaction).getSystemTimePoint();
+        } else if (!(timePointObject instanceof LocalDate | timePointObject instanceof OffsetTime | timePointObject instanceof LocalTime | timePointObject instanceof ZonedDateTime | timePointObject instanceof LocalDateTime)) {
+            throw new RuntimeException("Type mismatch: expected Date, Time, LocalTime, LocalDateTime or DateTime but was " + timePointObject.getClass().getSimpleName());
+        }
+        return timePointObject;
+    }
+
+    /**
+     * @param timePointObject 时间点，为NULL时使用默认操作时间（snapshot设置的时间点或当前时刻）
+     * @return 返回时间点构成的时间区间
+     */
+    private SEpochInterval getTimePointInterval(Object timePointObject) {
+        SEpochTimePoint timePoint = SEpochTimePoint.of(getTimePoint(this.transaction, timePointObject));
+        return new SEpochInterval(timePoint, timePoint);
+    }
+
+    private Stream<NodeResult> seekNodes(String label, SEpochInterval interval) {
+        List<String> elementIds = seek(this.transaction, false, label, interval);
+        if (elementIds != null) {
+            return resolve(elementIds, this.transaction::getNodeByElementId).map(NodeResult::new);
+        }
+        ResourceIterator<Node> nodes = this.transaction.findNodes(Label.label(label));
+        return scan(nodes, interval).onClose(nodes::close).map(NodeResult::new);
+    }
+
+    public static class NodeResult {
+        public Node node;
+
+        public NodeResult(Node node) {
+            this.node = node;
+        }
+    }
+
+    public static class RelationshipResult {
+        public Relationship relationship;
+
+        public RelationshipResult(Relationship relationship) {
+            this.relationship = relationship;
+        }
+    }
+
+    /**
+     * @param label           节点的标签
+     * @param timePointObject 时间点，为NULL时使用默认操作时间（snapshot设置的时间点或当前时刻）
+     * @return 按有效时间的开始时间的先后顺序返回该标签下有效时间包含时间点的节点
+     */
+    @Procedure(name = "scypher.nodesValidAt", mode = Mode.READ)
+    @Description("Get the nodes of a label whose effective time contains a time point.")
+    public Stream<NodeResult> nodesValidAt(@Name("label") String label, @Name("timePoint") Object timePointObject) {
+        if (label != null) {
+            return seekNodes(label, getTimePointInterval(timePointObject));
+        } else {
+            throw new RuntimeException("Missing parameter");
+        }
+    }
+
+    /**
+     * @param label       节点的标签
+     * @param intervalMap 时间区间，为NULL时使用scope
+     * @return 按有效时间的开始时间的先后顺序返回该标签下有效时间与时间区间重合的节点
+     */
+    @Procedure(name = "scypher.nodesValidDuring", mode = Mode.READ)
+    @Description("Get the nodes of a label whose effective time overlaps an interval.")
+    public Stream<NodeResult> nodesValidDuring(@Name("label") String label, @Name("interval") Map<String, Object> intervalMap) {
+        SInterval interval = intervalMap != null ? new SInterval(intervalMap) : GlobalVariablesManager.getContext(this.transaction).scopeInterval();
+        if (label != null && interval != null) {
+            return seekNodes(label, new SEpochInterval(interval));
+        } else {
+            throw new RuntimeException("Missing parameter");
+        }
+    }
+
+    /**
+     * @param type            边的类型
+     * @param timePointObject 时间点，为NULL时使用默认操作时间（snapshot设置的时间点或当前时刻）
+     * @return 按有效时间的开始时间的先后顺序返回该类型的有效时间包含时间点的边
+     */
+    @Procedure(name = "scypher.relationshipsValidAt", mode = Mode.READ)
+    @Description("Get the relationships of a type whose effective time contains a time point.")
+    public Stream<RelationshipResult> relationshipsValidAt(@Name("type") String type, @Name("timePoint") Object timePointObject) {
+        if (type != null) {
+            SEpochInterval interval = getTimePointInterval(timePointObject);
+            List<String> elementIds = seek(this.transaction, true, type, interval);
+            if (elementIds != null) {
+                return resolve(elementIds, this.transaction::getRelationshipByElementId).map(RelationshipResult::new);
+            }
+            ResourceIterator<Relationship> relationships = this.transaction.findRelationships(RelationshipType.withName(type));
+            return scan(relationships, interval).onClose(relationships::close).map(RelationshipResult::new);
+        } else {
+            throw new RuntimeException("Missing parameter");
+        }
+    }
+
+    /**
+     * @return 返回当前数据库中每个标签和边类型的有效时间索引的区间树大小、增量大小以及时间点类型是否不一致，区间树尚未构建时大小为NULL
+     */
+    @UserFunction("scypher.effectiveTimeIndex.statistics")
+    @Description("Get the statistics of the effective time index.")
+    public Map<String, Object> effectiveTimeIndexStatistics() {
+        Indexes databaseIndexes = indexes.get(((InternalTransaction) this.transaction).kernelTransaction().getDatabaseName());
+        if (databaseIndexes == null) {
+            throw new RuntimeException("The index is not available for this database");
+        }
+        Map<String, Object> statistics = new HashMap<>();
+        statistics.put("nodes", getStatistics(databaseIndexes.nodeIndexes));
+        statistics.put("relationships", getStatistics(databaseIndexes.relationshipIndexes));
+        return statistics;
+    }
+
+    private static Map<String, Object> getStatistics(Map<String, Entry> entries) {
+        Map<String, Object> statistics = new HashMap<>();
+        for (Map.Entry<String, Entry> entry : entries.entrySet()) {
+            State state = entry.getValue().state;
+            Map<String, Object> entryStatistics = new HashMap<>();
+            entryStatistics.put("size", state.tree() != null ? (Object) (long) state.tree().size() : null);
+            entryStatistics.put("updates", (long) state.updates().size());
+            entryStatistics.put("removed", (long) state.removed().size());
+            entryStatistics.put("mixed", state == State.MIXED);
+            statistics.put(entry.getKey(), entryStatistics);
+        }
+        return statistics;
+    }
+
+    /**
+     * 一次提交中按标签和边类型划分的修改：标签或边类型到元素的elementId及其新的有效时间的映射
+     */
+    private record Changes(Map<String, Map<String, SEpochTimePoint[]>> nodes, Map<String, Map<String, SEpochTimePoint[]>> relationships) {
+    }
+
+    /**
+     * 在提交前按标签和边类型收集被新增、删除或有效时间被修改的元素及其新的有效时间，在提交后应用到提交时已存在的索引。
+     * 节点的修改只记录在它现在拥有或提交前拥有的标签下。提交前不检查索引是否存在，使提交期间新建的索引也能收到该提交的修改
+     */
+    private static final class IndexListener implements TransactionEventListener<Changes> {
+        private final Indexes databaseIndexes;
+
+        private IndexListener(Indexes databaseIndexes) {
+            this.databaseIndexes = databaseIndexes;
+        }
+
+        private static void put(Map<String, Map<String, SEpochTimePoint[]>> changes, String name, String elementId, SEpochTimePoint[] effectiveTime) {
+            changes.computeIfAbsent(name, key -> new HashMap<>()).put(elementId, effectiveTime);
+        }
+
+        @Override
+        public Changes beforeCommit(TransactionData data, Transaction transaction, GraphDatabaseService databaseService) {
+            Map<String, Map<String, SEpochTimePoint[]>> nodeChanges = new HashMap<>();
+            Set<Node> nodes = new HashSet<>();
+            data.createdNodes().forEach(nodes::add);
+            data.deletedNodes().forEach(nodes::add);
+            for (LabelEntry labelEntry : data.assignedLabels()) {
+                nodes.add(labelEntry.node());
+            }
+            // 被移除的标签，包括被删除的节点的标签
+            Map<String, Set<String>> removedLabels = new HashMap<>();
+            for (LabelEntry labelEntry : data.removedLabels()) {
+                nodes.add(labelEntry.node());
+                removedLabels.computeIfAbsent(labelEntry.node().getElementId(), key -> new HashSet<>()).add(labelEntry.label().name());
+            }
+            for (Iterable<PropertyEntry<Node>> propertyEntries : List.of(data.assignedNodeProperties(), data.removedNodeProperties())) {
+                for (PropertyEntry<Node> propertyEntry : propertyEntries) {
+                    if (propertyEntry.key().equals("intervalFrom") || propertyEntry.key().equals("intervalTo")) {
+                        nodes.add(propertyEntry.entity());
+                    }
+                }
+            }
+            for (Node node : nodes) {
+                String elementId = node.getElementId();
+                if (!data.isDeleted(node)) {
+                    SEpochTimePoint[] effectiveTime = getEffectiveTime(node);
+                    for (Label label : node.getLabels()) {
+                        put(nodeChanges, label.name(), elementId, effectiveTime);
+                    }
+                }
+                for (String label : removedLabels.getOrDefault(elementId, Set.of())) {
+                    if (data.isDeleted(node) || !node.hasLabel(Label.label(label))) {
+                        put(nodeChanges, label, elementId, null);
+                    }
+                }
+            }
+            Map<String, Map<String, SEpochTimePoint[]>> relationshipChanges = new HashMap<>();
+            for (Relationship relationship : data.deletedRelationships()) {
+                put(relationshipChanges, relationship.getType().name(), relationship.getElementId(), null);
+            }
+            Set<Relationship> relationships = new HashSet<>();
+            data.createdRelationships().forEach(relationships::add);
+            for (Iterable<PropertyEntry<Relationship>> propertyEntries : List.of(data.assignedRelationshipProperties(), data.removedRelationshipProperties())) {
+                for (PropertyEntry<Relationship> propertyEntry : propertyEntries) {
+                    if (propertyEntry.key().equals("intervalFrom") || propertyEntry.key().equals("intervalTo")) {
+                        relationships.add(propertyEntry.entity());
+                    }
+                }
+            }
+            for (Relationship relationship : relationships) {
+                if (!data.isDeleted(relationship)) {
+                    put(relationshipChanges, relationship.getType().name(), relationship.getElementId(), getEffectiveTime(relationship));
+                }
+            }
+            return new Changes(nodeChanges, relationshipChanges);
+        }
+
+        @Override
+        public void afterCommit(TransactionData data, Changes changes, GraphDatabaseService databaseService) {
+            // 应用修改时递增索引的版本：在此之后安装的区间树被丢弃，在此之前安装的区间树会收到修改
+            if (changes != null) {
+                apply(this.databaseIndexes.nodeIndexes, changes.nodes());
+                apply(this.databaseIndexes.relationshipIndexes, changes.relationships());
+            }
+        }
+
+        private static void apply(Map<String, Entry> entries, Map<String, Map<String, SEpochTimePoint[]>> changes) {
+            for (Map.Entry<String, Map<String, SEpochTimePoint[]>> change : changes.entrySet()) {
+                Entry entry = entries.get(change.getKey());
+                if (entry != null) {
+                    entry.apply(change.getValue());
+                }
+            }
+        }
+
+        @Override
+        public void afterRollback(TransactionData data, Changes changes, GraphDatabaseService databaseService) {
+        }
+    }
+}
@@ -0,0 +1,269 @@
+package cn.scypher.neo4j.plugin;
+
+import org.neo4j.graphdb.*;
+import org.neo4j.graphdb.event.PropertyEntry;
+import org.neo4j.graphdb.event.TransactionData;
+import org.neo4j.graphdb.event.TransactionEventListener;
+import org.neo4j.kernel.api.KernelTransaction;
+import org.neo4j.kernel.impl.coreapi.InternalTransaction;
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 以节点elementId为键的缓存，由InvalidationListener在提交后失效被修改的节点。
+ * 缓存被划分为多个段，每个段为一个按访问顺序淘汰的LRU，以减少并发访问时的锁竞争。
+ * 可选地使用TinyLFU准入策略：段已满时，只有访问频率高于待淘汰项的新值才会被放入缓存，使偶尔访问的节点不会挤掉常用的节点。
+ *
+ * @param <V> 缓存的值，必须是不可变的
+ */
+final class ElementCache<V> {
+    private static final int SEGMENT_COUNT = 16;
+
+    private final int capacity;
+    private final Segment<V>[] segments;
+    // 每次有节点被失效时递增，用于丢弃与提交并发构建的过期值
+    private final AtomicLong generation = new AtomicLong();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder rejections = new LongAdder();
+    // 为null时不使用准入策略
+    private final FrequencySketch sketch;
+    private volatile boolean enabled = true;
+
+    ElementCache(int capacity) {
+        this(capacity, false);
+    }
+
+    /**
+     * @param capacity  缓存的容量
+     * @param admission 是否使用TinyLFU准入策略
+     */
+    @SuppressWarnings("unchecked")
+    ElementCache(int capacity, boolean admission) {
+        this.capacity = capacity;
+        this.sketch = admission ? new FrequencySketch(capacity) : null;
+        this.segments = new Segment[SEGMENT_COUNT];
+        for (int i = 0; i < SEGMENT_COUNT; i++) {
+            this.segments[i] = new Segment<>(capacity / SEGMENT_COUNT);
+        }
+    }
+
+    private static final class Segment<V> extends LinkedHashMap<String, V> {
+        private final int capacity;
+
+        private Segment(int capacity) {
+            super(capacity * 2, 0.75f, true);
+            this.capacity = capacity;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, V> eldest) {
+            return size() > this.capacity;
+        }
+    }
+
+    /**
+     * @param caches      各数据库的缓存
+     * @param transaction 当前事务
+     * @return 返回当前事务所在数据库的缓存。若缓存不存在、被关闭或当前事务有未提交的修改（缓存不可见这些修改），返回null
+     */
+    static <V> ElementCache<V> of(Map<String, ElementCache<V>> caches, Transaction transaction) {
+        if (transaction instanceof InternalTransaction internalTransaction) {
+            KernelTransaction kernelTransaction = internalTransaction.kernelTransaction();
+            ElementCache<V> cache = caches.get(kernelTransaction.getDatabaseName());
+            if (cache != null && cache.enabled && !kernelTransaction.dataRead().transactionStateHasChanges()) {
+                return cache;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @param caches      各数据库的缓存
+     * @param transaction 当前事务
+     * @return 返回当前事务所在数据库的缓存
+     */
+    static <V> ElementCache<V> require(Map<String, ElementCache<V>> caches, Transaction transaction) {
+        ElementCache<V> cache = caches.get(((InternalTransaction) transaction).kernelTransaction().getDatabaseName());
+        if (cache == null) {
+            throw new RuntimeException("The index is not available for this database");
+        }
+        return cache;
+    }
+
+    private Segment<V> segment(String elementId) {
+        return this.segments[(elementId.hashCode() & 0x7fffffff) % SEGMENT_COUNT];
+    }
+
+    /**
+     * @param elementId 节点的elementId
+     * @return 返回缓存的值，若没有，返回null
+     */
+    V get(String elementId) {
+        Segment<V> segment = segment(elementId);
+        V value;
+        synchronized (segment) {
+            value = segment.get(elementId);
+            if (this.sketch != null) {
+                this.sketch.increment(elementId);
+            }
+        }
+        if (value != null) {
+            this.hits.increment();
+        } else {
+            this.misses.increment();
+        }
+        return value;
+    }
+
+    /**
+     * @return 返回当前的版本，在构建值之前读取，并传给put
+     */
+    long generation() {
+        return this.generation.get();
+    }
+
+    /**
+     * @param elementId  节点的elementId
+     * @param value      缓存的值
+     * @param generation 构建值之前读取的版本，若构建期间有节点被失效，则不保留该值
+     */
+    void put(String elementId, V value, long generation) {
+        Segment<V> segment = segment(elementId);
+        synchronized (segment) {
+            if (this.sketch != null && segment.size() >= segment.capacity && !segment.containsKey(elementId)) {
+                // 段中第一个键为最久未访问的键，即下一个被淘汰的键
+                String victim = segment.keySet().iterator().next();
+                if (this.sketch.frequency(elementId) <= this.sketch.frequency(victim)) {
+                    this.rejections.increment();
+                    return;
+                }
+            }
+            segment.put(elementId, value);
+        }
+        if (this.generation.get() != generation) {
+            invalidate(elementId);
+        }
+    }
+
+    void invalidate(String elementId) {
+        Segment<V> segment = segment(elementId);
+        synchronized (segment) {
+            segment.remove(elementId);
+        }
+    }
+
+    void invalidate(Collection<String> elementIds) {
+        this.generation.incrementAndGet();
+        for (String elementId : elementIds) {
+            invalidate(elementId);
+        }
+    }
+
+    boolean isEnabled() {
+        return this.enabled;
+    }
+
+    /**
+     * @param enabled 是否使用缓存，关闭时清空缓存
+     */
+    void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+        if (!enabled) {
+            clear();
+        }
+    }
+
+    void clear() {
+        this.generation.incrementAndGet();
+        for (Segment<V> segment : this.segments) {
+            synchronized (segment) {
+                segment.clear();
+            }
+        }
+    }
+
+    /**
+     * @return 返回缓存中的值的个数
+     */
+    long size() {
+        long size = 0;
+        for (Segment<V> segment : this.segments) {
+            synchronized (segment) {
+                size += segment.size();
+            }
+        }
+        return size;
+    }
+
+    /**
+     * @return 返回缓存的大小和命中、未命中的次数，使用准入策略时还返回拒绝放入的次数
+     */
+    Map<String, Object> getStatistics() {
+        Map<String, Object> statistics = new HashMap<>();
+        statistics.put("size", size());
+        statistics.put("capacity", (long) this.capacity);
+        statistics.put("hits", this.hits.sum());
+        statistics.put("misses", this.misses.sum());
+        if (this.sketch != null) {
+            statistics.put("rejections", this.rejections.sum());
+        }
+        return statistics;
+    }
+
+    /**
+     * 缓存的键为某类边的开始节点，值由这些边及其结束节点的若干属性构建。
+     * 在提交前收集这类边被创建或删除的开始节点，以及这些属性被修改的结束节点所属的开始节点，在提交后将其从缓存中失效。
+     */
+    static final class InvalidationListener implements TransactionEventListener<Set<String>> {
+        private final ElementCache<?> cache;
+        private final RelationshipType relationshipType;
+        private final Set<String> keys;
+
+        /**
+         * @param cache            被维护的缓存
+         * @param relationshipType 开始节点到结束节点的边的类型
+         * @param keys             结束节点上参与构建缓存值的属性
+         */
+        InvalidationListener(ElementCache<?> cache, RelationshipType relationshipType, String... keys) {
+            this.cache = cache;
+            this.relationshipType = relationshipType;
+            this.keys = Set.of(keys);
+        }
+
+        @Override
+        public Set<String> beforeCommit(TransactionData data, Transaction transaction, GraphDatabaseService databaseService) {
+            Set<String> elementIds = new HashSet<>();
+            for (Iterable<Relationship> relationships : List.of(data.createdRelationships(), data.deletedRelationships())) {
+                for (Relationship relationship : relationships) {
+                    if (relationship.isType(this.relationshipType)) {
+                        elementIds.add(relationship.getStartNode().getElementId());
+                    }
+                }
+            }
+            for (Iterable<PropertyEntry<Node>> propertyEntries : List.of(data.assignedNodeProperties(), data.removedNodeProperties())) {
+                for (PropertyEntry<Node> propertyEntry : propertyEntries) {
+                    if (this.keys.contains(propertyEntry.key()) && !data.isDeleted(propertyEntry.entity())) {
+                        for (Relationship relationship : propertyEntry.entity().getRelationships(Direction.INCOMING, this.relationshipType)) {
+                            elementIds.add(relationship.getStartNode().getElementId());
+                        }
+                    }
+                }
+            }
+            return elementIds;
+        }
+
+        @Override
+        public void afterCommit(TransactionData data, Set<String> elementIds, GraphDatabaseService databaseService) {
+            if (elementIds != null && !elementIds.isEmpty()) {
+                this.cache.invalidate(elementIds);
+            }
+        }
+
+        @Override
+        public void afterRollback(TransactionData data, Set<String> elementIds, GraphDatabaseService databaseService) {
+        }
+    }
+}
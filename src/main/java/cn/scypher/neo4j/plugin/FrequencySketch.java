@@ -0,0 +1,71 @@
+package cn.scypher.neo4j.plugin;
+
+/**
+ * 近似统计键的访问频率的Count-Min Sketch，用于缓存的TinyLFU准入策略。
+ * 每个键映射到4行中各一个计数器，计数器上限为15；访问次数达到采样大小后所有计数器减半，使频率随时间衰减。
+ * 并发更新不加锁，少量丢失的计数只影响准入判断的精度。
+ */
+final class FrequencySketch {
+    private static final int DEPTH = 4;
+    private static final int MAX_COUNT = 15;
+    private static final int[] SEEDS = {0x97cb3127, 0xb0ee7d6f, 0x4e5d8b21, 0xe0b6d3a5};
+
+    private final int[] counters;
+    private final int mask;
+    private final int sampleSize;
+    private int additions;
+
+    /**
+     * @param capacity 缓存的容量
+     */
+    FrequencySketch(int capacity) {
+        int width = Integer.highestOneBit(Math.max(capacity, 16) - 1) << 1;
+        this.counters = new int[DEPTH * width];
+        this.mask = width - 1;
+        this.sampleSize = 10 * Math.max(capacity, 16);
+    }
+
+    private int indexOf(int hash, int row) {
+        int h = (hash ^ SEEDS[row]) * 0x9e3779b9;
+        h ^= h >>> 16;
+        return row * (this.mask + 1) + (h & this.mask);
+    }
+
+    /**
+     * @param key 被访问的键
+     */
+    void increment(Object key) {
+        int hash = key.hashCode();
+        boolean added = false;
+        for (int row = 0; row < DEPTH; row++) {
+            int index = indexOf(hash, row);
+            if (this.counters[index] < MAX_COUNT) {
+                this.counters[index]++;
+                added = true;
+            }
+        }
+        if (added && ++this.additions >= this.sampleSize) {
+            reset();
+        }
+    }
+
+    /**
+     * @param key 键
+     * @return 返回键的近似访问频率
+     */
+    int frequency(Object key) {
+        int hash = key.hashCode();
+        int frequency = MAX_COUNT;
+        for (int row = 0; row < DEPTH; row++) {
+            frequency = Math.min(frequency, this.counters[indexOf(hash, row)]);
+        }
+        return frequency;
+    }
+
+    private void reset() {
+        for (int i = 0; i < this.counters.length; i++) {
+            this.counters[i] >>>= 1;
+        }
+        this.additions = 0;
+    }
+}
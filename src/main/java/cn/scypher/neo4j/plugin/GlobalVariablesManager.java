@@ -2,53 +2,139 @@ package cn.scypher.neo4j.plugin;
 
 import cn.scypher.neo4j.plugin.datetime.SInterval;
 import cn.scypher.neo4j.plugin.datetime.STimePoint;
+import cn.scypher.neo4j.plugin.datetime.STimePointCache;
+import org.neo4j.graphdb.Transaction;
+import org.neo4j.kernel.api.KernelTransaction;
+import org.neo4j.kernel.impl.coreapi.InternalTransaction;
 
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.UnaryOperator;
+
+/**
+ * 时态上下文的管理：时间点类型和时区为数据库级的默认值；snapshot和scope只对设置它们的事务有效，事务关闭时移除，
+ * 客户端需在同一显式事务中执行snapshot/scope及受其限制的查询，在自动提交的事务中设置会报错。
+ */
 public class GlobalVariablesManager {
+    // 同时设置了snapshot或scope的事务个数上限，超出时拒绝设置而不淘汰其他事务的上下文
+    private static final int MAX_TRANSACTION_COUNT = 4096;
+
+    // 数据库级的默认上下文，不包含snapshot和scope
+    private static volatile STemporalContext defaultContext = new STemporalContext("datetime", null, null, null);
 
-    private static String timePointType = "datetime";
+    // 设置过snapshot或scope的事务的上下文，内核事务对象会被复用，因此同时以事务序号区分
+    private record TransactionKey(KernelTransaction kernelTransaction, long sequenceNumber) {
+    }
 
-    private static String timezone = null;
+    private static final Map<TransactionKey, STemporalContext> transactionContexts = new ConcurrentHashMap<>();
 
-    private static STimePoint snapshotTimePoint = null;
-    private static SInterval scopeInterval = null;
+    // 任何上下文被修改时递增，供按事务缓存时态上下文的调用方判定缓存是否过期
+    private static volatile long contextVersion = 0;
 
     public static String getTimePointType() {
-        return timePointType;
+        return defaultContext.timePointType();
     }
 
-    public static void setTimePointType(String timePointType) {
-        GlobalVariablesManager.timePointType = timePointType;
+    public static synchronized void setTimePointType(String timePointType) {
+        if (!Objects.equals(defaultContext.timePointType(), timePointType)) {
+            STimePointCache.clear();
+            defaultContext = new STemporalContext(timePointType, defaultContext.timezone(), null, null);
+            // 丢弃与新的时间点类型不一致的snapshot和scope
+            transactionContexts.replaceAll((transaction, context) -> defaultContext);
+            contextVersion++;
+        }
     }
 
     public static String getTimezone() {
-        return timezone;
+        return defaultContext.timezone();
+    }
+
+    public static synchronized void setTimezone(String timezone) {
+        if (!Objects.equals(defaultContext.timezone(), timezone)) {
+            STimePointCache.clear();
+            defaultContext = new STemporalContext(defaultContext.timePointType(), timezone, null, null);
+            transactionContexts.replaceAll((transaction, context) -> new STemporalContext(context.timePointType(), timezone, context.snapshotTimePoint(), context.scopeInterval()));
+            contextVersion++;
+        }
     }
 
-    public static void setTimezone(String timezone) {
-        GlobalVariablesManager.timezone = timezone;
+    /**
+     * @param transaction 当前事务
+     * @return 返回当前事务的时态上下文
+     */
+    public static STemporalContext getContext(Transaction transaction) {
+        if (transaction instanceof InternalTransaction internalTransaction) {
+            STemporalContext context = transactionContexts.get(getKey(internalTransaction));
+            if (context != null) {
+                return context;
+            }
+        }
+        return defaultContext;
     }
 
-    public static STimePoint getSnapshotTimePoint() {
-        return snapshotTimePoint;
+    /**
+     * @return 返回上下文的版本，任何事务的snapshot/scope或数据库的时间点类型、时区被修改后版本都会改变
+     */
+    public static long getContextVersion() {
+        return contextVersion;
     }
 
-    public static void setSnapshotTimePoint(STimePoint snapshotTimePoint) {
-        if (snapshotTimePoint == null | (snapshotTimePoint != null && snapshotTimePoint.getTimePointType().equals(GlobalVariablesManager.timePointType))) {
-            GlobalVariablesManager.snapshotTimePoint = snapshotTimePoint;
+    /**
+     * @param transaction       当前事务
+     * @param snapshotTimePoint snapshot指定的时间点，为null时取消snapshot
+     */
+    public static void setSnapshotTimePoint(Transaction transaction, STimePoint snapshotTimePoint) {
+        if (snapshotTimePoint == null || snapshotTimePoint.getTimePointType().equals(getTimePointType())) {
+            updateContext(transaction, context -> context.withSnapshotTimePoint(snapshotTimePoint));
         } else {
             throw new RuntimeException("The time point type of snapshot must be consistent with the system");
         }
     }
 
-    public static SInterval getScopeInterval() {
-        return scopeInterval;
-    }
-
-    public static void setScopeInterval(SInterval scopeInterval) {
-        if (scopeInterval == null | (scopeInterval != null && scopeInterval.getTimePointType().equals(GlobalVariablesManager.timePointType))) {
-            GlobalVariablesManager.scopeInterval = scopeInterval;
+    /**
+     * @param transaction   当前事务
+     * @param scopeInterval scope指定的时间区间，为null时取消scope
+     */
+    public static void setScopeInterval(Transaction transaction, SInterval scopeInterval) {
+        if (scopeInterval == null || scopeInterval.getTimePointType().equals(getTimePointType())) {
+            updateContext(transaction, context -> context.withScopeInterval(scopeInterval));
         } else {
             throw new RuntimeException("The interval type of scope must be consistent with the system");
         }
     }
+
+    private static synchronized void updateContext(Transaction transaction, UnaryOperator<STemporalContext> update) {
+        if (!(transaction instanceof InternalTransaction internalTransaction)) {
+            throw new RuntimeException("SNAPSHOT and SCOPE can only be set in a database transaction");
+        }
+        // 自动提交的事务在语句结束时即关闭，设置的snapshot/scope不会作用于后续语句
+        if (internalTransaction.transactionType() == KernelTransaction.Type.IMPLICIT) {
+            throw new RuntimeException("SNAPSHOT and SCOPE must be set in an explicit transaction, an auto-commit query would discard them when it ends");
+        }
+        TransactionKey key = getKey(internalTransaction);
+        STemporalContext context = transactionContexts.get(key);
+        if (context == null) {
+            if (transactionContexts.size() >= MAX_TRANSACTION_COUNT) {
+                throw new RuntimeException("Too many open transactions have set SNAPSHOT or SCOPE, the limit is " + MAX_TRANSACTION_COUNT);
+            }
+            // 事务关闭（提交或回滚）时移除其上下文
+            internalTransaction.registerCloseableResource(() -> transactionContexts.remove(key));
+            context = defaultContext;
+        }
+        transactionContexts.put(key, update.apply(context));
+        contextVersion++;
+    }
+
+    private static TransactionKey getKey(InternalTransaction transaction) {
+        KernelTransaction kernelTransaction = transaction.kernelTransaction();
+        return new TransactionKey(kernelTransaction, kernelTransaction.getTransactionSequenceNumber());
+    }
+
+    /**
+     * @return 返回设置了snapshot或scope且尚未关闭的事务个数
+     */
+    static int getTransactionContextCount() {
+        return transactionContexts.size();
+    }
 }
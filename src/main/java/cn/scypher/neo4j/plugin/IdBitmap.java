@@ -0,0 +1,174 @@
+package cn.scypher.neo4j.plugin;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * 不可变的压缩位图，存放节点或边的id。与Roaring位图相同，id按高位划分为65536个一组的块，
+ * 元素不超过4096个的块存为有序的char数组，否则存为1024个long的位图。修改时只复制被修改的块，其余块与原位图共享。
+ */
+final class IdBitmap {
+    static final IdBitmap EMPTY = new IdBitmap(new long[0], new Object[0]);
+
+    // 块内元素个数不超过该值时使用有序数组
+    private static final int ARRAY_MAX_SIZE = 4096;
+    private static final int BITMAP_LENGTH = 1024;
+
+    // 有序的块编号（id的高位）
+    private final long[] keys;
+    // 每个块为char[]或long[]
+    private final Object[] containers;
+    private final long cardinality;
+
+    private IdBitmap(long[] keys, Object[] containers) {
+        this.keys = keys;
+        this.containers = containers;
+        long cardinality = 0;
+        for (Object container : containers) {
+            cardinality += cardinality(container);
+        }
+        this.cardinality = cardinality;
+    }
+
+    private static int cardinality(Object container) {
+        if (container instanceof char[] array) {
+            return array.length;
+        }
+        int cardinality = 0;
+        for (long word : (long[]) container) {
+            cardinality += Long.bitCount(word);
+        }
+        return cardinality;
+    }
+
+    /**
+     * @return 将块转为位图，返回新的数组
+     */
+    private static long[] toBitmap(Object container) {
+        if (container instanceof long[] bitmap) {
+            return bitmap.clone();
+        }
+        long[] bitmap = new long[BITMAP_LENGTH];
+        for (char low : (char[]) container) {
+            bitmap[low >>> 6] |= 1L << low;
+        }
+        return bitmap;
+    }
+
+    /**
+     * @return 返回位图压缩后的块，块为空时返回null
+     */
+    private static Object compress(long[] bitmap) {
+        int cardinality = cardinality(bitmap);
+        if (cardinality == 0) {
+            return null;
+        } else if (cardinality > ARRAY_MAX_SIZE) {
+            return bitmap;
+        }
+        char[] array = new char[cardinality];
+        int size = 0;
+        for (int i = 0; i < BITMAP_LENGTH; i++) {
+            long word = bitmap[i];
+            while (word != 0) {
+                array[size++] = (char) (i * 64 + Long.numberOfTrailingZeros(word));
+                word &= word - 1;
+            }
+        }
+        return array;
+    }
+
+    private static IdBitmap of(TreeMap<Long, Object> containers) {
+        long[] keys = new long[containers.size()];
+        Object[] values = new Object[containers.size()];
+        int i = 0;
+        for (Map.Entry<Long, Object> entry : containers.entrySet()) {
+            keys[i] = entry.getKey();
+            values[i++] = entry.getValue();
+        }
+        return new IdBitmap(keys, values);
+    }
+
+    /**
+     * 构建位图时先在未压缩的块中加入id，build时再压缩
+     */
+    static final class Builder {
+        private final TreeMap<Long, Object> bitmaps = new TreeMap<>();
+
+        void add(long id) {
+            long[] bitmap = (long[]) this.bitmaps.computeIfAbsent(id >>> 16, key -> new long[BITMAP_LENGTH]);
+            bitmap[(int) (id & 0xFFFF) >>> 6] |= 1L << id;
+        }
+
+        IdBitmap build() {
+            this.bitmaps.replaceAll((key, bitmap) -> compress((long[]) bitmap));
+            return of(this.bitmaps);
+        }
+    }
+
+    boolean contains(long id) {
+        int index = Arrays.binarySearch(this.keys, id >>> 16);
+        if (index < 0) {
+            return false;
+        }
+        char low = (char) id;
+        Object container = this.containers[index];
+        if (container instanceof char[] array) {
+            return Arrays.binarySearch(array, low) >= 0;
+        }
+        return (((long[]) container)[low >>> 6] & (1L << low)) != 0;
+    }
+
+    /**
+     * @param added   加入的id
+     * @param removed 移除的id
+     * @return 返回修改后的位图，未被修改的块与原位图共享
+     */
+    IdBitmap with(long[] added, long[] removed) {
+        if (added.length == 0 && removed.length == 0) {
+            return this;
+        }
+        TreeMap<Long, long[]> touched = new TreeMap<>();
+        for (long id : removed) {
+            touched(touched, id >>> 16)[(int) (id & 0xFFFF) >>> 6] &= ~(1L << id);
+        }
+        for (long id : added) {
+            touched(touched, id >>> 16)[(int) (id & 0xFFFF) >>> 6] |= 1L << id;
+        }
+        TreeMap<Long, Object> containers = new TreeMap<>();
+        for (int i = 0; i < this.keys.length; i++) {
+            containers.put(this.keys[i], this.containers[i]);
+        }
+        for (Map.Entry<Long, long[]> entry : touched.entrySet()) {
+            Object container = compress(entry.getValue());
+            if (container != null) {
+                containers.put(entry.getKey(), container);
+            } else {
+                containers.remove(entry.getKey());
+            }
+        }
+        return of(containers);
+    }
+
+    private long[] touched(TreeMap<Long, long[]> touched, long key) {
+        return touched.computeIfAbsent(key, k -> {
+            int index = Arrays.binarySearch(this.keys, k);
+            return index >= 0 ? toBitmap(this.containers[index]) : new long[BITMAP_LENGTH];
+        });
+    }
+
+    long cardinality() {
+        return this.cardinality;
+    }
+
+    /**
+     * @return 返回块占用的字节数（估计值）
+     */
+    long sizeInBytes() {
+        long size = 8L * this.keys.length;
+        for (Object container : this.containers) {
+            size += container instanceof char[] array ? 2L * array.length : 8L * BITMAP_LENGTH;
+        }
+        return size;
+    }
+}
@@ -0,0 +1,136 @@
+package cn.scypher.neo4j.plugin;
+
+import cn.scypher.neo4j.plugin.datetime.SEpochTimePoint;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.IntConsumer;
+
+/**
+ * 静态的区间树：元素按有效时间的开始时间排序存放在数组中，数组按中点递归地构成一棵平衡二叉搜索树，
+ * 每个中点记录其子树中结束时间的最大值。查找与某个时间区间重合的元素时，跳过结束时间都早于查找区间、
+ * 或开始时间都晚于查找区间的子树，代价为O((结果个数 + 1) log n)。
+ */
+final class IntervalTree {
+    private final byte type;
+    private final String[] elementIds;
+    // 每个端点占两个元素(纪元值, 纳秒)
+    private final long[] froms;
+    private final long[] tos;
+    private final long[] maxTos;
+
+    private IntervalTree(byte type, String[] elementIds, long[] froms, long[] tos) {
+        this.type = type;
+        this.elementIds = elementIds;
+        this.froms = froms;
+        this.tos = tos;
+        this.maxTos = new long[tos.length];
+        build(0, elementIds.length);
+    }
+
+    /**
+     * @param elementIds    元素的elementId
+     * @param intervalFroms 元素有效时间的开始时间
+     * @param intervalTos   元素有效时间的结束时间
+     * @return 返回元素构成的区间树，若元素的时间点类型不一致，返回null
+     */
+    static IntervalTree of(List<String> elementIds, List<SEpochTimePoint> intervalFroms, List<SEpochTimePoint> intervalTos) {
+        int count = elementIds.size();
+        byte type = count > 0 ? intervalFroms.get(0).getType() : SEpochTimePoint.DATETIME;
+        for (int i = 0; i < count; i++) {
+            if (intervalFroms.get(i).getType() != type || intervalTos.get(i).getType() != type) {
+                return null;
+            }
+        }
+        Integer[] order = new Integer[count];
+        for (int i = 0; i < count; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (i, j) -> intervalFroms.get(i).compareTo(intervalFroms.get(j)));
+        String[] ids = new String[count];
+        long[] froms = new long[2 * count];
+        long[] tos = new long[2 * count];
+        for (int i = 0; i < count; i++) {
+            ids[i] = elementIds.get(order[i]);
+            froms[2 * i] = intervalFroms.get(order[i]).getEpoch();
+            froms[2 * i + 1] = intervalFroms.get(order[i]).getNano();
+            tos[2 * i] = intervalTos.get(order[i]).getEpoch();
+            tos[2 * i + 1] = intervalTos.get(order[i]).getNano();
+        }
+        return new IntervalTree(type, ids, froms, tos);
+    }
+
+    /**
+     * 计算[low, high)构成的子树中结束时间的最大值，记录在子树的根（中点）上
+     */
+    private void build(int low, int high) {
+        if (low >= high) {
+            return;
+        }
+        int middle = (low + high) >>> 1;
+        build(low, middle);
+        build(middle + 1, high);
+        this.maxTos[2 * middle] = this.tos[2 * middle];
+        this.maxTos[2 * middle + 1] = this.tos[2 * middle + 1];
+        if (low < middle) {
+            raiseMaxTo(middle, (low + middle) >>> 1);
+        }
+        if (middle + 1 < high) {
+            raiseMaxTo(middle, (middle + 1 + high) >>> 1);
+        }
+    }
+
+    private void raiseMaxTo(int root, int child) {
+        if (SEpochTimePoint.compare(this.maxTos[2 * child], (int) this.maxTos[2 * child + 1], this.maxTos[2 * root], (int) this.maxTos[2 * root + 1]) > 0) {
+            this.maxTos[2 * root] = this.maxTos[2 * child];
+            this.maxTos[2 * root + 1] = this.maxTos[2 * child + 1];
+        }
+    }
+
+    byte getType() {
+        return this.type;
+    }
+
+    int size() {
+        return this.elementIds.length;
+    }
+
+    String getElementId(int index) {
+        return this.elementIds[index];
+    }
+
+    SEpochTimePoint getIntervalFrom(int index) {
+        return new SEpochTimePoint(this.type, this.froms[2 * index], (int) this.froms[2 * index + 1]);
+    }
+
+    /**
+     * @param fromEpoch 查找区间的开始时间的纪元值
+     * @param fromNano  查找区间的开始时间的纳秒
+     * @param toEpoch   查找区间的结束时间的纪元值
+     * @param toNano    查找区间的结束时间的纳秒
+     * @param result    按开始时间的先后顺序接收有效时间与查找区间重合的元素的下标
+     */
+    void overlaps(long fromEpoch, int fromNano, long toEpoch, int toNano, IntConsumer result) {
+        overlaps(0, size(), fromEpoch, fromNano, toEpoch, toNano, result);
+    }
+
+    private void overlaps(int low, int high, long fromEpoch, int fromNano, long toEpoch, int toNano, IntConsumer result) {
+        if (low >= high) {
+            return;
+        }
+        int middle = (low + high) >>> 1;
+        // 子树中所有元素的结束时间都早于查找区间
+        if (SEpochTimePoint.compare(this.maxTos[2 * middle], (int) this.maxTos[2 * middle + 1], fromEpoch, fromNano) < 0) {
+            return;
+        }
+        overlaps(low, middle, fromEpoch, fromNano, toEpoch, toNano, result);
+        // 中点及右子树中所有元素的开始时间都晚于查找区间
+        if (SEpochTimePoint.compare(this.froms[2 * middle], (int) this.froms[2 * middle + 1], toEpoch, toNano) > 0) {
+            return;
+        }
+        if (SEpochTimePoint.compare(this.tos[2 * middle], (int) this.tos[2 * middle + 1], fromEpoch, fromNano) >= 0) {
+            result.accept(middle);
+        }
+        overlaps(middle + 1, high, fromEpoch, fromNano, toEpoch, toNano, result);
+    }
+}
@@ -0,0 +1,159 @@
+package cn.scypher.neo4j.plugin;
+
+import cn.scypher.neo4j.plugin.datetime.SEpochInterval;
+import cn.scypher.neo4j.plugin.datetime.SEpochTimePoint;
+
+import java.time.Duration;
+import java.util.*;
+
+/**
+ * 对一个属性在时间区间上的所有值节点做一次遍历的聚合，值节点的有效时间被裁剪到时间区间内。
+ * 时间加权的聚合按裁剪后的有效时间长度（秒）加权，结束时间为NOW的有效时间和时间区间裁剪到当前时刻。
+ */
+final class PropertyAggregator {
+    private final String function;
+    private final byte type;
+    // 裁剪的范围，结束时间已将NOW替换为当前时刻
+    private final long fromEpoch;
+    private final int fromNano;
+    private final long toEpoch;
+    private final int toNano;
+    // 当前时刻，结束时间为NOW的有效时间裁剪到该时刻
+    private final long nowEpoch;
+    private final int nowNano;
+
+    private long count = 0;
+    private Number extremum = null;
+    private long longSum = 0;
+    private double doubleSum = 0;
+    private boolean integral = true;
+    private double weightedSum = 0;
+    private double totalSeconds = 0;
+    private final Map<Object, Duration> durations = new LinkedHashMap<>();
+
+    /**
+     * @param function         聚合函数：timeWeightedAvg、min、max、sum、integral、count或durationInState
+     * @param interval         时间区间
+     * @param currentTimePoint 当前时刻，与时间区间的时间点类型相同
+     */
+    PropertyAggregator(String function, SEpochInterval interval, SEpochTimePoint currentTimePoint) {
+        switch (function) {
+            case "timeWeightedAvg", "min", "max", "sum", "integral", "count", "durationInState" -> this.function = function;
+            default ->
+                    throw new RuntimeException("The aggregate function must be timeWeightedAvg, min, max, sum, integral, count or durationInState but was " + function);
+        }
+        this.type = interval.getType();
+        this.fromEpoch = interval.getFromEpoch();
+        this.fromNano = interval.getFromNano();
+        this.nowEpoch = currentTimePoint.getEpoch();
+        this.nowNano = currentTimePoint.getNano();
+        if (interval.getToEpoch() >= SEpochTimePoint.NOW_EPOCH) {
+            this.toEpoch = currentTimePoint.getEpoch();
+            this.toNano = currentTimePoint.getNano();
+        } else {
+            this.toEpoch = interval.getToEpoch();
+            this.toNano = interval.getToNano();
+        }
+    }
+
+    private boolean isWeighted() {
+        return this.function.equals("timeWeightedAvg") || this.function.equals("integral") || this.function.equals("durationInState");
+    }
+
+    private static Number toNumber(Object value) {
+        if (value instanceof Number number) {
+            return number;
+        } else {
+            throw new RuntimeException("Type mismatch: expected Number but was " + value.getClass().getSimpleName());
+        }
+    }
+
+    /**
+     * @param value        值节点的属性值
+     * @param intervalFrom 值节点有效时间的开始时间
+     * @param intervalTo   值节点有效时间的结束时间
+     */
+    void add(Object value, SEpochTimePoint intervalFrom, SEpochTimePoint intervalTo) {
+        this.count++;
+        switch (this.function) {
+            case "min", "max" -> {
+                Number number = toNumber(value);
+                if (this.extremum == null || (this.function.equals("min") ? number.doubleValue() < this.extremum.doubleValue() : number.doubleValue() > this.extremum.doubleValue())) {
+                    this.extremum = number;
+                }
+            }
+            case "sum" -> {
+                Number number = toNumber(value);
+                if (number instanceof Long || number instanceof Integer || number instanceof Short || number instanceof Byte) {
+                    this.longSum += number.longValue();
+                } else {
+                    this.integral = false;
+                }
+                this.doubleSum += number.doubleValue();
+            }
+            default -> {
+            }
+        }
+        if (isWeighted()) {
+            Duration duration = clippedDuration(intervalFrom, intervalTo);
+            if (this.function.equals("durationInState")) {
+                this.durations.merge(value, duration, Duration::plus);
+            } else {
+                double seconds = duration.getSeconds() + duration.getNano() / 1e9;
+                this.weightedSum += toNumber(value).doubleValue() * seconds;
+                this.totalSeconds += seconds;
+            }
+        }
+    }
+
+    /**
+     * @return 返回有效时间裁剪到聚合范围后的长度，不在范围内时为0
+     */
+    private Duration clippedDuration(SEpochTimePoint intervalFrom, SEpochTimePoint intervalTo) {
+        if (intervalFrom.getType() != this.type || intervalTo.getType() != this.type) {
+            throw new RuntimeException("Only the intervals of the same time point type can perform overlaps operations");
+        }
+        long startEpoch = this.fromEpoch;
+        int startNano = this.fromNano;
+        if (SEpochTimePoint.compare(intervalFrom.getEpoch(), intervalFrom.getNano(), startEpoch, startNano) > 0) {
+            startEpoch = intervalFrom.getEpoch();
+            startNano = intervalFrom.getNano();
+        }
+        long endEpoch = this.toEpoch;
+        int endNano = this.toNano;
+        // 结束时间为NOW的值只持续到当前时刻，即使时间区间的结束时间在未来
+        long valueToEpoch = intervalTo.getEpoch() >= SEpochTimePoint.NOW_EPOCH ? this.nowEpoch : intervalTo.getEpoch();
+        int valueToNano = intervalTo.getEpoch() >= SEpochTimePoint.NOW_EPOCH ? this.nowNano : intervalTo.getNano();
+        if (SEpochTimePoint.compare(valueToEpoch, valueToNano, endEpoch, endNano) < 0) {
+            endEpoch = valueToEpoch;
+            endNano = valueToNano;
+        }
+        if (SEpochTimePoint.compare(startEpoch, startNano, endEpoch, endNano) >= 0) {
+            return Duration.ZERO;
+        }
+        return SEpochInterval.difference(this.type, startEpoch, startNano, endEpoch, endNano);
+    }
+
+    /**
+     * @return 返回聚合结果。没有值节点时，count返回0，durationInState返回空列表，其余返回null
+     */
+    Object result() {
+        return switch (this.function) {
+            case "count" -> this.count;
+            case "min", "max" -> this.extremum;
+            case "sum" -> this.count == 0 ? null : this.integral ? (Object) this.longSum : (Object) this.doubleSum;
+            case "integral" -> this.count == 0 ? null : this.weightedSum;
+            case "timeWeightedAvg" -> this.totalSeconds == 0 ? null : this.weightedSum / this.totalSeconds;
+            default -> {
+                List<Map<String, Object>> states = new ArrayList<>(this.durations.size());
+                for (Map.Entry<Object, Duration> entry : this.durations.entrySet()) {
+                    Map<String, Object> state = new HashMap<>();
+                    state.put("value", entry.getKey());
+                    state.put("duration", entry.getValue());
+                    states.add(state);
+                }
+                yield states;
+            }
+        };
+    }
+}
@@ -0,0 +1,135 @@
+package cn.scypher.neo4j.plugin;
+
+import org.neo4j.graphdb.*;
+import org.neo4j.procedure.*;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+
+/**
+ * 对象节点的属性名索引，缓存每个对象节点的属性名到属性节点elementId的映射，使属性查找不再需要遍历所有OBJECT_PROPERTY边。
+ * 索引按数据库划分，由TemporalIndexExtension注册的监听器在提交后失效被修改的对象节点。
+ * 当前事务有未提交的修改时，退回到遍历查找。
+ */
+public class PropertyNodeIndex {
+    private static final int DEFAULT_CAPACITY = 8192;
+
+    private static final Map<String, ElementCache<Map<String, String>>> indexes = new ConcurrentHashMap<>();
+
+    @Context
+    public Transaction transaction;
+
+    /**
+     * @param databaseName 数据库名
+     * @return 为数据库创建属性名索引，返回维护索引的监听器
+     */
+    static ElementCache.InvalidationListener register(String databaseName) {
+        ElementCache<Map<String, String>> index = new ElementCache<>(DEFAULT_CAPACITY);
+        indexes.put(databaseName, index);
+        return new ElementCache.InvalidationListener(index, RelationshipType.withName("OBJECT_PROPERTY"), "content");
+    }
+
+    static void unregister(String databaseName) {
+        indexes.remove(databaseName);
+    }
+
+    /**
+     * @param objectNode 对象节点
+     * @return 返回对象节点的属性名到属性节点elementId的映射，同名的属性节点保留第一个
+     */
+    private static Map<String, String> getProperties(Node objectNode) {
+        Map<String, String> properties = new HashMap<>();
+        for (Relationship relationship : objectNode.getRelationships(Direction.OUTGOING, RelationshipType.withName("OBJECT_PROPERTY"))) {
+            Node propertyNode = relationship.getEndNode();
+            Object propertyName = propertyNode.getProperty("content", null);
+            if (propertyName instanceof String) {
+                properties.putIfAbsent((String) propertyName, propertyNode.getElementId());
+            }
+        }
+        return properties;
+    }
+
+    /**
+     * @param transaction  当前事务
+     * @param objectNode   对象节点
+     * @param propertyName 属性名
+     * @return 返回对象节点的属性名对应的属性节点，若没有，返回null
+     */
+    public static Node getPropertyNode(Transaction transaction, Node objectNode, String propertyName) {
+        ElementCache<Map<String, String>> index = ElementCache.of(indexes, transaction);
+        if (index == null) {
+            return ReadingQuery.getPropertyNode(objectNode, propertyName);
+        }
+        String objectId = objectNode.getElementId();
+        Map<String, String> properties = index.get(objectId);
+        if (properties == null) {
+            long generation = index.generation();
+            properties = getProperties(objectNode);
+            index.put(objectId, properties, generation);
+        }
+        String propertyNodeId = properties.get(propertyName);
+        if (propertyNodeId == null) {
+            return null;
+        }
+        try {
+            return transaction.getNodeByElementId(propertyNodeId);
+        } catch (NotFoundException e) {
+            // 属性节点被并发删除，失效索引项并重新查找
+            index.invalidate(objectId);
+            return ReadingQuery.getPropertyNode(objectNode, propertyName);
+        }
+    }
+
+    public static class RebuildResult {
+        public long objects;
+        public long properties;
+        public long kept;
+
+        public RebuildResult(long objects, long properties, long kept) {
+            this.objects = objects;
+            this.properties = properties;
+            this.kept = kept;
+        }
+    }
+
+    /**
+     * 逐个对象节点构建索引项并放入索引，超出容量的部分按LRU淘汰。索引被关闭或当前事务有未提交的修改时不做任何操作
+     *
+     * @return 清空当前数据库的属性名索引并重新构建，返回扫描的对象节点个数、属性节点个数和最终保留在索引中的对象节点个数
+     */
+    @Procedure(name = "scypher.rebuildPropertyIndex", mode = Mode.READ)
+    @Description("Rebuild the property name index of object nodes.")
+    public Stream<RebuildResult> rebuildPropertyIndex() {
+        ElementCache<Map<String, String>> index = ElementCache.of(indexes, this.transaction);
+        if (index == null) {
+            return Stream.of(new RebuildResult(0, 0, 0));
+        }
+        index.clear();
+        long generation = index.generation();
+        long objects = 0;
+        long properties = 0;
+        RelationshipType objectProperty = RelationshipType.withName("OBJECT_PROPERTY");
+        try (ResourceIterable<Node> nodes = this.transaction.getAllNodes()) {
+            for (Node node : nodes) {
+                if (node.hasRelationship(Direction.OUTGOING, objectProperty)) {
+                    Map<String, String> objectProperties = getProperties(node);
+                    index.put(node.getElementId(), objectProperties, generation);
+                    objects++;
+                    properties += objectProperties.size();
+                }
+            }
+        }
+        return Stream.of(new RebuildResult(objects, properties, index.size()));
+    }
+
+    /**
+     * @return 返回当前数据库的属性名索引的统计信息
+     */
+    @UserFunction("scypher.propertyIndex.statistics")
+    @Description("Get the statistics of the property name index.")
+    public Map<String, Object> propertyIndexStatistics() {
+        return ElementCache.require(indexes, this.transaction).getStatistics();
+    }
+}
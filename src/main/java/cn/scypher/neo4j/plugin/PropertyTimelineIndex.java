@@ -0,0 +1,203 @@
+package cn.scypher.neo4j.plugin;
+
+import cn.scypher.neo4j.plugin.datetime.SEpochTimePoint;
+import cn.scypher.neo4j.plugin.datetime.STimePoint;
+import org.neo4j.graphdb.*;
+import org.neo4j.procedure.Context;
+import org.neo4j.procedure.Description;
+import org.neo4j.procedure.UserFunction;
+
+import java.time.*;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 属性节点的值节点时间线索引，缓存每个属性节点按开始时间排序的值节点及其有效时间。
+ * 索引按数据库划分，由TemporalIndexExtension注册的监听器在提交后失效被修改的属性节点。
+ * 当前事务有未提交的修改或值节点的时间点类型不一致时，退回到遍历查找。
+ */
+public class PropertyTimelineIndex {
+    private static final int DEFAULT_CAPACITY = 1024;
+
+    private static final Map<String, ElementCache<ValueNodeTimeline>> indexes = new ConcurrentHashMap<>();
+
+    @Context
+    public Transaction transaction;
+
+    /**
+     * @param databaseName 数据库名
+     * @return 为数据库创建时间线索引，返回维护索引的监听器
+     */
+    static ElementCache.InvalidationListener register(String databaseName) {
+        ElementCache<ValueNodeTimeline> index = new ElementCache<>(DEFAULT_CAPACITY);
+        indexes.put(databaseName, index);
+        return new ElementCache.InvalidationListener(index, RelationshipType.withName("PROPERTY_VALUE"), "intervalFrom", "intervalTo");
+    }
+
+    static void unregister(String databaseName) {
+        indexes.remove(databaseName);
+    }
+
+    /**
+     * @param transaction  当前事务
+     * @param propertyNode 属性节点
+     * @return 返回属性节点的时间线，若不能使用索引，返回null
+     */
+    private static ValueNodeTimeline getTimeline(Transaction transaction, Node propertyNode) {
+        ValueNodeTimeline timeline = getCachedTimeline(transaction, propertyNode);
+        return timeline == null || timeline.isMixed() ? null : timeline;
+    }
+
+    /**
+     * @param transaction  当前事务
+     * @param propertyNode 属性节点
+     * @return 返回索引中属性节点的时间线（可能是时间点类型不一致的时间线），若不能使用索引，返回null
+     */
+    private static ValueNodeTimeline getCachedTimeline(Transaction transaction, Node propertyNode) {
+        ElementCache<ValueNodeTimeline> index = ElementCache.of(indexes, transaction);
+        if (index == null) {
+            return null;
+        }
+        String propertyNodeId = propertyNode.getElementId();
+        ValueNodeTimeline timeline = index.get(propertyNodeId);
+        if (timeline == null) {
+            long generation = index.generation();
+            timeline = ValueNodeTimeline.of(propertyNode);
+            index.put(propertyNodeId, timeline, generation);
+        }
+        return timeline;
+    }
+
+    /**
+     * @param transaction  当前事务
+     * @param propertyNode 属性节点
+     * @return 返回属性节点的时间线，不能使用索引时构建一个不缓存的时间线。若值节点的时间点类型不一致，返回null
+     */
+    static ValueNodeTimeline loadTimeline(Transaction transaction, Node propertyNode) {
+        ValueNodeTimeline timeline = getCachedTimeline(transaction, propertyNode);
+        if (timeline == null) {
+            timeline = ValueNodeTimeline.of(propertyNode);
+        }
+        return timeline.isMixed() ? null : timeline;
+    }
+
+    /**
+     * @param transaction  当前事务
+     * @param propertyNode 属性节点
+     * @param timeline     属性节点的时间线
+     * @param index        值节点在时间线中的下标
+     * @return 返回值节点，若值节点已被并发删除，失效索引项并返回null
+     */
+    static Node getValueNode(Transaction transaction, Node propertyNode, ValueNodeTimeline timeline, int index) {
+        try {
+            return transaction.getNodeByElementId(timeline.getValueNodeId(index));
+        } catch (NotFoundException e) {
+            ElementCache<ValueNodeTimeline> cache = ElementCache.of(indexes, transaction);
+            if (cache != null) {
+                cache.invalidate(propertyNode.getElementId());
+            }
+            return null;
+        }
+    }
+
+    /**
+     * @return 遍历查找有效时间满足限制的所有值节点，按开始时间的先后顺序排序
+     */
+    private static List<Node> getSortedValueNodes(Node propertyNode, TimeWindowPredicate predicate) {
+        List<Node> valueNodes = new ArrayList<>();
+        Map<Node, SEpochTimePoint> intervalFroms = new HashMap<>();
+        for (Relationship relationship : propertyNode.getRelationships(Direction.OUTGOING, RelationshipType.withName("PROPERTY_VALUE"))) {
+            Node valueNode = relationship.getEndNode();
+            SEpochTimePoint intervalFrom = SEpochTimePoint.of(valueNode.getProperty("intervalFrom"));
+            if (predicate.isUnbounded() || predicate.test(intervalFrom, SEpochTimePoint.of(valueNode.getProperty("intervalTo")))) {
+                valueNodes.add(valueNode);
+                intervalFroms.put(valueNode, intervalFrom);
+            }
+        }
+        if (valueNodes.size() > 1) {
+            valueNodes.sort(Comparator.comparing(intervalFroms::get));
+        }
+        return valueNodes;
+    }
+
+    /**
+     * @param transaction  当前事务
+     * @param propertyNode 属性节点
+     * @param timeWindow   时间点/时间区间
+     * @param context      当前事务的时态上下文
+     * @return 返回在时间窗口上有效的所有值节点，按开始时间的先后顺序排序
+     */
+    public static List<Node> getValueNodes(Transaction transaction, Node propertyNode, Object timeWindow, STemporalContext context) {
+        return getValueNodes(transaction, propertyNode, TimeWindowPredicate.of(timeWindow, context));
+    }
+
+    /**
+     * @param transaction  当前事务
+     * @param propertyNode 属性节点
+     * @param predicate    值节点的有效时间限制
+     * @return 返回有效时间满足限制的所有值节点，按开始时间的先后顺序排序
+     */
+    static List<Node> getValueNodes(Transaction transaction, Node propertyNode, TimeWindowPredicate predicate) {
+        ValueNodeTimeline timeline = getTimeline(transaction, propertyNode);
+        if (timeline == null) {
+            return getSortedValueNodes(propertyNode, predicate);
+        }
+        boolean[] matches = new boolean[timeline.size()];
+        predicate.mark(timeline, matches);
+        List<Node> valueNodes = new ArrayList<>();
+        for (int i = 0; i < matches.length; i++) {
+            if (matches[i]) {
+                Node valueNode = getValueNode(transaction, propertyNode, timeline, i);
+                if (valueNode == null) {
+                    return getSortedValueNodes(propertyNode, predicate);
+                }
+                valueNodes.add(valueNode);
+            }
+        }
+        return valueNodes;
+    }
+
+    /**
+     * @param transaction      当前事务
+     * @param propertyNode     属性节点
+     * @param timePoint        时间点
+     * @param currentTimePoint 当前事务的当前时刻
+     * @param context          当前事务的时态上下文
+     * @return 返回某个属性节点在某个时间点的值节点，依次按时间点、snapshot指定的时间点、当前时刻查找
+     */
+    public static Node getValueNode(Transaction transaction, Node propertyNode, Object timePoint, STimePoint currentTimePoint, STemporalContext context) {
+        ValueNodeTimeline timeline = getTimeline(transaction, propertyNode);
+        if (timeline == null) {
+            return UpdatingQuery.getValueNode(propertyNode, timePoint, currentTimePoint, context);
+        }
+        List<SEpochTimePoint> timePoints = new ArrayList<>(3);
+        if (timePoint != null) {
+            if (timePoint instanceof LocalDate | timePoint instanceof OffsetTime | timePoint instanceof LocalTime | timePoint instanceof ZonedDateTime | timePoint instanceof LocalDateTime) {
+                timePoints.add(SEpochTimePoint.of(timePoint));
+            } else {
+                throw new RuntimeException("Type mismatch: expected Date, Time, LocalTime, LocalDateTime or DateTime but was " + timePoint.getClass().getSimpleName());
+            }
+        }
+        if (context.snapshotTimePoint() != null) {
+            timePoints.add(context.snapshotTimePoint().getEpochTimePoint());
+        }
+        timePoints.add(currentTimePoint.getEpochTimePoint());
+        for (SEpochTimePoint epochTimePoint : timePoints) {
+            int index = timeline.first(epochTimePoint);
+            if (index >= 0) {
+                Node valueNode = getValueNode(transaction, propertyNode, timeline, index);
+                return valueNode != null ? valueNode : UpdatingQuery.getValueNode(propertyNode, timePoint, currentTimePoint, context);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return 返回当前数据库的时间线索引的统计信息
+     */
+    @UserFunction("scypher.timelineIndex.statistics")
+    @Description("Get the statistics of the value node timeline index.")
+    public Map<String, Object> timelineIndexStatistics() {
+        return ElementCache.require(indexes, this.transaction).getStatistics();
+    }
+}
@@ -1,20 +1,27 @@
 package cn.scypher.neo4j.plugin;
 
+import cn.scypher.neo4j.plugin.datetime.SEpochInterval;
+import cn.scypher.neo4j.plugin.datetime.SEpochTimePoint;
 import cn.scypher.neo4j.plugin.datetime.SInterval;
+import cn.scypher.neo4j.plugin.datetime.STemporalComponent;
 import cn.scypher.neo4j.plugin.datetime.STimePoint;
 import org.neo4j.graphdb.*;
 import org.neo4j.graphdb.spatial.Point;
-import org.neo4j.procedure.Description;
-import org.neo4j.procedure.Name;
-import org.neo4j.procedure.UserFunction;
+import org.neo4j.procedure.*;
 
-import java.sql.Timestamp;
 import java.time.*;
 import java.time.temporal.ChronoUnit;
+import java.time.temporal.TemporalAccessor;
 import java.time.temporal.TemporalAmount;
 import java.util.*;
+import java.util.function.IntFunction;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 public class ReadingQuery {
+    @Context
+    public Transaction transaction;
 
     public static Node getPropertyNode(Node objectNode, String propertyName) {
         ResourceIterable<Relationship> relationships = objectNode.getRelationships(Direction.OUTGOING, RelationshipType.withName("OBJECT_PROPERTY"));
@@ -30,14 +37,15 @@ public class ReadingQuery {
     /**
      * @param propertyNode 属性节点
      * @param timeWindow   时间点/时间区间
+     * @param context      当前事务的时态上下文
      * @return 返回在时间窗口上有效的所有值节点
      */
-    public static List<Node> getValueNodes(Node propertyNode, @Name("timeWindow") Object timeWindow) {
+    public static List<Node> getValueNodes(Node propertyNode, @Name("timeWindow") Object timeWindow, STemporalContext context) {
         ResourceIterable<Relationship> relationships = propertyNode.getRelationships(Direction.OUTGOING, RelationshipType.withName("PROPERTY_VALUE"));
         List<Node> valueNodeList = new ArrayList<>();
         // snapshot/scope语句指定的时间区间
-        STimePoint snapshotTimePoint = GlobalVariablesManager.getSnapshotTimePoint();
-        SInterval scopeInterval = GlobalVariablesManager.getScopeInterval();
+        STimePoint snapshotTimePoint = context.snapshotTimePoint();
+        SInterval scopeInterval = context.scopeInterval();
         STimePoint valueNodeTimePoint = null;
         SInterval valueNodeInterval = null;
         if (timeWindow != null) {
@@ -70,81 +78,36 @@ public class ReadingQuery {
         return valueNodeList;
     }
 
-    public int getComponentOfTimePoint(Date date, String component) {
-        Calendar dateCalendar = Calendar.getInstance();
-        dateCalendar.setTime(date);
-        return switch (component) {
-            case "year", "weekYear" -> dateCalendar.get(Calendar.YEAR);
-            case "quarter" -> (dateCalendar.get(Calendar.MONTH)) / 4 + 1;
-            case "month" -> dateCalendar.get(Calendar.MONTH) + 1;
-            case "week" -> dateCalendar.get(Calendar.WEEK_OF_YEAR);
-            case "dayOfQuarter" -> {
-                int month = dateCalendar.get(Calendar.MONTH) + 1;
-                if (month % 3 == 1) {
-                    yield dateCalendar.get(Calendar.DAY_OF_MONTH);
-                } else if (month % 3 == 2) {
-                    Calendar calendar = Calendar.getInstance();
-                    calendar.set(dateCalendar.get(Calendar.YEAR), dateCalendar.get(Calendar.MONTH) - 1, 1);
-                    yield calendar.getActualMaximum(Calendar.DAY_OF_MONTH) + dateCalendar.get(Calendar.DAY_OF_MONTH);
-                } else {
-                    Calendar calendar1 = Calendar.getInstance();
-                    calendar1.set(dateCalendar.get(Calendar.YEAR), dateCalendar.get(Calendar.MONTH) - 2, 1);
-                    Calendar calendar2 = Calendar.getInstance();
-                    calendar2.set(dateCalendar.get(Calendar.YEAR), dateCalendar.get(Calendar.MONTH) - 1, 1);
-                    yield calendar1.getActualMaximum(Calendar.DAY_OF_MONTH) + calendar2.getActualMaximum(Calendar.DAY_OF_MONTH) + dateCalendar.get(Calendar.DAY_OF_MONTH);
-                }
-            }
-            case "quarterDay" -> {
-                int quarter = (dateCalendar.get(Calendar.MONTH)) / 4 + 1;
-                if (quarter == 1) {
-                    Calendar calendar = Calendar.getInstance();
-                    calendar.set(dateCalendar.get(Calendar.YEAR), Calendar.FEBRUARY, 1);
-                    int febDays = calendar.getActualMaximum(Calendar.DAY_OF_MONTH);
-                    yield febDays + 62;
-                } else if (quarter == 2) {
-                    yield 91;
-                } else {
-                    yield 92;
-                }
-            }
-            case "day" -> dateCalendar.get(Calendar.DAY_OF_MONTH);
-            case "ordinalDay" -> dateCalendar.get(Calendar.DAY_OF_YEAR);
-            case "dayOfWeek", "weekDay" -> {
-                int[] weekdays = {7, 1, 2, 3, 4, 5, 6};
-                yield weekdays[dateCalendar.get(Calendar.DAY_OF_WEEK) - 1];
-            }
-            default -> throw new RuntimeException("No such field: " + component);
-        };
-    }
-
-    public int getComponentOfTimePoint(LocalTime localTime, String component) {
-        return switch (component) {
-            case "hour" -> localTime.getHour();
-            case "minute" -> localTime.getMinute();
-            case "second" -> localTime.getSecond();
-            case "millisecond" -> localTime.getNano() / 1000000;
-            case "microsecond" -> localTime.getNano() / 1000;
-            case "nanosecond" -> localTime.getNano();
-            default -> throw new RuntimeException("No such field: " + component);
-        };
+    /**
+     * @param timePoint     时间点
+     * @param component     时间点的分量，为null时表示没有该分量
+     * @param componentName 分量名
+     * @return 返回时间点的分量
+     */
+    public static Object getComponentOfTimePoint(TemporalAccessor timePoint, STemporalComponent component, String componentName) {
+        if (component != null && component.isSupportedBy(timePoint)) {
+            return component.get(timePoint);
+        } else {
+            throw new RuntimeException("No such field: " + componentName);
+        }
     }
 
-    public String getComponentOfTimePoint(ZoneOffset zoneOffset, String component) {
-        return switch (component) {
-            case "timezone" -> zoneOffset.getId();
-            case "offset" -> {
-                String sign = "+";
-                int second = zoneOffset.getTotalSeconds();
-                if (second < 0) {
-                    sign = "-";
-                    second = -second;
-                }
-                yield sign + String.format("%02d%02d", second / 3600, (second % 3600) / 60);
-            }
-            case "offsetMinutes" -> String.valueOf(zoneOffset.getTotalSeconds() / 60);
-            case "offsetSeconds" -> String.valueOf(zoneOffset.getTotalSeconds());
-            default -> throw new RuntimeException("No such field: " + component);
-        };
+    /**
+     * @param valueNodeList 按开始时间排序的值节点
+     * @return 如果有多个值节点，返回属性值的列表；如果有一个值节点，返回该属性值；如果没有值节点，返回null。
+     */
+    private static Object getPropertyValue(List<Node> valueNodeList) {
+        if (valueNodeList.isEmpty()) {
+            return null;
+        }
+        if (valueNodeList.size() == 1) {
+            return valueNodeList.get(0).getProperty("content");
+        }
+        List<Object> propertyValueList = new ArrayList<>(valueNodeList.size());
+        for (Node valueNode : valueNodeList) {
+            propertyValueList.add(valueNode.getProperty("content"));
+        }
+        return propertyValueList;
     }
 
     /**
@@ -158,35 +121,17 @@ public class ReadingQuery {
     public Object getPropertyValue(@Name("object") Object object, @Name("propertyName") String propertyName, @Name("timeWindow") Object timeWindow) {
         if (object != null && propertyName != null) {
             if (object instanceof Node objectNode) {
-                Node propertyNode = getPropertyNode(objectNode, propertyName);
-                if (propertyNode != null) {
-                    List<Node> valueNodeList = getValueNodes(propertyNode, timeWindow);
-                    // 以开始时间的先后顺序排序值节点
-                    valueNodeList.sort((o1, o2) -> {
-                        STimePoint timePoint1 = new STimePoint(o1.getProperty("intervalFrom"));
-                        STimePoint timePoint2 = new STimePoint(o2.getProperty("intervalTo"));
-                        if (timePoint1.isBefore(timePoint2)) {
-                            return -1;
-                        } else if (timePoint1.isAfter(timePoint2)) {
-                            return 1;
-                        } else {
-                            return 0;
-                        }
-                    });
-                    List<Object> propertyValueList = new ArrayList<>();
-                    for (Node valueNode : valueNodeList) {
-                        propertyValueList.add(valueNode.getProperty("content"));
-                    }
-                    if (propertyValueList.size() == 0) {
-                        return null;
-                    }
-                    if (propertyValueList.size() == 1) {
-                        return propertyValueList.get(0);
-                    }
-                    return propertyValueList;
-                } else {
-                    return null;
-                }
+                TimeWindowPredicate predicate = TimeWindowPredicate.of(timeWindow, GlobalVariablesManager.getContext(this.transaction));
+                return TransactionMemo.getPropertyValue(this.transaction, objectNode.getElementId(), propertyName, predicate,
+                        () -> CurrentStateCache.getPropertyValue(this.transaction, objectNode, propertyName, predicate, () -> {
+                            Node propertyNode = PropertyNodeIndex.getPropertyNode(this.transaction, objectNode, propertyName);
+                            if (propertyNode != null) {
+                                // 值节点以开始时间的先后顺序排序
+                                return getPropertyValue(PropertyTimelineIndex.getValueNodes(this.transaction, propertyNode, predicate));
+                            } else {
+                                return null;
+                            }
+                        }));
             } else if (object instanceof Relationship relationship) {
                 if (relationship.hasProperty(propertyName)) {
                     return relationship.getProperty(propertyName);
@@ -211,32 +156,8 @@ public class ReadingQuery {
                     case "nanoseconds" -> duration.get(ChronoUnit.NANOS);
                     default -> throw new RuntimeException("No such field: " + propertyName);
                 };
-            } else if (object instanceof Date date) {
-                return getComponentOfTimePoint(date, propertyName);
-            } else if (object instanceof OffsetTime offsetTime) {
-                if (propertyName.equals("timezone") | propertyName.equals("offset") | propertyName.equals("offsetMinutes") | propertyName.equals("offsetSeconds")) {
-                    return getComponentOfTimePoint(offsetTime.getOffset(), propertyName);
-                } else {
-                    return getComponentOfTimePoint(offsetTime.toLocalTime(), propertyName);
-                }
-            } else if (object instanceof LocalTime localTime) {
-                return getComponentOfTimePoint(localTime, propertyName);
-            } else if (object instanceof LocalDateTime localDateTime) {
-                if (propertyName.equals("hour") | propertyName.equals("minute") | propertyName.equals("second") | propertyName.equals("millisecond") |
-                        propertyName.equals("microsecond") | propertyName.equals("nanosecond")) {
-                    return getComponentOfTimePoint(localDateTime.toLocalTime(), propertyName);
-                } else {
-                    return getComponentOfTimePoint(Date.from(Timestamp.valueOf(localDateTime.toLocalDate().atStartOfDay()).toInstant()), propertyName);
-                }
-            } else if (object instanceof ZonedDateTime zonedDateTime) {
-                if (propertyName.equals("hour") | propertyName.equals("minute") | propertyName.equals("second") | propertyName.equals("millisecond") |
-                        propertyName.equals("microsecond") | propertyName.equals("nanosecond")) {
-                    return getComponentOfTimePoint(zonedDateTime.toLocalTime(), propertyName);
-                } else if (propertyName.equals("timezone") | propertyName.equals("offset") | propertyName.equals("offsetMinutes") | propertyName.equals("offsetSeconds")) {
-                    return getComponentOfTimePoint(zonedDateTime.getOffset(), propertyName);
-                } else {
-                    return getComponentOfTimePoint(Date.from(Timestamp.valueOf(zonedDateTime.toLocalDate().atStartOfDay()).toInstant()), propertyName);
-                }
+            } else if (object instanceof LocalDate | object instanceof OffsetTime | object instanceof LocalTime | object instanceof LocalDateTime | object instanceof ZonedDateTime) {
+                return getComponentOfTimePoint((TemporalAccessor) object, STemporalComponent.of(propertyName), propertyName);
             } else if (object instanceof Point point) {
                 if (propertyName.equals("x") | propertyName.equals("longitude")) {
                     return point.getCoordinate().getCoordinate()[0];
@@ -267,6 +188,164 @@ public class ReadingQuery {
         }
     }
 
+    /**
+     * @param transaction 当前事务
+     * @param objectNode  对象节点
+     * @param names       属性名的集合，为null时返回所有属性
+     * @param predicate   值节点的有效时间限制
+     * @return 在一次遍历对象节点的属性节点中返回多个属性的属性值
+     */
+    static Map<String, Object> getPropertyValues(Transaction transaction, Node objectNode, Set<String> names, TimeWindowPredicate predicate) {
+        Map<String, Object> propertyValues = new HashMap<>();
+        if (names != null) {
+            for (String propertyName : names) {
+                propertyValues.put(propertyName, null);
+            }
+        }
+        // 同名的属性节点只取第一个，与getPropertyNode相同
+        Set<String> resolvedNames = new HashSet<>();
+        for (Relationship relationship : objectNode.getRelationships(Direction.OUTGOING, RelationshipType.withName("OBJECT_PROPERTY"))) {
+            if (names != null && resolvedNames.size() == names.size()) {
+                break;
+            }
+            Node propertyNode = relationship.getEndNode();
+            if (propertyNode.getProperty("content", null) instanceof String propertyName && (names == null || names.contains(propertyName)) && resolvedNames.add(propertyName)) {
+                Object propertyValue = TransactionMemo.getPropertyValue(transaction, objectNode.getElementId(), propertyName, predicate,
+                        () -> getPropertyValue(PropertyTimelineIndex.getValueNodes(transaction, propertyNode, predicate)));
+                if (names != null || propertyValue != null) {
+                    propertyValues.put(propertyName, propertyValue);
+                }
+            }
+        }
+        return propertyValues;
+    }
+
+    /**
+     * @param objectNode    对象节点
+     * @param propertyNames 属性名的列表，为NULL时返回所有属性
+     * @param timeWindow    值节点的有效时间限制
+     * @return 在一次遍历对象节点的属性节点中返回多个属性的属性值，属性值的形式与getPropertyValue相同。
+     * 指定属性名时，每个属性名都在结果中，没有的属性对应NULL；返回所有属性时，只包含在限制时间窗口内有属性值的属性。
+     */
+    @UserFunction("scypher.getPropertyValues")
+    @Description("Get the values of several properties of object node.")
+    public Map<String, Object> getPropertyValues(@Name("node") Node objectNode, @Name("propertyNames") List<String> propertyNames, @Name("timeWindow") Object timeWindow) {
+        if (objectNode != null) {
+            TimeWindowPredicate predicate = TimeWindowPredicate.of(timeWindow, GlobalVariablesManager.getContext(this.transaction));
+            Set<String> names = null;
+            if (propertyNames != null) {
+                names = new HashSet<>(propertyNames);
+                names.remove(null);
+            }
+            return getPropertyValues(this.transaction, objectNode, names, predicate);
+        } else {
+            throw new RuntimeException("Missing parameter");
+        }
+    }
+
+    /**
+     * @param objectNodes  对象节点的列表
+     * @param propertyName 属性名
+     * @param timePoints   与对象节点一一对应的时间点的列表，时间点为NULL时使用snapshot/scope
+     * @return 返回每个对象节点的属性在对应时间点的属性值，属性值的形式与getPropertyValue相同；对象节点为NULL时对应的属性值为NULL。
+     * 请求按对象节点分组并按时间点排序，每个对象节点的时间线与排好序的时间点归并一次。
+     */
+    @UserFunction("scypher.propertyValuesAt")
+    @Description("Get the property value of each object node at the matching time point.")
+    public List<Object> propertyValuesAt(@Name("nodes") List<Node> objectNodes, @Name("propertyName") String propertyName, @Name("timePoints") List<Object> timePoints) {
+        if (objectNodes != null && propertyName != null && timePoints != null) {
+            if (objectNodes.size() != timePoints.size()) {
+                throw new RuntimeException("The number of nodes and time points must be the same");
+            }
+            STemporalContext context = GlobalVariablesManager.getContext(this.transaction);
+            Object[] propertyValues = new Object[objectNodes.size()];
+            // 按对象节点分组请求
+            Map<Node, List<Integer>> requests = new LinkedHashMap<>();
+            for (int i = 0; i < objectNodes.size(); i++) {
+                if (objectNodes.get(i) != null) {
+                    requests.computeIfAbsent(objectNodes.get(i), objectNode -> new ArrayList<>()).add(i);
+                }
+            }
+            for (Map.Entry<Node, List<Integer>> entry : requests.entrySet()) {
+                Node propertyNode = PropertyNodeIndex.getPropertyNode(this.transaction, entry.getKey(), propertyName);
+                if (propertyNode == null) {
+                    continue;
+                }
+                List<Integer> indexes = new ArrayList<>();
+                for (int index : entry.getValue()) {
+                    if (timePoints.get(index) != null) {
+                        indexes.add(index);
+                    } else {
+                        propertyValues[index] = getPropertyValue(PropertyTimelineIndex.getValueNodes(this.transaction, propertyNode, null, context));
+                    }
+                }
+                ValueNodeTimeline timeline = PropertyTimelineIndex.loadTimeline(this.transaction, propertyNode);
+                if (timeline == null) {
+                    for (int index : indexes) {
+                        propertyValues[index] = getPropertyValue(PropertyTimelineIndex.getValueNodes(this.transaction, propertyNode, timePoints.get(index), context));
+                    }
+                    continue;
+                }
+                // 按时间点排序请求后与时间线归并
+                SEpochTimePoint[] epochTimePoints = new SEpochTimePoint[indexes.size()];
+                Map<Integer, SEpochTimePoint> requestTimePoints = new HashMap<>();
+                for (int index : indexes) {
+                    requestTimePoints.put(index, SEpochTimePoint.of(timePoints.get(index)));
+                }
+                indexes.sort(Comparator.comparing(requestTimePoints::get));
+                for (int i = 0; i < indexes.size(); i++) {
+                    epochTimePoints[i] = requestTimePoints.get(indexes.get(i));
+                }
+                int[][] matches = timeline.containsAll(epochTimePoints);
+                Node[] valueNodes = new Node[timeline.size()];
+                for (int i = 0; i < indexes.size(); i++) {
+                    List<Node> valueNodeList = new ArrayList<>(matches[i].length);
+                    for (int match : matches[i]) {
+                        if (valueNodes[match] == null) {
+                            valueNodes[match] = PropertyTimelineIndex.getValueNode(this.transaction, propertyNode, timeline, match);
+                        }
+                        if (valueNodes[match] == null) {
+                            // 值节点被并发删除，退回到逐个查找
+                            valueNodeList = PropertyTimelineIndex.getValueNodes(this.transaction, propertyNode, timePoints.get(indexes.get(i)), context);
+                            break;
+                        }
+                        valueNodeList.add(valueNodes[match]);
+                    }
+                    propertyValues[indexes.get(i)] = getPropertyValue(valueNodeList);
+                }
+            }
+            return Arrays.asList(propertyValues);
+        } else {
+            throw new RuntimeException("Missing parameter");
+        }
+    }
+
+    /**
+     * @param timePoints 时间点的列表
+     * @param component  时间点的分量
+     * @return 返回列表中每个时间点的分量，时间点为NULL时对应的分量为NULL
+     */
+    @UserFunction("scypher.getComponentOfTimePoints")
+    @Description("Get a component of each time point in a List.")
+    public List<Object> getComponentOfTimePoints(@Name("timePoints") List<Object> timePoints, @Name("component") String componentName) {
+        if (timePoints != null && componentName != null) {
+            STemporalComponent component = STemporalComponent.of(componentName);
+            List<Object> components = new ArrayList<>(timePoints.size());
+            for (Object timePoint : timePoints) {
+                if (timePoint == null) {
+                    components.add(null);
+                } else if (timePoint instanceof LocalDate | timePoint instanceof OffsetTime | timePoint instanceof LocalTime | timePoint instanceof LocalDateTime | timePoint instanceof ZonedDateTime) {
+                    components.add(getComponentOfTimePoint((TemporalAccessor) timePoint, component, componentName));
+                } else {
+                    throw new RuntimeException("Type mismatch: expected Date, Time, LocalTime, LocalDateTime or DateTime but was " + timePoint.getClass().getSimpleName());
+                }
+            }
+            return components;
+        } else {
+            throw new RuntimeException("Missing parameter");
+        }
+    }
+
     /**
      * @param object 对象节点/边
      * @return 返回对象节点/边的有效时间
@@ -297,7 +376,7 @@ public class ReadingQuery {
     public Object getPropertyEffectiveTime(@Name("node") Object object, @Name("propertyName") String propertyName) {
         if (object != null && propertyName != null) {
             if (object instanceof Node objectNode) {
-                Node propertyNode = getPropertyNode(objectNode, propertyName);
+                Node propertyNode = PropertyNodeIndex.getPropertyNode(this.transaction, objectNode, propertyName);
                 return new SInterval(new STimePoint(propertyNode.getProperty("intervalFrom")), new STimePoint(propertyNode.getProperty("intervalTo"))).getSystemInterval();
             } else if (object instanceof Map) {
                 Map<String, Object> objectMap = (Map<String, Object>) object;
@@ -330,21 +409,10 @@ public class ReadingQuery {
     @Description("Get the effective time of value node.")
     public Object getValueEffectiveTime(@Name("node") Node objectNode, @Name("propertyName") String propertyName, @Name("timeWindow") Object timeWindow) {
         if (objectNode != null && propertyName != null) {
-            Node propertyNode = getPropertyNode(objectNode, propertyName);
+            Node propertyNode = PropertyNodeIndex.getPropertyNode(this.transaction, objectNode, propertyName);
             if (propertyNode != null) {
-                List<Node> valueNodeList = getValueNodes(propertyNode, timeWindow);
-                // 以开始时间的先后顺序排序值节点
-                valueNodeList.sort((o1, o2) -> {
-                    STimePoint timePoint1 = new STimePoint(o1.getProperty("intervalFrom"));
-                    STimePoint timePoint2 = new STimePoint(o2.getProperty("intervalTo"));
-                    if (timePoint1.isBefore(timePoint2)) {
-                        return -1;
-                    } else if (timePoint1.isAfter(timePoint2)) {
-                        return 1;
-                    } else {
-                        return 0;
-                    }
-                });
+                // 值节点以开始时间的先后顺序排序
+                List<Node> valueNodeList = PropertyTimelineIndex.getValueNodes(this.transaction, propertyNode, timeWindow, GlobalVariablesManager.getContext(this.transaction));
                 List<Map<String, Object>> valueEffectiveTimeList = new ArrayList<>();
                 for (Node valueNode : valueNodeList) {
                     valueEffectiveTimeList.add(new SInterval(new STimePoint(valueNode.getProperty("intervalFrom")), new STimePoint(valueNode.getProperty("intervalTo"))).getSystemInterval());
@@ -363,4 +431,266 @@ public class ReadingQuery {
             throw new RuntimeException("Missing parameter");
         }
     }
+
+    public static class ObjectState {
+        public Node node;
+        public Map<String, Object> properties;
+
+        public ObjectState(Node node, Map<String, Object> properties) {
+            this.node = node;
+            this.properties = properties;
+        }
+    }
+
+    /**
+     * @param objectNode   对象节点
+     * @param propertyName 属性名
+     * @param intervalMap  时间区间，结束时间为NOW时裁剪到当前时刻，结束时间为NOW的值节点也只计算到当前时刻
+     * @param function     聚合函数：timeWeightedAvg、min、max、sum、integral、count或durationInState
+     * @return 在一次遍历中聚合属性在时间区间上的所有值节点，值节点的有效时间被裁剪到时间区间内。
+     * timeWeightedAvg和integral按裁剪后的有效时间长度（秒）加权；durationInState返回每个属性值及其在时间区间内的持续时间。
+     */
+    @UserFunction("scypher.propertyAggregate")
+    @Description("Aggregate the values of a property of object node over an interval.")
+    public Object propertyAggregate(@Name("node") Node objectNode, @Name("propertyName") String propertyName, @Name("interval") Map<String, Object> intervalMap, @Name("function") String function) {
+        if (objectNode != null && propertyName != null && intervalMap != null && function != null) {
+            SEpochInterval interval = new SEpochInterval(new SInterval(intervalMap));
+            // 当前时刻使用时间区间的时间点类型，时间区间和值节点的结束时间为NOW时都裁剪到当前时刻
+            SEpochTimePoint currentTimePoint = new STimePoint(interval.getTimePointType(), GlobalVariablesManager.getTimezone(),
+                    Clock.fixed(TransactionClock.getInstant(this.transaction), ZoneId.systemDefault())).getEpochTimePoint();
+            PropertyAggregator aggregator = new PropertyAggregator(function, interval, currentTimePoint);
+            Node propertyNode = PropertyNodeIndex.getPropertyNode(this.transaction, objectNode, propertyName);
+            if (propertyNode == null) {
+                return aggregator.result();
+            }
+            TimeWindowPredicate predicate = TimeWindowPredicate.of(intervalMap, GlobalVariablesManager.getContext(this.transaction));
+            ValueNodeTimeline timeline = PropertyTimelineIndex.loadTimeline(this.transaction, propertyNode);
+            if (timeline != null) {
+                boolean[] matches = new boolean[timeline.size()];
+                predicate.mark(timeline, matches);
+                for (int i = 0; i < matches.length; i++) {
+                    if (matches[i]) {
+                        Node valueNode = PropertyTimelineIndex.getValueNode(this.transaction, propertyNode, timeline, i);
+                        if (valueNode != null) {
+                            aggregator.add(valueNode.getProperty("content"), timeline.getIntervalFrom(i), timeline.getIntervalTo(i));
+                        }
+                    }
+                }
+            } else {
+                for (Node valueNode : PropertyTimelineIndex.getValueNodes(this.transaction, propertyNode, predicate)) {
+                    aggregator.add(valueNode.getProperty("content"), SEpochTimePoint.of(valueNode.getProperty("intervalFrom")), SEpochTimePoint.of(valueNode.getProperty("intervalTo")));
+                }
+            }
+            return aggregator.result();
+        } else {
+            throw new RuntimeException("Missing parameter");
+        }
+    }
+
+    public static class ValueHistoryEntry {
+        public Object value;
+        public Object from;
+        public Object to;
+        public String next;
+
+        public ValueHistoryEntry(Object value, Object from, Object to, String next) {
+            this.value = value;
+            this.from = from;
+            this.to = to;
+            this.next = next;
+        }
+    }
+
+    /**
+     * @return 返回值节点的历史记录，next为从该值节点之后继续读取的续读标记，格式为"开始时间的纪元值:纳秒:值节点的elementId"
+     */
+    private static ValueHistoryEntry getValueHistoryEntry(Node valueNode, SEpochTimePoint intervalFrom) {
+        return new ValueHistoryEntry(valueNode.getProperty("content"), valueNode.getProperty("intervalFrom"), valueNode.getProperty("intervalTo"),
+                intervalFrom.getEpoch() + ":" + intervalFrom.getNano() + ":" + valueNode.getElementId());
+    }
+
+    /**
+     * @param objectNode   对象节点
+     * @param propertyName 属性名
+     * @param timeWindow   值节点的有效时间限制
+     * @param limit        最多返回的值节点个数，为NULL时不限制
+     * @param after        上一页最后一行的续读标记，为NULL时从头读取
+     * @return 按开始时间的先后顺序逐个返回满足有效时间限制的值节点的属性值和有效时间。
+     * 使用时间线时只在返回时读取值节点，读满limit个后不再读取。
+     */
+    @Procedure(name = "scypher.valueHistory", mode = Mode.READ)
+    @Description("Get the value history of a property of object node page by page in time order.")
+    public Stream<ValueHistoryEntry> valueHistory(@Name("node") Node objectNode, @Name("propertyName") String propertyName, @Name("interval") Object timeWindow,
+                                                  @Name("limit") Long limit, @Name("after") String after) {
+        if (objectNode != null && propertyName != null) {
+            if (limit != null && limit < 0) {
+                throw new RuntimeException("The limit must not be negative");
+            }
+            TimeWindowPredicate predicate = TimeWindowPredicate.of(timeWindow, GlobalVariablesManager.getContext(this.transaction));
+            // 续读标记之前（含）的值节点已经返回
+            ContinuationToken token = after != null ? ContinuationToken.of(after) : null;
+            Node propertyNode = PropertyNodeIndex.getPropertyNode(this.transaction, objectNode, propertyName);
+            if (propertyNode == null) {
+                return Stream.empty();
+            }
+            Stream<ValueHistoryEntry> entries;
+            ValueNodeTimeline timeline = PropertyTimelineIndex.loadTimeline(this.transaction, propertyNode);
+            if (timeline != null) {
+                SEpochTimePoint upperBound = predicate.getUpperBound();
+                int start = token != null ? timeline.ceiling(token.epoch(), token.nano()) : 0;
+                entries = IntStream.range(start, timeline.size())
+                        .takeWhile(i -> upperBound == null || SEpochTimePoint.compare(timeline.getIntervalFrom(i).getEpoch(), timeline.getIntervalFrom(i).getNano(), upperBound.getEpoch(), upperBound.getNano()) <= 0)
+                        .filter(i -> predicate.isUnbounded() || predicate.test(timeline.getIntervalFrom(i), timeline.getIntervalTo(i)))
+                        .filter(i -> token == null || token.isBefore(timeline.getIntervalFrom(i), timeline.getValueNodeId(i)))
+                        .mapToObj(i -> {
+                            Node valueNode = PropertyTimelineIndex.getValueNode(this.transaction, propertyNode, timeline, i);
+                            // 跳过被并发删除的值节点
+                            return valueNode != null ? getValueHistoryEntry(valueNode, timeline.getIntervalFrom(i)) : null;
+                        })
+                        .filter(Objects::nonNull);
+            } else {
+                // 值节点的时间点类型不一致时，退回到遍历查找
+                entries = PropertyTimelineIndex.getValueNodes(this.transaction, propertyNode, predicate).stream()
+                        .filter(valueNode -> token == null || token.isBefore(SEpochTimePoint.of(valueNode.getProperty("intervalFrom")), valueNode.getElementId()))
+                        .map(valueNode -> getValueHistoryEntry(valueNode, SEpochTimePoint.of(valueNode.getProperty("intervalFrom"))));
+            }
+            return limit != null ? entries.limit(limit) : entries;
+        } else {
+            throw new RuntimeException("Missing parameter");
+        }
+    }
+
+    /**
+     * 值节点历史记录的续读标记，值节点按开始时间、elementId的顺序排列
+     */
+    private record ContinuationToken(long epoch, int nano, String valueNodeId) {
+        private static ContinuationToken of(String token) {
+            String[] parts = token.split(":", 3);
+            try {
+                return new ContinuationToken(Long.parseLong(parts[0]), Integer.parseInt(parts[1]), parts[2]);
+            } catch (NumberFormatException | ArrayIndexOutOfBoundsException e) {
+                throw new RuntimeException("Invalid continuation token: " + token);
+            }
+        }
+
+        /**
+         * @return 判定值节点是否在续读标记之后
+         */
+        private boolean isBefore(SEpochTimePoint intervalFrom, String valueNodeId) {
+            int result = SEpochTimePoint.compare(intervalFrom.getEpoch(), intervalFrom.getNano(), this.epoch, this.nano);
+            return result > 0 || (result == 0 && valueNodeId.compareTo(this.valueNodeId) > 0);
+        }
+    }
+
+    public static class PropertyChange {
+        public Object changeTime;
+        public Object oldValue;
+        public Object newValue;
+
+        public PropertyChange(Object changeTime, Object oldValue, Object newValue) {
+            this.changeTime = changeTime;
+            this.oldValue = oldValue;
+            this.newValue = newValue;
+        }
+    }
+
+    /**
+     * @param objectNode   对象节点
+     * @param propertyName 属性名
+     * @param intervalMap  时间区间，为NULL时使用scope，都未指定时为属性的全部历史
+     * @return 按开始时间的先后顺序逐个返回开始时间在时间区间内的值节点带来的属性变化：变化时刻为值节点的开始时间，
+     * 旧值为前一个值节点的属性值（没有时为NULL），新值为该值节点的属性值；与前一个值节点的属性值相同的值节点不产生变化。
+     * 只在返回时读取相邻的两个值节点，不构建完整的值节点列表。
+     */
+    @Procedure(name = "scypher.propertyChanges", mode = Mode.READ)
+    @Description("Get the changes of a property of object node within an interval in time order.")
+    public Stream<PropertyChange> propertyChanges(@Name("node") Node objectNode, @Name("propertyName") String propertyName, @Name("interval") Map<String, Object> intervalMap) {
+        if (objectNode != null && propertyName != null) {
+            SEpochInterval interval = null;
+            if (intervalMap != null) {
+                interval = new SEpochInterval(new SInterval(intervalMap));
+            } else if (GlobalVariablesManager.getContext(this.transaction).scopeInterval() != null) {
+                interval = new SEpochInterval(GlobalVariablesManager.getContext(this.transaction).scopeInterval());
+            }
+            Node propertyNode = PropertyNodeIndex.getPropertyNode(this.transaction, objectNode, propertyName);
+            if (propertyNode == null) {
+                return Stream.empty();
+            }
+            int size;
+            IntFunction<SEpochTimePoint> intervalFroms;
+            IntFunction<Node> valueNodes;
+            ValueNodeTimeline timeline = PropertyTimelineIndex.loadTimeline(this.transaction, propertyNode);
+            if (timeline != null) {
+                size = timeline.size();
+                intervalFroms = timeline::getIntervalFrom;
+                valueNodes = i -> PropertyTimelineIndex.getValueNode(this.transaction, propertyNode, timeline, i);
+            } else {
+                // 值节点的时间点类型不一致时，退回到遍历查找
+                List<Node> valueNodeList = PropertyTimelineIndex.getValueNodes(this.transaction, propertyNode, TimeWindowPredicate.UNBOUNDED);
+                size = valueNodeList.size();
+                intervalFroms = i -> SEpochTimePoint.of(valueNodeList.get(i).getProperty("intervalFrom"));
+                valueNodes = valueNodeList::get;
+            }
+            int start = 0;
+            if (interval != null) {
+                if (size > 0 && intervalFroms.apply(0).getType() != interval.getType()) {
+                    throw new RuntimeException("Only the interval can only contain the time point of the same type");
+                }
+                start = timeline != null ? timeline.ceiling(interval.getFromEpoch(), interval.getFromNano()) : 0;
+            }
+            SEpochInterval changeInterval = interval;
+            return IntStream.range(start, size)
+                    .takeWhile(i -> changeInterval == null || SEpochTimePoint.compare(intervalFroms.apply(i).getEpoch(), intervalFroms.apply(i).getNano(), changeInterval.getToEpoch(), changeInterval.getToNano()) <= 0)
+                    .filter(i -> changeInterval == null || changeInterval.contains(intervalFroms.apply(i)))
+                    .mapToObj(i -> {
+                        Node valueNode = valueNodes.apply(i);
+                        if (valueNode == null) {
+                            // 跳过被并发删除的值节点
+                            return null;
+                        }
+                        Node previousValueNode = i > 0 ? valueNodes.apply(i - 1) : null;
+                        Object oldValue = previousValueNode != null ? previousValueNode.getProperty("content") : null;
+                        Object newValue = valueNode.getProperty("content");
+                        return Objects.deepEquals(oldValue, newValue) ? null : new PropertyChange(valueNode.getProperty("intervalFrom"), oldValue, newValue);
+                    })
+                    .filter(Objects::nonNull);
+        } else {
+            throw new RuntimeException("Missing parameter");
+        }
+    }
+
+    /**
+     * @param label           对象节点的标签
+     * @param timePointObject 时间点，为NULL时使用默认操作时间（snapshot设置的时间点或当前时刻）
+     * @return 逐个返回在该时间点有效的对象节点，以及在该时间点有效的所有属性值。时间点只解析一次，结果按需生成。
+     */
+    @Procedure(name = "scypher.objectsAt", mode = Mode.READ)
+    @Description("Get the object nodes of a label valid at a time point together with their property values at that time point.")
+    public Stream<ObjectState> objectsAt(@Name("label") String label, @Name("timePoint") Object timePointObject) {
+        if (label != null) {
+            STemporalContext context = GlobalVariablesManager.getContext(this.transaction);
+            if (timePointObject == null) {
+                timePointObject = context.snapshotTimePoint() != null ? context.snapshotTimePoint().getSystemTimePoint() : TransactionClock.getCurrentTimePoint(this.transaction).getSystemTimePoint();
+            } else if (!(timePointObject instanceof LocalDate | timePointObject instanceof OffsetTime | timePointObject instanceof LocalTime | timePointObject instanceof ZonedDateTime | timePointObject instanceof LocalDateTime)) {
+                throw new RuntimeException("Type mismatch: expected Date, Time, LocalTime, LocalDateTime or DateTime but was " + timePointObject.getClass().getSimpleName());
+            }
+            TimeWindowPredicate predicate = TimeWindowPredicate.of(timePointObject, context);
+            ResourceIterator<Node> objectNodes = this.transaction.findNodes(Label.label(label));
+            return StreamSupport.stream(Spliterators.spliteratorUnknownSize(objectNodes, Spliterator.NONNULL), false)
+                    .onClose(objectNodes::close)
+                    .filter(objectNode -> objectNode.hasProperty("intervalFrom") && predicate.test(objectNode))
+                    .map(objectNode -> new ObjectState(objectNode, getPropertyValues(this.transaction, objectNode, null, predicate)));
+        } else {
+            throw new RuntimeException("Missing parameter");
+        }
+    }
+
+    /**
+     * @return 返回事务级属性值备忘录的命中、未命中和清空次数
+     */
+    @UserFunction("scypher.transactionMemo.statistics")
+    @Description("Get the statistics of the transaction-scoped property value memo.")
+    public Map<String, Object> transactionMemoStatistics() {
+        return TransactionMemo.getStatistics();
+    }
 }
@@ -2,6 +2,9 @@ package cn.scypher.neo4j.plugin;
 
 import cn.scypher.neo4j.plugin.datetime.SInterval;
 import cn.scypher.neo4j.plugin.datetime.STimePoint;
+import cn.scypher.neo4j.plugin.datetime.STimePointCache;
+import org.neo4j.graphdb.Transaction;
+import org.neo4j.procedure.Context;
 import org.neo4j.procedure.Description;
 import org.neo4j.procedure.Name;
 import org.neo4j.procedure.UserFunction;
@@ -13,6 +16,8 @@ import java.util.List;
 import java.util.Map;
 
 public class SDateTimeOperation {
+    @Context
+    public Transaction transaction;
 
     /**
      * @param timePoint 一个时间点，为str类型、Map类型或时间点类型
@@ -26,7 +31,7 @@ public class SDateTimeOperation {
                 // timePoint为str或Map类型，获取用户之前所设置的时间点类型和时区
                 String timePointType = GlobalVariablesManager.getTimePointType();
                 String timezone = GlobalVariablesManager.getTimezone();
-                return (new STimePoint(timePoint, timePointType, timezone)).getSystemTimePoint();
+                return STimePointCache.getTimePoint(timePoint, timePointType, timezone).getSystemTimePoint();
             } else {
                 // timePoint为时间点类型
                 return (new STimePoint(timePoint)).getSystemTimePoint();
@@ -42,10 +47,8 @@ public class SDateTimeOperation {
     @UserFunction("scypher.now")
     @Description("Get the time point at the current moment.")
     public Object current() {
-        // 获取用户之前所设置的时间点类型和时区
-        String timePointType = GlobalVariablesManager.getTimePointType();
-        String timezone = GlobalVariablesManager.getTimezone();
-        return (new STimePoint(timePointType, timezone)).getSystemTimePoint();
+        // 同一事务中返回同一时刻
+        return TransactionClock.getCurrentTimePoint(this.transaction).getSystemTimePoint();
     }
 
     /**
@@ -190,4 +193,13 @@ public class SDateTimeOperation {
             throw new RuntimeException("Missing parameter");
         }
     }
+
+    /**
+     * @return 返回时间点字符串解析缓存的统计信息
+     */
+    @UserFunction("scypher.timePoint.cacheStatistics")
+    @Description("Get the statistics of the time point literal cache.")
+    public Map<String, Object> timePointCacheStatistics() {
+        return STimePointCache.getStatistics();
+    }
 }
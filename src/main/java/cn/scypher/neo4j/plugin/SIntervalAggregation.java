@@ -0,0 +1,211 @@
+package cn.scypher.neo4j.plugin;
+
+import cn.scypher.neo4j.plugin.datetime.SEpochTimePoint;
+import org.neo4j.procedure.*;
+
+import java.util.*;
+
+/**
+ * 时间区间的聚合函数，逐行折叠时间区间，不需要先用collect()收集所有时间区间
+ */
+public class SIntervalAggregation {
+
+    /**
+     * 时间区间的一个端点，保留原始的时间点以便返回结果
+     *
+     * @param timePoint      LocalDate、OffsetTime、LocalTime、ZonedDateTime或LocalDateTime类型的时间点
+     * @param epochTimePoint 用于比较的纪元编码时间点
+     */
+    private record Bound(Object timePoint, SEpochTimePoint epochTimePoint) {
+        private static Bound of(Object timePoint) {
+            return new Bound(timePoint, SEpochTimePoint.of(timePoint));
+        }
+    }
+
+    /**
+     * @param intervalMap 时间区间，为Map类型（具有两个key：from和to，value为时间点类型）
+     * @return 返回时间区间的开始时间和结束时间
+     */
+    private static Bound[] parseInterval(Map<String, Object> intervalMap) {
+        if (intervalMap.containsKey("from") && intervalMap.containsKey("to")) {
+            Bound intervalFrom = Bound.of(intervalMap.get("from"));
+            Bound intervalTo = Bound.of(intervalMap.get("to"));
+            if (intervalFrom.epochTimePoint().getType() == intervalTo.epochTimePoint().getType()) {
+                if (intervalFrom.epochTimePoint().isAfter(intervalTo.epochTimePoint())) {
+                    throw new RuntimeException("The start time can't be latter than the end time");
+                }
+                return new Bound[]{intervalFrom, intervalTo};
+            } else {
+                throw new RuntimeException("The type of the start time point and the end time point is not same");
+            }
+        } else {
+            throw new RuntimeException("Missing key 'from' or 'to'");
+        }
+    }
+
+    private static Map<String, Object> getSystemInterval(Bound intervalFrom, Bound intervalTo) {
+        Map<String, Object> interval = new HashMap<>();
+        interval.put("from", intervalFrom.timePoint());
+        interval.put("to", intervalTo.timePoint());
+        return interval;
+    }
+
+    @UserAggregationFunction("scypher.agg.intervalIntersection")
+    @Description("Get the intersection of all intervals in a group.")
+    public IntervalIntersection intervalIntersection() {
+        return new IntervalIntersection();
+    }
+
+    @UserAggregationFunction("scypher.agg.intervalRange")
+    @Description("Get a interval within which all intervals in a group are located.")
+    public IntervalRange intervalRange() {
+        return new IntervalRange();
+    }
+
+    @UserAggregationFunction("scypher.agg.intervalUnion")
+    @Description("Get the union of all intervals in a group as a list of disjoint intervals.")
+    public IntervalUnion intervalUnion() {
+        return new IntervalUnion();
+    }
+
+    public static class IntervalIntersection {
+        private Bound intervalFrom = null;
+        private Bound intervalTo = null;
+        // 交集为空后忽略后续的时间区间
+        private boolean empty = false;
+
+        /**
+         * @param intervalMap 时间区间，为NULL时忽略
+         */
+        @UserAggregationUpdate
+        public void update(@Name("interval") Map<String, Object> intervalMap) {
+            if (intervalMap == null || this.empty) {
+                return;
+            }
+            Bound[] interval = parseInterval(intervalMap);
+            if (this.intervalFrom == null) {
+                this.intervalFrom = interval[0];
+                this.intervalTo = interval[1];
+            } else if (this.intervalFrom.epochTimePoint().getType() == interval[0].epochTimePoint().getType()) {
+                if (interval[0].epochTimePoint().isAfter(this.intervalFrom.epochTimePoint())) {
+                    this.intervalFrom = interval[0];
+                }
+                if (interval[1].epochTimePoint().isBefore(this.intervalTo.epochTimePoint())) {
+                    this.intervalTo = interval[1];
+                }
+                if (this.intervalFrom.epochTimePoint().isAfter(this.intervalTo.epochTimePoint())) {
+                    this.empty = true;
+                    this.intervalFrom = null;
+                    this.intervalTo = null;
+                }
+            } else {
+                throw new RuntimeException("Only the intervals of the same time point type can perform intersection operations");
+            }
+        }
+
+        /**
+         * @return 返回所有时间区间的交集。若交集为空或没有时间区间，返回NULL
+         */
+        @UserAggregationResult
+        public Map<String, Object> result() {
+            if (this.intervalFrom != null) {
+                return getSystemInterval(this.intervalFrom, this.intervalTo);
+            } else {
+                return null;
+            }
+        }
+    }
+
+    public static class IntervalRange {
+        private Bound intervalFrom = null;
+        private Bound intervalTo = null;
+
+        /**
+         * @param intervalMap 时间区间，为NULL时忽略
+         */
+        @UserAggregationUpdate
+        public void update(@Name("interval") Map<String, Object> intervalMap) {
+            if (intervalMap == null) {
+                return;
+            }
+            Bound[] interval = parseInterval(intervalMap);
+            if (this.intervalFrom == null) {
+                this.intervalFrom = interval[0];
+                this.intervalTo = interval[1];
+            } else if (this.intervalFrom.epochTimePoint().getType() == interval[0].epochTimePoint().getType()) {
+                if (interval[0].epochTimePoint().isBefore(this.intervalFrom.epochTimePoint())) {
+                    this.intervalFrom = interval[0];
+                }
+                if (interval[1].epochTimePoint().isAfter(this.intervalTo.epochTimePoint())) {
+                    this.intervalTo = interval[1];
+                }
+            } else {
+                throw new RuntimeException("Only the intervals of the same time point type can perform range operations");
+            }
+        }
+
+        /**
+         * @return 返回一个时间区间，这个区间包含所有时间区间。若没有时间区间，返回NULL
+         */
+        @UserAggregationResult
+        public Map<String, Object> result() {
+            if (this.intervalFrom != null) {
+                return getSystemInterval(this.intervalFrom, this.intervalTo);
+            } else {
+                return null;
+            }
+        }
+    }
+
+    public static class IntervalUnion {
+        // 互不相交的时间区间，键为开始时间，值为结束时间
+        private final TreeMap<Bound, Bound> intervals = new TreeMap<>(Comparator.comparing(Bound::epochTimePoint));
+
+        /**
+         * @param intervalMap 时间区间，为NULL时忽略
+         */
+        @UserAggregationUpdate
+        public void update(@Name("interval") Map<String, Object> intervalMap) {
+            if (intervalMap == null) {
+                return;
+            }
+            Bound[] interval = parseInterval(intervalMap);
+            Bound intervalFrom = interval[0];
+            Bound intervalTo = interval[1];
+            if (!this.intervals.isEmpty() && this.intervals.firstKey().epochTimePoint().getType() != intervalFrom.epochTimePoint().getType()) {
+                throw new RuntimeException("Only the intervals of the same time point type can perform union operations");
+            }
+            // 与开始时间不晚于intervalFrom的区间合并
+            Map.Entry<Bound, Bound> floor = this.intervals.floorEntry(intervalFrom);
+            if (floor != null && floor.getValue().epochTimePoint().isNotBefore(intervalFrom.epochTimePoint())) {
+                if (floor.getValue().epochTimePoint().isNotBefore(intervalTo.epochTimePoint())) {
+                    return;
+                }
+                intervalFrom = floor.getKey();
+                this.intervals.remove(floor.getKey());
+            }
+            // 合并开始时间不晚于intervalTo的后续区间
+            Map.Entry<Bound, Bound> next = this.intervals.ceilingEntry(intervalFrom);
+            while (next != null && next.getKey().epochTimePoint().isNotAfter(intervalTo.epochTimePoint())) {
+                if (next.getValue().epochTimePoint().isAfter(intervalTo.epochTimePoint())) {
+                    intervalTo = next.getValue();
+                }
+                this.intervals.remove(next.getKey());
+                next = this.intervals.ceilingEntry(intervalFrom);
+            }
+            this.intervals.put(intervalFrom, intervalTo);
+        }
+
+        /**
+         * @return 返回所有时间区间的并集，为按开始时间排序的互不相交的时间区间列表
+         */
+        @UserAggregationResult
+        public List<Map<String, Object>> result() {
+            List<Map<String, Object>> union = new ArrayList<>();
+            for (Map.Entry<Bound, Bound> entry : this.intervals.entrySet()) {
+                union.add(getSystemInterval(entry.getKey(), entry.getValue()));
+            }
+            return union;
+        }
+    }
+}
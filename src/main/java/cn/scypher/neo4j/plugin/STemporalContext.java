@@ -0,0 +1,30 @@
+package cn.scypher.neo4j.plugin;
+
+import cn.scypher.neo4j.plugin.datetime.SInterval;
+import cn.scypher.neo4j.plugin.datetime.STimePoint;
+
+/**
+ * 不可变的时态上下文，修改时发布新的实例
+ *
+ * @param timePointType     时间点类型
+ * @param timezone          默认时区
+ * @param snapshotTimePoint snapshot指定的时间点
+ * @param scopeInterval     scope指定的时间区间
+ */
+public record STemporalContext(String timePointType, String timezone, STimePoint snapshotTimePoint, SInterval scopeInterval) {
+
+    public STemporalContext withSnapshotTimePoint(STimePoint snapshotTimePoint) {
+        return new STemporalContext(this.timePointType, this.timezone, snapshotTimePoint, this.scopeInterval);
+    }
+
+    public STemporalContext withScopeInterval(SInterval scopeInterval) {
+        return new STemporalContext(this.timePointType, this.timezone, this.snapshotTimePoint, scopeInterval);
+    }
+
+    /**
+     * @return 判定是否没有设置snapshot和scope
+     */
+    public boolean isDefault() {
+        return this.snapshotTimePoint == null && this.scopeInterval == null;
+    }
+}
@@ -0,0 +1,397 @@
+package cn.scypher.neo4j.plugin;
+
+import cn.scypher.neo4j.plugin.datetime.SEpochInterval;
+import cn.scypher.neo4j.plugin.datetime.SEpochTimePoint;
+import org.neo4j.graphdb.*;
+import org.neo4j.graphdb.event.PropertyEntry;
+import org.neo4j.graphdb.event.TransactionData;
+import org.neo4j.graphdb.event.TransactionEventListener;
+import org.neo4j.kernel.api.KernelTransaction;
+import org.neo4j.kernel.impl.core.NodeEntity;
+import org.neo4j.kernel.impl.core.RelationshipEntity;
+import org.neo4j.kernel.impl.coreapi.InternalTransaction;
+import org.neo4j.procedure.*;
+import org.neo4j.values.ElementIdMapper;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 快照视图缓存：为snapshot设置的时间点t构建一次有效时间包含t的节点和边的id位图，供同一时间点的多次查询共享，
+ * limitEffectiveTime和时序路径函数在snapshot生效时直接查位图，不再逐个读取有效时间。
+ * 每个数据库按LRU保存最近使用的若干个时间点的视图。由TemporalIndexExtension注册的监听器在提交后把新增、删除或有效时间被修改的元素增量地更新到每个视图中，
+ * 构建视图期间提交的修改先缓存起来，在安装视图前应用。
+ * 没有有效时间、时间点类型不一致或开始时间晚于结束时间的元素不在视图中，由调用方逐个检查并报告错误。当前事务有未提交的修改时，不使用视图。
+ */
+public class SnapshotViewCache {
+    // 每个数据库最多保存的视图个数
+    private static final int MAX_VIEWS = 8;
+
+    private static final Map<String, Views> views = new ConcurrentHashMap<>();
+
+    @Context
+    public Transaction transaction;
+
+    /**
+     * 视图中的元素：有效时间包含时间点的元素和不包含时间点的元素，都不在其中的元素需逐个检查
+     */
+    private record State(IdBitmap validNodes, IdBitmap invalidNodes, IdBitmap validRelationships, IdBitmap invalidRelationships) {
+    }
+
+    /**
+     * 提交后需要更新到视图的元素的id和新的有效时间，有效时间为null表示元素被删除或没有有效时间
+     */
+    private record Changes(Map<Long, SEpochTimePoint[]> nodes, Map<Long, SEpochTimePoint[]> relationships) {
+    }
+
+    static final class SnapshotView {
+        static final int UNKNOWN = 0;
+        static final int VALID = 1;
+        static final int INVALID = 2;
+
+        private final SEpochTimePoint timePoint;
+        // 为null时视图已被淘汰
+        private volatile State state;
+
+        private SnapshotView(SEpochTimePoint timePoint, State state) {
+            this.timePoint = timePoint;
+            this.state = state;
+        }
+
+        /**
+         * @param entity 节点/边
+         * @return 返回元素的有效时间是否包含视图的时间点，元素不在视图中或视图已被淘汰时返回UNKNOWN
+         */
+        int lookup(Entity entity) {
+            State current = this.state;
+            if (current == null) {
+                return UNKNOWN;
+            }
+            long id = getId(entity);
+            IdBitmap valid = entity instanceof Node ? current.validNodes() : current.validRelationships();
+            IdBitmap invalid = entity instanceof Node ? current.invalidNodes() : current.invalidRelationships();
+            if (valid.contains(id)) {
+                return VALID;
+            }
+            return invalid.contains(id) ? INVALID : UNKNOWN;
+        }
+
+        private void apply(Changes changes) {
+            State current = this.state;
+            if (current == null) {
+                return;
+            }
+            IdBitmap[] nodes = apply(current.validNodes(), current.invalidNodes(), changes.nodes());
+            IdBitmap[] relationships = apply(current.validRelationships(), current.invalidRelationships(), changes.relationships());
+            this.state = new State(nodes[0], nodes[1], relationships[0], relationships[1]);
+        }
+
+        private IdBitmap[] apply(IdBitmap valid, IdBitmap invalid, Map<Long, SEpochTimePoint[]> changes) {
+            long[] removed = new long[changes.size()];
+            long[] validIds = new long[changes.size()];
+            long[] invalidIds = new long[changes.size()];
+            int i = 0, validCount = 0, invalidCount = 0;
+            for (Map.Entry<Long, SEpochTimePoint[]> change : changes.entrySet()) {
+                removed[i++] = change.getKey();
+                int classification = classify(change.getValue(), this.timePoint);
+                if (classification == VALID) {
+                    validIds[validCount++] = change.getKey();
+                } else if (classification == INVALID) {
+                    invalidIds[invalidCount++] = change.getKey();
+                }
+            }
+            return new IdBitmap[]{valid.with(Arrays.copyOf(validIds, validCount), removed), invalid.with(Arrays.copyOf(invalidIds, invalidCount), removed)};
+        }
+    }
+
+    /**
+     * 正在构建的视图，构建期间提交的修改按提交顺序缓存在其中
+     */
+    private static final class PendingBuild {
+        private final List<Changes> changes = new ArrayList<>();
+    }
+
+    /**
+     * 一个数据库的视图，按访问顺序淘汰
+     */
+    private static final class Views {
+        private final LinkedHashMap<SEpochTimePoint, SnapshotView> entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<SEpochTimePoint, SnapshotView> eldest) {
+                if (size() > MAX_VIEWS) {
+                    eldest.getValue().state = null;
+                    evictions.increment();
+                    return true;
+                }
+                return false;
+            }
+        };
+        // 正在构建的视图
+        private final List<PendingBuild> builds = new ArrayList<>();
+        private volatile boolean enabled = true;
+        private final LongAdder hits = new LongAdder();
+        private final LongAdder misses = new LongAdder();
+        private final LongAdder evictions = new LongAdder();
+
+        private synchronized void clear() {
+            for (SnapshotView view : this.entries.values()) {
+                view.state = null;
+            }
+            this.entries.clear();
+        }
+    }
+
+    /**
+     * @param databaseName 数据库名
+     * @return 为数据库创建快照视图缓存，返回维护视图的监听器
+     */
+    static TransactionEventListener<?> register(String databaseName) {
+        Views databaseViews = new Views();
+        views.put(databaseName, databaseViews);
+        return new ViewListener(databaseViews);
+    }
+
+    static void unregister(String databaseName) {
+        Views databaseViews = views.remove(databaseName);
+        if (databaseViews != null) {
+            databaseViews.clear();
+        }
+    }
+
+    /**
+     * @return 返回有效时间是否包含时间点，有效时间为null、时间点类型不一致或开始时间晚于结束时间时返回UNKNOWN
+     */
+    private static int classify(SEpochTimePoint[] effectiveTime, SEpochTimePoint timePoint) {
+        if (effectiveTime == null || effectiveTime[0].getType() != timePoint.getType() || effectiveTime[1].getType() != timePoint.getType()
+                || effectiveTime[0].isAfter(effectiveTime[1])) {
+            return SnapshotView.UNKNOWN;
+        }
+        return SEpochInterval.contains(effectiveTime[0].getEpoch(), effectiveTime[0].getNano(), effectiveTime[1].getEpoch(), effectiveTime[1].getNano(),
+                timePoint.getEpoch(), timePoint.getNano()) ? SnapshotView.VALID : SnapshotView.INVALID;
+    }
+
+    /**
+     * NodeEntity和RelationshipEntity的getId与被弃用的Entity.getId返回同一个内部id，只是没有标注@Deprecated，
+     * 直接读取可以避免生成并解析elementId字符串。内部id在元素删除后可能被复用，被删除和新建的元素都在提交后记录在视图的修改中。
+     * 其他实现的元素由elementId解析出同一个内部id
+     *
+     * @return 返回节点或边的内部id
+     */
+    private static long getId(Entity entity) {
+        if (entity instanceof NodeEntity node) {
+            return node.getId();
+        } else if (entity instanceof RelationshipEntity relationship) {
+            return relationship.getId();
+        }
+        return ElementIdMapper.decode(entity.getElementId()).entityId();
+    }
+
+    private static void add(Entity entity, SEpochTimePoint timePoint, IdBitmap.Builder valid, IdBitmap.Builder invalid) {
+        int classification = classify(EffectiveTimeIndex.getEffectiveTime(entity), timePoint);
+        if (classification == SnapshotView.VALID) {
+            valid.add(getId(entity));
+        } else if (classification == SnapshotView.INVALID) {
+            invalid.add(getId(entity));
+        }
+    }
+
+    /**
+     * @return 遍历所有节点和边，构建时间点的视图
+     */
+    private static State build(Transaction transaction, SEpochTimePoint timePoint) {
+        IdBitmap.Builder validNodes = new IdBitmap.Builder();
+        IdBitmap.Builder invalidNodes = new IdBitmap.Builder();
+        IdBitmap.Builder validRelationships = new IdBitmap.Builder();
+        IdBitmap.Builder invalidRelationships = new IdBitmap.Builder();
+        try (ResourceIterable<Node> nodes = transaction.getAllNodes()) {
+            for (Node node : nodes) {
+                add(node, timePoint, validNodes, invalidNodes);
+            }
+        }
+        try (ResourceIterable<Relationship> relationships = transaction.getAllRelationships()) {
+            for (Relationship relationship : relationships) {
+                add(relationship, timePoint, validRelationships, invalidRelationships);
+            }
+        }
+        return new State(validNodes.build(), invalidNodes.build(), validRelationships.build(), invalidRelationships.build());
+    }
+
+    /**
+     * @param transaction 当前事务
+     * @param timePoint   snapshot设置的时间点
+     * @return 返回时间点的视图，视图不存在时构建，构建期间提交的修改在安装视图前应用。若视图缓存被关闭或当前事务有未提交的修改，返回null
+     */
+    static SnapshotView get(Transaction transaction, SEpochTimePoint timePoint) {
+        if (!(transaction instanceof InternalTransaction internalTransaction)) {
+            return null;
+        }
+        KernelTransaction kernelTransaction = internalTransaction.kernelTransaction();
+        Views databaseViews = views.get(kernelTransaction.getDatabaseName());
+        if (databaseViews == null || !databaseViews.enabled || kernelTransaction.dataRead().transactionStateHasChanges()) {
+            return null;
+        }
+        PendingBuild pending = new PendingBuild();
+        synchronized (databaseViews) {
+            SnapshotView view = databaseViews.entries.get(timePoint);
+            if (view != null) {
+                databaseViews.hits.increment();
+                return view;
+            }
+            databaseViews.builds.add(pending);
+        }
+        databaseViews.misses.increment();
+        State state;
+        try {
+            state = build(transaction, timePoint);
+        } catch (RuntimeException e) {
+            synchronized (databaseViews) {
+                databaseViews.builds.remove(pending);
+            }
+            throw e;
+        }
+        SnapshotView view = new SnapshotView(timePoint, state);
+        synchronized (databaseViews) {
+            databaseViews.builds.remove(pending);
+            // 遍历时可能已读到这些修改，重复应用的结果相同
+            for (Changes changes : pending.changes) {
+                view.apply(changes);
+            }
+            if (!databaseViews.enabled) {
+                return null;
+            }
+            SnapshotView existing = databaseViews.entries.get(timePoint);
+            if (existing != null) {
+                return existing;
+            }
+            databaseViews.entries.put(timePoint, view);
+        }
+        return view;
+    }
+
+    private static Views require(Transaction transaction) {
+        Views databaseViews = views.get(((InternalTransaction) transaction).kernelTransaction().getDatabaseName());
+        if (databaseViews == null) {
+            throw new RuntimeException("The index is not available for this database");
+        }
+        return databaseViews;
+    }
+
+    /**
+     * @param enabled 是否使用当前数据库的快照视图缓存，关闭时清空缓存
+     */
+    @Procedure(name = "scypher.setSnapshotViewCache", mode = Mode.READ)
+    @Description("Enable or disable the snapshot view cache.")
+    public void setSnapshotViewCache(@Name("enabled") Boolean enabled) {
+        if (enabled != null) {
+            Views databaseViews = require(this.transaction);
+            databaseViews.enabled = enabled;
+            if (!enabled) {
+                databaseViews.clear();
+            }
+        } else {
+            throw new RuntimeException("Missing parameter");
+        }
+    }
+
+    /**
+     * @return 返回当前数据库的快照视图缓存的命中、未命中和淘汰次数，以及每个视图中有效的节点数、边数和占用的字节数
+     */
+    @UserFunction("scypher.snapshotViewCache.statistics")
+    @Description("Get the statistics of the snapshot view cache.")
+    public Map<String, Object> snapshotViewCacheStatistics() {
+        Views databaseViews = require(this.transaction);
+        List<Map<String, Object>> viewStatistics = new ArrayList<>();
+        synchronized (databaseViews) {
+            for (SnapshotView view : databaseViews.entries.values()) {
+                State state = view.state;
+                if (state != null) {
+                    Map<String, Object> statistics = new HashMap<>();
+                    statistics.put("nodes", state.validNodes().cardinality());
+                    statistics.put("relationships", state.validRelationships().cardinality());
+                    statistics.put("bytes", state.validNodes().sizeInBytes() + state.invalidNodes().sizeInBytes()
+                            + state.validRelationships().sizeInBytes() + state.invalidRelationships().sizeInBytes());
+                    viewStatistics.add(statistics);
+                }
+            }
+        }
+        Map<String, Object> statistics = new HashMap<>();
+        statistics.put("enabled", databaseViews.enabled);
+        statistics.put("hits", databaseViews.hits.sum());
+        statistics.put("misses", databaseViews.misses.sum());
+        statistics.put("evictions", databaseViews.evictions.sum());
+        statistics.put("views", viewStatistics);
+        return statistics;
+    }
+
+    /**
+     * 在提交前收集被新增、删除或有效时间被修改的节点和边及其新的有效时间，在提交后更新到每个视图，并缓存到正在构建的视图中
+     */
+    private static final class ViewListener implements TransactionEventListener<Changes> {
+        private final Views databaseViews;
+
+        private ViewListener(Views databaseViews) {
+            this.databaseViews = databaseViews;
+        }
+
+        private static <T extends Entity> void collect(Iterable<PropertyEntry<T>> propertyEntries, Set<T> entities) {
+            for (PropertyEntry<T> propertyEntry : propertyEntries) {
+                if (propertyEntry.key().equals("intervalFrom") || propertyEntry.key().equals("intervalTo")) {
+                    entities.add(propertyEntry.entity());
+                }
+            }
+        }
+
+        @Override
+        public Changes beforeCommit(TransactionData data, Transaction transaction, GraphDatabaseService databaseService) {
+            // 没有视图和正在构建的视图时只记录被修改的元素，不读取有效时间；移出视图的元素由调用方逐个检查，不影响正确性
+            boolean hasViews;
+            synchronized (this.databaseViews) {
+                hasViews = !this.databaseViews.entries.isEmpty() || !this.databaseViews.builds.isEmpty();
+            }
+            Map<Long, SEpochTimePoint[]> nodeChanges = new HashMap<>();
+            Map<Long, SEpochTimePoint[]> relationshipChanges = new HashMap<>();
+            Set<Node> nodes = new HashSet<>();
+            collect(data.assignedNodeProperties(), nodes);
+            collect(data.removedNodeProperties(), nodes);
+            for (Node node : nodes) {
+                if (!data.isDeleted(node)) {
+                    nodeChanges.put(getId(node), hasViews ? EffectiveTimeIndex.getEffectiveTime(node) : null);
+                }
+            }
+            for (Node node : data.deletedNodes()) {
+                nodeChanges.put(getId(node), null);
+            }
+            Set<Relationship> relationships = new HashSet<>();
+            collect(data.assignedRelationshipProperties(), relationships);
+            collect(data.removedRelationshipProperties(), relationships);
+            for (Relationship relationship : relationships) {
+                if (!data.isDeleted(relationship)) {
+                    relationshipChanges.put(getId(relationship), hasViews ? EffectiveTimeIndex.getEffectiveTime(relationship) : null);
+                }
+            }
+            for (Relationship relationship : data.deletedRelationships()) {
+                relationshipChanges.put(getId(relationship), null);
+            }
+            return nodeChanges.isEmpty() && relationshipChanges.isEmpty() ? null : new Changes(nodeChanges, relationshipChanges);
+        }
+
+        @Override
+        public void afterCommit(TransactionData data, Changes changes, GraphDatabaseService databaseService) {
+            if (changes != null) {
+                synchronized (this.databaseViews) {
+                    for (SnapshotView view : this.databaseViews.entries.values()) {
+                        view.apply(changes);
+                    }
+                    for (PendingBuild pending : this.databaseViews.builds) {
+                        pending.changes.add(changes);
+                    }
+                }
+            }
+        }
+
+        @Override
+        public void afterRollback(TransactionData data, Changes changes, GraphDatabaseService databaseService) {
+        }
+    }
+}
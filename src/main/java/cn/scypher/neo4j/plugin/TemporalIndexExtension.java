@@ -0,0 +1,67 @@
+package cn.scypher.neo4j.plugin;
+
+import org.neo4j.dbms.api.DatabaseManagementService;
+import org.neo4j.graphdb.event.TransactionEventListener;
+import org.neo4j.kernel.extension.ExtensionFactory;
+import org.neo4j.kernel.extension.ExtensionType;
+import org.neo4j.kernel.extension.context.ExtensionContext;
+import org.neo4j.kernel.internal.GraphDatabaseAPI;
+import org.neo4j.kernel.lifecycle.Lifecycle;
+import org.neo4j.kernel.lifecycle.LifecycleAdapter;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 在每个用户数据库启动时创建属性名索引、时间线索引、属性值缓存、有效时间索引和快照视图缓存，并注册维护索引的TransactionEventListener
+ */
+public class TemporalIndexExtension extends ExtensionFactory<TemporalIndexExtension.Dependencies> {
+
+    public interface Dependencies {
+        DatabaseManagementService databaseManagementService();
+
+        GraphDatabaseAPI graphDatabaseAPI();
+    }
+
+    public TemporalIndexExtension() {
+        super(ExtensionType.DATABASE, "scypherTemporalIndex");
+    }
+
+    @Override
+    public Lifecycle newInstance(ExtensionContext context, Dependencies dependencies) {
+        String databaseName = dependencies.graphDatabaseAPI().databaseName();
+        DatabaseManagementService managementService = dependencies.databaseManagementService();
+        return new LifecycleAdapter() {
+            private final List<TransactionEventListener<?>> listeners = new ArrayList<>();
+
+            @Override
+            public void start() {
+                if (!databaseName.equals("system")) {
+                    this.listeners.add(PropertyNodeIndex.register(databaseName));
+                    this.listeners.add(PropertyTimelineIndex.register(databaseName));
+                    this.listeners.add(CurrentStateCache.register(databaseName));
+                    this.listeners.add(EffectiveTimeIndex.register(databaseName));
+                    this.listeners.add(SnapshotViewCache.register(databaseName));
+                    for (TransactionEventListener<?> listener : this.listeners) {
+                        managementService.registerTransactionEventListener(databaseName, listener);
+                    }
+                }
+            }
+
+            @Override
+            public void stop() {
+                for (TransactionEventListener<?> listener : this.listeners) {
+                    managementService.unregisterTransactionEventListener(databaseName, listener);
+                }
+                if (!this.listeners.isEmpty()) {
+                    PropertyNodeIndex.unregister(databaseName);
+                    PropertyTimelineIndex.unregister(databaseName);
+                    CurrentStateCache.unregister(databaseName);
+                    EffectiveTimeIndex.unregister(databaseName);
+                    SnapshotViewCache.unregister(databaseName);
+                    this.listeners.clear();
+                }
+            }
+        };
+    }
+}
@@ -0,0 +1,324 @@
+package cn.scypher.neo4j.plugin;
+
+import cn.scypher.neo4j.plugin.datetime.SEpochInterval;
+import cn.scypher.neo4j.plugin.datetime.SEpochTimePoint;
+import cn.scypher.neo4j.plugin.datetime.SInterval;
+import org.neo4j.exceptions.KernelException;
+import org.neo4j.graphdb.*;
+import org.neo4j.graphdb.schema.IndexDefinition;
+import org.neo4j.graphdb.schema.IndexType;
+import org.neo4j.internal.kernel.api.Cursor;
+import org.neo4j.internal.kernel.api.IndexQueryConstraints;
+import org.neo4j.internal.kernel.api.IndexReadSession;
+import org.neo4j.internal.kernel.api.InternalIndexState;
+import org.neo4j.internal.kernel.api.NodeValueIndexCursor;
+import org.neo4j.internal.kernel.api.PropertyIndexQuery;
+import org.neo4j.internal.kernel.api.RelationshipValueIndexCursor;
+import org.neo4j.internal.kernel.api.TokenRead;
+import org.neo4j.internal.schema.IndexDescriptor;
+import org.neo4j.internal.schema.SchemaDescriptor;
+import org.neo4j.internal.schema.SchemaDescriptors;
+import org.neo4j.kernel.api.KernelTransaction;
+import org.neo4j.kernel.impl.coreapi.InternalTransaction;
+import org.neo4j.procedure.*;
+import org.neo4j.values.storable.Value;
+import org.neo4j.values.storable.Values;
+
+import java.util.*;
+import java.util.function.LongFunction;
+import java.util.function.LongSupplier;
+import java.util.stream.Stream;
+
+/**
+ * 使用Neo4j的RANGE索引查找有效时间与时间区间[from, to]重合的元素：在intervalFrom的索引上查找intervalFrom <= to，
+ * 在intervalTo的索引上查找intervalTo >= from，两个查找交替推进，先结束的一侧即为较小的候选集，再逐个检查候选元素的有效时间。
+ * 只有一个索引时只查找该索引，没有索引时退回到遍历标签或边类型。
+ */
+public class TemporalIndexSeek {
+    private static final String INTERVAL_FROM = "intervalFrom";
+    private static final String INTERVAL_TO = "intervalTo";
+
+    @Context
+    public Transaction transaction;
+
+    /**
+     * 索引查找的游标及已读取的元素id
+     */
+    private static final class IndexSeek {
+        private final Cursor cursor;
+        private final LongSupplier reference;
+        private long[] references = new long[16];
+        private int size = 0;
+
+        private IndexSeek(Cursor cursor, LongSupplier reference) {
+            this.cursor = cursor;
+            this.reference = reference;
+        }
+
+        /**
+         * @return 读取下一个元素，查找结束时返回false
+         */
+        private boolean advance() {
+            if (!this.cursor.next()) {
+                return false;
+            }
+            if (this.size == this.references.length) {
+                this.references = Arrays.copyOf(this.references, 2 * this.size);
+            }
+            this.references[this.size++] = this.reference.getAsLong();
+            return true;
+        }
+    }
+
+    /**
+     * @return 返回标签或边类型上某个属性的在线RANGE索引，不存在时返回null
+     */
+    private static IndexDescriptor getRangeIndex(KernelTransaction kernelTransaction, boolean relationship, int token, int propertyKey) {
+        SchemaDescriptor schema = relationship ? SchemaDescriptors.forRelType(token, propertyKey) : SchemaDescriptors.forLabel(token, propertyKey);
+        IndexDescriptor index = kernelTransaction.schemaRead().index(schema, org.neo4j.internal.schema.IndexType.RANGE);
+        try {
+            if (index != IndexDescriptor.NO_INDEX && kernelTransaction.schemaRead().indexGetState(index) == InternalIndexState.ONLINE) {
+                return index;
+            }
+        } catch (KernelException e) {
+            // 索引已被并发删除
+        }
+        return null;
+    }
+
+    /**
+     * @return 打开索引上的范围查找
+     */
+    private static IndexSeek open(KernelTransaction kernelTransaction, boolean relationship, IndexDescriptor index, PropertyIndexQuery query, List<Cursor> cursors) throws KernelException {
+        IndexReadSession session = kernelTransaction.dataRead().indexReadSession(index);
+        if (relationship) {
+            RelationshipValueIndexCursor cursor = kernelTransaction.cursors().allocateRelationshipValueIndexCursor(kernelTransaction.cursorContext(), kernelTransaction.memoryTracker());
+            cursors.add(cursor);
+            kernelTransaction.dataRead().relationshipIndexSeek(kernelTransaction.queryContext(), session, cursor, IndexQueryConstraints.unconstrained(), query);
+            return new IndexSeek(cursor, cursor::relationshipReference);
+        } else {
+            NodeValueIndexCursor cursor = kernelTransaction.cursors().allocateNodeValueIndexCursor(kernelTransaction.cursorContext(), kernelTransaction.memoryTracker());
+            cursors.add(cursor);
+            kernelTransaction.dataRead().nodeIndexSeek(kernelTransaction.queryContext(), session, cursor, IndexQueryConstraints.unconstrained(), query);
+            return new IndexSeek(cursor, cursor::nodeReference);
+        }
+    }
+
+    /**
+     * @param transaction   当前事务
+     * @param relationship  是否查找边
+     * @param name          标签或边类型
+     * @param intervalFrom  查找区间的开始时间
+     * @param intervalTo    查找区间的结束时间
+     * @return 返回候选元素的id，候选元素仍需检查有效时间。若没有可用的索引，返回null
+     */
+    private static long[] seek(Transaction transaction, boolean relationship, String name, Object intervalFrom, Object intervalTo) {
+        // TIME类型的NOW在索引中按UTC时间排序，不一定排在最后，不能用范围查找
+        if (SEpochTimePoint.of(intervalFrom).getType() == SEpochTimePoint.TIME) {
+            return null;
+        }
+        KernelTransaction kernelTransaction = ((InternalTransaction) transaction).kernelTransaction();
+        TokenRead tokenRead = kernelTransaction.tokenRead();
+        int token = relationship ? tokenRead.relationshipType(name) : tokenRead.nodeLabel(name);
+        int fromKey = tokenRead.propertyKey(INTERVAL_FROM);
+        int toKey = tokenRead.propertyKey(INTERVAL_TO);
+        if (token == TokenRead.NO_TOKEN || fromKey == TokenRead.NO_TOKEN || toKey == TokenRead.NO_TOKEN) {
+            return new long[0];
+        }
+        IndexDescriptor fromIndex = getRangeIndex(kernelTransaction, relationship, token, fromKey);
+        IndexDescriptor toIndex = getRangeIndex(kernelTransaction, relationship, token, toKey);
+        if (fromIndex == null && toIndex == null) {
+            return null;
+        }
+        List<Cursor> cursors = new ArrayList<>(2);
+        try {
+            Value upper = Values.of(intervalTo);
+            Value lower = Values.of(intervalFrom);
+            IndexSeek fromSeek = fromIndex != null ? open(kernelTransaction, relationship, fromIndex, PropertyIndexQuery.range(fromKey, null, false, upper, true), cursors) : null;
+            IndexSeek toSeek = toIndex != null ? open(kernelTransaction, relationship, toIndex, PropertyIndexQuery.range(toKey, lower, true, null, false), cursors) : null;
+            IndexSeek candidates;
+            if (fromSeek != null && toSeek != null) {
+                // 交替推进，代价为较小一侧结果数的两倍
+                while (true) {
+                    if (!fromSeek.advance()) {
+                        candidates = fromSeek;
+                        break;
+                    }
+                    if (!toSeek.advance()) {
+                        candidates = toSeek;
+                        break;
+                    }
+                }
+            } else {
+                candidates = fromSeek != null ? fromSeek : toSeek;
+                while (candidates.advance()) {
+                }
+            }
+            return Arrays.copyOf(candidates.references, candidates.size);
+        } catch (KernelException e) {
+            throw new RuntimeException(e.getMessage());
+        } finally {
+            cursors.forEach(Cursor::close);
+        }
+    }
+
+    /**
+     * @param candidates 索引查找到的候选元素的id
+     * @param lookup     按id获取元素
+     * @param interval   查找的时间区间
+     * @return 返回有效时间与时间区间重合的元素，跳过被并发删除的元素
+     */
+    private static <T extends Entity> Stream<T> verify(long[] candidates, LongFunction<T> lookup, SEpochInterval interval) {
+        return Arrays.stream(candidates).mapToObj(id -> {
+            try {
+                T element = lookup.apply(id);
+                return EffectiveTimeIndex.isValidDuring(element, interval) ? element : null;
+            } catch (NotFoundException e) {
+                return null;
+            }
+        }).filter(Objects::nonNull);
+    }
+
+    private Stream<EffectiveTimeIndex.NodeResult> seekNodes(String label, Object intervalFrom, Object intervalTo) {
+        SEpochInterval interval = new SEpochInterval(SEpochTimePoint.of(intervalFrom), SEpochTimePoint.of(intervalTo));
+        long[] candidates = seek(this.transaction, false, label, intervalFrom, intervalTo);
+        if (candidates != null) {
+            return verify(candidates, ((InternalTransaction) this.transaction)::newNodeEntity, interval).map(EffectiveTimeIndex.NodeResult::new);
+        }
+        ResourceIterator<Node> nodes = this.transaction.findNodes(Label.label(label));
+        return EffectiveTimeIndex.scan(nodes, interval).onClose(nodes::close).map(EffectiveTimeIndex.NodeResult::new);
+    }
+
+    private Stream<EffectiveTimeIndex.RelationshipResult> seekRelationships(String type, Object intervalFrom, Object intervalTo) {
+        SEpochInterval interval = new SEpochInterval(SEpochTimePoint.of(intervalFrom), SEpochTimePoint.of(intervalTo));
+        long[] candidates = seek(this.transaction, true, type, intervalFrom, intervalTo);
+        if (candidates != null) {
+            return verify(candidates, ((InternalTransaction) this.transaction)::newRelationshipEntity, interval).map(EffectiveTimeIndex.RelationshipResult::new);
+        }
+        ResourceIterator<Relationship> relationships = this.transaction.findRelationships(RelationshipType.withName(type));
+        return EffectiveTimeIndex.scan(relationships, interval).onClose(relationships::close).map(EffectiveTimeIndex.RelationshipResult::new);
+    }
+
+    /**
+     * @param label           节点的标签
+     * @param timePointObject 时间点，为NULL时使用默认操作时间（snapshot设置的时间点或当前时刻）
+     * @return 使用intervalFrom和intervalTo的RANGE索引返回该标签下有效时间包含时间点的节点
+     */
+    @Procedure(name = "scypher.seekNodesValidAt", mode = Mode.READ)
+    @Description("Get the nodes of a label whose effective time contains a time point by seeking the range indexes on intervalFrom and intervalTo.")
+    public Stream<EffectiveTimeIndex.NodeResult> seekNodesValidAt(@Name("label") String label, @Name("timePoint") Object timePointObject) {
+        if (label != null) {
+            Object timePoint = EffectiveTimeIndex.getTimePoint(this.transaction, timePointObject);
+            return seekNodes(label, timePoint, timePoint);
+        } else {
+            throw new RuntimeException("Missing parameter");
+        }
+    }
+
+    /**
+     * @param label       节点的标签
+     * @param intervalMap 时间区间，为NULL时使用scope
+     * @return 使用intervalFrom和intervalTo的RANGE索引返回该标签下有效时间与时间区间重合的节点
+     */
+    @Procedure(name = "scypher.seekNodesValidDuring", mode = Mode.READ)
+    @Description("Get the nodes of a label whose effective time overlaps an interval by seeking the range indexes on intervalFrom and intervalTo.")
+    public Stream<EffectiveTimeIndex.NodeResult> seekNodesValidDuring(@Name("label") String label, @Name("interval") Map<String, Object> intervalMap) {
+        SInterval interval = intervalMap != null ? new SInterval(intervalMap) : GlobalVariablesManager.getContext(this.transaction).scopeInterval();
+        if (label != null && interval != null) {
+            return seekNodes(label, interval.getIntervalFrom().getSystemTimePoint(), interval.getIntervalTo().getSystemTimePoint());
+        } else {
+            throw new RuntimeException("Missing parameter");
+        }
+    }
+
+    /**
+     * @param type            边的类型
+     * @param timePointObject 时间点，为NULL时使用默认操作时间（snapshot设置的时间点或当前时刻）
+     * @return 使用intervalFrom和intervalTo的RANGE索引返回该类型的有效时间包含时间点的边
+     */
+    @Procedure(name = "scypher.seekRelationshipsValidAt", mode = Mode.READ)
+    @Description("Get the relationships of a type whose effective time contains a time point by seeking the range indexes on intervalFrom and intervalTo.")
+    public Stream<EffectiveTimeIndex.RelationshipResult> seekRelationshipsValidAt(@Name("type") String type, @Name("timePoint") Object timePointObject) {
+        if (type != null) {
+            Object timePoint = EffectiveTimeIndex.getTimePoint(this.transaction, timePointObject);
+            return seekRelationships(type, timePoint, timePoint);
+        } else {
+            throw new RuntimeException("Missing parameter");
+        }
+    }
+
+    /**
+     * @param type        边的类型
+     * @param intervalMap 时间区间，为NULL时使用scope
+     * @return 使用intervalFrom和intervalTo的RANGE索引返回该类型的有效时间与时间区间重合的边
+     */
+    @Procedure(name = "scypher.seekRelationshipsValidDuring", mode = Mode.READ)
+    @Description("Get the relationships of a type whose effective time overlaps an interval by seeking the range indexes on intervalFrom and intervalTo.")
+    public Stream<EffectiveTimeIndex.RelationshipResult> seekRelationshipsValidDuring(@Name("type") String type, @Name("interval") Map<String, Object> intervalMap) {
+        SInterval interval = intervalMap != null ? new SInterval(intervalMap) : GlobalVariablesManager.getContext(this.transaction).scopeInterval();
+        if (type != null && interval != null) {
+            return seekRelationships(type, interval.getIntervalFrom().getSystemTimePoint(), interval.getIntervalTo().getSystemTimePoint());
+        } else {
+            throw new RuntimeException("Missing parameter");
+        }
+    }
+
+    public static class IndexResult {
+        public String entityType;
+        public String name;
+        public String property;
+        public boolean created;
+
+        public IndexResult(String entityType, String name, String property, boolean created) {
+            this.entityType = entityType;
+            this.name = name;
+            this.property = property;
+            this.created = created;
+        }
+    }
+
+    /**
+     * @return 返回索引定义中是否已有该属性上的RANGE索引
+     */
+    private static boolean hasRangeIndex(Iterable<IndexDefinition> indexes, String property) {
+        for (IndexDefinition index : indexes) {
+            if (index.getIndexType() == IndexType.RANGE) {
+                Iterator<String> propertyKeys = index.getPropertyKeys().iterator();
+                if (propertyKeys.hasNext() && propertyKeys.next().equals(property) && !propertyKeys.hasNext()) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 为当前使用的每个标签和边类型在intervalFrom和intervalTo上创建RANGE索引，索引在后台填充，可用db.awaitIndexes()等待索引上线
+     *
+     * @return 返回每个标签和边类型的每个属性上的索引，created表示是否为新创建的索引
+     */
+    @Procedure(name = "scypher.createTemporalIndexes", mode = Mode.SCHEMA)
+    @Description("Create the range indexes on intervalFrom and intervalTo for every label and relationship type in use.")
+    public Stream<IndexResult> createTemporalIndexes() {
+        List<IndexResult> results = new ArrayList<>();
+        for (Label label : this.transaction.getAllLabelsInUse()) {
+            for (String property : List.of(INTERVAL_FROM, INTERVAL_TO)) {
+                boolean created = !hasRangeIndex(this.transaction.schema().getIndexes(label), property);
+                if (created) {
+                    this.transaction.schema().indexFor(label).on(property).withIndexType(IndexType.RANGE).create();
+                }
+                results.add(new IndexResult("NODE", label.name(), property, created));
+            }
+        }
+        for (RelationshipType relationshipType : this.transaction.getAllRelationshipTypesInUse()) {
+            for (String property : List.of(INTERVAL_FROM, INTERVAL_TO)) {
+                boolean created = !hasRangeIndex(this.transaction.schema().getIndexes(relationshipType), property);
+                if (created) {
+                    this.transaction.schema().indexFor(relationshipType).on(property).withIndexType(IndexType.RANGE).create();
+                }
+                results.add(new IndexResult("RELATIONSHIP", relationshipType.name(), property, created));
+            }
+        }
+        return results.stream();
+    }
+}
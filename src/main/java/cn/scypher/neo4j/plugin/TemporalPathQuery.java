@@ -1,5 +1,7 @@
 package cn.scypher.neo4j.plugin;
 
+import cn.scypher.neo4j.plugin.datetime.SEpochInterval;
+import cn.scypher.neo4j.plugin.datetime.SEpochTimePoint;
 import cn.scypher.neo4j.plugin.datetime.SInterval;
 import cn.scypher.neo4j.plugin.datetime.STimePoint;
 import org.neo4j.graphalgo.impl.util.PathImpl;
@@ -14,6 +16,8 @@ import java.util.stream.Stream;
 import java.util.stream.StreamSupport;
 
 public class TemporalPathQuery {
+    @Context
+    public Transaction transaction;
 
     public static class TemporalPath {
         public Path path;
@@ -24,26 +28,64 @@ public class TemporalPathQuery {
     }
 
     public interface ContinuousPathAlgo {
-        boolean check(SInterval interval, SInterval otherInterval);
+        boolean check(SEpochInterval interval, SEpochInterval otherInterval);
 
-        SInterval update(SInterval interval, SInterval otherInterval);
+        SEpochInterval update(SEpochInterval interval, SEpochInterval otherInterval);
+    }
+
+    /**
+     * @param relationship          关系
+     * @param relationshipTimePoint 路径的有效时间（时间点）
+     * @param relationshipInterval  路径的有效时间（时间区间）
+     * @param snapshotView          路径的有效时间来自snapshot时的快照视图，可为null
+     * @return 关系的有效时间是否满足路径的有效时间限制
+     */
+    private static boolean limitEffectiveTime(Relationship relationship, STimePoint relationshipTimePoint, SInterval relationshipInterval, SnapshotViewCache.SnapshotView snapshotView) {
+        if (relationshipTimePoint != null && snapshotView != null) {
+            int state = snapshotView.lookup(relationship);
+            if (state != SnapshotViewCache.SnapshotView.UNKNOWN) {
+                return state == SnapshotViewCache.SnapshotView.VALID;
+            }
+        }
+        if (relationshipInterval != null | relationshipTimePoint != null) {
+            SEpochTimePoint intervalFrom = SEpochTimePoint.of(relationship.getProperty("intervalFrom"));
+            SEpochTimePoint intervalTo = SEpochTimePoint.of(relationship.getProperty("intervalTo"));
+            if (relationshipInterval != null) {
+                return SInterval.overlaps(intervalFrom, intervalTo, relationshipInterval);
+            } else {
+                return SInterval.contains(intervalFrom, intervalTo, relationshipTimePoint.getEpochTimePoint());
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @param relationshipTimePoint 路径的有效时间（时间点）
+     * @return 路径的有效时间为snapshot设置的时间点时，返回该时间点的快照视图，否则返回null
+     */
+    private SnapshotViewCache.SnapshotView getSnapshotView(STimePoint relationshipTimePoint) {
+        if (relationshipTimePoint != null && relationshipTimePoint == GlobalVariablesManager.getContext(this.transaction).snapshotTimePoint()) {
+            return SnapshotViewCache.get(this.transaction, relationshipTimePoint.getEpochTimePoint());
+        }
+        return null;
     }
 
     public List<TemporalPath> getDirectedContinuousPath(Node startNode, Node endNode, List<String> labels, Long minLength, Long maxLength,
                                                         STimePoint relationshipTimePoint, SInterval relationshipInterval, Map<String, Object> properties, ContinuousPathAlgo continuousPathAlgo) {
         List<TemporalPath> continuousPaths = new ArrayList<>();
+        SnapshotViewCache.SnapshotView snapshotView = getSnapshotView(relationshipTimePoint);
         String timePointType = GlobalVariablesManager.getTimePointType();
         String timezone = GlobalVariablesManager.getTimezone();
-        SInterval initialInterval = new SInterval(STimePoint.min(timePointType, timezone), STimePoint.max(timePointType, timezone));
+        SEpochInterval initialInterval = new SEpochInterval(STimePoint.min(timePointType, timezone).getEpochTimePoint(), STimePoint.max(timePointType, timezone).getEpochTimePoint());
         List<Path> pathQueue = new ArrayList<>();
         pathQueue.add(PathImpl.singular(startNode));
-        List<SInterval> pathIntervals = new ArrayList<>();
+        List<SEpochInterval> pathIntervals = new ArrayList<>();
         pathIntervals.add(initialInterval);
         while (pathQueue.size() > 0) {
             Path currentPath = pathQueue.remove(pathQueue.size() - 1);
             List<String> nodes_id = new ArrayList<>();
             currentPath.nodes().forEach(node -> nodes_id.add(node.getElementId()));
-            SInterval pathInterval = pathIntervals.remove(pathIntervals.size() - 1);
+            SEpochInterval pathInterval = pathIntervals.remove(pathIntervals.size() - 1);
             Node currentNode = currentPath.endNode();
             // 限制边的方向、标签、有效时间和属性
             List<Relationship> relationships = currentNode.getRelationships(Direction.OUTGOING).stream().filter(relationship -> {
@@ -52,15 +94,7 @@ public class TemporalPathQuery {
                     return labels.size() == 0 | labels.contains(type);
                 }
                 return false;
-            }).filter(relationship -> {
-                SInterval relationshipEffectiveTime = new SInterval(new STimePoint(relationship.getProperty("intervalFrom")), new STimePoint(relationship.getProperty("intervalTo")));
-                if (relationshipInterval != null) {
-                    return relationshipEffectiveTime.overlaps(relationshipInterval);
-                } else if (relationshipTimePoint != null) {
-                    return relationshipEffectiveTime.contains(relationshipTimePoint);
-                }
-                return true;
-            }).filter(relationship -> {
+            }).filter(relationship -> limitEffectiveTime(relationship, relationshipTimePoint, relationshipInterval, snapshotView)).filter(relationship -> {
                 for (Map.Entry<String, Object> entry : properties.entrySet()) {
                     if (!relationship.hasProperty(entry.getKey())) {
                         return false;
@@ -73,7 +107,7 @@ public class TemporalPathQuery {
             for (Relationship relationship : relationships) {
                 // 避免陷入死循环
                 if (!nodes_id.contains(relationship.getEndNode().getElementId())) {
-                    SInterval relationshipEffectiveTime = new SInterval(new STimePoint(relationship.getProperty("intervalFrom")), new STimePoint(relationship.getProperty("intervalTo")));
+                    SEpochInterval relationshipEffectiveTime = new SEpochInterval(SEpochTimePoint.of(relationship.getProperty("intervalFrom")), SEpochTimePoint.of(relationship.getProperty("intervalTo")));
                     // 判断路径是否满足时序条件
                     if (continuousPathAlgo.check(pathInterval, relationshipEffectiveTime)) {
                         Path path = new ExtendedPath(currentPath, relationship);
@@ -96,6 +130,7 @@ public class TemporalPathQuery {
     public List<TemporalPath> getDirectedSequentialPath(Node startNode, Node endNode, List<String> labels, Long minLength, Long maxLength,
                                                         STimePoint relationshipTimePoint, SInterval relationshipInterval, Map<String, Object> properties, String sPathType) {
         List<TemporalPath> sequentialPaths = new ArrayList<>();
+        SnapshotViewCache.SnapshotView snapshotView = getSnapshotView(relationshipTimePoint);
         List<Path> pathQueue = new ArrayList<>();
         pathQueue.add(PathImpl.singular(startNode));
         // 求最早到达路径和最迟出发路径
@@ -123,15 +158,7 @@ public class TemporalPathQuery {
                     return labels.size() == 0 | labels.contains(type);
                 }
                 return false;
-            }).filter(relationship -> {
-                SInterval relationshipEffectiveTime = new SInterval(new STimePoint(relationship.getProperty("intervalFrom")), new STimePoint(relationship.getProperty("intervalTo")));
-                if (relationshipInterval != null) {
-                    return relationshipEffectiveTime.overlaps(relationshipInterval);
-                } else if (relationshipTimePoint != null) {
-                    return relationshipEffectiveTime.contains(relationshipTimePoint);
-                }
-                return true;
-            }).filter(relationship -> {
+            }).filter(relationship -> limitEffectiveTime(relationship, relationshipTimePoint, relationshipInterval, snapshotView)).filter(relationship -> {
                 for (Map.Entry<String, Object> entry : properties.entrySet()) {
                     if (!relationship.hasProperty(entry.getKey())) {
                         return false;
@@ -147,7 +174,7 @@ public class TemporalPathQuery {
                 if (!nodes_id.contains(relationship.getEndNode().getElementId())) {
                     SInterval relationshipEffectiveTime = new SInterval(new STimePoint(relationship.getProperty("intervalFrom")), new STimePoint(relationship.getProperty("intervalTo")));
                     // 判断路径是否为顺序有效路径
-                    if (lastRelationship == null | (lastRelationship != null && new STimePoint(lastRelationship.getProperty("intervalTo")).isNotAfter(relationshipEffectiveTime.getIntervalFrom()))) {
+                    if (lastRelationship == null | (lastRelationship != null && SEpochTimePoint.of(lastRelationship.getProperty("intervalTo")).isNotAfter(relationshipEffectiveTime.getIntervalFrom().getEpochTimePoint()))) {
                         Path path = new ExtendedPath(currentPath, relationship);
                         if (path.length() >= minLength && path.length() <= maxLength) {
                             if (relationship.getEndNode().equals(endNode)) {
@@ -205,8 +232,7 @@ public class TemporalPathQuery {
                                 }
                                 case "L" -> {
                                     Relationship firstRelationship = path.relationships().iterator().next();
-                                    STimePoint firstRelationshipStartTime = new STimePoint(firstRelationship.getProperty("intervalFrom"));
-                                    if (firstRelationshipStartTime.isNotBefore(timePoint)) {
+                                    if (SEpochTimePoint.of(firstRelationship.getProperty("intervalFrom")).isNotBefore(timePoint.getEpochTimePoint())) {
                                         pathQueue.add(path);
                                     }
                                 }
@@ -271,8 +297,9 @@ public class TemporalPathQuery {
                 relationshipTimePoint = new STimePoint(pathInfo.get("effectiveTime"));
             }
         } else {
-            STimePoint snapshotTimePoint = GlobalVariablesManager.getSnapshotTimePoint();
-            SInterval scopeInterval = GlobalVariablesManager.getScopeInterval();
+            STemporalContext context = GlobalVariablesManager.getContext(this.transaction);
+            STimePoint snapshotTimePoint = context.snapshotTimePoint();
+            SInterval scopeInterval = context.scopeInterval();
             if (scopeInterval != null) {
                 relationshipTimePoint = null;
                 relationshipInterval = scopeInterval;
@@ -318,12 +345,12 @@ public class TemporalPathQuery {
         if (startNode != null && endNode != null) {
             return getTemporalPath(startNode, endNode, isUndirected, pathInfo, new ContinuousPathAlgo() {
                 @Override
-                public boolean check(SInterval interval, SInterval otherInterval) {
+                public boolean check(SEpochInterval interval, SEpochInterval otherInterval) {
                     return interval.overlaps(otherInterval);
                 }
 
                 @Override
-                public SInterval update(SInterval interval, SInterval otherInterval) {
+                public SEpochInterval update(SEpochInterval interval, SEpochInterval otherInterval) {
                     return interval.intersection(otherInterval);
                 }
             }, null).stream();
@@ -345,12 +372,12 @@ public class TemporalPathQuery {
         if (startNode != null && endNode != null) {
             return getTemporalPath(startNode, endNode, isUndirected, pathInfo, new ContinuousPathAlgo() {
                 @Override
-                public boolean check(SInterval interval, SInterval otherInterval) {
+                public boolean check(SEpochInterval interval, SEpochInterval otherInterval) {
                     return interval.overlaps(otherInterval);
                 }
 
                 @Override
-                public SInterval update(SInterval interval, SInterval otherInterval) {
+                public SEpochInterval update(SEpochInterval interval, SEpochInterval otherInterval) {
                     return otherInterval;
                 }
             }, null).stream();
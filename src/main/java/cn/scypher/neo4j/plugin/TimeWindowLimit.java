@@ -5,65 +5,16 @@ import cn.scypher.neo4j.plugin.datetime.STimePoint;
 import org.neo4j.graphdb.*;
 import org.neo4j.procedure.*;
 
-import java.time.*;
 import java.util.List;
 import java.util.Map;
+import java.util.stream.Stream;
 
 public class TimeWindowLimit {
+    @Context
+    public Transaction transaction;
 
     /**
-     * @param elementEffectiveTime 节点/边的有效时间
-     * @param timeWindow           在图模式中指定的时间窗口
-     * @param clauseTimePoint      at time指定的时间点
-     * @param clauseInterval       between指定的时间区间
-     * @param snapshotTimePoint    snapshot指定的时间点
-     * @param scopeInterval        scope指定的时间区间
-     * @return
-     */
-    public boolean limitEffectiveTime(SInterval elementEffectiveTime, Object timeWindow, STimePoint clauseTimePoint, SInterval clauseInterval, STimePoint snapshotTimePoint, SInterval scopeInterval) {
-        // @T指定的时间区间
-        STimePoint elementTimePoint = null;
-        SInterval elementInterval = null;
-        if (timeWindow != null) {
-            if (timeWindow instanceof LocalDate | timeWindow instanceof OffsetTime | timeWindow instanceof LocalTime | timeWindow instanceof ZonedDateTime | timeWindow instanceof LocalDateTime) {
-                elementTimePoint = new STimePoint(timeWindow);
-            } else if (timeWindow instanceof Map) {
-                elementInterval = new SInterval((Map<String, Object>) timeWindow);
-            } else {
-                throw new RuntimeException("Type mismatch: expected Date, Time, LocalTime, LocalDateTime, DateTime or Interval but was " + timeWindow.getClass().getSimpleName());
-            }
-        }
-        if (elementTimePoint != null | elementInterval != null) {
-            // 优先受@T指定的时间区间限制
-            if (elementTimePoint != null && elementEffectiveTime.contains(elementTimePoint)) {
-                return true;
-            } else if (elementInterval != null && elementEffectiveTime.overlaps(elementInterval)) {
-                return true;
-            }
-            return false;
-        } else if (clauseTimePoint != null | clauseInterval != null) {
-            // 次优先受at time/between子句指定的时间区间限制
-            if (clauseTimePoint != null && elementEffectiveTime.contains(clauseTimePoint)) {
-                return true;
-            } else if (clauseInterval != null && elementEffectiveTime.overlaps(clauseInterval)) {
-                return true;
-            }
-            return false;
-        } else if (snapshotTimePoint != null | scopeInterval != null) {
-            // 最后受snapshot/scope语句指定的时间区间限制
-            if (scopeInterval != null && elementEffectiveTime.overlaps(scopeInterval)) {
-                // 时序图查询语法优先受SCOPE限制
-                return true;
-            } else if (snapshotTimePoint != null && elementEffectiveTime.contains(snapshotTimePoint)) {
-                return true;
-            }
-            return false;
-        }
-        return true;
-    }
-
-    /**
-     * 用户不可用，用于在时态图查询语句中限制节点和关系的有效时间
+     * 用户不可用，用于在时态图查询语句中限制节点和关系的有效时间。时间窗口编译后按值缓存，逐行调用时不再重复解析
      *
      * @param elements   节点/关系及其有效时间的限制
      * @param timeWindow at time/between子句指定的为时间点/时间区间
@@ -73,40 +24,18 @@ public class TimeWindowLimit {
     @Description("Limit the effective time of nodes and relationships.")
     public boolean limitEffectiveTime(@Name("elements") List<List<Object>> elements, @Name("timeWindow") Object timeWindow) {
         if (elements != null && !elements.isEmpty()) {
-            // snapshot/scope语句指定的时间区间
-            STimePoint snapshotTimePoint = GlobalVariablesManager.getSnapshotTimePoint();
-            SInterval scopeInterval = GlobalVariablesManager.getScopeInterval();
             // at time/between子句指定的时间区间
-            STimePoint clauseTimePoint = null;
-            SInterval clauseInterval = null;
-            if (timeWindow != null) {
-                if (timeWindow instanceof LocalDate | timeWindow instanceof OffsetTime | timeWindow instanceof LocalTime | timeWindow instanceof ZonedDateTime | timeWindow instanceof LocalDateTime) {
-                    clauseTimePoint = new STimePoint(timeWindow);
-                } else if (timeWindow instanceof Map) {
-                    clauseInterval = new SInterval((Map<String, Object>) timeWindow);
-                } else {
-                    throw new RuntimeException("Type mismatch: expected Date, Time, LocalTime, LocalDateTime, DateTime or Interval but was " + timeWindow.getClass().getSimpleName());
-                }
-            }
+            CompiledTimeWindow clauseTimeWindow = timeWindow != null ? CompiledTimeWindow.of(timeWindow) : null;
             for (List<Object> element : elements) {
-                // 节点或边的有效时间
-                SInterval elementEffectiveTime;
-                if (element.size() >= 1 && element.get(0) instanceof Node) {
-                    Node node = (Node) element.get(0);
-                    elementEffectiveTime = new SInterval(new STimePoint(node.getProperty("intervalFrom")), new STimePoint(node.getProperty("intervalTo")));
-                    if (!limitEffectiveTime(elementEffectiveTime, element.get(1), clauseTimePoint, clauseInterval, snapshotTimePoint, scopeInterval)) {
-                        return false;
-                    }
-                } else if (element.size() >= 1 && element.get(0) instanceof Relationship) {
-                    Relationship relationship = (Relationship) element.get(0);
-                    elementEffectiveTime = new SInterval(new STimePoint(relationship.getProperty("intervalFrom")), new STimePoint(relationship.getProperty("intervalTo")));
-                    if (!limitEffectiveTime(elementEffectiveTime, element.get(1), clauseTimePoint, clauseInterval, snapshotTimePoint, scopeInterval)) {
+                // 节点或边的有效时间，@T优先于at time/between，其次为snapshot/scope
+                if (element.size() >= 1 && (element.get(0) instanceof Node | element.get(0) instanceof Relationship)) {
+                    if (!CompiledTimeWindow.of(element.get(1), clauseTimeWindow, this.transaction).test((Entity) element.get(0))) {
                         return false;
                     }
                 } else if (element.size() >= 1 && element.get(0) instanceof List) {
+                    CompiledTimeWindow elementTimeWindow = CompiledTimeWindow.of(element.get(1), clauseTimeWindow, this.transaction);
                     for (Relationship relationship : (List<Relationship>) element.get(0)) {
-                        elementEffectiveTime = new SInterval(new STimePoint(relationship.getProperty("intervalFrom")), new STimePoint(relationship.getProperty("intervalTo")));
-                        if (!limitEffectiveTime(elementEffectiveTime, element.get(1), clauseTimePoint, clauseInterval, snapshotTimePoint, scopeInterval)) {
+                        if (!elementTimeWindow.test(relationship)) {
                             return false;
                         }
                     }
@@ -121,7 +50,82 @@ public class TimeWindowLimit {
     }
 
     /**
-     * @param timePointObject snapshot设置的时间点
+     * @param element          节点/边/边的列表（变长路径的边）
+     * @param timeWindow       编译后的时间窗口
+     * @return 判定节点/边的有效时间是否满足限制，边的列表需每条边都满足限制
+     */
+    private static boolean isValid(Object element, CompiledTimeWindow timeWindow) {
+        if (element instanceof Node | element instanceof Relationship) {
+            return timeWindow.test((Entity) element);
+        } else if (element instanceof List) {
+            for (Object relationship : (List<?>) element) {
+                if (!(relationship instanceof Relationship)) {
+                    throw new RuntimeException("The element to limit must be a node or relationship");
+                } else if (!timeWindow.test((Relationship) relationship)) {
+                    return false;
+                }
+            }
+            return true;
+        } else {
+            throw new RuntimeException("The element to limit must be a node or relationship");
+        }
+    }
+
+    /**
+     * @param elements         节点/边/边的列表
+     * @param timeWindow       @T指定的时间点/时间区间
+     * @param clauseTimeWindow at time/between子句指定的时间点/时间区间
+     * @return 按@T、at time/between、snapshot/scope的优先级确定时间窗口，返回有效时间满足限制的元素
+     */
+    private Stream<Object> validElements(List<Object> elements, Object timeWindow, Object clauseTimeWindow) {
+        CompiledTimeWindow compiled = CompiledTimeWindow.of(timeWindow, clauseTimeWindow != null ? CompiledTimeWindow.of(clauseTimeWindow) : null, this.transaction);
+        return elements.stream().filter(element -> element != null && isValid(element, compiled));
+    }
+
+    /**
+     * @param elements         节点/边/边的列表（变长路径的边），NULL元素被丢弃
+     * @param timeWindow       @T指定的时间点/时间区间
+     * @param clauseTimeWindow at time/between子句指定的时间点/时间区间，可省略
+     * @return 返回有效时间满足限制的元素，保持原有顺序。边的列表需每条边都满足限制
+     */
+    @UserFunction("scypher.filterValid")
+    @Description("Filter a list of nodes, relationships or relationship lists by their effective time.")
+    public List<Object> filterValid(@Name("elements") List<Object> elements, @Name("timeWindow") Object timeWindow,
+                                    @Name(value = "clauseTimeWindow", defaultValue = "null") Object clauseTimeWindow) {
+        if (elements != null) {
+            return validElements(elements, timeWindow, clauseTimeWindow).toList();
+        } else {
+            throw new RuntimeException("Missing parameter");
+        }
+    }
+
+    public static class ElementResult {
+        public Object element;
+
+        public ElementResult(Object element) {
+            this.element = element;
+        }
+    }
+
+    /**
+     * @param elements         节点/边/边的列表（变长路径的边），NULL元素被丢弃
+     * @param timeWindow       @T指定的时间点/时间区间
+     * @param clauseTimeWindow at time/between子句指定的时间点/时间区间，可省略
+     * @return 逐个返回有效时间满足限制的元素，保持原有顺序
+     */
+    @Procedure(name = "scypher.streamValid", mode = Mode.READ)
+    @Description("Stream the nodes, relationships or relationship lists of a list whose effective time satisfies the time window.")
+    public Stream<ElementResult> streamValid(@Name("elements") List<Object> elements, @Name("timeWindow") Object timeWindow,
+                                             @Name(value = "clauseTimeWindow", defaultValue = "null") Object clauseTimeWindow) {
+        if (elements != null) {
+            return validElements(elements, timeWindow, clauseTimeWindow).map(ElementResult::new);
+        } else {
+            throw new RuntimeException("Missing parameter");
+        }
+    }
+
+    /**
+     * @param timePointObject snapshot设置的时间点，只对当前显式事务有效
      */
     @Procedure(name = "scypher.snapshot", mode = Mode.READ)
     @Description("Do SNAPSHOT operation.")
@@ -130,17 +134,17 @@ public class TimeWindowLimit {
             STimePoint timePoint = new STimePoint(timePointObject);
             String timePointType = GlobalVariablesManager.getTimePointType();
             if (timePointType.equals(timePoint.getTimePointType())) {
-                GlobalVariablesManager.setSnapshotTimePoint(timePoint);
+                GlobalVariablesManager.setSnapshotTimePoint(this.transaction, timePoint);
             } else {
                 throw new RuntimeException("The time point type can't match the system. The time point type of database is " + timePointType);
             }
         } else {
-            GlobalVariablesManager.setSnapshotTimePoint(null);
+            GlobalVariablesManager.setSnapshotTimePoint(this.transaction, null);
         }
     }
 
     /**
-     * @param intervalMap scope设置的时间区间
+     * @param intervalMap scope设置的时间区间，只对当前显式事务有效
      */
     @Procedure(name = "scypher.scope", mode = Mode.READ)
     @Description("Do SCOPE operation.")
@@ -149,12 +153,12 @@ public class TimeWindowLimit {
             SInterval interval = new SInterval(intervalMap);
             String timePointType = GlobalVariablesManager.getTimePointType();
             if (timePointType.equals(interval.getTimePointType())) {
-                GlobalVariablesManager.setScopeInterval(interval);
+                GlobalVariablesManager.setScopeInterval(this.transaction, interval);
             } else {
                 throw new RuntimeException("The time point type of the interval can't match the system. The time point type of database is " + timePointType);
             }
         } else {
-            GlobalVariablesManager.setScopeInterval(null);
+            GlobalVariablesManager.setScopeInterval(this.transaction, null);
         }
     }
 
@@ -164,13 +168,12 @@ public class TimeWindowLimit {
     @UserFunction("scypher.operateTime")
     @Description("Get the default operate time.")
     public Object operateTime() {
-        if (GlobalVariablesManager.getSnapshotTimePoint() == null) {
+        STimePoint snapshotTimePoint = GlobalVariablesManager.getContext(this.transaction).snapshotTimePoint();
+        if (snapshotTimePoint == null) {
             // 没有设置过默认操作时间，返回timePoint.current()
-            String timePointType = GlobalVariablesManager.getTimePointType();
-            String timezone = GlobalVariablesManager.getTimezone();
-            return (new STimePoint(timePointType, timezone)).getSystemTimePoint();
+            return TransactionClock.getCurrentTimePoint(this.transaction).getSystemTimePoint();
         } else {
-            return GlobalVariablesManager.getSnapshotTimePoint().getSystemTimePoint();
+            return snapshotTimePoint.getSystemTimePoint();
         }
     }
 }
\ No newline at end of file
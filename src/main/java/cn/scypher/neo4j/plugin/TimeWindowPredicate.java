@@ -0,0 +1,174 @@
+package cn.scypher.neo4j.plugin;
+
+import cn.scypher.neo4j.plugin.datetime.SEpochInterval;
+import cn.scypher.neo4j.plugin.datetime.SEpochTimePoint;
+import cn.scypher.neo4j.plugin.datetime.SInterval;
+import org.neo4j.graphdb.Node;
+
+import java.time.*;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * 值节点的有效时间限制，时间窗口和snapshot/scope只解析一次，之后对每个值节点只比较纪元编码的时间点。
+ * 与ReadingQuery.getValueNodes的语义相同：指定时间窗口时，时间点需被有效时间包含、时间区间需与有效时间重合；
+ * 未指定时间窗口时，有效时间需与scope重合或包含snapshot；都未指定时，不限制有效时间。
+ * 解析后的时间点和时间区间相同的两个限制相等，可以作为归一化的时间窗口用于缓存的键。
+ */
+final class TimeWindowPredicate {
+    // 不限制有效时间
+    static final TimeWindowPredicate UNBOUNDED = new TimeWindowPredicate(null, null, null, null);
+
+    private final SEpochTimePoint timePoint;
+    private final SEpochInterval interval;
+    private final SEpochTimePoint snapshotTimePoint;
+    private final SEpochInterval scopeInterval;
+
+    private TimeWindowPredicate(SEpochTimePoint timePoint, SEpochInterval interval, SEpochTimePoint snapshotTimePoint, SEpochInterval scopeInterval) {
+        this.timePoint = timePoint;
+        this.interval = interval;
+        this.snapshotTimePoint = snapshotTimePoint;
+        this.scopeInterval = scopeInterval;
+    }
+
+    /**
+     * @param timeWindow 时间点/时间区间，为null时使用snapshot/scope
+     * @param context    当前事务的时态上下文
+     * @return 返回有效时间限制
+     */
+    static TimeWindowPredicate of(Object timeWindow, STemporalContext context) {
+        if (timeWindow != null) {
+            if (timeWindow instanceof LocalDate | timeWindow instanceof OffsetTime | timeWindow instanceof LocalTime | timeWindow instanceof ZonedDateTime | timeWindow instanceof LocalDateTime) {
+                return new TimeWindowPredicate(SEpochTimePoint.of(timeWindow), null, null, null);
+            } else if (timeWindow instanceof Map) {
+                return new TimeWindowPredicate(null, new SEpochInterval(new SInterval((Map<String, Object>) timeWindow)), null, null);
+            } else {
+                throw new RuntimeException("Type mismatch: expected Date, Time, LocalTime, LocalDateTime, DateTime or Interval but was " + timeWindow.getClass().getSimpleName());
+            }
+        }
+        return new TimeWindowPredicate(null, null,
+                context.snapshotTimePoint() != null ? context.snapshotTimePoint().getEpochTimePoint() : null,
+                context.scopeInterval() != null ? new SEpochInterval(context.scopeInterval()) : null);
+    }
+
+    /**
+     * @return 判定是否不限制有效时间
+     */
+    boolean isUnbounded() {
+        return this.timePoint == null && this.interval == null && this.snapshotTimePoint == null && this.scopeInterval == null;
+    }
+
+    /**
+     * @return 返回满足限制的有效时间的开始时间的上界，开始时间晚于它的值节点都不满足限制。若没有上界，返回null
+     */
+    SEpochTimePoint getUpperBound() {
+        if (this.timePoint != null) {
+            return this.timePoint;
+        } else if (this.interval != null) {
+            return new SEpochTimePoint(this.interval.getType(), this.interval.getToEpoch(), this.interval.getToNano());
+        } else if (this.snapshotTimePoint == null || this.scopeInterval == null) {
+            return this.snapshotTimePoint != null ? this.snapshotTimePoint
+                    : this.scopeInterval != null ? new SEpochTimePoint(this.scopeInterval.getType(), this.scopeInterval.getToEpoch(), this.scopeInterval.getToNano()) : null;
+        } else {
+            SEpochTimePoint scopeTo = new SEpochTimePoint(this.scopeInterval.getType(), this.scopeInterval.getToEpoch(), this.scopeInterval.getToNano());
+            return SEpochTimePoint.compare(scopeTo.getEpoch(), scopeTo.getNano(), this.snapshotTimePoint.getEpoch(), this.snapshotTimePoint.getNano()) >= 0 ? scopeTo : this.snapshotTimePoint;
+        }
+    }
+
+    /**
+     * @return 判定是否为时间窗口NOW，即只保留当前有效的值节点
+     */
+    boolean isNow() {
+        return this.timePoint != null && this.timePoint.getEpoch() == SEpochTimePoint.NOW_EPOCH;
+    }
+
+    /**
+     * @return 返回时间窗口的时间点，若时间窗口不是时间点，返回null
+     */
+    SEpochTimePoint getTimePoint() {
+        return this.timePoint;
+    }
+
+    /**
+     * @param intervalFrom 有效时间的开始时间
+     * @param intervalTo   有效时间的结束时间
+     * @return 判定有效时间是否满足限制
+     */
+    boolean test(SEpochTimePoint intervalFrom, SEpochTimePoint intervalTo) {
+        if (this.timePoint != null) {
+            return contains(intervalFrom, intervalTo, this.timePoint);
+        } else if (this.interval != null) {
+            return overlaps(intervalFrom, intervalTo, this.interval);
+        } else if (this.snapshotTimePoint == null && this.scopeInterval == null) {
+            return true;
+        } else {
+            // 时序查询子句和delete子句均优先使用scope定义的有效时间
+            return (this.scopeInterval != null && overlaps(intervalFrom, intervalTo, this.scopeInterval))
+                    || (this.snapshotTimePoint != null && contains(intervalFrom, intervalTo, this.snapshotTimePoint));
+        }
+    }
+
+    /**
+     * @param valueNode 值节点
+     * @return 判定值节点的有效时间是否满足限制
+     */
+    boolean test(Node valueNode) {
+        return isUnbounded() || test(SEpochTimePoint.of(valueNode.getProperty("intervalFrom")), SEpochTimePoint.of(valueNode.getProperty("intervalTo")));
+    }
+
+    /**
+     * @param timeline 属性节点的时间线
+     * @param matches  标记有效时间满足限制的值节点
+     */
+    void mark(ValueNodeTimeline timeline, boolean[] matches) {
+        if (this.timePoint != null) {
+            timeline.contains(this.timePoint, matches);
+        } else if (this.interval != null) {
+            timeline.overlaps(this.interval, matches);
+        } else if (this.snapshotTimePoint == null && this.scopeInterval == null) {
+            Arrays.fill(matches, true);
+        } else {
+            if (this.scopeInterval != null) {
+                timeline.overlaps(this.scopeInterval, matches);
+            }
+            if (this.snapshotTimePoint != null) {
+                timeline.contains(this.snapshotTimePoint, matches);
+            }
+        }
+    }
+
+    @Override
+    public boolean equals(Object object) {
+        if (this == object) {
+            return true;
+        }
+        if (object instanceof TimeWindowPredicate predicate) {
+            return Objects.equals(this.timePoint, predicate.timePoint) && Objects.equals(this.interval, predicate.interval)
+                    && Objects.equals(this.snapshotTimePoint, predicate.snapshotTimePoint) && Objects.equals(this.scopeInterval, predicate.scopeInterval);
+        }
+        return false;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(this.timePoint, this.interval, this.snapshotTimePoint, this.scopeInterval);
+    }
+
+    private static boolean contains(SEpochTimePoint intervalFrom, SEpochTimePoint intervalTo, SEpochTimePoint timePoint) {
+        if (intervalFrom.getType() == timePoint.getType()) {
+            return SEpochInterval.contains(intervalFrom.getEpoch(), intervalFrom.getNano(), intervalTo.getEpoch(), intervalTo.getNano(), timePoint.getEpoch(), timePoint.getNano());
+        } else {
+            throw new RuntimeException("Only the interval can only contain the time point of the same type");
+        }
+    }
+
+    private static boolean overlaps(SEpochTimePoint intervalFrom, SEpochTimePoint intervalTo, SEpochInterval interval) {
+        if (intervalFrom.getType() == interval.getType()) {
+            return SEpochInterval.overlaps(intervalFrom.getEpoch(), intervalFrom.getNano(), intervalTo.getEpoch(), intervalTo.getNano(),
+                    interval.getFromEpoch(), interval.getFromNano(), interval.getToEpoch(), interval.getToNano());
+        } else {
+            throw new RuntimeException("Only the intervals of the same time point type can perform overlaps operations");
+        }
+    }
+}
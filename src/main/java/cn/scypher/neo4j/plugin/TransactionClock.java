@@ -0,0 +1,67 @@
+package cn.scypher.neo4j.plugin;
+
+import cn.scypher.neo4j.plugin.datetime.STimePoint;
+import org.neo4j.graphdb.Transaction;
+import org.neo4j.kernel.impl.coreapi.InternalTransaction;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.util.Objects;
+
+/**
+ * 事务级时钟：同一事务中的所有scypher函数和过程使用同一个当前时刻。
+ * 默认使用Neo4j的事务时钟（在事务开始时固定），测试时可以通过setClock替换为确定的时钟。
+ */
+public class TransactionClock {
+    private static volatile Clock overrideClock = null;
+
+    // 最近一次计算的当前时间点，同一事务中的重复调用直接复用
+    private static volatile CurrentTimePoint lastCurrentTimePoint = null;
+
+    private record CurrentTimePoint(Instant instant, String timePointType, String timezone, STimePoint timePoint) {
+    }
+
+    /**
+     * @param clock 替换事务时钟的时钟，为null时恢复为Neo4j的事务时钟
+     */
+    public static void setClock(Clock clock) {
+        overrideClock = clock;
+        lastCurrentTimePoint = null;
+    }
+
+    /**
+     * @param transaction 当前事务，为null时使用系统时钟
+     * @return 返回当前事务的当前时刻
+     */
+    public static Instant getInstant(Transaction transaction) {
+        Clock clock = overrideClock;
+        if (clock == null) {
+            if (transaction instanceof InternalTransaction internalTransaction) {
+                clock = internalTransaction.kernelTransaction().clocks().transactionClock();
+            } else {
+                clock = Clock.systemUTC();
+            }
+        }
+        return clock.instant();
+    }
+
+    /**
+     * @param transaction 当前事务，为null时使用系统时钟
+     * @return 返回当前时区和当前时间点类型下的当前事务的当前时刻
+     */
+    public static STimePoint getCurrentTimePoint(Transaction transaction) {
+        Instant instant = getInstant(transaction);
+        String timePointType = GlobalVariablesManager.getTimePointType();
+        String timezone = GlobalVariablesManager.getTimezone();
+        CurrentTimePoint currentTimePoint = lastCurrentTimePoint;
+        if (currentTimePoint != null && currentTimePoint.instant().equals(instant) && currentTimePoint.timePointType().equals(timePointType)
+                && Objects.equals(currentTimePoint.timezone(), timezone)) {
+            return currentTimePoint.timePoint();
+        }
+        // date、localtime和localdatetime沿用系统默认时区
+        STimePoint timePoint = new STimePoint(timePointType, timezone, Clock.fixed(instant, ZoneId.systemDefault()));
+        lastCurrentTimePoint = new CurrentTimePoint(instant, timePointType, timezone, timePoint);
+        return timePoint;
+    }
+}
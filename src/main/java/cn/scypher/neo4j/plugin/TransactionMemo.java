@@ -0,0 +1,116 @@
+package cn.scypher.neo4j.plugin;
+
+import org.neo4j.graphdb.Transaction;
+import org.neo4j.kernel.api.KernelTransaction;
+import org.neo4j.kernel.api.txstate.TxStateHolder;
+import org.neo4j.kernel.impl.coreapi.InternalTransaction;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * 事务级的属性值备忘录：同一事务中对同一(对象节点, 属性名, 时间窗口)的重复解析直接复用上次的属性值。
+ * 时间窗口以TimeWindowPredicate的纪元编码归一化，未指定时间窗口时包含当时的snapshot/scope。
+ * 备忘录随事务的数据版本失效：当前事务的任何写操作（包括按getItemsToSet*等函数的结果执行的写操作）都会使其清空。
+ * 每个线程只保留最近一个事务的备忘录，不需要同步。
+ */
+final class TransactionMemo {
+    private static final int MAX_SIZE = 4096;
+
+    // 没有事务状态时的数据版本
+    private static final long NO_TX_STATE = -1;
+
+    // 缓存的属性值为null时存放的占位对象
+    private static final Object NULL = new Object();
+
+    private static final ThreadLocal<TransactionMemo> memos = new ThreadLocal<>();
+
+    private static final LongAdder hits = new LongAdder();
+    private static final LongAdder misses = new LongAdder();
+    private static final LongAdder resets = new LongAdder();
+
+    private final KernelTransaction kernelTransaction;
+    private final long sequenceNumber;
+    private final long dataRevision;
+    private final Map<Key, Object> propertyValues = new HashMap<>();
+
+    private record Key(String objectId, String propertyName, TimeWindowPredicate predicate) {
+    }
+
+    private TransactionMemo(KernelTransaction kernelTransaction, long sequenceNumber, long dataRevision) {
+        this.kernelTransaction = kernelTransaction;
+        this.sequenceNumber = sequenceNumber;
+        this.dataRevision = dataRevision;
+    }
+
+    private static long getDataRevision(KernelTransaction kernelTransaction) {
+        if (kernelTransaction instanceof TxStateHolder txStateHolder && txStateHolder.hasTxStateWithChanges()) {
+            return txStateHolder.txState().getDataRevision();
+        }
+        return NO_TX_STATE;
+    }
+
+    /**
+     * @param transaction 当前事务
+     * @return 返回当前事务在当前数据版本下的备忘录，若不能识别当前事务，返回null
+     */
+    private static TransactionMemo of(Transaction transaction) {
+        if (!(transaction instanceof InternalTransaction internalTransaction)) {
+            return null;
+        }
+        // 注入的Transaction每次调用都是新的包装对象，以内核事务和它的序号识别同一事务
+        KernelTransaction kernelTransaction = internalTransaction.kernelTransaction();
+        long sequenceNumber = kernelTransaction.getTransactionSequenceNumber();
+        long dataRevision = getDataRevision(kernelTransaction);
+        TransactionMemo memo = memos.get();
+        if (memo == null || memo.kernelTransaction != kernelTransaction || memo.sequenceNumber != sequenceNumber || memo.dataRevision != dataRevision) {
+            if (memo != null && !memo.propertyValues.isEmpty()) {
+                resets.increment();
+            }
+            memo = new TransactionMemo(kernelTransaction, sequenceNumber, dataRevision);
+            memos.set(memo);
+        }
+        return memo;
+    }
+
+    /**
+     * @param transaction  当前事务
+     * @param objectId     对象节点的elementId
+     * @param propertyName 属性名
+     * @param predicate    值节点的有效时间限制
+     * @param resolver     备忘录中没有时解析属性值
+     * @return 返回对象节点的属性在有效时间限制下的属性值
+     */
+    static Object getPropertyValue(Transaction transaction, String objectId, String propertyName, TimeWindowPredicate predicate, Supplier<Object> resolver) {
+        TransactionMemo memo = of(transaction);
+        if (memo == null) {
+            return resolver.get();
+        }
+        Key key = new Key(objectId, propertyName, predicate);
+        Object propertyValue = memo.propertyValues.get(key);
+        if (propertyValue != null) {
+            hits.increment();
+            return propertyValue == NULL ? null : propertyValue;
+        }
+        misses.increment();
+        propertyValue = resolver.get();
+        if (memo.propertyValues.size() >= MAX_SIZE) {
+            memo.propertyValues.clear();
+        }
+        memo.propertyValues.put(key, propertyValue == null ? NULL : propertyValue);
+        return propertyValue;
+    }
+
+    /**
+     * @return 返回备忘录的命中、未命中次数，以及因当前事务写入或事务结束而被清空的次数
+     */
+    static Map<String, Object> getStatistics() {
+        Map<String, Object> statistics = new HashMap<>();
+        statistics.put("hits", hits.sum());
+        statistics.put("misses", misses.sum());
+        statistics.put("resets", resets.sum());
+        return statistics;
+    }
+}
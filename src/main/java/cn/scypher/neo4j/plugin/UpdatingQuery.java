@@ -3,6 +3,7 @@ package cn.scypher.neo4j.plugin;
 import cn.scypher.neo4j.plugin.datetime.SInterval;
 import cn.scypher.neo4j.plugin.datetime.STimePoint;
 import org.neo4j.graphdb.*;
+import org.neo4j.procedure.Context;
 import org.neo4j.procedure.Description;
 import org.neo4j.procedure.Name;
 import org.neo4j.procedure.UserFunction;
@@ -11,6 +12,9 @@ import java.time.*;
 import java.util.*;
 
 public class UpdatingQuery {
+    @Context
+    public Transaction transaction;
+
     /**
      * @param objectNode 对象节点
      * @return 返回某个对象节点的所有属性节点
@@ -39,14 +43,14 @@ public class UpdatingQuery {
 
     /**
      * @param objectNode 对象节点
-     * @param timePoint  时间点
+     * @param timePoint        时间点
+     * @param currentTimePoint 当前事务的当前时刻
+     * @param context          当前事务的时态上下文
      * @return 返回某个对象节点在某个时间点的属性节点
      */
-    public static List<Node> getPropertyNodes(Node objectNode, Object timePoint) {
+    public static List<Node> getPropertyNodes(Node objectNode, Object timePoint, STimePoint currentTimePoint, STemporalContext context) {
         ResourceIterable<Relationship> relationships = objectNode.getRelationships(Direction.OUTGOING, RelationshipType.withName("OBJECT_PROPERTY"));
-        String timePointType = GlobalVariablesManager.getTimePointType();
-        String timezone = GlobalVariablesManager.getTimezone();
-        STimePoint snapshotTimePoint = GlobalVariablesManager.getSnapshotTimePoint();
+        STimePoint snapshotTimePoint = context.snapshotTimePoint();
         STimePoint propertyNodeTimePoint = null;
         if (timePoint != null) {
             if (timePoint instanceof LocalDate | timePoint instanceof OffsetTime | timePoint instanceof LocalTime | timePoint instanceof ZonedDateTime | timePoint instanceof LocalDateTime) {
@@ -63,7 +67,7 @@ public class UpdatingQuery {
                 propertyNodes.add(propertyNode);
             } else if (snapshotTimePoint != null && propertyNodeEffectiveTime.contains(snapshotTimePoint)) {
                 propertyNodes.add(propertyNode);
-            } else if (propertyNodeEffectiveTime.contains(new STimePoint(timePointType, timezone))) {
+            } else if (propertyNodeEffectiveTime.contains(currentTimePoint)) {
                 propertyNodes.add(propertyNode);
             }
         }
@@ -72,31 +76,44 @@ public class UpdatingQuery {
 
     /**
      * @param propertyNode 属性节点
-     * @param timePoint    时间点
-     * @return 返回某个属性节点在某个时间点的值节点
+     * @param timePoint        时间点
+     * @param currentTimePoint 当前事务的当前时刻
+     * @param context          当前事务的时态上下文
+     * @return 返回某个属性节点在某个时间点的值节点，依次按时间点、snapshot指定的时间点、当前时刻查找，
+     * 与PropertyTimelineIndex.getValueNode的优先级一致，同一时间点有多个值节点有效时返回开始时间最早的
      */
-    public static Node getValueNode(Node propertyNode, Object timePoint) {
-        ResourceIterable<Relationship> relationships = propertyNode.getRelationships(Direction.OUTGOING, RelationshipType.withName("PROPERTY_VALUE"));
-        String timePointType = GlobalVariablesManager.getTimePointType();
-        String timezone = GlobalVariablesManager.getTimezone();
-        STimePoint snapshotTimePoint = GlobalVariablesManager.getSnapshotTimePoint();
-        STimePoint valueNodeTimePoint = null;
+    public static Node getValueNode(Node propertyNode, Object timePoint, STimePoint currentTimePoint, STemporalContext context) {
+        List<STimePoint> timePoints = new ArrayList<>(3);
         if (timePoint != null) {
             if (timePoint instanceof LocalDate | timePoint instanceof OffsetTime | timePoint instanceof LocalTime | timePoint instanceof ZonedDateTime | timePoint instanceof LocalDateTime) {
-                valueNodeTimePoint = new STimePoint(timePoint);
+                timePoints.add(new STimePoint(timePoint));
             } else {
                 throw new RuntimeException("Type mismatch: expected Date, Time, LocalTime, LocalDateTime or DateTime but was " + timePoint.getClass().getSimpleName());
             }
         }
-        for (Relationship relationship : relationships) {
+        if (context.snapshotTimePoint() != null) {
+            timePoints.add(context.snapshotTimePoint());
+        }
+        timePoints.add(currentTimePoint);
+        List<Node> valueNodes = new ArrayList<>();
+        List<SInterval> valueNodeEffectiveTimes = new ArrayList<>();
+        for (Relationship relationship : propertyNode.getRelationships(Direction.OUTGOING, RelationshipType.withName("PROPERTY_VALUE"))) {
             Node valueNode = relationship.getEndNode();
-            SInterval valueNodeEffectiveTime = new SInterval(new STimePoint(valueNode.getProperty("intervalFrom")), new STimePoint(valueNode.getProperty("intervalTo")));
-            if (valueNodeTimePoint != null && valueNodeEffectiveTime.contains(valueNodeTimePoint)) {
-                return valueNode;
-            } else if (snapshotTimePoint != null && valueNodeEffectiveTime.contains(snapshotTimePoint)) {
-                return valueNode;
-            } else if (valueNodeEffectiveTime.contains(new STimePoint(timePointType, timezone))) {
-                return valueNode;
+            valueNodes.add(valueNode);
+            valueNodeEffectiveTimes.add(new SInterval(new STimePoint(valueNode.getProperty("intervalFrom")), new STimePoint(valueNode.getProperty("intervalTo"))));
+        }
+        for (STimePoint valueNodeTimePoint : timePoints) {
+            Node firstValueNode = null;
+            STimePoint firstIntervalFrom = null;
+            for (int i = 0; i < valueNodes.size(); i++) {
+                SInterval valueNodeEffectiveTime = valueNodeEffectiveTimes.get(i);
+                if (valueNodeEffectiveTime.contains(valueNodeTimePoint) && (firstIntervalFrom == null || valueNodeEffectiveTime.getIntervalFrom().isBefore(firstIntervalFrom))) {
+                    firstValueNode = valueNodes.get(i);
+                    firstIntervalFrom = valueNodeEffectiveTime.getIntervalFrom();
+                }
+            }
+            if (firstValueNode != null) {
+                return firstValueNode;
             }
         }
         return null;
@@ -134,7 +151,7 @@ public class UpdatingQuery {
             if (object instanceof Node objectNode) {
                 if (propertyName != null) {
                     // 物理删除对象节点的属性
-                    Node propertyNode = ReadingQuery.getPropertyNode(objectNode, propertyName);
+                    Node propertyNode = PropertyNodeIndex.getPropertyNode(this.transaction, objectNode, propertyName);
                     if (propertyNode != null) {
                         List<Node> valueNodes;
                         if (timeWindow == null) {
@@ -145,9 +162,9 @@ public class UpdatingQuery {
                         } else {
                             // 仅物理删除值节点
                             if (timeWindow instanceof Boolean) {
-                                valueNodes = ReadingQuery.getValueNodes(propertyNode, null);
+                                valueNodes = PropertyTimelineIndex.getValueNodes(this.transaction, propertyNode, null, GlobalVariablesManager.getContext(this.transaction));
                             } else {
-                                valueNodes = ReadingQuery.getValueNodes(propertyNode, timeWindow);
+                                valueNodes = PropertyTimelineIndex.getValueNodes(this.transaction, propertyNode, timeWindow, GlobalVariablesManager.getContext(this.transaction));
                             }
                             itemsToDelete.addAll(valueNodes);
                         }
@@ -187,18 +204,18 @@ public class UpdatingQuery {
             List<Object> itemsToStale = new ArrayList<>();
             String timePointType = GlobalVariablesManager.getTimePointType();
             String timezone = GlobalVariablesManager.getTimezone();
-            STimePoint NOW = new STimePoint("NOW", timePointType, timezone);
+            STimePoint NOW = STimePoint.nowSentinel(timePointType, timezone);
             STimePoint operateTime;
             if (operateTimeObject != null) {
                 operateTime = new STimePoint(operateTimeObject);
             } else {
-                operateTime = new STimePoint(timePointType, timezone);
+                operateTime = TransactionClock.getCurrentTimePoint(this.transaction);
             }
             if (object instanceof Node objectNode) {
                 if (objectNode.getProperty("intervalTo").equals(NOW.getSystemTimePoint())) {
                     if (propertyName != null) {
                         // 逻辑删除对象节点的属性
-                        Node propertyNode = ReadingQuery.getPropertyNode(objectNode, propertyName);
+                        Node propertyNode = PropertyNodeIndex.getPropertyNode(this.transaction, objectNode, propertyName);
                         if (propertyNode != null && propertyNode.getProperty("intervalTo").equals(NOW.getSystemTimePoint())) {
                             if (!deleteValueNode) {
                                 // 逻辑删除属性节点和值节点
@@ -208,7 +225,7 @@ public class UpdatingQuery {
                                     throw new RuntimeException("The operate time must be latter than the start time of current property node. Please alter the operate time");
                                 }
                             }
-                            List<Node> valueNodes = ReadingQuery.getValueNodes(propertyNode, NOW.getSystemTimePoint());
+                            List<Node> valueNodes = PropertyTimelineIndex.getValueNodes(this.transaction, propertyNode, NOW.getSystemTimePoint(), GlobalVariablesManager.getContext(this.transaction));
                             if (valueNodes.size() == 1) {
                                 if ((new STimePoint(valueNodes.get(0).getProperty("intervalFrom"))).isBefore(operateTime)) {
                                     itemsToStale.add(valueNodes.get(0));
@@ -228,7 +245,7 @@ public class UpdatingQuery {
                                 if (propertyNode.getProperty("intervalTo").equals(NOW.getSystemTimePoint())) {
                                     if ((new STimePoint(propertyNode.getProperty("intervalFrom"))).isBefore(operateTime)) {
                                         itemsToStale.add(propertyNode);
-                                        List<Node> valueNodes = ReadingQuery.getValueNodes(propertyNode, NOW.getSystemTimePoint());
+                                        List<Node> valueNodes = PropertyTimelineIndex.getValueNodes(this.transaction, propertyNode, NOW.getSystemTimePoint(), GlobalVariablesManager.getContext(this.transaction));
                                         if (valueNodes.size() == 1) {
                                             if ((new STimePoint(valueNodes.get(0).getProperty("intervalFrom"))).isBefore(operateTime)) {
                                                 itemsToStale.add(valueNodes.get(0));
@@ -324,7 +341,7 @@ public class UpdatingQuery {
                     objectEffectiveTime = new SInterval(new STimePoint(objectNode.getProperty("intervalFrom")), new STimePoint(objectNode.getProperty("intervalTo")));
                 }
                 if (propertyInfo != null) {
-                    Node propertyNode = ReadingQuery.getPropertyNode(objectNode, (String) propertyInfo.get("propertyName"));
+                    Node propertyNode = PropertyNodeIndex.getPropertyNode(this.transaction, objectNode, (String) propertyInfo.get("propertyName"));
                     if (propertyNode != null) {
                         SInterval propertyEffectiveTime;
                         if (propertyInfo.containsKey("effectiveTime") && propertyInfo.get("effectiveTime") != null) {
@@ -366,7 +383,7 @@ public class UpdatingQuery {
                                     }
                                 }
                                 // 值节点的有效时间满足约束
-                                List<Node> valueNodes = ReadingQuery.getValueNodes(propertyNode, operateTimeObject);
+                                List<Node> valueNodes = PropertyTimelineIndex.getValueNodes(this.transaction, propertyNode, operateTimeObject, GlobalVariablesManager.getContext(this.transaction));
                                 if (valueNodes.size() == 1) {
                                     Map<String, Object> valueNodeInfo = new HashMap<>();
                                     valueNodeInfo.put("item", valueNodes.get(0));
@@ -430,10 +447,10 @@ public class UpdatingQuery {
                 List<Map<String, List>> itemsToSetValue = new ArrayList<>();
                 String timePointType = GlobalVariablesManager.getTimePointType();
                 String timezone = GlobalVariablesManager.getTimezone();
-                STimePoint NOW = new STimePoint("NOW", timePointType, timezone);
-                Node propertyNode = ReadingQuery.getPropertyNode(objectNode, propertyName);
+                STimePoint NOW = STimePoint.nowSentinel(timePointType, timezone);
+                Node propertyNode = PropertyNodeIndex.getPropertyNode(this.transaction, objectNode, propertyName);
                 if (propertyNode != null) {
-                    List<Node> valueNodes = ReadingQuery.getValueNodes(propertyNode, timeWindow);
+                    List<Node> valueNodes = PropertyTimelineIndex.getValueNodes(this.transaction, propertyNode, timeWindow, GlobalVariablesManager.getContext(this.transaction));
                     if (valueNodes.size() != 0) {
                         // 存在符合要求的值节点
                         if (propertyValue != null) {
@@ -506,19 +523,19 @@ public class UpdatingQuery {
                 Map<String, List> itemToSetProperty = new HashMap<>();
                 String timePointType = GlobalVariablesManager.getTimePointType();
                 String timezone = GlobalVariablesManager.getTimezone();
-                STimePoint NOW = new STimePoint("NOW", timePointType, timezone);
+                STimePoint NOW = STimePoint.nowSentinel(timePointType, timezone);
                 STimePoint operateTime = new STimePoint(operateTimeObject);
                 if (object instanceof Node objectNode) {
                     SInterval objectEffectiveTime = new SInterval(new STimePoint(objectNode.getProperty("intervalFrom")), new STimePoint(objectNode.getProperty("intervalTo")));
                     if (objectEffectiveTime.getIntervalTo().getSystemTimePoint().equals(NOW.getSystemTimePoint())) {
                         if (objectEffectiveTime.contains(operateTime)) {
                             // 设置实体的某个属性
-                            Node propertyNode = ReadingQuery.getPropertyNode(objectNode, propertyName);
+                            Node propertyNode = PropertyNodeIndex.getPropertyNode(this.transaction, objectNode, propertyName);
                             if (propertyNode != null) {
                                 SInterval propertyEffectiveTime = new SInterval(new STimePoint(propertyNode.getProperty("intervalFrom")), new STimePoint(propertyNode.getProperty("intervalTo")));
                                 if (propertyEffectiveTime.getIntervalTo().getSystemTimePoint().equals(NOW.getSystemTimePoint())) {
                                     if (propertyEffectiveTime.contains(operateTime)) {
-                                        Node valueNode = getValueNode(propertyNode, operateTimeObject);
+                                        Node valueNode = PropertyTimelineIndex.getValueNode(this.transaction, propertyNode, operateTimeObject, TransactionClock.getCurrentTimePoint(this.transaction), GlobalVariablesManager.getContext(this.transaction));
                                         if (valueNode != null) {
                                             SInterval valueEffectiveTime = new SInterval(new STimePoint(valueNode.getProperty("intervalFrom")), new STimePoint(valueNode.getProperty("intervalTo")));
                                             if (valueEffectiveTime.getIntervalTo().getSystemTimePoint().equals(NOW.getSystemTimePoint())) {
@@ -594,7 +611,7 @@ public class UpdatingQuery {
             Map<String, List> itemToSetProperties = new HashMap<>();
             String timePointType = GlobalVariablesManager.getTimePointType();
             String timezone = GlobalVariablesManager.getTimezone();
-            STimePoint NOW = new STimePoint("NOW", timePointType, timezone);
+            STimePoint NOW = STimePoint.nowSentinel(timePointType, timezone);
             STimePoint operateTime = new STimePoint(operateTimeObject);
             if (object instanceof Node objectNode) {
                 // 设置实体的一组属性
@@ -605,11 +622,11 @@ public class UpdatingQuery {
                         List<Node> propertyNodes = new ArrayList<>();
                         if (!isAdd) {
                             // 逻辑删除所有原来的值节点
-                            propertyNodes = getPropertyNodes(objectNode, NOW.getSystemTimePoint());
+                            propertyNodes = getPropertyNodes(objectNode, NOW.getSystemTimePoint(), TransactionClock.getCurrentTimePoint(this.transaction), GlobalVariablesManager.getContext(this.transaction));
                         } else {
                             // 逻辑删除被修改的值节点
                             for (String propertyName : propertyMap.keySet()) {
-                                Node propertyNode = ReadingQuery.getPropertyNode(objectNode, propertyName);
+                                Node propertyNode = PropertyNodeIndex.getPropertyNode(this.transaction, objectNode, propertyName);
                                 if (propertyNode != null) {
                                     SInterval propertyEffectiveTime = new SInterval(new STimePoint(propertyNode.getProperty("intervalFrom")), new STimePoint(propertyNode.getProperty("intervalTo")));
                                     if (propertyEffectiveTime.getIntervalTo().getSystemTimePoint().equals(NOW.getSystemTimePoint())) {
@@ -619,7 +636,7 @@ public class UpdatingQuery {
                             }
                         }
                         for (Node propertyNode : propertyNodes) {
-                            Node valueNode = getValueNode(propertyNode, NOW.getSystemTimePoint());
+                            Node valueNode = PropertyTimelineIndex.getValueNode(this.transaction, propertyNode, NOW.getSystemTimePoint(), TransactionClock.getCurrentTimePoint(this.transaction), GlobalVariablesManager.getContext(this.transaction));
                             if (valueNode != null) {
                                 SInterval valueEffectiveTime = new SInterval(new STimePoint(valueNode.getProperty("intervalFrom")), new STimePoint(valueNode.getProperty("intervalTo")));
                                 if (valueEffectiveTime.getIntervalFrom().isBefore(operateTime)) {
@@ -638,12 +655,12 @@ public class UpdatingQuery {
                         for (Map.Entry<String, Object> entry : propertyMap.entrySet()) {
                             if (!entry.getKey().equals("intervalFrom") && !entry.getKey().equals("intervalTo")) {
                                 // 设置实体的某个属性
-                                Node propertyNode = ReadingQuery.getPropertyNode(objectNode, entry.getKey());
+                                Node propertyNode = PropertyNodeIndex.getPropertyNode(this.transaction, objectNode, entry.getKey());
                                 if (propertyNode != null) {
                                     SInterval propertyEffectiveTime = new SInterval(new STimePoint(propertyNode.getProperty("intervalFrom")), new STimePoint(propertyNode.getProperty("intervalTo")));
                                     if (propertyEffectiveTime.getIntervalTo().getSystemTimePoint().equals(NOW.getSystemTimePoint())) {
                                         if (propertyEffectiveTime.contains(operateTime)) {
-                                            Node valueNode = getValueNode(propertyNode, operateTimeObject);
+                                            Node valueNode = PropertyTimelineIndex.getValueNode(this.transaction, propertyNode, operateTimeObject, TransactionClock.getCurrentTimePoint(this.transaction), GlobalVariablesManager.getContext(this.transaction));
                                             if (valueNode != null) {
                                                 SInterval valueEffectiveTime = new SInterval(new STimePoint(valueNode.getProperty("intervalFrom")), new STimePoint(valueNode.getProperty("intervalTo")));
                                                 if (!valueEffectiveTime.getIntervalTo().getSystemTimePoint().equals(NOW.getSystemTimePoint())) {
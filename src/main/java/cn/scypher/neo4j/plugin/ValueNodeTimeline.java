@@ -0,0 +1,256 @@
+package cn.scypher.neo4j.plugin;
+
+import cn.scypher.neo4j.plugin.datetime.SEpochInterval;
+import cn.scypher.neo4j.plugin.datetime.SEpochTimePoint;
+import org.neo4j.graphdb.Direction;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.Relationship;
+import org.neo4j.graphdb.RelationshipType;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 一个属性节点的所有值节点，按有效时间的开始时间排序，有效时间以纪元编码存放在基本类型数组中。
+ * 时间点查找为二分查找，时间区间查找为一次区间扫描，均不需要创建STimePoint或排序。
+ */
+final class ValueNodeTimeline {
+    // 值节点的有效时间具有不同的时间点类型
+    static final byte MIXED = -1;
+
+    private final byte type;
+    private final String[] valueNodeIds;
+    // 各值节点有效时间的开始时间和结束时间，每个端点占两个元素(纪元值, 纳秒)
+    private final long[] froms;
+    private final long[] tos;
+    // maxTos[i]为前i+1个值节点的结束时间的最大值，用于跳过结束时间早于查找时间的前缀
+    private final long[] maxTos;
+
+    private ValueNodeTimeline(byte type, String[] valueNodeIds, long[] froms, long[] tos, long[] maxTos) {
+        this.type = type;
+        this.valueNodeIds = valueNodeIds;
+        this.froms = froms;
+        this.tos = tos;
+        this.maxTos = maxTos;
+    }
+
+    /**
+     * @param propertyNode 属性节点
+     * @return 返回属性节点的所有值节点构成的时间线
+     */
+    static ValueNodeTimeline of(Node propertyNode) {
+        List<String> valueNodeIds = new ArrayList<>();
+        List<SEpochTimePoint> intervalFroms = new ArrayList<>();
+        List<SEpochTimePoint> intervalTos = new ArrayList<>();
+        byte type = MIXED;
+        boolean mixed = false;
+        for (Relationship relationship : propertyNode.getRelationships(Direction.OUTGOING, RelationshipType.withName("PROPERTY_VALUE"))) {
+            Node valueNode = relationship.getEndNode();
+            SEpochTimePoint intervalFrom = SEpochTimePoint.of(valueNode.getProperty("intervalFrom"));
+            SEpochTimePoint intervalTo = SEpochTimePoint.of(valueNode.getProperty("intervalTo"));
+            if (valueNodeIds.isEmpty()) {
+                type = intervalFrom.getType();
+            }
+            mixed |= intervalFrom.getType() != type | intervalTo.getType() != type;
+            valueNodeIds.add(valueNode.getElementId());
+            intervalFroms.add(intervalFrom);
+            intervalTos.add(intervalTo);
+        }
+        int count = valueNodeIds.size();
+        if (mixed) {
+            return new ValueNodeTimeline(MIXED, new String[0], new long[0], new long[0], new long[0]);
+        }
+        Integer[] order = new Integer[count];
+        for (int i = 0; i < count; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (i, j) -> intervalFroms.get(i).compareTo(intervalFroms.get(j)));
+        String[] ids = new String[count];
+        long[] froms = new long[2 * count];
+        long[] tos = new long[2 * count];
+        long[] maxTos = new long[2 * count];
+        for (int i = 0; i < count; i++) {
+            SEpochTimePoint intervalFrom = intervalFroms.get(order[i]);
+            SEpochTimePoint intervalTo = intervalTos.get(order[i]);
+            ids[i] = valueNodeIds.get(order[i]);
+            froms[2 * i] = intervalFrom.getEpoch();
+            froms[2 * i + 1] = intervalFrom.getNano();
+            tos[2 * i] = intervalTo.getEpoch();
+            tos[2 * i + 1] = intervalTo.getNano();
+            if (i == 0 || SEpochTimePoint.compare(tos[2 * i], (int) tos[2 * i + 1], maxTos[2 * i - 2], (int) maxTos[2 * i - 1]) > 0) {
+                maxTos[2 * i] = tos[2 * i];
+                maxTos[2 * i + 1] = tos[2 * i + 1];
+            } else {
+                maxTos[2 * i] = maxTos[2 * i - 2];
+                maxTos[2 * i + 1] = maxTos[2 * i - 1];
+            }
+        }
+        return new ValueNodeTimeline(type, ids, froms, tos, maxTos);
+    }
+
+    boolean isMixed() {
+        return this.type == MIXED;
+    }
+
+    byte getType() {
+        return this.type;
+    }
+
+    int size() {
+        return this.valueNodeIds.length;
+    }
+
+    String getValueNodeId(int index) {
+        return this.valueNodeIds[index];
+    }
+
+    SEpochTimePoint getIntervalFrom(int index) {
+        return new SEpochTimePoint(this.type, this.froms[2 * index], (int) this.froms[2 * index + 1]);
+    }
+
+    SEpochTimePoint getIntervalTo(int index) {
+        return new SEpochTimePoint(this.type, this.tos[2 * index], (int) this.tos[2 * index + 1]);
+    }
+
+    /**
+     * @param epoch 纪元值
+     * @param nano  纳秒
+     * @return 返回第一个开始时间不早于(epoch, nano)的值节点的下标，若没有，返回值节点个数
+     */
+    int ceiling(long epoch, int nano) {
+        int low = 0;
+        int high = size();
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (SEpochTimePoint.compare(this.froms[2 * middle], (int) this.froms[2 * middle + 1], epoch, nano) < 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * @return 返回开始时间不晚于(epoch, nano)的值节点个数
+     */
+    private int upperBound(long epoch, int nano) {
+        int low = 0;
+        int high = size();
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (SEpochTimePoint.compare(this.froms[2 * middle], (int) this.froms[2 * middle + 1], epoch, nano) <= 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * @return 返回第一个结束时间不早于(epoch, nano)的值节点可能的下标，之前的值节点的结束时间都早于(epoch, nano)
+     */
+    private int lowerBound(long epoch, int nano) {
+        int low = 0;
+        int high = size();
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (SEpochTimePoint.compare(this.maxTos[2 * middle], (int) this.maxTos[2 * middle + 1], epoch, nano) < 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * @param timePoint 时间点
+     * @return 返回第一个有效时间包含该时间点的值节点的下标，若没有，返回-1
+     */
+    int first(SEpochTimePoint timePoint) {
+        if (size() > 0 && timePoint.getType() != this.type) {
+            throw new RuntimeException("Only the interval can only contain the time point of the same type");
+        }
+        long epoch = timePoint.getEpoch();
+        int nano = timePoint.getNano();
+        int end = upperBound(epoch, nano);
+        for (int i = lowerBound(epoch, nano); i < end; i++) {
+            if (SEpochTimePoint.compare(epoch, nano, this.tos[2 * i], (int) this.tos[2 * i + 1]) <= 0) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * 将按先后顺序排序的时间点与时间线归并，两个指针都只向后移动
+     *
+     * @param timePoints 按先后顺序排序的时间点
+     * @return 返回有效时间包含每个时间点的值节点的下标
+     */
+    int[][] containsAll(SEpochTimePoint[] timePoints) {
+        int[][] matches = new int[timePoints.length][];
+        int start = 0;
+        int end = 0;
+        int[] buffer = new int[1];
+        for (int k = 0; k < timePoints.length; k++) {
+            SEpochTimePoint timePoint = timePoints[k];
+            if (size() > 0 && timePoint.getType() != this.type) {
+                throw new RuntimeException("Only the interval can only contain the time point of the same type");
+            }
+            long epoch = timePoint.getEpoch();
+            int nano = timePoint.getNano();
+            while (end < size() && SEpochTimePoint.compare(this.froms[2 * end], (int) this.froms[2 * end + 1], epoch, nano) <= 0) {
+                end++;
+            }
+            while (start < end && SEpochTimePoint.compare(this.maxTos[2 * start], (int) this.maxTos[2 * start + 1], epoch, nano) < 0) {
+                start++;
+            }
+            int count = 0;
+            for (int i = start; i < end; i++) {
+                if (SEpochTimePoint.compare(epoch, nano, this.tos[2 * i], (int) this.tos[2 * i + 1]) <= 0) {
+                    if (count == buffer.length) {
+                        buffer = Arrays.copyOf(buffer, 2 * count);
+                    }
+                    buffer[count++] = i;
+                }
+            }
+            matches[k] = Arrays.copyOf(buffer, count);
+        }
+        return matches;
+    }
+
+    /**
+     * @param timePoint 时间点
+     * @param matches   标记有效时间包含该时间点的值节点
+     */
+    void contains(SEpochTimePoint timePoint, boolean[] matches) {
+        if (size() > 0 && timePoint.getType() != this.type) {
+            throw new RuntimeException("Only the interval can only contain the time point of the same type");
+        }
+        mark(timePoint.getEpoch(), timePoint.getNano(), timePoint.getEpoch(), timePoint.getNano(), matches);
+    }
+
+    /**
+     * @param interval 时间区间
+     * @param matches  标记有效时间与该时间区间有重合的值节点
+     */
+    void overlaps(SEpochInterval interval, boolean[] matches) {
+        if (size() > 0 && interval.getType() != this.type) {
+            throw new RuntimeException("Only the intervals of the same time point type can perform overlaps operations");
+        }
+        mark(interval.getFromEpoch(), interval.getFromNano(), interval.getToEpoch(), interval.getToNano(), matches);
+    }
+
+    private void mark(long fromEpoch, int fromNano, long toEpoch, int toNano, boolean[] matches) {
+        int end = upperBound(toEpoch, toNano);
+        for (int i = lowerBound(fromEpoch, fromNano); i < end; i++) {
+            if (SEpochTimePoint.compare(fromEpoch, fromNano, this.tos[2 * i], (int) this.tos[2 * i + 1]) <= 0) {
+                matches[i] = true;
+            }
+        }
+    }
+}
@@ -2,10 +2,8 @@ package cn.scypher.neo4j.plugin.datetime;
 
 import java.time.*;
 import java.util.*;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
-public class SDate {
+public final class SDate implements STemporal<SDate> {
     private final LocalDate date;
 
     public final LocalDate MIN = LocalDate.MIN;
@@ -13,7 +11,14 @@ public class SDate {
     public final LocalDate MAX = LocalDate.MAX;
 
     public SDate() {
-        this.date = LocalDate.now();
+        this(Clock.systemDefaultZone());
+    }
+
+    /**
+     * @param clock 获取当前日期所用的时钟
+     */
+    public SDate(Clock clock) {
+        this.date = LocalDate.now(clock);
     }
 
     public SDate(LocalDate date) {
@@ -24,26 +29,7 @@ public class SDate {
         if (dateString.equalsIgnoreCase("NOW")) {
             this.date = LocalDate.MAX.withYear(9999);
         } else {
-            Pattern datePattern = Pattern.compile("((?<year>\\d{4})|(?<beyondYear>((\\+)|-)\\d{1,9}))((-?(?<ordinalDay>\\d{3})$)|" +
-                    "(-?(?<month>\\d{1,2})(-?(?<day>\\d{1,2})?))|" +
-                    "(-?W(?<week>\\d{1,2})(-?(?<dayOfWeek>\\d))?)|" +
-                    "(-?Q(?<quarter>\\d)(-?(?<dayOfQuarter>\\d{1,2}))?))?");
-            Matcher matcher = datePattern.matcher(dateString.trim());
-            Map<String, Number> dateMap = new HashMap<>();
-            String[] dateComponents = {"year", "beyondYear", "month", "day", "week", "dayOfWeek", "quarter", "dayOfQuarter", "ordinalDay"};
-            if (matcher.find()) {
-                for (String component : dateComponents) {
-                    if (matcher.group(component) != null) {
-                        if (component.equals("beyondYear")) {
-                            dateMap.put("year", Integer.parseInt(matcher.group(component)));
-                        }
-                        dateMap.put(component, Integer.parseInt(matcher.group(component)));
-                    }
-                }
-                this.date = this.parseDateMap(dateMap);
-            } else {
-                throw new RuntimeException("The combination of the date components is incorrect.");
-            }
+            this.date = STemporalParser.parseDate(dateString.trim());
         }
 
     }
@@ -65,40 +51,69 @@ public class SDate {
         }
     }
 
+    @Override
     public Duration difference(SDate date) {
         return Duration.between(this.date, date.getDate());
     }
 
+    @Override
     public boolean isBefore(SDate date) {
         return this.date.isBefore(date.getDate());
     }
 
+    @Override
     public boolean isAfter(SDate date) {
         return this.date.isAfter(date.getDate());
     }
 
+    @Override
+    public int compareTo(SDate date) {
+        return this.date.compareTo(date.getDate());
+    }
+
+    @Override
+    public LocalDate getSystemTimePoint() {
+        return this.date;
+    }
+
+    @Override
+    public byte getType() {
+        return SEpochTimePoint.DATE;
+    }
+
     public LocalDate getDate() {
         return this.date;
     }
 
     private LocalDate parseDateMap(Map<String, Number> dateMap) {
         int year = dateMap.get("year").intValue();
-        if (dateMap.containsKey("month")) {
-            int month = dateMap.get("month").intValue();
-            int day = dateMap.getOrDefault("day", 1).intValue();
-            return LocalDate.of(year, month, day);
-        } else if (dateMap.containsKey("week")) {
-            int week = dateMap.get("week").intValue();
-            int dayOfWeek = dateMap.getOrDefault("dayOfWeek", 1).intValue();
+        int month = dateMap.containsKey("month") ? dateMap.get("month").intValue() : STemporalParser.ABSENT;
+        int day = dateMap.containsKey("day") ? dateMap.get("day").intValue() : STemporalParser.ABSENT;
+        int week = dateMap.containsKey("week") ? dateMap.get("week").intValue() : STemporalParser.ABSENT;
+        int dayOfWeek = dateMap.containsKey("dayOfWeek") ? dateMap.get("dayOfWeek").intValue() : STemporalParser.ABSENT;
+        int quarter = dateMap.containsKey("quarter") ? dateMap.get("quarter").intValue() : STemporalParser.ABSENT;
+        int dayOfQuarter = dateMap.containsKey("dayOfQuarter") ? dateMap.get("dayOfQuarter").intValue() : STemporalParser.ABSENT;
+        int ordinalDay = dateMap.containsKey("ordinalDay") ? dateMap.get("ordinalDay").intValue() : STemporalParser.ABSENT;
+        return parseDate(year, month, day, week, dayOfWeek, quarter, dayOfQuarter, ordinalDay);
+    }
+
+    /**
+     * 日期分量为STemporalParser.ABSENT时表示未指定
+     */
+    static LocalDate parseDate(int year, int month, int day, int week, int dayOfWeek, int quarter, int dayOfQuarter, int ordinalDay) {
+        if (month != STemporalParser.ABSENT) {
+            return LocalDate.of(year, month, day != STemporalParser.ABSENT ? day : 1);
+        } else if (week != STemporalParser.ABSENT) {
+            if (dayOfWeek == STemporalParser.ABSENT) {
+                dayOfWeek = 1;
+            }
             Calendar calendar = Calendar.getInstance();
             int[] weekdays = {Calendar.MONDAY, Calendar.TUESDAY, Calendar.WEDNESDAY, Calendar.THURSDAY, Calendar.FRIDAY, Calendar.SATURDAY, Calendar.SUNDAY};
             calendar.setWeekDate(year, week, weekdays[dayOfWeek - 1]);
             return LocalDate.of(calendar.get(Calendar.YEAR), calendar.get(Calendar.MONTH) + 1, calendar.get(Calendar.DAY_OF_MONTH));
-        } else if (dateMap.containsKey("quarter")) {
-            int quarter = dateMap.get("quarter").intValue();
-            int dayOfQuarter = 1;
-            if (dateMap.containsKey("dayOfQuarter")) {
-                dayOfQuarter = dateMap.get("dayOfQuarter").intValue();
+        } else if (quarter != STemporalParser.ABSENT) {
+            if (dayOfQuarter == STemporalParser.ABSENT) {
+                dayOfQuarter = 1;
             }
             // 将一年中的第q个季节的第d天，转换为一年中的m月n日
             // 获取该年2月的天数
@@ -106,24 +121,23 @@ public class SDate {
             calendar.set(year, Calendar.FEBRUARY, 1);
             int febDays = calendar.getActualMaximum(Calendar.DAY_OF_MONTH);
             int[] monthLength = {31, febDays + 31, febDays + 62, 30, 61, 91, 31, 62, 92, 31, 61, 92};
-            int month = new int[]{1, 4, 7, 10}[quarter - 1];
+            int quarterMonth = new int[]{1, 4, 7, 10}[quarter - 1];
             int dayOfMonth;
-            if (dayOfQuarter <= monthLength[month - 1]) {
+            if (dayOfQuarter <= monthLength[quarterMonth - 1]) {
                 dayOfMonth = dayOfQuarter;
-            } else if (dayOfQuarter <= monthLength[month]) {
-                dayOfMonth = dayOfQuarter - monthLength[month - 1];
-                month += 1;
-            } else if (dayOfQuarter <= monthLength[month + 1]) {
-                dayOfMonth = dayOfQuarter - monthLength[month];
-                month += 2;
+            } else if (dayOfQuarter <= monthLength[quarterMonth]) {
+                dayOfMonth = dayOfQuarter - monthLength[quarterMonth - 1];
+                quarterMonth += 1;
+            } else if (dayOfQuarter <= monthLength[quarterMonth + 1]) {
+                dayOfMonth = dayOfQuarter - monthLength[quarterMonth];
+                quarterMonth += 2;
             } else {
                 throw new RuntimeException("The day of quarter must be in 1..90/91/92");
             }
-            return LocalDate.of(year, month, dayOfMonth);
-        } else if (dateMap.containsKey("ordinalDay")) {
-            return LocalDate.ofYearDay(year, dateMap.get("ordinalDay").intValue());
+            return LocalDate.of(year, quarterMonth, dayOfMonth);
+        } else if (ordinalDay != STemporalParser.ABSENT) {
+            return LocalDate.ofYearDay(year, ordinalDay);
         }
         return LocalDate.of(year, 1, 1);
     }
 }
-
@@ -4,33 +4,40 @@ import java.time.*;
 import java.util.HashMap;
 import java.util.Map;
 
-public class SDateTime {
+public final class SDateTime implements STemporal<SDateTime> {
     private final ZonedDateTime datetime;
 
     public final ZonedDateTime MIN;
     public final ZonedDateTime MAX;
 
     public SDateTime(String timezone) {
-        if (timezone == null) {
-            timezone = "Z";
-        }
-        this.datetime = ZonedDateTime.now(ZoneId.of(timezone));
-        this.MIN = ZonedDateTime.of(LocalDateTime.MIN, ZoneId.of(timezone));
-        this.MAX = ZonedDateTime.of(LocalDateTime.MAX, ZoneId.of(timezone));
+        this(timezone, Clock.systemUTC());
+    }
+
+    /**
+     * @param timezone 时区
+     * @param clock    获取当前时刻所用的时钟
+     */
+    public SDateTime(String timezone, Clock clock) {
+        ZoneId zoneId = STimezoneCache.getZoneId(timezone);
+        this.datetime = ZonedDateTime.now(clock.withZone(zoneId));
+        this.MIN = STimezoneCache.getMinDateTime(zoneId);
+        this.MAX = STimezoneCache.getMaxDateTime(zoneId);
     }
 
     public SDateTime(ZonedDateTime datetime) {
         this.datetime = datetime;
-        this.MIN = ZonedDateTime.of(LocalDateTime.MIN, datetime.getZone());
-        this.MAX = ZonedDateTime.of(LocalDateTime.MAX, datetime.getZone());
+        this.MIN = STimezoneCache.getMinDateTime(datetime.getZone());
+        this.MAX = STimezoneCache.getMaxDateTime(datetime.getZone());
     }
 
     public SDateTime(String datetimeString, String timezone) {
         if (timezone == null) {
             timezone = "Z";
         }
+        ZoneId zoneId = STimezoneCache.getZoneId(timezone);
         if (datetimeString.equalsIgnoreCase("NOW")) {
-            this.datetime = ZonedDateTime.of(LocalDateTime.MAX, ZoneId.of(timezone)).withYear(9999);
+            this.datetime = STimezoneCache.getMaxDateTime(zoneId).withYear(9999);
         } else {
             String[] datetimeStringList = datetimeString.split("T");
             SDate date = new SDate(datetimeStringList[0]);
@@ -38,11 +45,11 @@ public class SDateTime {
                 STime time = new STime(datetimeStringList[1], timezone);
                 this.datetime = ZonedDateTime.of(date.getDate(), time.getTime().toLocalTime(), time.getTime().getOffset());
             } else {
-                this.datetime = ZonedDateTime.of(date.getDate(), LocalTime.MIN, ZoneId.of(timezone));
+                this.datetime = ZonedDateTime.of(date.getDate(), LocalTime.MIN, zoneId);
             }
         }
-        this.MIN = ZonedDateTime.of(LocalDateTime.MIN, ZoneId.of(timezone));
-        this.MAX = ZonedDateTime.of(LocalDateTime.MAX, ZoneId.of(timezone));
+        this.MIN = STimezoneCache.getMinDateTime(zoneId);
+        this.MAX = STimezoneCache.getMaxDateTime(zoneId);
     }
 
     public SDateTime(Map<String, Object> datetimeMap, String timezone) {
@@ -62,27 +69,41 @@ public class SDateTime {
             time = new STime("00", timezone);
         }
         this.datetime = ZonedDateTime.of(date.getDate(), time.getTime().toLocalTime(), time.getTime().getOffset());
-        if (timezone == null) {
-            timezone = "Z";
-        }
-        this.MIN = ZonedDateTime.of(LocalDateTime.MIN, ZoneId.of(timezone));
-        System.out.println(this.MIN);
-        this.MAX = ZonedDateTime.of(LocalDateTime.MAX, ZoneId.of(timezone));
-        System.out.println(this.MAX);
+        ZoneId zoneId = STimezoneCache.getZoneId(timezone);
+        this.MIN = STimezoneCache.getMinDateTime(zoneId);
+        this.MAX = STimezoneCache.getMaxDateTime(zoneId);
     }
 
+    @Override
     public Duration difference(SDateTime datetime) {
         return Duration.between(this.datetime, datetime.getDateTime());
     }
 
+    @Override
     public boolean isBefore(SDateTime datetime) {
         return this.datetime.isBefore(datetime.getDateTime());
     }
 
+    @Override
     public boolean isAfter(SDateTime datetime) {
         return this.datetime.isAfter(datetime.getDateTime());
     }
 
+    @Override
+    public int compareTo(SDateTime datetime) {
+        return this.datetime.compareTo(datetime.getDateTime());
+    }
+
+    @Override
+    public ZonedDateTime getSystemTimePoint() {
+        return this.datetime;
+    }
+
+    @Override
+    public byte getType() {
+        return SEpochTimePoint.DATETIME;
+    }
+
     public ZonedDateTime getDateTime() {
         return this.datetime;
     }
@@ -0,0 +1,276 @@
+package cn.scypher.neo4j.plugin.datetime;
+
+import java.time.Duration;
+
+/**
+ * 以纪元编码表示的时间区间[from, to]，由类型标签和两个纪元编码的端点组成，端点的编码与SEpochTimePoint相同。
+ * 运算不检查类型字符串，也不创建中间对象；intersection和range仅在结果与两个输入都不同时创建新的区间。
+ * 批量运算使用并列的long[]数组froms和tos，第i个区间的端点为(froms[2i], froms[2i+1])和(tos[2i], tos[2i+1])，即(纪元值, 纳秒)。
+ */
+public final class SEpochInterval {
+    private final byte type;
+    private final long fromEpoch;
+    private final int fromNano;
+    private final long toEpoch;
+    private final int toNano;
+
+    public SEpochInterval(byte type, long fromEpoch, int fromNano, long toEpoch, int toNano) {
+        if (SEpochTimePoint.compare(fromEpoch, fromNano, toEpoch, toNano) > 0) {
+            throw new RuntimeException("The start time can't be latter than the end time");
+        }
+        this.type = type;
+        this.fromEpoch = fromEpoch;
+        this.fromNano = fromNano;
+        this.toEpoch = toEpoch;
+        this.toNano = toNano;
+    }
+
+    public SEpochInterval(SEpochTimePoint intervalFrom, SEpochTimePoint intervalTo) {
+        this(checkType(intervalFrom, intervalTo), intervalFrom.getEpoch(), intervalFrom.getNano(), intervalTo.getEpoch(), intervalTo.getNano());
+    }
+
+    public SEpochInterval(SInterval interval) {
+        this(interval.getIntervalFrom().getEpochTimePoint(), interval.getIntervalTo().getEpochTimePoint());
+    }
+
+    private static byte checkType(SEpochTimePoint intervalFrom, SEpochTimePoint intervalTo) {
+        if (intervalFrom.getType() != intervalTo.getType()) {
+            throw new RuntimeException("The type of the start time point and the end time point is not same");
+        }
+        return intervalFrom.getType();
+    }
+
+    private void checkType(byte type) {
+        if (this.type != type) {
+            throw new RuntimeException("Only the intervals of the same time point type can be operated");
+        }
+    }
+
+    public boolean overlaps(SEpochInterval interval) {
+        if (interval != null) {
+            this.checkType(interval.type);
+            return overlaps(this.fromEpoch, this.fromNano, this.toEpoch, this.toNano, interval.fromEpoch, interval.fromNano, interval.toEpoch, interval.toNano);
+        } else {
+            return false;
+        }
+    }
+
+    public boolean contains(SEpochTimePoint timePoint) {
+        this.checkType(timePoint.getType());
+        return contains(this.fromEpoch, this.fromNano, this.toEpoch, this.toNano, timePoint.getEpoch(), timePoint.getNano());
+    }
+
+    public boolean contains(SEpochInterval interval) {
+        this.checkType(interval.type);
+        return SEpochTimePoint.compare(interval.fromEpoch, interval.fromNano, this.fromEpoch, this.fromNano) >= 0
+                && SEpochTimePoint.compare(interval.toEpoch, interval.toNano, this.toEpoch, this.toNano) <= 0;
+    }
+
+    /**
+     * @return 返回两个区间的交集，若交集为空，返回null
+     */
+    public SEpochInterval intersection(SEpochInterval interval) {
+        if (interval != null) {
+            this.checkType(interval.type);
+            boolean thisFrom = SEpochTimePoint.compare(this.fromEpoch, this.fromNano, interval.fromEpoch, interval.fromNano) >= 0;
+            boolean thisTo = SEpochTimePoint.compare(this.toEpoch, this.toNano, interval.toEpoch, interval.toNano) <= 0;
+            return combine(interval, thisFrom, thisTo);
+        } else {
+            return null;
+        }
+    }
+
+    /**
+     * @return 返回包含两个区间的最小区间
+     */
+    public SEpochInterval range(SEpochInterval interval) {
+        this.checkType(interval.type);
+        boolean thisFrom = SEpochTimePoint.compare(this.fromEpoch, this.fromNano, interval.fromEpoch, interval.fromNano) <= 0;
+        boolean thisTo = SEpochTimePoint.compare(this.toEpoch, this.toNano, interval.toEpoch, interval.toNano) >= 0;
+        return combine(interval, thisFrom, thisTo);
+    }
+
+    private SEpochInterval combine(SEpochInterval interval, boolean thisFrom, boolean thisTo) {
+        if (thisFrom && thisTo) {
+            return this;
+        } else if (!thisFrom && !thisTo) {
+            return interval;
+        }
+        long fromEpoch = thisFrom ? this.fromEpoch : interval.fromEpoch;
+        int fromNano = thisFrom ? this.fromNano : interval.fromNano;
+        long toEpoch = thisTo ? this.toEpoch : interval.toEpoch;
+        int toNano = thisTo ? this.toNano : interval.toNano;
+        if (SEpochTimePoint.compare(fromEpoch, fromNano, toEpoch, toNano) > 0) {
+            return null;
+        }
+        return new SEpochInterval(this.type, fromEpoch, fromNano, toEpoch, toNano);
+    }
+
+    /**
+     * @return 返回两个不相交的区间之间的时间差，this在interval之前时为正数
+     */
+    public Duration difference(SEpochInterval interval) {
+        this.checkType(interval.type);
+        if (!this.overlaps(interval)) {
+            if (SEpochTimePoint.compare(this.toEpoch, this.toNano, interval.fromEpoch, interval.fromNano) < 0) {
+                return difference(this.type, this.toEpoch, this.toNano, interval.fromEpoch, interval.fromNano);
+            } else {
+                return difference(this.type, this.fromEpoch, this.fromNano, interval.toEpoch, interval.toNano);
+            }
+        } else {
+            throw new RuntimeException("The intervals overlap each other");
+        }
+    }
+
+    /**
+     * @return 返回从(epoch1, nano1)到(epoch2, nano2)的时间差
+     */
+    public static Duration difference(byte type, long epoch1, int nano1, long epoch2, int nano2) {
+        if (epoch1 >= SEpochTimePoint.NOW_EPOCH | epoch2 >= SEpochTimePoint.NOW_EPOCH | epoch1 == SEpochTimePoint.MIN_EPOCH | epoch2 == SEpochTimePoint.MIN_EPOCH) {
+            throw new RuntimeException("Can't make a difference with the minimum, maximum or NOW time point");
+        }
+        return switch (type) {
+            case SEpochTimePoint.DATE -> Duration.ofDays(epoch2 - epoch1);
+            case SEpochTimePoint.TIME, SEpochTimePoint.LOCALTIME -> Duration.ofNanos(epoch2 - epoch1);
+            default -> Duration.ofSeconds(epoch2 - epoch1, (long) nano2 - nano1);
+        };
+    }
+
+    /**
+     * 判定[from1, to1]与[from2, to2]是否有重合区间
+     */
+    public static boolean overlaps(long fromEpoch1, int fromNano1, long toEpoch1, int toNano1, long fromEpoch2, int fromNano2, long toEpoch2, int toNano2) {
+        return SEpochTimePoint.compare(fromEpoch1, fromNano1, toEpoch2, toNano2) <= 0 & SEpochTimePoint.compare(fromEpoch2, fromNano2, toEpoch1, toNano1) <= 0;
+    }
+
+    /**
+     * 判定[from, to]是否包含(epoch, nano)
+     */
+    public static boolean contains(long fromEpoch, int fromNano, long toEpoch, int toNano, long epoch, int nano) {
+        return SEpochTimePoint.compare(fromEpoch, fromNano, epoch, nano) <= 0 & SEpochTimePoint.compare(epoch, nano, toEpoch, toNano) <= 0;
+    }
+
+    /**
+     * @param froms   各区间的开始时间，每个端点占两个元素(纪元值, 纳秒)
+     * @param tos     各区间的结束时间，每个端点占两个元素(纪元值, 纳秒)
+     * @param count   区间的个数
+     * @param matches 用于写入满足条件的区间下标，长度至少为count
+     * @return 返回与当前区间有重合区间的区间个数
+     */
+    public int overlaps(long[] froms, long[] tos, int count, int[] matches) {
+        int matched = 0;
+        for (int i = 0; i < count; i++) {
+            if (overlaps(froms[2 * i], (int) froms[2 * i + 1], tos[2 * i], (int) tos[2 * i + 1], this.fromEpoch, this.fromNano, this.toEpoch, this.toNano)) {
+                matches[matched++] = i;
+            }
+        }
+        return matched;
+    }
+
+    /**
+     * @param froms     各区间的开始时间，每个端点占两个元素(纪元值, 纳秒)
+     * @param tos       各区间的结束时间，每个端点占两个元素(纪元值, 纳秒)
+     * @param count     区间的个数
+     * @param timePoint 时间点
+     * @param matches   用于写入满足条件的区间下标，长度至少为count
+     * @return 返回包含timePoint的区间个数
+     */
+    public static int contains(long[] froms, long[] tos, int count, SEpochTimePoint timePoint, int[] matches) {
+        long epoch = timePoint.getEpoch();
+        int nano = timePoint.getNano();
+        int matched = 0;
+        for (int i = 0; i < count; i++) {
+            if (contains(froms[2 * i], (int) froms[2 * i + 1], tos[2 * i], (int) tos[2 * i + 1], epoch, nano)) {
+                matches[matched++] = i;
+            }
+        }
+        return matched;
+    }
+
+    /**
+     * @param type  时间点的类型标签
+     * @param froms 各区间的开始时间，每个端点占两个元素(纪元值, 纳秒)
+     * @param tos   各区间的结束时间，每个端点占两个元素(纪元值, 纳秒)
+     * @param count 区间的个数，至少为1
+     * @return 返回所有区间的交集，若交集为空，返回null
+     */
+    public static SEpochInterval intersection(byte type, long[] froms, long[] tos, int count) {
+        long fromEpoch = froms[0], toEpoch = tos[0];
+        int fromNano = (int) froms[1], toNano = (int) tos[1];
+        for (int i = 1; i < count; i++) {
+            if (SEpochTimePoint.compare(froms[2 * i], (int) froms[2 * i + 1], fromEpoch, fromNano) > 0) {
+                fromEpoch = froms[2 * i];
+                fromNano = (int) froms[2 * i + 1];
+            }
+            if (SEpochTimePoint.compare(tos[2 * i], (int) tos[2 * i + 1], toEpoch, toNano) < 0) {
+                toEpoch = tos[2 * i];
+                toNano = (int) tos[2 * i + 1];
+            }
+            if (SEpochTimePoint.compare(fromEpoch, fromNano, toEpoch, toNano) > 0) {
+                return null;
+            }
+        }
+        return new SEpochInterval(type, fromEpoch, fromNano, toEpoch, toNano);
+    }
+
+    /**
+     * @param type  时间点的类型标签
+     * @param froms 各区间的开始时间，每个端点占两个元素(纪元值, 纳秒)
+     * @param tos   各区间的结束时间，每个端点占两个元素(纪元值, 纳秒)
+     * @param count 区间的个数，至少为1
+     * @return 返回包含所有区间的最小区间
+     */
+    public static SEpochInterval range(byte type, long[] froms, long[] tos, int count) {
+        long fromEpoch = froms[0], toEpoch = tos[0];
+        int fromNano = (int) froms[1], toNano = (int) tos[1];
+        for (int i = 1; i < count; i++) {
+            if (SEpochTimePoint.compare(froms[2 * i], (int) froms[2 * i + 1], fromEpoch, fromNano) < 0) {
+                fromEpoch = froms[2 * i];
+                fromNano = (int) froms[2 * i + 1];
+            }
+            if (SEpochTimePoint.compare(tos[2 * i], (int) tos[2 * i + 1], toEpoch, toNano) > 0) {
+                toEpoch = tos[2 * i];
+                toNano = (int) tos[2 * i + 1];
+            }
+        }
+        return new SEpochInterval(type, fromEpoch, fromNano, toEpoch, toNano);
+    }
+
+    public byte getType() {
+        return this.type;
+    }
+
+    public String getTimePointType() {
+        return SEpochTimePoint.typeName(this.type);
+    }
+
+    public long getFromEpoch() {
+        return this.fromEpoch;
+    }
+
+    public int getFromNano() {
+        return this.fromNano;
+    }
+
+    public long getToEpoch() {
+        return this.toEpoch;
+    }
+
+    public int getToNano() {
+        return this.toNano;
+    }
+
+    @Override
+    public boolean equals(Object object) {
+        if (object instanceof SEpochInterval interval) {
+            return this.type == interval.type && this.fromEpoch == interval.fromEpoch && this.fromNano == interval.fromNano
+                    && this.toEpoch == interval.toEpoch && this.toNano == interval.toNano;
+        }
+        return false;
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * (31 * (31 * (31 * this.type + Long.hashCode(this.fromEpoch)) + this.fromNano) + Long.hashCode(this.toEpoch)) + this.toNano;
+    }
+}
@@ -0,0 +1,178 @@
+package cn.scypher.neo4j.plugin.datetime;
+
+import java.time.*;
+
+/**
+ * 以类型标签和纪元值表示的时间点，用于时间点之间的快速比较。
+ * date以纪元日表示，time以UTC纳秒表示，localtime以当天纳秒表示，datetime和localdatetime以纪元秒加纳秒表示。
+ * MIN、MAX和NOW使用专用的编码：MIN < 所有时间点 < NOW < MAX。
+ */
+public final class SEpochTimePoint implements Comparable<SEpochTimePoint> {
+    public static final byte DATE = 0;
+    public static final byte TIME = 1;
+    public static final byte LOCALTIME = 2;
+    public static final byte DATETIME = 3;
+    public static final byte LOCALDATETIME = 4;
+
+    public static final long MIN_EPOCH = Long.MIN_VALUE;
+    public static final long NOW_EPOCH = Long.MAX_VALUE - 1;
+    public static final long MAX_EPOCH = Long.MAX_VALUE;
+
+    private static final String[] TYPE_NAMES = {"date", "time", "localtime", "datetime", "localdatetime"};
+    private static final LocalDate NOW_DATE = LocalDate.MAX.withYear(9999);
+    private static final LocalDateTime NOW_LOCALDATETIME = LocalDateTime.MAX.withYear(9999);
+    private static final long NANOS_PER_SECOND = 1000000000L;
+
+    private final byte type;
+    private final long epoch;
+    private final int nano;
+
+    public SEpochTimePoint(byte type, long epoch, int nano) {
+        this.type = type;
+        this.epoch = epoch;
+        this.nano = nano;
+    }
+
+    /**
+     * @param timePoint 为LocalDate、OffsetTime、LocalTime、ZonedDateTime或LocalDateTime类型
+     * @return 返回对应的纪元编码时间点
+     */
+    public static SEpochTimePoint of(Object timePoint) {
+        if (timePoint instanceof LocalDate date) {
+            if (date.equals(NOW_DATE)) {
+                return new SEpochTimePoint(DATE, NOW_EPOCH, 0);
+            } else if (date.equals(LocalDate.MIN)) {
+                return new SEpochTimePoint(DATE, MIN_EPOCH, 0);
+            } else if (date.equals(LocalDate.MAX)) {
+                return new SEpochTimePoint(DATE, MAX_EPOCH, 0);
+            }
+            return new SEpochTimePoint(DATE, date.toEpochDay(), 0);
+        } else if (timePoint instanceof OffsetTime time) {
+            // OffsetTime.MAX的本地时间也为23:59:59.999999999，需先于NOW判断
+            if (time.equals(OffsetTime.MAX)) {
+                return new SEpochTimePoint(TIME, MAX_EPOCH, 0);
+            } else if (time.toLocalTime().equals(LocalTime.MAX)) {
+                return new SEpochTimePoint(TIME, NOW_EPOCH, 0);
+            } else if (time.equals(OffsetTime.MIN)) {
+                return new SEpochTimePoint(TIME, MIN_EPOCH, 0);
+            }
+            return new SEpochTimePoint(TIME, time.toLocalTime().toNanoOfDay() - time.getOffset().getTotalSeconds() * NANOS_PER_SECOND, 0);
+        } else if (timePoint instanceof LocalTime localTime) {
+            if (localTime.equals(LocalTime.MAX)) {
+                return new SEpochTimePoint(LOCALTIME, NOW_EPOCH, 0);
+            } else if (localTime.equals(LocalTime.MIN)) {
+                return new SEpochTimePoint(LOCALTIME, MIN_EPOCH, 0);
+            }
+            return new SEpochTimePoint(LOCALTIME, localTime.toNanoOfDay(), 0);
+        } else if (timePoint instanceof ZonedDateTime dateTime) {
+            LocalDateTime localDateTime = dateTime.toLocalDateTime();
+            if (localDateTime.equals(NOW_LOCALDATETIME)) {
+                return new SEpochTimePoint(DATETIME, NOW_EPOCH, 0);
+            } else if (localDateTime.equals(LocalDateTime.MIN)) {
+                return new SEpochTimePoint(DATETIME, MIN_EPOCH, 0);
+            } else if (localDateTime.equals(LocalDateTime.MAX)) {
+                return new SEpochTimePoint(DATETIME, MAX_EPOCH, 0);
+            }
+            return new SEpochTimePoint(DATETIME, dateTime.toEpochSecond(), dateTime.getNano());
+        } else if (timePoint instanceof LocalDateTime localDateTime) {
+            if (localDateTime.equals(NOW_LOCALDATETIME)) {
+                return new SEpochTimePoint(LOCALDATETIME, NOW_EPOCH, 0);
+            } else if (localDateTime.equals(LocalDateTime.MIN)) {
+                return new SEpochTimePoint(LOCALDATETIME, MIN_EPOCH, 0);
+            } else if (localDateTime.equals(LocalDateTime.MAX)) {
+                return new SEpochTimePoint(LOCALDATETIME, MAX_EPOCH, 0);
+            }
+            return new SEpochTimePoint(LOCALDATETIME, localDateTime.toEpochSecond(ZoneOffset.UTC), localDateTime.getNano());
+        } else {
+            throw new RuntimeException("Type mismatch: expected LocalDate, OffsetTime, LocalTime, ZonedDateTime or LocalDateTime but was " + timePoint.getClass().getSimpleName());
+        }
+    }
+
+    /**
+     * @param timePointType 时间点类型
+     * @return 返回时间点类型对应的类型标签
+     */
+    public static byte typeOf(String timePointType) {
+        return switch (timePointType) {
+            case "date" -> DATE;
+            case "time" -> TIME;
+            case "localtime" -> LOCALTIME;
+            case "datetime" -> DATETIME;
+            case "localdatetime" -> LOCALDATETIME;
+            default ->
+                    throw new RuntimeException("The time point type must be date, time, localtime, datetime or localdatetime but was" + timePointType);
+        };
+    }
+
+    public static String typeName(byte type) {
+        return TYPE_NAMES[type];
+    }
+
+    /**
+     * 比较两个编码后的时间点，不检查类型
+     */
+    public static int compare(long epoch1, int nano1, long epoch2, int nano2) {
+        if (epoch1 != epoch2) {
+            return epoch1 < epoch2 ? -1 : 1;
+        }
+        return Integer.compare(nano1, nano2);
+    }
+
+    @Override
+    public int compareTo(SEpochTimePoint timePoint) {
+        if (this.type == timePoint.type) {
+            return compare(this.epoch, this.nano, timePoint.epoch, timePoint.nano);
+        } else {
+            throw new RuntimeException("Only the time points of the same type can be compared");
+        }
+    }
+
+    public boolean isBefore(SEpochTimePoint timePoint) {
+        return this.compareTo(timePoint) < 0;
+    }
+
+    public boolean isNotBefore(SEpochTimePoint timePoint) {
+        return this.compareTo(timePoint) >= 0;
+    }
+
+    public boolean isAfter(SEpochTimePoint timePoint) {
+        return this.compareTo(timePoint) > 0;
+    }
+
+    public boolean isNotAfter(SEpochTimePoint timePoint) {
+        return this.compareTo(timePoint) <= 0;
+    }
+
+    public boolean isNow() {
+        return this.epoch == NOW_EPOCH;
+    }
+
+    public byte getType() {
+        return this.type;
+    }
+
+    public String getTimePointType() {
+        return TYPE_NAMES[this.type];
+    }
+
+    public long getEpoch() {
+        return this.epoch;
+    }
+
+    public int getNano() {
+        return this.nano;
+    }
+
+    @Override
+    public boolean equals(Object object) {
+        if (object instanceof SEpochTimePoint timePoint) {
+            return this.type == timePoint.type && this.epoch == timePoint.epoch && this.nano == timePoint.nano;
+        }
+        return false;
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * (31 * this.type + Long.hashCode(this.epoch)) + this.nano;
+    }
+}
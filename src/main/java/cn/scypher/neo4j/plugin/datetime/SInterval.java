@@ -13,7 +13,7 @@ public class SInterval {
      * @param intervalTo   结束时间
      */
     public SInterval(STimePoint intervalFrom, STimePoint intervalTo) {
-        if (intervalFrom.getTimePointType().equals(intervalTo.getTimePointType())) {
+        if (intervalFrom.getEpochTimePoint().getType() == intervalTo.getEpochTimePoint().getType()) {
             if (intervalFrom.isAfter(intervalTo)) {
                 throw new RuntimeException("The start time can't be latter than the end time");
             }
@@ -31,7 +31,7 @@ public class SInterval {
         if (interval.containsKey("from") && interval.containsKey("to")) {
             STimePoint intervalFrom = new STimePoint(interval.get("from"));
             STimePoint intervalTo = new STimePoint(interval.get("to"));
-            if (intervalFrom.getTimePointType().equals(intervalTo.getTimePointType())) {
+            if (intervalFrom.getEpochTimePoint().getType() == intervalTo.getEpochTimePoint().getType()) {
                 if (intervalFrom.isAfter(intervalTo)) {
                     throw new RuntimeException("The start time can't be latter than the end time");
                 }
@@ -54,18 +54,18 @@ public class SInterval {
     public SInterval(Object intervalFromObject, Object intervalToObject, String timePointType, String timezone) {
         STimePoint intervalFrom, intervalTo;
         if (intervalFromObject instanceof String | intervalFromObject instanceof Map) {
-            intervalFrom = new STimePoint(intervalFromObject, timePointType, timezone);
+            intervalFrom = STimePointCache.getTimePoint(intervalFromObject, timePointType, timezone);
         } else {
             // 开始时间为时间点类型
             intervalFrom = new STimePoint(intervalFromObject);
         }
         if (intervalToObject instanceof String | intervalToObject instanceof Map) {
-            intervalTo = new STimePoint(intervalToObject, timePointType, timezone);
+            intervalTo = STimePointCache.getTimePoint(intervalToObject, timePointType, timezone);
         } else {
             // 结束为时间点类型
             intervalTo = new STimePoint(intervalToObject);
         }
-        if (intervalFrom.getTimePointType().equals(intervalTo.getTimePointType())) {
+        if (intervalFrom.getEpochTimePoint().getType() == intervalTo.getEpochTimePoint().getType()) {
             if (intervalFrom.isAfter(intervalTo)) {
                 throw new RuntimeException("The start time can't be latter than the end time");
             }
@@ -78,7 +78,7 @@ public class SInterval {
 
     public boolean overlaps(SInterval interval) {
         if (interval != null) {
-            if (this.getTimePointType().equals(interval.getTimePointType())) {
+            if (this.getType() == interval.getType()) {
                 return !(this.intervalFrom.isAfter(interval.getIntervalTo()) | interval.getIntervalFrom().isAfter(this.intervalTo));
             } else {
                 throw new RuntimeException("Only the intervals of the same time point type can perform overlaps operations");
@@ -90,7 +90,7 @@ public class SInterval {
 
     public SInterval intersection(SInterval interval) {
         if (interval != null) {
-            if (this.getTimePointType().equals(interval.getTimePointType())) {
+            if (this.getType() == interval.getType()) {
                 if (this.overlaps(interval)) {
                     STimePoint interval_from = this.intervalFrom.isAfter(interval.getIntervalFrom()) ? this.intervalFrom : interval.getIntervalFrom();
                     STimePoint interval_to = this.intervalTo.isBefore(interval.getIntervalTo()) ? this.intervalTo : interval.getIntervalTo();
@@ -106,7 +106,7 @@ public class SInterval {
     }
 
     public SInterval range(SInterval interval) {
-        if (this.getTimePointType().equals(interval.getTimePointType())) {
+        if (this.getType() == interval.getType()) {
             STimePoint intervalFrom, intervalTo;
             if (this.intervalFrom.isBefore(interval.getIntervalFrom())) {
                 intervalFrom = this.intervalFrom;
@@ -125,7 +125,7 @@ public class SInterval {
     }
 
     public Duration difference(SInterval interval) {
-        if (this.getTimePointType().equals(interval.getTimePointType())) {
+        if (this.getType() == interval.getType()) {
             if (!this.overlaps(interval)) {
                 if (this.intervalTo.isBefore(interval.getIntervalFrom())) {
                     return this.intervalTo.difference(interval.getIntervalFrom());
@@ -144,8 +144,32 @@ public class SInterval {
         return this.intervalFrom.getTimePointType();
     }
 
+    public byte getType() {
+        return this.intervalFrom.getEpochTimePoint().getType();
+    }
+
+    /**
+     * @param intervalFrom 有效时间的开始时间
+     * @param intervalTo   有效时间的结束时间
+     * @param timePoint    时间点
+     * @return 判定有效时间[intervalFrom, intervalTo]是否包含timePoint
+     */
+    public static boolean contains(SEpochTimePoint intervalFrom, SEpochTimePoint intervalTo, SEpochTimePoint timePoint) {
+        return !(intervalFrom.isAfter(timePoint) | intervalTo.isBefore(timePoint));
+    }
+
+    /**
+     * @param intervalFrom 有效时间的开始时间
+     * @param intervalTo   有效时间的结束时间
+     * @param interval     时间区间
+     * @return 判定有效时间[intervalFrom, intervalTo]是否与interval有重合区间
+     */
+    public static boolean overlaps(SEpochTimePoint intervalFrom, SEpochTimePoint intervalTo, SInterval interval) {
+        return !(intervalFrom.isAfter(interval.getIntervalTo().getEpochTimePoint()) | interval.getIntervalFrom().getEpochTimePoint().isAfter(intervalTo));
+    }
+
     public boolean contains(STimePoint timePoint) {
-        if (this.intervalFrom.getTimePointType().equals(timePoint.getTimePointType())) {
+        if (this.getType() == timePoint.getEpochTimePoint().getType()) {
             return !(this.intervalFrom.isAfter(timePoint) | this.intervalTo.isBefore(timePoint));
         } else {
             throw new RuntimeException("Only the interval can only contain the time point of the same type");
@@ -153,7 +177,7 @@ public class SInterval {
     }
 
     public boolean contains(SInterval interval) {
-        if (this.intervalFrom.getTimePointType().equals(interval.getTimePointType())) {
+        if (this.getType() == interval.getType()) {
             return !interval.intervalFrom.isBefore(this.intervalFrom) && !interval.intervalTo.isAfter(this.intervalTo);
         } else {
             throw new RuntimeException("The interval can only contain the time point of the same type");
@@ -1,17 +1,25 @@
 package cn.scypher.neo4j.plugin.datetime;
 
+import java.time.Clock;
 import java.time.Duration;
 import java.time.LocalDateTime;
 import java.time.LocalTime;
 import java.util.Map;
 
-public class SLocalDateTime {
+public final class SLocalDateTime implements STemporal<SLocalDateTime> {
     private final LocalDateTime localdatetime;
     public final LocalDateTime MIN = LocalDateTime.MIN;
     public final LocalDateTime MAX = LocalDateTime.MAX;
 
     public SLocalDateTime() {
-        this.localdatetime = LocalDateTime.now();
+        this(Clock.systemDefaultZone());
+    }
+
+    /**
+     * @param clock 获取当前时间所用的时钟
+     */
+    public SLocalDateTime(Clock clock) {
+        this.localdatetime = LocalDateTime.now(clock);
     }
 
     public SLocalDateTime(LocalDateTime localDateTime) {
@@ -45,18 +53,36 @@ public class SLocalDateTime {
         this.localdatetime = LocalDateTime.of(date.getDate(), localtime.getLocalTime());
     }
 
+    @Override
     public Duration difference(SLocalDateTime localdatetime) {
         return Duration.between(this.localdatetime, localdatetime.getLocalDateTime());
     }
 
+    @Override
     public boolean isBefore(SLocalDateTime localdatetime) {
         return this.localdatetime.isBefore(localdatetime.getLocalDateTime());
     }
 
+    @Override
     public boolean isAfter(SLocalDateTime localdatetime) {
         return this.localdatetime.isAfter(localdatetime.getLocalDateTime());
     }
 
+    @Override
+    public int compareTo(SLocalDateTime localdatetime) {
+        return this.localdatetime.compareTo(localdatetime.getLocalDateTime());
+    }
+
+    @Override
+    public LocalDateTime getSystemTimePoint() {
+        return this.localdatetime;
+    }
+
+    @Override
+    public byte getType() {
+        return SEpochTimePoint.LOCALDATETIME;
+    }
+
     public LocalDateTime getLocalDateTime() {
         return this.localdatetime;
     }
@@ -1,21 +1,25 @@
 package cn.scypher.neo4j.plugin.datetime;
 
+import java.time.Clock;
 import java.time.Duration;
-import java.time.LocalDateTime;
 import java.time.LocalTime;
-import java.util.HashMap;
 import java.util.Map;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
-public class SLocalTime {
+public final class SLocalTime implements STemporal<SLocalTime> {
     private final LocalTime localtime;
 
     public final LocalTime MIN = LocalTime.MIN;
     public final LocalTime MAX = LocalTime.MAX;
 
     public SLocalTime() {
-        this.localtime = LocalTime.now();
+        this(Clock.systemDefaultZone());
+    }
+
+    /**
+     * @param clock 获取当前时间所用的时钟
+     */
+    public SLocalTime(Clock clock) {
+        this.localtime = LocalTime.now(clock);
     }
 
     public SLocalTime(LocalTime localTime) {
@@ -26,24 +30,7 @@ public class SLocalTime {
         if (localtimeString.equalsIgnoreCase("NOW")) {
             this.localtime = LocalTime.MAX;
         } else {
-            Pattern localtimePattern = Pattern.compile("(?<hour>\\d{2})(:?(?<minute>\\d{2})((:?(?<second>\\d{2}))((.|,)(?<nanosecond>\\d{1,9}))?)?)?");
-            Matcher matcher = localtimePattern.matcher(localtimeString.trim());
-            Map<String, Number> localtimeMap = new HashMap<>();
-            String[] timeComponents = {"hour", "minute", "second", "nanosecond"};
-            if (matcher.find()) {
-                for (String component : timeComponents) {
-                    if (matcher.group(component) != null) {
-                        if (component.equals("nanosecond")) {
-                            localtimeMap.put(component, Integer.parseInt(String.format("%-9s", matcher.group(component)).replace(" ", "0")));
-                        } else {
-                            localtimeMap.put(component, Integer.parseInt(matcher.group(component)));
-                        }
-                    }
-                }
-                this.localtime = this.parseLocalTimeMap(localtimeMap);
-            } else {
-                throw new RuntimeException("The combination of the time components is incorrect.");
-            }
+            this.localtime = STemporalParser.parseLocalTime(localtimeString.trim());
         }
     }
 
@@ -61,18 +48,36 @@ public class SLocalTime {
         this.localtime = this.parseLocalTimeMap(localtimeMap);
     }
 
+    @Override
     public Duration difference(SLocalTime localtime) {
         return Duration.between(this.localtime, localtime.getLocalTime());
     }
 
+    @Override
     public boolean isBefore(SLocalTime localtime) {
         return this.localtime.isBefore(localtime.getLocalTime());
     }
 
+    @Override
     public boolean isAfter(SLocalTime localtime) {
         return this.localtime.isAfter(localtime.getLocalTime());
     }
 
+    @Override
+    public int compareTo(SLocalTime localtime) {
+        return this.localtime.compareTo(localtime.getLocalTime());
+    }
+
+    @Override
+    public LocalTime getSystemTimePoint() {
+        return this.localtime;
+    }
+
+    @Override
+    public byte getType() {
+        return SEpochTimePoint.LOCALTIME;
+    }
+
 
     public LocalTime getLocalTime() {
         return this.localtime;
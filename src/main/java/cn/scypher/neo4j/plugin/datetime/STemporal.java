@@ -0,0 +1,31 @@
+package cn.scypher.neo4j.plugin.datetime;
+
+import java.time.Duration;
+import java.time.temporal.Temporal;
+
+/**
+ * S-Cypher的时间点类型，每种时间点类型对应一个final实现。
+ *
+ * @param <T> 实现类自身，同类型的时间点之间才能比较和求差
+ */
+public sealed interface STemporal<T extends STemporal<T>> extends Comparable<T> permits SDate, STime, SLocalTime, SDateTime, SLocalDateTime {
+    /**
+     * @param timePoint 同类型的时间点
+     * @return 返回从当前时间点到timePoint的时间差
+     */
+    Duration difference(T timePoint);
+
+    boolean isBefore(T timePoint);
+
+    boolean isAfter(T timePoint);
+
+    /**
+     * @return 返回LocalDate、OffsetTime、LocalTime、ZonedDateTime或LocalDateTime
+     */
+    Temporal getSystemTimePoint();
+
+    /**
+     * @return 返回SEpochTimePoint中对应的类型标签
+     */
+    byte getType();
+}
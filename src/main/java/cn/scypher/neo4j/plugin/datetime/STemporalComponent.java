@@ -0,0 +1,94 @@
+package cn.scypher.neo4j.plugin.datetime;
+
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoField;
+import java.time.temporal.IsoFields;
+import java.time.temporal.TemporalAccessor;
+import java.time.temporal.TemporalField;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 时间点的分量，直接基于ChronoField和IsoFields读取，分量名在调用前解析为枚举值。
+ * 日期分量适用于date、datetime和localdatetime，时间分量适用于time、localtime、datetime和localdatetime，时区分量适用于time和datetime。
+ */
+public enum STemporalComponent {
+    YEAR(ChronoField.YEAR, "year"),
+    WEEK_YEAR(IsoFields.WEEK_BASED_YEAR, "weekYear"),
+    QUARTER(IsoFields.QUARTER_OF_YEAR, "quarter"),
+    MONTH(ChronoField.MONTH_OF_YEAR, "month"),
+    WEEK(IsoFields.WEEK_OF_WEEK_BASED_YEAR, "week"),
+    DAY_OF_QUARTER(IsoFields.DAY_OF_QUARTER, "dayOfQuarter"),
+    // 所在季度的天数
+    QUARTER_DAY(IsoFields.DAY_OF_QUARTER, "quarterDay"),
+    DAY(ChronoField.DAY_OF_MONTH, "day"),
+    ORDINAL_DAY(ChronoField.DAY_OF_YEAR, "ordinalDay"),
+    DAY_OF_WEEK(ChronoField.DAY_OF_WEEK, "dayOfWeek", "weekDay"),
+    HOUR(ChronoField.HOUR_OF_DAY, "hour"),
+    MINUTE(ChronoField.MINUTE_OF_HOUR, "minute"),
+    SECOND(ChronoField.SECOND_OF_MINUTE, "second"),
+    MILLISECOND(ChronoField.MILLI_OF_SECOND, "millisecond"),
+    MICROSECOND(ChronoField.MICRO_OF_SECOND, "microsecond"),
+    NANOSECOND(ChronoField.NANO_OF_SECOND, "nanosecond"),
+    TIMEZONE(ChronoField.OFFSET_SECONDS, "timezone"),
+    OFFSET(ChronoField.OFFSET_SECONDS, "offset"),
+    OFFSET_MINUTES(ChronoField.OFFSET_SECONDS, "offsetMinutes"),
+    OFFSET_SECONDS(ChronoField.OFFSET_SECONDS, "offsetSeconds");
+
+    private static final Map<String, STemporalComponent> components = new HashMap<>();
+
+    static {
+        for (STemporalComponent component : values()) {
+            for (String name : component.names) {
+                components.put(name, component);
+            }
+        }
+    }
+
+    private final TemporalField field;
+    private final String[] names;
+
+    STemporalComponent(TemporalField field, String... names) {
+        this.field = field;
+        this.names = names;
+    }
+
+    /**
+     * @param name 分量名
+     * @return 返回分量名对应的分量，若没有对应的分量，返回null
+     */
+    public static STemporalComponent of(String name) {
+        return components.get(name);
+    }
+
+    /**
+     * @param temporal LocalDate、OffsetTime、LocalTime、ZonedDateTime或LocalDateTime类型的时间点
+     * @return 判定时间点是否具有该分量
+     */
+    public boolean isSupportedBy(TemporalAccessor temporal) {
+        return temporal.isSupported(this.field);
+    }
+
+    /**
+     * @param temporal 具有该分量的时间点
+     * @return 返回时间点的分量，时区分量为String类型，其他分量为Integer类型
+     */
+    public Object get(TemporalAccessor temporal) {
+        return switch (this) {
+            case QUARTER_DAY -> (int) temporal.range(IsoFields.DAY_OF_QUARTER).getMaximum();
+            case TIMEZONE -> ZoneOffset.ofTotalSeconds(temporal.get(ChronoField.OFFSET_SECONDS)).getId();
+            case OFFSET -> {
+                String sign = "+";
+                int second = temporal.get(ChronoField.OFFSET_SECONDS);
+                if (second < 0) {
+                    sign = "-";
+                    second = -second;
+                }
+                yield sign + String.format("%02d%02d", second / 3600, (second % 3600) / 60);
+            }
+            case OFFSET_MINUTES -> String.valueOf(temporal.get(ChronoField.OFFSET_SECONDS) / 60);
+            case OFFSET_SECONDS -> String.valueOf(temporal.get(ChronoField.OFFSET_SECONDS));
+            default -> temporal.get(this.field);
+        };
+    }
+}
@@ -0,0 +1,269 @@
+package cn.scypher.neo4j.plugin.datetime;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.OffsetTime;
+import java.time.ZoneOffset;
+
+/**
+ * S-Cypher时间字符串的单遍解析器，接受的格式与原有的正则表达式（使用Matcher.find()匹配）完全一致：
+ * date：(year|beyondYear)(-?ordinalDay$|-?month(-?day)?|-?Wweek(-?dayOfWeek)?|-?Qquarter(-?dayOfQuarter)?)?
+ * localtime：hour(:?minute((:?second)((.|,)nanosecond)?)?)?
+ * time：T?localtime[ ]*(Z|[zoneName]|(+|-)hours(:?minutes)?([zoneName])?)?
+ */
+final class STemporalParser {
+    // 缺省的时间分量
+    static final int ABSENT = Integer.MIN_VALUE;
+
+    private static final int[] NANO_SCALE = {0, 100000000, 10000000, 1000000, 100000, 10000, 1000, 100, 10, 1};
+
+    private STemporalParser() {
+    }
+
+    /**
+     * @param dateString 去除首尾空白的日期字符串
+     * @return 返回日期
+     */
+    static LocalDate parseDate(String dateString) {
+        int length = dateString.length();
+        for (int start = 0; start < length; start++) {
+            int year;
+            int index;
+            char c = dateString.charAt(start);
+            if (isDigits(dateString, start, 4)) {
+                year = toInt(dateString, start, start + 4);
+                index = start + 4;
+            } else if ((c == '+' | c == '-') && isDigit(dateString, start + 1)) {
+                index = digitsEnd(dateString, start + 1, 9);
+                year = toInt(dateString, start + 1, index);
+                if (c == '-') {
+                    year = -year;
+                }
+            } else {
+                continue;
+            }
+            return parseDateComponents(dateString, index, year);
+        }
+        throw new RuntimeException("The combination of the date components is incorrect.");
+    }
+
+    private static LocalDate parseDateComponents(String dateString, int index, int year) {
+        int length = dateString.length();
+        // 跳过可选的'-'，'-'后无法匹配时回溯也无法匹配
+        int start = index < length && dateString.charAt(index) == '-' ? index + 1 : index;
+        // -?ordinalDay$
+        if (isDigits(dateString, start, 3) && isEnd(dateString, start + 3)) {
+            return SDate.parseDate(year, ABSENT, ABSENT, ABSENT, ABSENT, ABSENT, ABSENT, toInt(dateString, start, start + 3));
+        }
+        // -?month(-?day)?
+        if (isDigit(dateString, start)) {
+            int monthEnd = digitsEnd(dateString, start, 2);
+            int month = toInt(dateString, start, monthEnd);
+            int dayStart = monthEnd < length && dateString.charAt(monthEnd) == '-' ? monthEnd + 1 : monthEnd;
+            int day = ABSENT;
+            if (isDigit(dateString, dayStart)) {
+                day = toInt(dateString, dayStart, digitsEnd(dateString, dayStart, 2));
+            }
+            return SDate.parseDate(year, month, day, ABSENT, ABSENT, ABSENT, ABSENT, ABSENT);
+        }
+        // -?Wweek(-?dayOfWeek)?
+        if (start < length && dateString.charAt(start) == 'W' && isDigit(dateString, start + 1)) {
+            int weekEnd = digitsEnd(dateString, start + 1, 2);
+            int week = toInt(dateString, start + 1, weekEnd);
+            int dayOfWeekStart = weekEnd < length && dateString.charAt(weekEnd) == '-' && isDigit(dateString, weekEnd + 1) ? weekEnd + 1 : weekEnd;
+            int dayOfWeek = isDigit(dateString, dayOfWeekStart) ? dateString.charAt(dayOfWeekStart) - '0' : ABSENT;
+            return SDate.parseDate(year, ABSENT, ABSENT, week, dayOfWeek, ABSENT, ABSENT, ABSENT);
+        }
+        // -?Qquarter(-?dayOfQuarter)?
+        if (start < length && dateString.charAt(start) == 'Q' && isDigit(dateString, start + 1)) {
+            int quarter = dateString.charAt(start + 1) - '0';
+            int quarterEnd = start + 2;
+            int dayOfQuarterStart = quarterEnd < length && dateString.charAt(quarterEnd) == '-' && isDigit(dateString, quarterEnd + 1) ? quarterEnd + 1 : quarterEnd;
+            int dayOfQuarter = ABSENT;
+            if (isDigit(dateString, dayOfQuarterStart)) {
+                dayOfQuarter = toInt(dateString, dayOfQuarterStart, digitsEnd(dateString, dayOfQuarterStart, 2));
+            }
+            return SDate.parseDate(year, ABSENT, ABSENT, ABSENT, ABSENT, quarter, dayOfQuarter, ABSENT);
+        }
+        return SDate.parseDate(year, ABSENT, ABSENT, ABSENT, ABSENT, ABSENT, ABSENT, ABSENT);
+    }
+
+    /**
+     * @param localtimeString 去除首尾空白的时间字符串
+     * @return 返回本地时间
+     */
+    static LocalTime parseLocalTime(String localtimeString) {
+        return (LocalTime) parseTime(localtimeString, false, null);
+    }
+
+    /**
+     * @param timeString 去除首尾空白的时间字符串
+     * @param timezone   默认时区
+     * @return 返回带时区偏移的时间
+     */
+    static OffsetTime parseTime(String timeString, String timezone) {
+        return (OffsetTime) parseTime(timeString, true, timezone);
+    }
+
+    private static Object parseTime(String timeString, boolean withOffset, String timezone) {
+        int length = timeString.length();
+        // 第一个连续两位数字为hour，T?不影响匹配结果
+        int index = 0;
+        while (index < length && !isDigits(timeString, index, 2)) {
+            index++;
+        }
+        if (index == length) {
+            throw new RuntimeException("The combination of the time components is incorrect.");
+        }
+        int hour = toInt(timeString, index, index + 2);
+        int minute = 0;
+        int second = 0;
+        int nanosecond = 0;
+        index += 2;
+        // (:?minute((:?second)((.|,)nanosecond)?)?)?
+        int minuteStart = index < length && timeString.charAt(index) == ':' ? index + 1 : index;
+        if (isDigits(timeString, minuteStart, 2)) {
+            minute = toInt(timeString, minuteStart, minuteStart + 2);
+            index = minuteStart + 2;
+            int secondStart = index < length && timeString.charAt(index) == ':' ? index + 1 : index;
+            if (isDigits(timeString, secondStart, 2)) {
+                second = toInt(timeString, secondStart, secondStart + 2);
+                index = secondStart + 2;
+                // '.'可以匹配除行终止符外的任意字符
+                if (index < length && !isLineTerminator(timeString.charAt(index)) && isDigit(timeString, index + 1)) {
+                    int nanosecondEnd = digitsEnd(timeString, index + 1, 9);
+                    nanosecond = toInt(timeString, index + 1, nanosecondEnd) * NANO_SCALE[nanosecondEnd - index - 1];
+                    index = nanosecondEnd;
+                }
+            }
+        }
+        if (!withOffset) {
+            return LocalTime.of(hour, minute, second, nanosecond);
+        }
+        while (index < length && timeString.charAt(index) == ' ') {
+            index++;
+        }
+        ZoneOffset offset = parseOffset(timeString, index);
+        if (offset == null) {
+            offset = STimezoneCache.getZoneOffset(timezone);
+        }
+        return OffsetTime.of(hour, minute, second, nanosecond, offset);
+    }
+
+    /**
+     * @return 返回时区偏移，若在index处没有时区则返回null
+     */
+    private static ZoneOffset parseOffset(String timeString, int index) {
+        int length = timeString.length();
+        if (index >= length) {
+            return null;
+        }
+        char c = timeString.charAt(index);
+        if (c == 'Z') {
+            return ZoneOffset.UTC;
+        } else if (c == '[') {
+            int zoneNameEnd = zoneNameEnd(timeString, index);
+            if (zoneNameEnd > 0) {
+                // 时区名不是合法的时区偏移
+                return ZoneOffset.of(timeString.substring(index, zoneNameEnd));
+            }
+        } else if ((c == '+' | c == '-') && isDigits(timeString, index + 1, 2)) {
+            int hours = toInt(timeString, index + 1, index + 3);
+            int minutes = 0;
+            int end = index + 3;
+            int minutesStart = end < length && timeString.charAt(end) == ':' ? end + 1 : end;
+            if (isDigits(timeString, minutesStart, 2)) {
+                minutes = toInt(timeString, minutesStart, minutesStart + 2);
+                end = minutesStart + 2;
+            }
+            int zoneNameEnd = zoneNameEnd(timeString, end);
+            if (zoneNameEnd > 0) {
+                // 带时区名的时区偏移不是合法的时区偏移
+                return ZoneOffset.of(timeString.substring(index, zoneNameEnd));
+            }
+            return c == '+' ? ZoneOffset.ofHoursMinutes(hours, minutes) : ZoneOffset.ofHoursMinutes(-hours, -minutes);
+        }
+        return null;
+    }
+
+    /**
+     * @return 若index处为[zoneName]，返回其结束位置；反之，返回-1
+     */
+    private static int zoneNameEnd(String timeString, int index) {
+        int length = timeString.length();
+        if (index >= length || timeString.charAt(index) != '[') {
+            return -1;
+        }
+        int end = index + 1;
+        while (end < length && isZoneNameChar(timeString.charAt(end))) {
+            end++;
+        }
+        if (end > index + 1 && end < length && timeString.charAt(end) == ']') {
+            return end + 1;
+        }
+        return -1;
+    }
+
+    private static boolean isZoneNameChar(char c) {
+        return (c >= 'a' && c <= 'z') | (c >= 'A' && c <= 'Z') | (c >= '0' && c <= '9') | c == '_' | c == '/';
+    }
+
+    private static boolean isLineTerminator(char c) {
+        return c == '\n' | c == '\r' | c == '\u0085' | c == '\u2028' | c == '\u2029';
+    }
+
+    /**
+     * 与正则表达式中的$一致：位于字符串末尾，或位于末尾的行终止符之前
+     */
+    private static boolean isEnd(String string, int index) {
+        int length = string.length();
+        if (index == length) {
+            return true;
+        } else if (index == length - 1) {
+            return isLineTerminator(string.charAt(index));
+        } else if (index == length - 2) {
+            return string.charAt(index) == '\r' && string.charAt(index + 1) == '\n';
+        }
+        return false;
+    }
+
+    private static boolean isDigit(String string, int index) {
+        if (index < string.length()) {
+            char c = string.charAt(index);
+            return c >= '0' && c <= '9';
+        }
+        return false;
+    }
+
+    private static boolean isDigits(String string, int index, int count) {
+        if (index + count > string.length()) {
+            return false;
+        }
+        for (int i = index; i < index + count; i++) {
+            char c = string.charAt(i);
+            if (c < '0' | c > '9') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return 返回从index开始的至多maxCount位数字的结束位置
+     */
+    private static int digitsEnd(String string, int index, int maxCount) {
+        int end = index;
+        while (end < string.length() && end - index < maxCount && isDigit(string, end)) {
+            end++;
+        }
+        return end;
+    }
+
+    private static int toInt(String string, int start, int end) {
+        int value = 0;
+        for (int i = start; i < end; i++) {
+            value = value * 10 + (string.charAt(i) - '0');
+        }
+        return value;
+    }
+}
@@ -3,19 +3,22 @@ package cn.scypher.neo4j.plugin.datetime;
 import java.time.*;
 import java.util.HashMap;
 import java.util.Map;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
-public class STime {
+public final class STime implements STemporal<STime> {
     private final OffsetTime time;
     public final OffsetTime MIN = OffsetTime.MIN;
     public final OffsetTime MAX = OffsetTime.MAX;
 
     public STime(String timezone) {
-        if (timezone == null) {
-            timezone = "Z";
-        }
-        this.time = OffsetTime.now(ZoneId.of(timezone));
+        this(timezone, Clock.systemUTC());
+    }
+
+    /**
+     * @param timezone 时区
+     * @param clock    获取当前时刻所用的时钟
+     */
+    public STime(String timezone, Clock clock) {
+        this.time = OffsetTime.now(clock.withZone(STimezoneCache.getZoneId(timezone)));
     }
 
     public STime(OffsetTime time) {
@@ -27,32 +30,9 @@ public class STime {
             timezone = "Z";
         }
         if (timeString.equalsIgnoreCase("NOW")) {
-            this.time = OffsetTime.of(LocalTime.MAX, ZoneOffset.of(timezone));
+            this.time = OffsetTime.of(LocalTime.MAX, STimezoneCache.getZoneOffset(timezone));
         } else {
-            Pattern localtimePattern = Pattern.compile("(?<hour>\\d{2})(:?(?<minute>\\d{2})((:?(?<second>\\d{2}))((.|,)(?<nanosecond>\\d{1,9}))?)?)?");
-            Pattern timezonePattern = Pattern.compile("(?<Z>Z)|(\\[(?<zoneName1>[\\w/]+)\\])|(((?<plus>\\+)|(?<minus>-))(?<hours>\\d{2})(:?(?<minutes>\\d{2}))?(\\[(?<zoneName2>[\\w/]+)\\])?)");
-            Pattern timePattern = Pattern.compile("T?(?<time>(" + localtimePattern + "))[ ]*(?<timezone>(" + timezonePattern + "))?");
-            Matcher matcher = timePattern.matcher(timeString.trim());
-            Map<String, Integer> timeMap = new HashMap<>();
-            String[] timeComponents = {"hour", "minute", "second", "nanosecond"};
-            if (matcher.find()) {
-                for (String component : timeComponents) {
-                    if (matcher.group(component) != null) {
-                        if (component.equals("nanosecond")) {
-                            timeMap.put(component, Integer.parseInt(String.format("%-9s", matcher.group(component)).replace(" ", "0")));
-                        } else {
-                            timeMap.put(component, Integer.parseInt(matcher.group(component)));
-                        }
-                    }
-                }
-                if (matcher.group("timezone") != null) {
-                    this.time = this.parseTimeMap(timeMap, matcher.group("timezone"));
-                } else {
-                    this.time = this.parseTimeMap(timeMap, timezone);
-                }
-            } else {
-                throw new RuntimeException("The combination of the time components is incorrect.");
-            }
+            this.time = STemporalParser.parseTime(timeString.trim(), timezone);
         }
     }
 
@@ -81,18 +61,36 @@ public class STime {
         }
     }
 
+    @Override
     public Duration difference(STime time) {
         return Duration.between(this.time, time.getTime());
     }
 
+    @Override
     public boolean isBefore(STime time) {
         return this.time.isBefore(time.getTime());
     }
 
+    @Override
     public boolean isAfter(STime time) {
         return this.time.isAfter(time.getTime());
     }
 
+    @Override
+    public int compareTo(STime time) {
+        return this.time.compareTo(time.getTime());
+    }
+
+    @Override
+    public OffsetTime getSystemTimePoint() {
+        return this.time;
+    }
+
+    @Override
+    public byte getType() {
+        return SEpochTimePoint.TIME;
+    }
+
 
     public OffsetTime getTime() {
         return this.time;
@@ -106,7 +104,7 @@ public class STime {
         int microsecond = timeMap.getOrDefault("microsecond", 0);
         int nanosecond = timeMap.getOrDefault("nanosecond", 0) + millisecond * 1000000 + microsecond * 1000;
         if (timezone != null) {
-            return OffsetTime.of(hour, minute, second, nanosecond, ZoneOffset.of(timezone));
+            return OffsetTime.of(hour, minute, second, nanosecond, STimezoneCache.getZoneOffset(timezone));
         } else {
             return OffsetTime.of(hour, minute, second, nanosecond, ZoneOffset.UTC);
         }
@@ -2,21 +2,38 @@ package cn.scypher.neo4j.plugin.datetime;
 
 import java.time.*;
 import java.util.Map;
-
-public class STimePoint {
-    // 为LocalDate、OffsetTime、LocalTime、ZonedDateTime或LocalDateTime类型
-    private final Object timePoint;
+import java.util.concurrent.ConcurrentHashMap;
+
+public class STimePoint implements Comparable<STimePoint> {
+    // 为SDate、STime、SLocalTime、SDateTime或SLocalDateTime类型
+    private final STemporal<?> timePoint;
+    // 用于比较的纪元编码时间点
+    private final SEpochTimePoint epochTimePoint;
+    // 按时间点类型和时区缓存的MIN、MAX和NOW
+    @SuppressWarnings("unchecked")
+    private static final ConcurrentHashMap<String, STimePoint[]>[] sentinels = new ConcurrentHashMap[]{
+            new ConcurrentHashMap<>(), new ConcurrentHashMap<>(), new ConcurrentHashMap<>(), new ConcurrentHashMap<>(), new ConcurrentHashMap<>()};
 
     public STimePoint(String timePointType, String timezone) {
+        this(timePointType, timezone, Clock.systemDefaultZone());
+    }
+
+    /**
+     * @param timePointType 时间点类型
+     * @param timezone      默认时区
+     * @param clock         获取当前时刻所用的时钟，date、localtime和localdatetime使用时钟自身的时区
+     */
+    public STimePoint(String timePointType, String timezone, Clock clock) {
         switch (timePointType) {
-            case "date" -> this.timePoint = new SDate();
-            case "time" -> this.timePoint = new STime(timezone);
-            case "localtime" -> this.timePoint = new SLocalTime();
-            case "datetime" -> this.timePoint = new SDateTime(timezone);
-            case "localdatetime" -> this.timePoint = new SLocalDateTime();
+            case "date" -> this.timePoint = new SDate(clock);
+            case "time" -> this.timePoint = new STime(timezone, clock);
+            case "localtime" -> this.timePoint = new SLocalTime(clock);
+            case "datetime" -> this.timePoint = new SDateTime(timezone, clock);
+            case "localdatetime" -> this.timePoint = new SLocalDateTime(clock);
             default ->
                     throw new RuntimeException("The time point type must be date, time, localtime, datetime or localdatetime but was" + timePointType);
         }
+        this.epochTimePoint = SEpochTimePoint.of(this.getSystemTimePoint());
     }
 
     /**
@@ -37,6 +54,7 @@ public class STimePoint {
         } else {
             throw new RuntimeException("Type mismatch: expected LocalDate, OffsetTime, LocalTime, ZonedDateTime or LocalDateTime but was " + timePoint.getClass().getSimpleName());
         }
+        this.epochTimePoint = SEpochTimePoint.of(this.getSystemTimePoint());
     }
 
     /**
@@ -88,167 +106,122 @@ public class STimePoint {
         } else {
             throw new RuntimeException("Type mismatch: expected String or Map but was " + timePoint.getClass().getSimpleName());
         }
+        this.epochTimePoint = SEpochTimePoint.of(this.getSystemTimePoint());
     }
 
     public Duration difference(STimePoint timePoint) {
-        if (this.getTimePointType().equals(timePoint.getTimePointType())) {
-            if (this.timePoint instanceof SDate) {
-                return ((SDate) this.timePoint).difference((SDate) timePoint.getTimePoint());
-            } else if (this.timePoint instanceof STime) {
-                return ((STime) this.timePoint).difference((STime) timePoint.getTimePoint());
-            } else if (this.timePoint instanceof SLocalTime) {
-                return ((SLocalTime) this.timePoint).difference((SLocalTime) timePoint.getTimePoint());
-            } else if (this.timePoint instanceof SDateTime) {
-                return ((SDateTime) this.timePoint).difference((SDateTime) timePoint.getTimePoint());
-            } else if (this.timePoint instanceof SLocalDateTime) {
-                return ((SLocalDateTime) this.timePoint).difference((SLocalDateTime) timePoint.getTimePoint());
-            }
-            return null;
+        if (this.epochTimePoint.getType() == timePoint.getEpochTimePoint().getType()) {
+            return difference(this.timePoint, timePoint.getTimePoint());
         } else {
             throw new RuntimeException("Only the time points of the same type can make a difference");
         }
     }
 
+    /**
+     * 调用前已检查两个时间点的类型相同
+     */
+    @SuppressWarnings("unchecked")
+    private static <T extends STemporal<T>> Duration difference(STemporal<T> timePoint1, STemporal<?> timePoint2) {
+        return timePoint1.difference((T) timePoint2);
+    }
+
+    @Override
+    public int compareTo(STimePoint timePoint) {
+        return this.epochTimePoint.compareTo(timePoint.getEpochTimePoint());
+    }
+
     public boolean isBefore(STimePoint timePoint) {
-        if (this.getTimePointType().equals(timePoint.getTimePointType())) {
-            if (this.timePoint instanceof SDate) {
-                return ((SDate) this.timePoint).isBefore((SDate) timePoint.getTimePoint());
-            } else if (this.timePoint instanceof STime) {
-                return ((STime) this.timePoint).isBefore((STime) timePoint.getTimePoint());
-            } else if (this.timePoint instanceof SLocalTime) {
-                return ((SLocalTime) this.timePoint).isBefore((SLocalTime) timePoint.getTimePoint());
-            } else if (this.timePoint instanceof SDateTime) {
-                return ((SDateTime) this.timePoint).isBefore((SDateTime) timePoint.getTimePoint());
-            } else if (this.timePoint instanceof SLocalDateTime) {
-                return ((SLocalDateTime) this.timePoint).isBefore((SLocalDateTime) timePoint.getTimePoint());
-            }
-            return false;
-        } else {
-            throw new RuntimeException("Only the time points of the same type can be compared");
-        }
+        return this.epochTimePoint.isBefore(timePoint.getEpochTimePoint());
     }
 
     public boolean isNotBefore(STimePoint timePoint) {
-        if (this.getTimePointType().equals(timePoint.getTimePointType())) {
-            if (this.timePoint instanceof SDate) {
-                return !((SDate) this.timePoint).isBefore((SDate) timePoint.getTimePoint());
-            } else if (this.timePoint instanceof STime) {
-                return !((STime) this.timePoint).isBefore((STime) timePoint.getTimePoint());
-            } else if (this.timePoint instanceof SLocalTime) {
-                return !((SLocalTime) this.timePoint).isBefore((SLocalTime) timePoint.getTimePoint());
-            } else if (this.timePoint instanceof SDateTime) {
-                return !((SDateTime) this.timePoint).isBefore((SDateTime) timePoint.getTimePoint());
-            } else if (this.timePoint instanceof SLocalDateTime) {
-                return !((SLocalDateTime) this.timePoint).isBefore((SLocalDateTime) timePoint.getTimePoint());
-            }
-            return false;
-        } else {
-            throw new RuntimeException("Only the time points of the same type can be compared");
-        }
+        return this.epochTimePoint.isNotBefore(timePoint.getEpochTimePoint());
     }
 
     public boolean isAfter(STimePoint timePoint) {
-        if (this.getTimePointType().equals(timePoint.getTimePointType())) {
-            if (this.timePoint instanceof SDate) {
-                return ((SDate) this.timePoint).isAfter((SDate) timePoint.getTimePoint());
-            } else if (this.timePoint instanceof STime) {
-                return ((STime) this.timePoint).isAfter((STime) timePoint.getTimePoint());
-            } else if (this.timePoint instanceof SLocalTime) {
-                return ((SLocalTime) this.timePoint).isAfter((SLocalTime) timePoint.getTimePoint());
-            } else if (this.timePoint instanceof SDateTime) {
-                return ((SDateTime) this.timePoint).isAfter((SDateTime) timePoint.getTimePoint());
-            } else if (this.timePoint instanceof SLocalDateTime) {
-                return ((SLocalDateTime) this.timePoint).isAfter((SLocalDateTime) timePoint.getTimePoint());
-            }
-            return false;
-        } else {
-            throw new RuntimeException("Only the time points of the same type can be compared");
-        }
+        return this.epochTimePoint.isAfter(timePoint.getEpochTimePoint());
     }
 
     public boolean isNotAfter(STimePoint timePoint) {
-        if (this.getTimePointType().equals(timePoint.getTimePointType())) {
-            if (this.timePoint instanceof SDate) {
-                return !((SDate) this.timePoint).isAfter((SDate) timePoint.getTimePoint());
-            } else if (this.timePoint instanceof STime) {
-                return !((STime) this.timePoint).isAfter((STime) timePoint.getTimePoint());
-            } else if (this.timePoint instanceof SLocalTime) {
-                return !((SLocalTime) this.timePoint).isAfter((SLocalTime) timePoint.getTimePoint());
-            } else if (this.timePoint instanceof SDateTime) {
-                return !((SDateTime) this.timePoint).isAfter((SDateTime) timePoint.getTimePoint());
-            } else if (this.timePoint instanceof SLocalDateTime) {
-                return !((SLocalDateTime) this.timePoint).isAfter((SLocalDateTime) timePoint.getTimePoint());
-            }
-            return false;
-        } else {
-            throw new RuntimeException("Only the time points of the same type can be compared");
-        }
+        return this.epochTimePoint.isNotAfter(timePoint.getEpochTimePoint());
     }
 
     public String getTimePointType() {
-        if (this.timePoint instanceof SDate) {
-            return "date";
-        } else if (this.timePoint instanceof STime) {
-            return "time";
-        } else if (this.timePoint instanceof SLocalTime) {
-            return "localtime";
-        } else if (this.timePoint instanceof SDateTime) {
-            return "datetime";
-        } else if (this.timePoint instanceof SLocalDateTime) {
-            return "localdatetime";
-        }
-        throw new RuntimeException("The time point type must be date, time, localtime, datetime or localdatetime but was" + this.timePoint.getClass().getSimpleName());
+        return this.epochTimePoint.getTimePointType();
+    }
+
+    public SEpochTimePoint getEpochTimePoint() {
+        return this.epochTimePoint;
     }
 
+    /**
+     * @param timePointType 时间点类型
+     * @param timezone      默认时区
+     * @return 返回该类型和时区下的最小时间点
+     */
     public static STimePoint min(String timePointType, String timezone) {
-        switch (timePointType) {
-            case "date" -> {
-                return new STimePoint(new SDate().MIN);
-            }
-            case "time" -> {
-                return new STimePoint(new STime(timezone).MIN);
-            }
-            case "localtime" -> {
-                return new STimePoint(new SLocalTime().MIN);
-            }
-            case "datetime" -> {
-                return new STimePoint(new SDateTime(timezone).MIN);
-            }
-            case "localdatetime" -> {
-                return new STimePoint(new SLocalDateTime().MIN);
-            }
-            default ->
-                    throw new RuntimeException("The time point type must be date, time, localtime, datetime or localdatetime but was" + timePointType);
-        }
+        return getSentinels(timePointType, timezone)[0];
     }
 
+    /**
+     * @param timePointType 时间点类型
+     * @param timezone      默认时区
+     * @return 返回该类型和时区下的最大时间点
+     */
     public static STimePoint max(String timePointType, String timezone) {
-        switch (timePointType) {
-            case "date" -> {
-                return new STimePoint(new SDate().MAX);
-            }
-            case "time" -> {
-                return new STimePoint(new STime(timezone).MAX);
+        return getSentinels(timePointType, timezone)[1];
+    }
+
+    /**
+     * @param timePointType 时间点类型
+     * @param timezone      默认时区
+     * @return 返回该类型和时区下表示NOW的时间点，与new STimePoint("NOW", timePointType, timezone)相等
+     */
+    public static STimePoint nowSentinel(String timePointType, String timezone) {
+        STimePoint now = getSentinels(timePointType, timezone)[2];
+        return now != null ? now : new STimePoint("NOW", timePointType, timezone);
+    }
+
+    private static STimePoint[] getSentinels(String timePointType, String timezone) {
+        byte type = SEpochTimePoint.typeOf(timePointType);
+        return sentinels[type].computeIfAbsent(timezone != null ? timezone : "Z", zone -> createSentinels(type, zone));
+    }
+
+    /**
+     * @return 返回{MIN, MAX, NOW}
+     */
+    private static STimePoint[] createSentinels(byte type, String timezone) {
+        switch (type) {
+            case SEpochTimePoint.DATE -> {
+                return new STimePoint[]{new STimePoint(LocalDate.MIN), new STimePoint(LocalDate.MAX), new STimePoint(LocalDate.MAX.withYear(9999))};
+            }
+            case SEpochTimePoint.TIME -> {
+                // 时区不是合法的时区偏移时，不缓存NOW
+                STimePoint now = null;
+                try {
+                    now = new STimePoint(OffsetTime.of(LocalTime.MAX, STimezoneCache.getZoneOffset(timezone)));
+                } catch (DateTimeException ignored) {
+                }
+                return new STimePoint[]{new STimePoint(OffsetTime.MIN), new STimePoint(OffsetTime.MAX), now};
             }
-            case "localtime" -> {
-                return new STimePoint(new SLocalTime().MAX);
+            case SEpochTimePoint.LOCALTIME -> {
+                return new STimePoint[]{new STimePoint(LocalTime.MIN), new STimePoint(LocalTime.MAX), new STimePoint(LocalTime.MAX)};
             }
-            case "datetime" -> {
-                return new STimePoint(new SDateTime(timezone).MAX);
+            case SEpochTimePoint.DATETIME -> {
+                ZoneId zoneId = STimezoneCache.getZoneId(timezone);
+                ZonedDateTime max = STimezoneCache.getMaxDateTime(zoneId);
+                return new STimePoint[]{new STimePoint(STimezoneCache.getMinDateTime(zoneId)), new STimePoint(max), new STimePoint(max.withYear(9999))};
             }
-            case "localdatetime" -> {
-                return new STimePoint(new SLocalDateTime().MAX);
+            default -> {
+                return new STimePoint[]{new STimePoint(LocalDateTime.MIN), new STimePoint(LocalDateTime.MAX), new STimePoint(LocalDateTime.MAX.withYear(9999))};
             }
-            default ->
-                    throw new RuntimeException("The time point type must be date, time, localtime, datetime or localdatetime but was" + timePointType);
         }
     }
 
-
     /**
      * @return 返回SDate、STime、SLocalTime、SDateTime或SLocalDateTime
      */
-    public Object getTimePoint() {
+    public STemporal<?> getTimePoint() {
         return this.timePoint;
     }
 
@@ -256,17 +229,6 @@ public class STimePoint {
      * @return 返回LocalDate、OffsetTime、LocalTime、ZonedDateTime或LocalDateTime
      */
     public Object getSystemTimePoint() {
-        if (this.timePoint instanceof SDate) {
-            return ((SDate) this.timePoint).getDate();
-        } else if (this.timePoint instanceof STime) {
-            return ((STime) this.timePoint).getTime();
-        } else if (this.timePoint instanceof SLocalTime) {
-            return ((SLocalTime) this.timePoint).getLocalTime();
-        } else if (this.timePoint instanceof SDateTime) {
-            return ((SDateTime) this.timePoint).getDateTime();
-        } else if (this.timePoint instanceof SLocalDateTime) {
-            return ((SLocalDateTime) this.timePoint).getLocalDateTime();
-        }
-        return null;
+        return this.timePoint.getSystemTimePoint();
     }
 }
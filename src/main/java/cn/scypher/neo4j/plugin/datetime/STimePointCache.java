@@ -0,0 +1,106 @@
+package cn.scypher.neo4j.plugin.datetime;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 时间点字符串的解析结果缓存，键为(字符串, 时间点类型, 时区)，值为不可变的STimePoint。
+ * 缓存被划分为多个段，每个段为一个按访问顺序淘汰的LRU，以减少并发访问时的锁竞争。
+ */
+public final class STimePointCache {
+    private static final int SEGMENT_COUNT = 16;
+    private static final int DEFAULT_CAPACITY = 4096;
+
+    private static final Segment[] segments = new Segment[SEGMENT_COUNT];
+    private static final LongAdder hits = new LongAdder();
+    private static final LongAdder misses = new LongAdder();
+    private static final LongAdder evictions = new LongAdder();
+
+    static {
+        for (int i = 0; i < SEGMENT_COUNT; i++) {
+            segments[i] = new Segment(DEFAULT_CAPACITY / SEGMENT_COUNT);
+        }
+    }
+
+    private STimePointCache() {
+    }
+
+    private record Key(String timePoint, String timePointType, String timezone) {
+    }
+
+    private static final class Segment extends LinkedHashMap<Key, STimePoint> {
+        private final int capacity;
+
+        private Segment(int capacity) {
+            super(capacity * 2, 0.75f, true);
+            this.capacity = capacity;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Key, STimePoint> eldest) {
+            if (size() > this.capacity) {
+                evictions.increment();
+                return true;
+            }
+            return false;
+        }
+    }
+
+    /**
+     * @param timePoint     时间点的输入，为string或Map类型
+     * @param timePointType 时间点类型
+     * @param timezone      默认时区
+     * @return 返回解析后的时间点，仅缓存string类型的输入
+     */
+    public static STimePoint getTimePoint(Object timePoint, String timePointType, String timezone) {
+        if (!(timePoint instanceof String timePointString)) {
+            return new STimePoint(timePoint, timePointType, timezone);
+        }
+        Key key = new Key(timePointString, timePointType, timezone);
+        Segment segment = segments[(key.hashCode() & 0x7fffffff) % SEGMENT_COUNT];
+        STimePoint result;
+        synchronized (segment) {
+            result = segment.get(key);
+        }
+        if (result != null) {
+            hits.increment();
+            return result;
+        }
+        misses.increment();
+        // 在锁外解析，解析失败时抛出异常且不缓存
+        result = new STimePoint(timePointString, timePointType, timezone);
+        synchronized (segment) {
+            segment.put(key, result);
+        }
+        return result;
+    }
+
+    public static void clear() {
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                segment.clear();
+            }
+        }
+    }
+
+    /**
+     * @return 返回缓存的大小和命中、未命中、淘汰的次数
+     */
+    public static Map<String, Object> getStatistics() {
+        long size = 0;
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                size += segment.size();
+            }
+        }
+        Map<String, Object> statistics = new HashMap<>();
+        statistics.put("size", size);
+        statistics.put("capacity", (long) DEFAULT_CAPACITY);
+        statistics.put("hits", hits.sum());
+        statistics.put("misses", misses.sum());
+        statistics.put("evictions", evictions.sum());
+        return statistics;
+    }
+}
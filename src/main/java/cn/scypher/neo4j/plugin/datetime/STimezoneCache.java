@@ -0,0 +1,46 @@
+package cn.scypher.neo4j.plugin.datetime;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 共享的时区缓存，避免重复调用ZoneId.of和ZoneOffset.of解析时区
+ */
+public final class STimezoneCache {
+    private static final ConcurrentHashMap<String, ZoneId> zoneIds = new ConcurrentHashMap<>();
+    private static final ConcurrentHashMap<String, ZoneOffset> zoneOffsets = new ConcurrentHashMap<>();
+    // 每个时区下datetime的最小值和最大值
+    private static final ConcurrentHashMap<ZoneId, ZonedDateTime[]> dateTimeBounds = new ConcurrentHashMap<>();
+
+    private STimezoneCache() {
+    }
+
+    /**
+     * @param timezone 时区，为null时默认为UTC
+     */
+    public static ZoneId getZoneId(String timezone) {
+        return zoneIds.computeIfAbsent(timezone != null ? timezone : "Z", ZoneId::of);
+    }
+
+    /**
+     * @param timezone 时区偏移，为null时默认为UTC
+     */
+    public static ZoneOffset getZoneOffset(String timezone) {
+        return zoneOffsets.computeIfAbsent(timezone != null ? timezone : "Z", ZoneOffset::of);
+    }
+
+    public static ZonedDateTime getMinDateTime(ZoneId zoneId) {
+        return getDateTimeBounds(zoneId)[0];
+    }
+
+    public static ZonedDateTime getMaxDateTime(ZoneId zoneId) {
+        return getDateTimeBounds(zoneId)[1];
+    }
+
+    private static ZonedDateTime[] getDateTimeBounds(ZoneId zoneId) {
+        return dateTimeBounds.computeIfAbsent(zoneId, zone -> new ZonedDateTime[]{ZonedDateTime.of(LocalDateTime.MIN, zone), ZonedDateTime.of(LocalDateTime.MAX, zone)});
+    }
+}
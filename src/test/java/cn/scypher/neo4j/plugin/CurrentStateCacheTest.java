@@ -0,0 +1,75 @@
+package cn.scypher.neo4j.plugin;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.neo4j.driver.*;
+import org.neo4j.driver.Record;
+import org.neo4j.harness.Neo4j;
+import org.neo4j.harness.Neo4jBuilders;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+public class CurrentStateCacheTest {
+    private Driver driver;
+    private Neo4j embeddedDatabaseServer;
+    private Session session;
+
+    @BeforeAll
+    void initializeNeo4j() {
+        this.embeddedDatabaseServer = Neo4jBuilders.newInProcessBuilder()
+                .withDisabledServer()
+                .withFunction(ReadingQuery.class)
+                .withFunction(SDateTimeOperation.class)
+                .withFunction(CurrentStateCache.class)
+                .withProcedure(CurrentStateCache.class)
+                .build();
+        this.driver = GraphDatabase.driver(embeddedDatabaseServer.boltURI());
+        this.session = driver.session();
+    }
+
+    @AfterAll
+    void closeNeo4j() {
+        this.driver.close();
+        this.embeddedDatabaseServer.close();
+    }
+
+    @Test
+    public void testCurrentState() {
+        System.out.println("testCurrentState");
+        this.session.run("CREATE (n:Station:Object {intervalFrom: scypher.timePoint('2010'), intervalTo: scypher.timePoint('NOW')})-[:OBJECT_PROPERTY]->" +
+                "(p:Property {content:'name', intervalFrom: scypher.timePoint('2010'), intervalTo: scypher.timePoint('NOW')})-[:PROPERTY_VALUE]->" +
+                "(v1:Value {content:'North', intervalFrom: scypher.timePoint('2010'), intervalTo: scypher.timePoint('2015')})," +
+                "(p)-[:PROPERTY_VALUE]->(v2:Value {content:'Central', intervalFrom: scypher.timePoint('2016'), intervalTo: scypher.timePoint('NOW')})");
+        for (int i = 0; i < 3; i++) {
+            Record record = this.session.run("MATCH (n:Station) RETURN scypher.getPropertyValue(n, 'name', NULL) AS names, " +
+                    "scypher.getPropertyValue(n, 'name', scypher.timePoint('NOW')) AS name").single();
+            System.out.println(record);
+            assertEquals(List.of("North", "Central"), record.get("names").asList());
+            assertEquals("Central", record.get("name").asString());
+        }
+        Record record = this.session.run("RETURN scypher.currentStateCache.statistics() AS statistics").single();
+        System.out.println(record);
+        // 只有时间窗口为NOW的查找使用缓存，历史值不缓存
+        assertEquals(1, record.get("statistics").get("misses").asLong());
+        assertEquals(2, record.get("statistics").get("hits").asLong());
+        // 提交后的修改使缓存失效
+        this.session.run("MATCH (:Station)-[:OBJECT_PROPERTY]->(:Property {content:'name'})-[:PROPERTY_VALUE]->(v:Value {content:'Central'}) SET v.content = 'South'");
+        record = this.session.run("MATCH (n:Station) RETURN scypher.getPropertyValue(n, 'name', scypher.timePoint('NOW')) AS name").single();
+        System.out.println(record);
+        assertEquals("South", record.get("name").asString());
+        this.session.run("MATCH (n:Station) CREATE (n)-[:OBJECT_PROPERTY]->(:Property {content:'code', intervalFrom: scypher.timePoint('2010'), intervalTo: scypher.timePoint('NOW')})" +
+                "-[:PROPERTY_VALUE]->(:Value {content: 7, intervalFrom: scypher.timePoint('2010'), intervalTo: scypher.timePoint('NOW')})");
+        record = this.session.run("MATCH (n:Station) RETURN scypher.getPropertyValue(n, 'code', NULL) AS code").single();
+        System.out.println(record);
+        assertEquals(7, record.get("code").asInt());
+        this.session.run("CALL scypher.setCurrentStateCache(false)");
+        record = this.session.run("MATCH (n:Station) RETURN scypher.getPropertyValue(n, 'name', NULL) AS names, scypher.currentStateCache.statistics() AS statistics").single();
+        System.out.println(record);
+        this.session.run("CALL scypher.setCurrentStateCache(true)");
+    }
+}
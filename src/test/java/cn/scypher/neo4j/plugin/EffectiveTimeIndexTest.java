@@ -0,0 +1,112 @@
+package cn.scypher.neo4j.plugin;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.neo4j.driver.*;
+import org.neo4j.driver.Record;
+import org.neo4j.driver.exceptions.ClientException;
+import org.neo4j.harness.Neo4j;
+import org.neo4j.harness.Neo4jBuilders;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+public class EffectiveTimeIndexTest {
+    private Driver driver;
+    private Neo4j embeddedDatabaseServer;
+    private Session session;
+
+    @BeforeAll
+    void initializeNeo4j() {
+        this.embeddedDatabaseServer = Neo4jBuilders.newInProcessBuilder()
+                .withDisabledServer()
+                .withFunction(SDateTimeOperation.class)
+                .withFunction(EffectiveTimeIndex.class)
+                .withProcedure(EffectiveTimeIndex.class)
+                .build();
+        this.driver = GraphDatabase.driver(embeddedDatabaseServer.boltURI());
+        this.session = driver.session();
+    }
+
+    @AfterAll
+    void closeNeo4j() {
+        this.driver.close();
+        this.embeddedDatabaseServer.close();
+    }
+
+    @Test
+    public void testEffectiveTimeIndex() {
+        System.out.println("testEffectiveTimeIndex");
+        // 每个节点有效一年，第0个节点一直有效
+        this.session.run("UNWIND range(0, 99) AS i " +
+                "CREATE (:Contract:Object {number: i, intervalFrom: scypher.timePoint(toString(1950 + i)), " +
+                "intervalTo: CASE WHEN i = 0 THEN scypher.timePoint('NOW') ELSE datetime(toString(1951 + i)) - duration('PT1S') END})");
+        this.session.run("MATCH (a:Contract {number: 0}), (b:Contract) WHERE b.number > 0 " +
+                "CREATE (a)-[:SIGNED {intervalFrom: b.intervalFrom, intervalTo: b.intervalTo}]->(b)");
+        List<Record> records = this.session.run("CALL scypher.nodesValidAt('Contract', scypher.timePoint('2000-06-01')) YIELD node RETURN node.number AS number").list();
+        System.out.println(records);
+        assertEquals(List.of(0L, 50L), records.stream().map(record -> record.get("number").asLong()).toList());
+        records = this.session.run("CALL scypher.nodesValidDuring('Contract', scypher.interval('2010-06-01', '2012-06-01')) YIELD node RETURN node.number AS number").list();
+        System.out.println(records);
+        assertEquals(List.of(0L, 60L, 61L, 62L), records.stream().map(record -> record.get("number").asLong()).toList());
+        records = this.session.run("CALL scypher.relationshipsValidAt('SIGNED', scypher.timePoint('2000-06-01')) YIELD relationship RETURN endNode(relationship).number AS number").list();
+        System.out.println(records);
+        assertEquals(List.of(50L), records.stream().map(record -> record.get("number").asLong()).toList());
+        // 提交后的修改记录在增量中
+        this.session.run("MATCH (n:Contract {number: 70}) SET n.intervalFrom = scypher.timePoint('1999')");
+        this.session.run("MATCH (n:Contract {number: 50}) REMOVE n:Contract");
+        this.session.run("CREATE (:Contract:Object {number: 100, intervalFrom: scypher.timePoint('2000-03-01'), intervalTo: scypher.timePoint('2000-09-01')})");
+        records = this.session.run("CALL scypher.nodesValidAt('Contract', scypher.timePoint('2000-06-01')) YIELD node RETURN node.number AS number").list();
+        System.out.println(records);
+        assertEquals(List.of(0L, 70L, 100L), records.stream().map(record -> record.get("number").asLong()).toList());
+        // 当前事务有未提交的修改时退回到遍历查找
+        try (Transaction transaction = this.session.beginTransaction()) {
+            transaction.run("MATCH (n:Contract {number: 100}) DETACH DELETE n");
+            records = transaction.run("CALL scypher.nodesValidAt('Contract', scypher.timePoint('2000-06-01')) YIELD node RETURN node.number AS number ORDER BY number").list();
+            System.out.println(records);
+            assertEquals(List.of(0L, 70L), records.stream().map(record -> record.get("number").asLong()).toList());
+            transaction.rollback();
+        }
+        // 没有该标签的节点不记录在该标签的增量中
+        String removed = "RETURN scypher.effectiveTimeIndex.statistics().nodes.Contract.removed AS removed";
+        long removedCount = this.session.run(removed).single().get("removed").asLong();
+        this.session.run("UNWIND range(0, 9) AS i CREATE (:Property {content: 'name', intervalFrom: scypher.timePoint('2000'), intervalTo: scypher.timePoint('NOW')})").consume();
+        assertEquals(removedCount, this.session.run(removed).single().get("removed").asLong());
+        // 被删除的节点和边从索引中移除
+        this.session.run("MATCH (n:Contract {number: 70}) DETACH DELETE n").consume();
+        this.session.run("MATCH ()-[r:SIGNED]->({number: 50}) DELETE r").consume();
+        records = this.session.run("CALL scypher.nodesValidAt('Contract', scypher.timePoint('2000-06-01')) YIELD node RETURN node.number AS number").list();
+        assertEquals(List.of(0L, 100L), records.stream().map(record -> record.get("number").asLong()).toList());
+        records = this.session.run("CALL scypher.relationshipsValidAt('SIGNED', scypher.timePoint('2000-06-01')) YIELD relationship RETURN endNode(relationship).number AS number").list();
+        assertEquals(List.of(), records);
+        Record record = this.session.run("RETURN scypher.effectiveTimeIndex.statistics()").single();
+        System.out.println(record);
+    }
+
+    @Test
+    public void testMixedEffectiveTime() {
+        System.out.println("testMixedEffectiveTime");
+        this.session.run("CREATE (:Ticket:Object {number: 1, intervalFrom: scypher.timePoint('2000'), intervalTo: scypher.timePoint('NOW')}), " +
+                "(:Ticket:Object {number: 2, intervalFrom: date('2000-01-01'), intervalTo: date('2020-01-01')})").consume();
+        String mixed = "RETURN scypher.effectiveTimeIndex.statistics().nodes.Ticket.mixed AS mixed";
+        // 时间点类型不一致时记录在索引中，之后的查找不再构建区间树
+        for (int i = 0; i < 2; i++) {
+            ClientException exception = assertThrows(ClientException.class, () -> this.session.run("CALL scypher.nodesValidAt('Ticket', scypher.timePoint('2010')) YIELD node RETURN node").consume());
+            System.out.println(exception.getMessage());
+            assertTrue(this.session.run(mixed).single().get("mixed").asBoolean());
+        }
+        // 修改后重新构建区间树
+        this.session.run("MATCH (n:Ticket {number: 2}) DELETE n").consume();
+        assertFalse(this.session.run(mixed).single().get("mixed").asBoolean());
+        List<Record> records = this.session.run("CALL scypher.nodesValidAt('Ticket', scypher.timePoint('2010')) YIELD node RETURN node.number AS number").list();
+        assertEquals(List.of(1L), records.stream().map(record -> record.get("number").asLong()).toList());
+        assertEquals(1, this.session.run("RETURN scypher.effectiveTimeIndex.statistics().nodes.Ticket.size AS size").single().get("size").asLong());
+    }
+}
@@ -0,0 +1,106 @@
+package cn.scypher.neo4j.plugin;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.neo4j.driver.Driver;
+import org.neo4j.driver.GraphDatabase;
+import org.neo4j.driver.Record;
+import org.neo4j.driver.Session;
+import org.neo4j.driver.Transaction;
+import org.neo4j.graphdb.Direction;
+import org.neo4j.graphdb.Label;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.RelationshipType;
+import org.neo4j.harness.Neo4j;
+import org.neo4j.harness.Neo4jBuilders;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+public class PropertyNodeIndexTest {
+    private Driver driver;
+    private Neo4j embeddedDatabaseServer;
+    private Session session;
+
+    @BeforeAll
+    void initializeNeo4j() {
+        this.embeddedDatabaseServer = Neo4jBuilders.newInProcessBuilder()
+                .withDisabledServer()
+                .withFunction(ReadingQuery.class)
+                .withFunction(SDateTimeOperation.class)
+                .withFunction(PropertyNodeIndex.class)
+                .withProcedure(PropertyNodeIndex.class)
+                .build();
+        this.driver = GraphDatabase.driver(embeddedDatabaseServer.boltURI());
+        this.session = driver.session();
+    }
+
+    @AfterAll
+    void closeNeo4j() {
+        this.driver.close();
+        this.embeddedDatabaseServer.close();
+    }
+
+    /**
+     * @return 在嵌入式事务中通过属性名索引查找Person节点的属性节点，返回属性节点的值，若没有，返回null
+     */
+    private Object lookup(String propertyName) {
+        try (org.neo4j.graphdb.Transaction transaction = this.embeddedDatabaseServer.defaultDatabaseService().beginTx()) {
+            Node objectNode = transaction.findNodes(Label.label("Person")).next();
+            Node propertyNode = PropertyNodeIndex.getPropertyNode(transaction, objectNode, propertyName);
+            if (propertyNode == null) {
+                return null;
+            }
+            return propertyNode.getRelationships(Direction.OUTGOING, RelationshipType.withName("PROPERTY_VALUE")).iterator().next().getEndNode().getProperty("content");
+        }
+    }
+
+    private long indexSize() {
+        return this.session.run("RETURN scypher.propertyIndex.statistics() AS statistics").single().get("statistics").get("size").asLong();
+    }
+
+    @Test
+    public void testPropertyIndex() {
+        System.out.println("testPropertyIndex");
+        this.session.run("CREATE (n:Person:Object {intervalFrom: scypher.timePoint('2010'), intervalTo: scypher.timePoint('NOW')})-[:OBJECT_PROPERTY]->" +
+                "(p:Property {content:'name', intervalFrom: scypher.timePoint('2010'), intervalTo: scypher.timePoint('NOW')})-[:PROPERTY_VALUE]->" +
+                "(v:Value {content:'Nick', intervalFrom: scypher.timePoint('2010'), intervalTo: scypher.timePoint('NOW')})").consume();
+        Record record = this.session.run("CALL scypher.rebuildPropertyIndex()").single();
+        System.out.println(record);
+        assertEquals(1, record.get("objects").asLong());
+        assertEquals(1, record.get("properties").asLong());
+        assertEquals(1, record.get("kept").asLong());
+        assertEquals("Nick", lookup("name"));
+        assertNull(lookup("age"));
+        // 新增的属性在提交后可见
+        this.session.run("MATCH (n:Person) CREATE (n)-[:OBJECT_PROPERTY]->" +
+                "(p:Property {content:'age', intervalFrom: scypher.timePoint('2010'), intervalTo: scypher.timePoint('NOW')})-[:PROPERTY_VALUE]->" +
+                "(v:Value {content:20, intervalFrom: scypher.timePoint('2010'), intervalTo: scypher.timePoint('NOW')})").consume();
+        assertEquals(0, indexSize());
+        assertEquals(20L, lookup("age"));
+        assertEquals(1, indexSize());
+        // 修改属性名后原属性名不可见
+        this.session.run("MATCH (:Person)-[:OBJECT_PROPERTY]->(p:Property {content:'age'}) SET p.content = 'years'").consume();
+        assertEquals(0, indexSize());
+        assertNull(lookup("age"));
+        assertEquals(20L, lookup("years"));
+        // 删除属性节点后属性不可见
+        this.session.run("MATCH (:Person)-[:OBJECT_PROPERTY]->(p:Property {content:'years'})-[:PROPERTY_VALUE]->(v) DETACH DELETE p, v").consume();
+        assertEquals(0, indexSize());
+        assertNull(lookup("years"));
+        assertEquals("Nick", lookup("name"));
+        // 有未提交的修改时不重建索引
+        try (Transaction transaction = this.session.beginTransaction()) {
+            transaction.run("CREATE (n:Person)-[:OBJECT_PROPERTY]->(:Property {content:'name'})");
+            record = transaction.run("CALL scypher.rebuildPropertyIndex()").single();
+            assertEquals(0, record.get("kept").asLong());
+            transaction.rollback();
+        }
+        assertEquals(1, indexSize());
+        record = this.session.run("RETURN scypher.propertyIndex.statistics() AS statistics").single();
+        System.out.println(record);
+    }
+}
@@ -0,0 +1,130 @@
+package cn.scypher.neo4j.plugin;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.neo4j.driver.*;
+import org.neo4j.driver.Record;
+import org.neo4j.graphdb.Direction;
+import org.neo4j.graphdb.Label;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.RelationshipType;
+import org.neo4j.harness.Neo4j;
+import org.neo4j.harness.Neo4jBuilders;
+
+import cn.scypher.neo4j.plugin.datetime.STimePoint;
+
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+public class PropertyTimelineIndexTest {
+    private Driver driver;
+    private Neo4j embeddedDatabaseServer;
+    private Session session;
+
+    @BeforeAll
+    void initializeNeo4j() {
+        this.embeddedDatabaseServer = Neo4jBuilders.newInProcessBuilder()
+                .withDisabledServer()
+                .withFunction(ReadingQuery.class)
+                .withFunction(SDateTimeOperation.class)
+                .withFunction(PropertyTimelineIndex.class)
+                .build();
+        this.driver = GraphDatabase.driver(embeddedDatabaseServer.boltURI());
+        this.session = driver.session();
+    }
+
+    @AfterAll
+    void closeNeo4j() {
+        this.driver.close();
+        this.embeddedDatabaseServer.close();
+    }
+
+    @Test
+    public void testTimeline() {
+        System.out.println("testTimeline");
+        // 值节点以与有效时间相反的顺序创建
+        this.session.run("CREATE (n:Sensor:Object {intervalFrom: scypher.timePoint('1950'), intervalTo: scypher.timePoint('NOW')})-[:OBJECT_PROPERTY]->" +
+                "(p:Property {content:'reading', intervalFrom: scypher.timePoint('1950'), intervalTo: scypher.timePoint('NOW')}) " +
+                "WITH p UNWIND range(49, 0, -1) AS i " +
+                "CREATE (p)-[:PROPERTY_VALUE]->(:Value {content: i, intervalFrom: scypher.timePoint(toString(2000 + i)), " +
+                "intervalTo: CASE WHEN i = 49 THEN scypher.timePoint('NOW') ELSE datetime(toString(2001 + i)) - duration('PT1S') END})");
+        Record record = this.session.run("MATCH (n:Sensor) RETURN scypher.getPropertyValue(n, 'reading', scypher.timePoint('2010-06-01'))").single();
+        System.out.println(record);
+        assertEquals(10, record.get(0).asInt());
+        record = this.session.run("MATCH (n:Sensor) RETURN scypher.getPropertyValue(n, 'reading', scypher.interval('2045-06-01', 'NOW'))").single();
+        System.out.println(record);
+        assertEquals(List.of(45L, 46L, 47L, 48L, 49L), record.get(0).asList());
+        record = this.session.run("MATCH (n:Sensor) RETURN scypher.getPropertyValue(n, 'reading', scypher.timePoint('1990'))").single();
+        System.out.println(record);
+        // 提交后的修改可见
+        this.session.run("MATCH (:Sensor)-[:OBJECT_PROPERTY]->()-[:PROPERTY_VALUE]->(v:Value {content: 10}) SET v.intervalFrom = scypher.timePoint('2010-07-01')");
+        record = this.session.run("MATCH (n:Sensor) RETURN scypher.getPropertyValue(n, 'reading', scypher.timePoint('2010-06-01')), " +
+                "scypher.getValueEffectiveTime(n, 'reading', scypher.interval('2009-12-31', '2010-12-31'))").single();
+        System.out.println(record);
+        // 当前事务有未提交的修改时退回到遍历查找
+        try (Transaction transaction = this.session.beginTransaction()) {
+            transaction.run("MATCH (:Sensor)-[:OBJECT_PROPERTY]->()-[:PROPERTY_VALUE]->(v:Value {content: 10}) SET v.intervalFrom = scypher.timePoint('2010')");
+            record = transaction.run("MATCH (n:Sensor) RETURN scypher.getPropertyValue(n, 'reading', scypher.timePoint('2010-06-01'))").single();
+            System.out.println(record);
+            assertEquals(10, record.get(0).asInt());
+            transaction.rollback();
+        }
+        record = this.session.run("RETURN scypher.timelineIndex.statistics()").single();
+        System.out.println(record);
+    }
+
+    /**
+     * @return 在嵌入式事务中分别通过时间线索引和遍历查找每个Gauge节点的属性在时间点的值节点，返回两者的值
+     */
+    private List<Object> lookup(ZonedDateTime timePoint, ZonedDateTime snapshotTimePoint) {
+        List<Object> contents = new ArrayList<>();
+        try (org.neo4j.graphdb.Transaction transaction = this.embeddedDatabaseServer.defaultDatabaseService().beginTx()) {
+            STemporalContext context = GlobalVariablesManager.getContext(transaction);
+            if (snapshotTimePoint != null) {
+                context = context.withSnapshotTimePoint(new STimePoint(snapshotTimePoint));
+            }
+            STimePoint currentTimePoint = TransactionClock.getCurrentTimePoint(transaction);
+            for (Node objectNode : transaction.findNodes(Label.label("Gauge")).stream().toList()) {
+                Node propertyNode = objectNode.getSingleRelationship(RelationshipType.withName("OBJECT_PROPERTY"), Direction.OUTGOING).getEndNode();
+                contents.add(PropertyTimelineIndex.getValueNode(transaction, propertyNode, timePoint, currentTimePoint, context).getProperty("content"));
+                contents.add(UpdatingQuery.getValueNode(propertyNode, timePoint, currentTimePoint, context).getProperty("content"));
+            }
+        }
+        return contents;
+    }
+
+    @Test
+    public void testValueNodePriority() {
+        System.out.println("testValueNodePriority");
+        // 两个值节点分别包含指定的时间点和当前时刻，以不同的顺序创建
+        this.session.run("UNWIND [['past', 'current'], ['current', 'past']] AS contents " +
+                "CREATE (n:Gauge:Object {intervalFrom: scypher.timePoint('2000'), intervalTo: scypher.timePoint('NOW')})-[:OBJECT_PROPERTY]->" +
+                "(p:Property {content:'level', intervalFrom: scypher.timePoint('2000'), intervalTo: scypher.timePoint('NOW')}) " +
+                "WITH p, contents UNWIND contents AS content " +
+                "CREATE (p)-[:PROPERTY_VALUE]->(:Value {content: content, " +
+                "intervalFrom: CASE content WHEN 'past' THEN scypher.timePoint('2010') ELSE scypher.timePoint('2020') END, " +
+                "intervalTo: CASE content WHEN 'past' THEN scypher.timePoint('2012') ELSE scypher.timePoint('NOW') END})").consume();
+        ZonedDateTime timePoint = ZonedDateTime.parse("2011-06-01T00:00Z");
+        // 时间点优先于当前时刻
+        List<Object> contents = lookup(timePoint, null);
+        System.out.println(contents);
+        assertEquals(List.of("past", "past", "past", "past"), contents);
+        // snapshot指定的时间点优先于当前时刻
+        contents = lookup(null, timePoint);
+        System.out.println(contents);
+        assertEquals(List.of("past", "past", "past", "past"), contents);
+        // 时间点优先于snapshot指定的时间点
+        contents = lookup(ZonedDateTime.parse("2021-06-01T00:00Z"), timePoint);
+        System.out.println(contents);
+        assertEquals(List.of("current", "current", "current", "current"), contents);
+        contents = lookup(null, null);
+        System.out.println(contents);
+        assertEquals(List.of("current", "current", "current", "current"), contents);
+    }
+}
@@ -8,10 +8,18 @@ import org.neo4j.driver.Driver;
 import org.neo4j.driver.GraphDatabase;
 import org.neo4j.driver.Record;
 import org.neo4j.driver.Session;
+import org.neo4j.driver.Transaction;
+import org.neo4j.driver.Values;
 import org.neo4j.harness.Neo4j;
 import org.neo4j.harness.Neo4jBuilders;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 @TestInstance(TestInstance.Lifecycle.PER_CLASS)
 public class ReadingQueryTest {
@@ -24,6 +32,7 @@ public class ReadingQueryTest {
         this.embeddedDatabaseServer = Neo4jBuilders.newInProcessBuilder()
                 .withDisabledServer()
                 .withFunction(ReadingQuery.class)
+                .withProcedure(ReadingQuery.class)
                 .withFunction(SDateTimeOperation.class)
                 .build();
         this.driver = GraphDatabase.driver(embeddedDatabaseServer.boltURI());
@@ -67,6 +76,27 @@ public class ReadingQueryTest {
         }
     }
 
+    @Test
+    public void testGetComponentOfTimePoints() {
+        System.out.println("testGetComponentOfTimePoints");
+        Record record = this.session.run("RETURN scypher.getPropertyValue(datetime('2015-05-17T12:30:45.123+08:00'), 'quarter', NULL), " +
+                "scypher.getPropertyValue(date('2015-05-17'), 'week', NULL), scypher.getPropertyValue(localdatetime('2016-02-01T08:00'), 'quarterDay', NULL)").single();
+        System.out.println(record);
+        assertEquals(2, record.get(0).asInt());
+        assertEquals(20, record.get(1).asInt());
+        assertEquals(91, record.get(2).asInt());
+        record = this.session.run("RETURN scypher.getComponentOfTimePoints([date('2016-01-01'), date('2015-12-28'), null], 'week'), " +
+                "scypher.getComponentOfTimePoints([date('2016-01-01'), date('2015-12-28'), null], 'weekYear'), " +
+                "scypher.getComponentOfTimePoints([date('2015-03-31'), date('2015-04-01'), null, date('2015-12-31')], 'quarter')").single();
+        System.out.println(record);
+        assertEquals(Arrays.asList(53L, 53L, null), record.get(0).asList());
+        assertEquals(Arrays.asList(2015L, 2015L, null), record.get(1).asList());
+        assertEquals(Arrays.asList(1L, 2L, null, 4L), record.get(2).asList());
+        record = this.session.run("RETURN scypher.getComponentOfTimePoints([datetime('2015-01-01T12:00Z'), datetime('2015-05-17T12:00Z'), null, datetime('2015-12-31T12:00Z')], 'month')").single();
+        System.out.println(record);
+        assertEquals(Arrays.asList(1L, 5L, null, 12L), record.get(0).asList());
+    }
+
     @Test
     public void testGetObjectEffectiveTime() {
         System.out.println("testGetObjectEffectiveTime");
@@ -113,4 +143,193 @@ public class ReadingQueryTest {
             System.out.println(record);
         }
     }
+
+    @Test
+    public void testGetPropertyValues() {
+        System.out.println("testGetPropertyValues");
+        this.session.run("CREATE (n:Student:Object {intervalFrom: scypher.timePoint('2010'), intervalTo: scypher.timePoint('NOW')})-[:OBJECT_PROPERTY]->" +
+                "(p1:Property {content:'name', intervalFrom: scypher.timePoint('2010'), intervalTo: scypher.timePoint('NOW')})-[:PROPERTY_VALUE]->" +
+                "(v1:Value {content:'Nick', intervalFrom: scypher.timePoint('2010'), intervalTo: scypher.timePoint('2022')})," +
+                "(p1)-[:PROPERTY_VALUE]->(v2:Value {content:'Tom', intervalFrom: scypher.timePoint('2023'), intervalTo: scypher.timePoint('NOW')})," +
+                "(n)-[:OBJECT_PROPERTY]->(p2:Property {content:'age', intervalFrom: scypher.timePoint('2010'), intervalTo: scypher.timePoint('NOW')})-[:PROPERTY_VALUE]->" +
+                "(v3:Value {content:20, intervalFrom: scypher.timePoint('2010'), intervalTo: scypher.timePoint('2015')})");
+        // 与逐个属性调用getPropertyValue的结果一致，不存在的属性为NULL
+        Record record = this.session.run("MATCH (n:Student) WITH n, scypher.timePoint('2012') AS t " +
+                "RETURN scypher.getPropertyValues(n, ['name', 'age', 'gender'], t) AS batch, " +
+                "{name: scypher.getPropertyValue(n, 'name', t), age: scypher.getPropertyValue(n, 'age', t), gender: scypher.getPropertyValue(n, 'gender', t)} AS rows").single();
+        System.out.println(record);
+        assertEquals(record.get("rows").asMap(), record.get("batch").asMap());
+        assertEquals("Nick", record.get("batch").get("name").asString());
+        assertEquals(20, record.get("batch").get("age").asInt());
+        assertTrue(record.get("batch").containsKey("gender"));
+        assertTrue(record.get("batch").get("gender").isNull());
+        // 未指定属性名时返回在时间点有效的所有属性
+        record = this.session.run("MATCH (n:Student) WITH n, scypher.timePoint('2023') AS t " +
+                "RETURN scypher.getPropertyValues(n, NULL, t) AS batch, {name: scypher.getPropertyValue(n, 'name', t)} AS rows").single();
+        System.out.println(record);
+        assertEquals(record.get("rows").asMap(), record.get("batch").asMap());
+        // 时间窗口为NULL时返回所有值
+        record = this.session.run("MATCH (n:Student) " +
+                "RETURN scypher.getPropertyValues(n, NULL, NULL) AS batch, " +
+                "{name: scypher.getPropertyValue(n, 'name', NULL), age: scypher.getPropertyValue(n, 'age', NULL)} AS rows").single();
+        System.out.println(record);
+        assertEquals(record.get("rows").asMap(), record.get("batch").asMap());
+        assertEquals(List.of("Nick", "Tom"), record.get("batch").get("name").asList());
+    }
+
+    @Test
+    public void testPropertyValuesAt() {
+        System.out.println("testPropertyValuesAt");
+        this.session.run("UNWIND range(1, 3) AS id " +
+                "CREATE (n:Product:Object {id: id, intervalFrom: scypher.timePoint('2000'), intervalTo: scypher.timePoint('NOW')})-[:OBJECT_PROPERTY]->" +
+                "(p:Property {content:'price', intervalFrom: scypher.timePoint('2000'), intervalTo: scypher.timePoint('NOW')}) " +
+                "WITH id, p UNWIND range(0, 9) AS i " +
+                "CREATE (p)-[:PROPERTY_VALUE]->(:Value {content: id * 100 + i, intervalFrom: scypher.timePoint(toString(2000 + 2 * i)), " +
+                "intervalTo: CASE WHEN i = 9 THEN scypher.timePoint('NOW') ELSE datetime(toString(2002 + 2 * i)) - duration('PT1S') END})");
+        Record record = this.session.run("MATCH (n:Product) WITH n ORDER BY n.id " +
+                "UNWIND [datetime('2019'), datetime('1999'), datetime('2003-05-01'), datetime('2025')] AS t " +
+                "WITH collect(n) AS nodes, collect(t) AS timePoints " +
+                "RETURN scypher.propertyValuesAt(nodes, 'price', timePoints) AS batch, " +
+                "[i IN range(0, size(nodes) - 1) | scypher.getPropertyValue(nodes[i], 'price', timePoints[i])] AS rows").single();
+        System.out.println(record.get("batch"));
+        assertEquals(record.get("rows").asList(), record.get("batch").asList());
+    }
+
+    @Test
+    public void testObjectsAt() {
+        System.out.println("testObjectsAt");
+        this.session.run("CREATE (n:Employee:Object {intervalFrom: scypher.timePoint('2010'), intervalTo: scypher.timePoint('NOW')})-[:OBJECT_PROPERTY]->" +
+                "(p1:Property {content:'name', intervalFrom: scypher.timePoint('2010'), intervalTo: scypher.timePoint('NOW')})-[:PROPERTY_VALUE]->" +
+                "(v1:Value {content:'Nick', intervalFrom: scypher.timePoint('2010'), intervalTo: scypher.timePoint('NOW')})," +
+                "(n)-[:OBJECT_PROPERTY]->(p2:Property {content:'title', intervalFrom: scypher.timePoint('2010'), intervalTo: scypher.timePoint('NOW')})-[:PROPERTY_VALUE]->" +
+                "(v2:Value {content:'Engineer', intervalFrom: scypher.timePoint('2010'), intervalTo: scypher.timePoint('2015')})," +
+                "(p2)-[:PROPERTY_VALUE]->(v3:Value {content:'Manager', intervalFrom: scypher.timePoint('2016'), intervalTo: scypher.timePoint('NOW')})," +
+                "(m:Employee:Object {intervalFrom: scypher.timePoint('2018'), intervalTo: scypher.timePoint('NOW')})-[:OBJECT_PROPERTY]->" +
+                "(p3:Property {content:'name', intervalFrom: scypher.timePoint('2018'), intervalTo: scypher.timePoint('NOW')})-[:PROPERTY_VALUE]->" +
+                "(v4:Value {content:'Tom', intervalFrom: scypher.timePoint('2018'), intervalTo: scypher.timePoint('NOW')})");
+        // 2012年只有n有效，m被排除
+        List<Record> records = this.session.run("CALL scypher.objectsAt('Employee', scypher.timePoint('2012')) YIELD node, properties " +
+                "RETURN properties, node.intervalFrom = scypher.timePoint('2010') AS isN, properties = scypher.getPropertyValues(node, NULL, scypher.timePoint('2012')) AS matches").list();
+        for (Record record : records) {
+            System.out.println(record);
+        }
+        assertEquals(1, records.size());
+        assertTrue(records.get(0).get("isN").asBoolean());
+        assertTrue(records.get(0).get("matches").asBoolean());
+        assertEquals(Map.of("name", "Nick", "title", "Engineer"), records.get(0).get("properties").asMap());
+        // 在该时间点无效的属性值不返回
+        records = this.session.run("CALL scypher.objectsAt('Employee', scypher.timePoint('2015-06')) YIELD properties RETURN properties").list();
+        for (Record record : records) {
+            System.out.println(record);
+        }
+        assertEquals(1, records.size());
+        assertEquals(Map.of("name", "Nick"), records.get(0).get("properties").asMap());
+        records = this.session.run("CALL scypher.objectsAt('Employee', NULL) YIELD properties RETURN properties ORDER BY properties.name").list();
+        for (Record record : records) {
+            System.out.println(record);
+        }
+        assertEquals(2, records.size());
+        assertEquals(Map.of("name", "Nick", "title", "Manager"), records.get(0).get("properties").asMap());
+        assertEquals(Map.of("name", "Tom"), records.get(1).get("properties").asMap());
+    }
+
+    @Test
+    public void testTransactionMemo() {
+        System.out.println("testTransactionMemo");
+        this.session.run("CREATE (n:Department:Object {intervalFrom: scypher.timePoint('2010'), intervalTo: scypher.timePoint('NOW')})-[:OBJECT_PROPERTY]->" +
+                "(p:Property {content:'name', intervalFrom: scypher.timePoint('2010'), intervalTo: scypher.timePoint('NOW')})-[:PROPERTY_VALUE]->" +
+                "(v:Value {content:'Sales', intervalFrom: scypher.timePoint('2010'), intervalTo: scypher.timePoint('NOW')})");
+        try (Transaction transaction = this.session.beginTransaction()) {
+            long hits = transaction.run("RETURN scypher.transactionMemo.statistics().hits AS hits").single().get("hits").asLong();
+            Record record = transaction.run("MATCH (n:Department) " +
+                    "WHERE scypher.getPropertyValue(n, 'name', NULL) = 'Sales' " +
+                    "RETURN scypher.getPropertyValue(n, 'name', NULL) AS name, scypher.transactionMemo.statistics() AS statistics").single();
+            System.out.println(record);
+            assertEquals(hits + 1, record.get("statistics").get("hits").asLong());
+            // 当前事务的写操作使备忘录失效
+            transaction.run("MATCH (:Department)-[:OBJECT_PROPERTY]->(:Property {content:'name'})-[:PROPERTY_VALUE]->(v:Value) SET v.content = 'Marketing'");
+            record = transaction.run("MATCH (n:Department) RETURN scypher.getPropertyValue(n, 'name', NULL) AS name").single();
+            System.out.println(record);
+            assertEquals("Marketing", record.get("name").asString());
+            transaction.rollback();
+        }
+    }
+
+    @Test
+    public void testValueHistory() {
+        System.out.println("testValueHistory");
+        this.session.run("CREATE (n:Meter:Object {intervalFrom: scypher.timePoint('1990'), intervalTo: scypher.timePoint('NOW')})-[:OBJECT_PROPERTY]->" +
+                "(p:Property {content:'reading', intervalFrom: scypher.timePoint('1990'), intervalTo: scypher.timePoint('NOW')}) " +
+                "WITH p UNWIND range(0, 29) AS i " +
+                "CREATE (p)-[:PROPERTY_VALUE]->(:Value {content: i, intervalFrom: scypher.timePoint(toString(1990 + i)), " +
+                "intervalTo: CASE WHEN i = 29 THEN scypher.timePoint('NOW') ELSE datetime(toString(1991 + i)) - duration('PT1S') END})");
+        List<Object> values = new ArrayList<>();
+        String after = null;
+        do {
+            List<Record> records = this.session.run("MATCH (n:Meter) CALL scypher.valueHistory(n, 'reading', scypher.interval('2000', '2010'), 4, $after) YIELD value, from, to, next " +
+                    "RETURN value, from, to, next", Values.parameters("after", after)).list();
+            for (Record record : records) {
+                System.out.println(record);
+                values.add(record.get("value").asLong());
+            }
+            after = records.size() == 4 ? records.get(3).get("next").asString() : null;
+        } while (after != null);
+        assertEquals(List.of(10L, 11L, 12L, 13L, 14L, 15L, 16L, 17L, 18L, 19L, 20L), values);
+        List<Record> records = this.session.run("MATCH (n:Meter) CALL scypher.valueHistory(n, 'reading', NULL, 2, NULL) YIELD value RETURN value").list();
+        for (Record record : records) {
+            System.out.println(record);
+        }
+    }
+
+    @Test
+    public void testPropertyAggregate() {
+        System.out.println("testPropertyAggregate");
+        this.session.run("CREATE (n:Gauge:Object {intervalFrom: scypher.timePoint('2000'), intervalTo: scypher.timePoint('NOW')})-[:OBJECT_PROPERTY]->" +
+                "(p:Property {content:'pressure', intervalFrom: scypher.timePoint('2000'), intervalTo: scypher.timePoint('NOW')})-[:PROPERTY_VALUE]->" +
+                "(v1:Value {content: 10, intervalFrom: scypher.timePoint('2000'), intervalTo: scypher.timePoint('2000-12-31T23:59:59')})," +
+                "(p)-[:PROPERTY_VALUE]->(v2:Value {content: 20, intervalFrom: scypher.timePoint('2001'), intervalTo: scypher.timePoint('NOW')})");
+        Record record = this.session.run("MATCH (n:Gauge) WITH n, scypher.interval('2000-07-01', '2001-06-30') AS interval " +
+                "RETURN scypher.propertyAggregate(n, 'pressure', interval, 'count') AS count, scypher.propertyAggregate(n, 'pressure', interval, 'min') AS min, " +
+                "scypher.propertyAggregate(n, 'pressure', interval, 'max') AS max, scypher.propertyAggregate(n, 'pressure', interval, 'sum') AS sum, " +
+                "scypher.propertyAggregate(n, 'pressure', interval, 'timeWeightedAvg') AS avg, scypher.propertyAggregate(n, 'pressure', interval, 'durationInState') AS states").single();
+        System.out.println(record);
+        assertEquals(2, record.get("count").asLong());
+        assertEquals(10, record.get("min").asLong());
+        assertEquals(20, record.get("max").asLong());
+        assertEquals(30, record.get("sum").asLong());
+        record = this.session.run("MATCH (n:Gauge) RETURN scypher.propertyAggregate(n, 'pressure', scypher.interval('2001', 'NOW'), 'timeWeightedAvg') AS avg, " +
+                "scypher.propertyAggregate(n, 'pressure', scypher.interval('1990', '1995'), 'timeWeightedAvg') AS none").single();
+        System.out.println(record);
+        assertEquals(20.0, record.get("avg").asDouble());
+        // 结束时间为NOW的值节点只计算到当前时刻，即使时间区间的结束时间在未来
+        record = this.session.run("MATCH (n:Gauge) RETURN scypher.propertyAggregate(n, 'pressure', scypher.interval('2000', 'NOW'), 'integral') AS now, " +
+                "scypher.propertyAggregate(n, 'pressure', scypher.interval('2000', '2999'), 'integral') AS future, " +
+                "scypher.propertyAggregate(n, 'pressure', scypher.interval('2000', '2999'), 'timeWeightedAvg') AS avg").single();
+        System.out.println(record);
+        assertEquals(record.get("now").asDouble(), record.get("future").asDouble());
+        assertTrue(record.get("avg").asDouble() < 20.0);
+    }
+
+    @Test
+    public void testPropertyChanges() {
+        System.out.println("testPropertyChanges");
+        this.session.run("CREATE (n:Lamp:Object {intervalFrom: scypher.timePoint('2000'), intervalTo: scypher.timePoint('NOW')})-[:OBJECT_PROPERTY]->" +
+                "(p:Property {content:'state', intervalFrom: scypher.timePoint('2000'), intervalTo: scypher.timePoint('NOW')}) " +
+                "WITH p UNWIND range(0, 9) AS i " +
+                "CREATE (p)-[:PROPERTY_VALUE]->(:Value {content: CASE WHEN i IN [3, 4] THEN 'on' ELSE CASE i % 2 WHEN 0 THEN 'off' ELSE 'on' END END, " +
+                "intervalFrom: scypher.timePoint(toString(2000 + i)), " +
+                "intervalTo: CASE WHEN i = 9 THEN scypher.timePoint('NOW') ELSE datetime(toString(2001 + i)) - duration('PT1S') END})");
+        List<Record> records = this.session.run("MATCH (n:Lamp) CALL scypher.propertyChanges(n, 'state', scypher.interval('2002', '2006')) " +
+                "YIELD changeTime, oldValue, newValue RETURN changeTime, oldValue, newValue").list();
+        for (Record record : records) {
+            System.out.println(record);
+        }
+        // 2004年的值与2003年相同，不产生变化
+        assertEquals(3, records.size());
+        records = this.session.run("MATCH (n:Lamp) CALL scypher.propertyChanges(n, 'state', NULL) YIELD changeTime, oldValue, newValue " +
+                "RETURN changeTime, oldValue, newValue LIMIT 2").list();
+        for (Record record : records) {
+            System.out.println(record);
+        }
+    }
 }
@@ -9,6 +9,14 @@ import org.neo4j.driver.Record;
 import org.neo4j.harness.Neo4j;
 import org.neo4j.harness.Neo4jBuilders;
 
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
 @TestInstance(TestInstance.Lifecycle.PER_CLASS)
 public class SDateTimeOperationTest {
     private Driver driver;
@@ -106,4 +114,43 @@ public class SDateTimeOperationTest {
         Record record = this.session.run("RETURN scypher.overlaps(scypher.interval('2010', 'NOW'), scypher.interval('2005', '2009'))").single();
         System.out.println(record);
     }
+
+    @Test
+    public void testTimePointCacheStatistics() {
+        System.out.println("testTimePointCacheStatistics");
+        long hits = this.session.run("RETURN scypher.timePoint.cacheStatistics() AS statistics").single().get("statistics").get("hits").asLong();
+        this.session.run("UNWIND range(1, 100) AS i RETURN scypher.timePoint('2023-02-06T12:44'), scypher.interval('2010', 'NOW')").consume();
+        Record record = this.session.run("RETURN scypher.timePoint.cacheStatistics() AS statistics").single();
+        System.out.println(record);
+        // 重复的字面量命中缓存
+        assertTrue(record.get("statistics").get("hits").asLong() >= hits + 99);
+        // 大量不同的字面量不超过缓存容量
+        this.session.run("UNWIND range(1, 10000) AS i RETURN count(scypher.timePoint(toString(1000 + i % 9000) + '-01-01'))").consume();
+        record = this.session.run("RETURN scypher.timePoint.cacheStatistics() AS statistics").single();
+        System.out.println(record);
+        assertEquals(4096, record.get("statistics").get("capacity").asLong());
+        assertTrue(record.get("statistics").get("size").asLong() <= 4096);
+        assertTrue(record.get("statistics").get("evictions").asLong() > 0);
+    }
+
+    @Test
+    public void testNowInTransaction() {
+        System.out.println("testNowInTransaction");
+        Record record = this.session.run("UNWIND range(1, 1000) AS i RETURN count(DISTINCT scypher.now())").single();
+        System.out.println(record);
+        assertEquals(1, record.get(0).asLong());
+        try (Transaction transaction = this.session.beginTransaction()) {
+            Object now = transaction.run("RETURN scypher.now()").single().get(0).asObject();
+            System.out.println(now);
+            assertEquals(now, transaction.run("RETURN scypher.now()").single().get(0).asObject());
+        }
+        TransactionClock.setClock(Clock.fixed(Instant.parse("2023-02-06T12:44:00Z"), ZoneOffset.UTC));
+        try {
+            record = this.session.run("RETURN scypher.now()").single();
+            System.out.println(record);
+            assertEquals(ZonedDateTime.parse("2023-02-06T12:44:00Z"), record.get(0).asZonedDateTime());
+        } finally {
+            TransactionClock.setClock(null);
+        }
+    }
 }
@@ -0,0 +1,78 @@
+package cn.scypher.neo4j.plugin;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.neo4j.driver.*;
+import org.neo4j.driver.Record;
+import org.neo4j.harness.Neo4j;
+import org.neo4j.harness.Neo4jBuilders;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+public class SIntervalAggregationTest {
+    private Driver driver;
+    private Neo4j embeddedDatabaseServer;
+    private Session session;
+
+    @BeforeAll
+    void initializeNeo4j() {
+        this.embeddedDatabaseServer = Neo4jBuilders.newInProcessBuilder()
+                .withDisabledServer()
+                .withAggregationFunction(SIntervalAggregation.class)
+                .withFunction(SDateTimeOperation.class)
+                .build();
+        this.driver = GraphDatabase.driver(embeddedDatabaseServer.boltURI());
+        this.session = driver.session();
+    }
+
+    @AfterAll
+    void closeNeo4j() {
+        this.driver.close();
+        this.embeddedDatabaseServer.close();
+    }
+
+    private Value interval(String from, String to) {
+        return this.session.run("RETURN scypher.interval($from, $to)", Values.parameters("from", from, "to", to)).single().get(0);
+    }
+
+    @Test
+    public void testIntervalIntersection() {
+        System.out.println("testIntervalIntersection");
+        Record record = this.session.run("UNWIND [scypher.interval('2000', '2010'), scypher.interval('2005', 'NOW'), null] AS interval" +
+                "\nRETURN scypher.agg.intervalIntersection(interval)").single();
+        System.out.println(record);
+        assertEquals(interval("2005", "2010"), record.get(0));
+        record = this.session.run("UNWIND [scypher.interval('2000', '2001'), scypher.interval('2010', 'NOW'), scypher.interval('2000', 'NOW')] AS interval" +
+                "\nRETURN scypher.agg.intervalIntersection(interval)").single();
+        System.out.println(record);
+        assertTrue(record.get(0).isNull());
+        record = this.session.run("UNWIND [null, null] AS interval" +
+                "\nRETURN scypher.agg.intervalIntersection(interval), scypher.agg.intervalRange(interval), scypher.agg.intervalUnion(interval)").single();
+        System.out.println(record);
+        assertTrue(record.get(0).isNull());
+        assertTrue(record.get(1).isNull());
+        assertTrue(record.get(2).asList().isEmpty());
+    }
+
+    @Test
+    public void testIntervalRange() {
+        System.out.println("testIntervalRange");
+        Record record = this.session.run("UNWIND [scypher.interval('2000', '2001'), scypher.interval('2010', 'NOW'), null] AS interval" +
+                "\nRETURN scypher.agg.intervalRange(interval)").single();
+        System.out.println(record);
+        assertEquals(interval("2000", "NOW"), record.get(0));
+    }
+
+    @Test
+    public void testIntervalUnion() {
+        System.out.println("testIntervalUnion");
+        Record record = this.session.run("UNWIND [scypher.interval('2010', '2012'), scypher.interval('2000', '2001'), scypher.interval('2011', '2015'), scypher.interval('2001', '2002'), scypher.interval('2020', 'NOW'), null] AS interval" +
+                "\nRETURN scypher.agg.intervalUnion(interval)").single();
+        System.out.println(record);
+        assertEquals(Values.value(interval("2000", "2002"), interval("2010", "2015"), interval("2020", "NOW")), record.get(0));
+    }
+}
@@ -0,0 +1,117 @@
+package cn.scypher.neo4j.plugin;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.neo4j.driver.*;
+import org.neo4j.driver.Record;
+import org.neo4j.harness.Neo4j;
+import org.neo4j.harness.Neo4jBuilders;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+public class SnapshotViewCacheTest {
+    private Driver driver;
+    private Neo4j embeddedDatabaseServer;
+    private Session session;
+
+    @BeforeAll
+    void initializeNeo4j() {
+        this.embeddedDatabaseServer = Neo4jBuilders.newInProcessBuilder()
+                .withDisabledServer()
+                .withFunction(SDateTimeOperation.class)
+                .withFunction(TimeWindowLimit.class)
+                .withProcedure(TimeWindowLimit.class)
+                .withProcedure(TemporalPathQuery.class)
+                .withFunction(SnapshotViewCache.class)
+                .withProcedure(SnapshotViewCache.class)
+                .build();
+        this.driver = GraphDatabase.driver(embeddedDatabaseServer.boltURI());
+        this.session = driver.session();
+    }
+
+    @AfterAll
+    void closeNeo4j() {
+        this.driver.close();
+        this.embeddedDatabaseServer.close();
+    }
+
+    @Test
+    public void testSnapshotView() {
+        System.out.println("testSnapshotView");
+        this.session.run("UNWIND range(0, 3) AS i CREATE (:Station {number: i, intervalFrom: scypher.timePoint('2000'), intervalTo: scypher.timePoint('NOW')})");
+        this.session.run("MATCH (a:Station {number: 0}), (b:Station {number: 1}), (c:Station {number: 2}), (d:Station {number: 3}) " +
+                "CREATE (a)-[:ROUTE {number: 0, intervalFrom: scypher.timePoint('2000'), intervalTo: scypher.timePoint('2010')}]->(b)" +
+                "-[:ROUTE {number: 1, intervalFrom: scypher.timePoint('2005'), intervalTo: scypher.timePoint('2020')}]->(c)" +
+                "-[:ROUTE {number: 2, intervalFrom: scypher.timePoint('2012'), intervalTo: scypher.timePoint('NOW')}]->(d)");
+        this.session.run("CALL scypher.setSnapshotViewCache(false)").consume();
+        this.session.run("CALL scypher.setSnapshotViewCache(true)").consume();
+        String query = "MATCH ()-[r:ROUTE]->() WHERE scypher.limitEffectiveTime([[r, NULL]], NULL) WITH r ORDER BY r.number RETURN collect(r.number) AS numbers";
+        // snapshot按连接隔离，在同一事务中设置和查询
+        try (Session otherSession = this.driver.session(); Transaction transaction = this.session.beginTransaction()) {
+            transaction.run("CALL scypher.snapshot(scypher.timePoint('2008'))");
+            assertEquals(List.of(0L, 1L), transaction.run(query).single().get("numbers").asList());
+            assertEquals(List.of(0L, 1L), transaction.run(query).single().get("numbers").asList());
+            List<Record> records = transaction.run("MATCH (a:Station {number: 0}), (c:Station {number: 2}) CALL scypher.cPath(a, c, false, {}) YIELD path RETURN length(path) AS length").list();
+            System.out.println(records);
+            assertEquals(1, records.size());
+            Record record = transaction.run("RETURN scypher.snapshotViewCache.statistics() AS statistics").single();
+            System.out.println(record);
+            assertEquals(1, record.get("statistics").get("views").size());
+            // 其他事务提交的修改增量地更新到视图
+            otherSession.run("MATCH ()-[r:ROUTE {number: 2}]->() SET r.intervalFrom = scypher.timePoint('2001')").consume();
+            assertEquals(List.of(0L, 1L, 2L), transaction.run(query).single().get("numbers").asList());
+            otherSession.run("MATCH ()-[r:ROUTE {number: 0}]->() DELETE r").consume();
+            assertEquals(List.of(1L, 2L), transaction.run(query).single().get("numbers").asList());
+            otherSession.run("MATCH (b:Station {number: 1}), (c:Station {number: 2}) " +
+                    "CREATE (b)-[:ROUTE {number: 3, intervalFrom: scypher.timePoint('2015'), intervalTo: scypher.timePoint('NOW')}]->(c)").consume();
+            assertEquals(List.of(1L, 2L), transaction.run(query).single().get("numbers").asList());
+            record = transaction.run("RETURN scypher.snapshotViewCache.statistics() AS statistics").single();
+            System.out.println(record);
+            assertEquals(2, record.get("statistics").get("views").get(0).get("relationships").asInt());
+            transaction.run("CALL scypher.snapshot(null)");
+            transaction.commit();
+        }
+        this.session.run("CALL scypher.setSnapshotViewCache(false)");
+        Record record = this.session.run("RETURN scypher.snapshotViewCache.statistics() AS statistics").single();
+        System.out.println(record);
+        assertEquals(0, record.get("statistics").get("views").size());
+        this.session.run("CALL scypher.setSnapshotViewCache(true)");
+    }
+
+    @Test
+    public void testSnapshotViewUnderWrites() throws InterruptedException {
+        System.out.println("testSnapshotViewUnderWrites");
+        this.session.run("UNWIND range(0, 19999) AS i CREATE (:Valve {number: i, intervalFrom: scypher.timePoint(toString(2000 + i % 10)), intervalTo: scypher.timePoint('NOW')})").consume();
+        this.session.run("CALL scypher.setSnapshotViewCache(false)").consume();
+        this.session.run("CALL scypher.setSnapshotViewCache(true)").consume();
+        // 构建视图期间持续提交有效时间的修改，视图仍被安装
+        AtomicBoolean running = new AtomicBoolean(true);
+        Thread writer = new Thread(() -> {
+            try (Session writerSession = this.driver.session()) {
+                while (running.get()) {
+                    writerSession.run("MATCH (n:Valve {number: 19999}) SET n.intervalTo = scypher.timePoint('NOW')").consume();
+                }
+            }
+        });
+        writer.start();
+        try (Transaction transaction = this.session.beginTransaction()) {
+            transaction.run("CALL scypher.snapshot(scypher.timePoint('2004-06-01'))");
+            String query = "MATCH (n:Valve) WHERE scypher.limitEffectiveTime([[n, NULL]], NULL) RETURN count(n) AS count";
+            assertEquals(10000, transaction.run(query).single().get("count").asInt());
+            assertEquals(10000, transaction.run(query).single().get("count").asInt());
+            Record record = transaction.run("RETURN scypher.snapshotViewCache.statistics() AS statistics").single();
+            System.out.println(record);
+            assertEquals(1, record.get("statistics").get("views").size());
+            transaction.commit();
+        } finally {
+            running.set(false);
+            writer.join();
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package cn.scypher.neo4j.plugin;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.neo4j.driver.*;
+import org.neo4j.driver.Record;
+import org.neo4j.harness.Neo4j;
+import org.neo4j.harness.Neo4jBuilders;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+public class TemporalIndexSeekTest {
+    private Driver driver;
+    private Neo4j embeddedDatabaseServer;
+    private Session session;
+
+    @BeforeAll
+    void initializeNeo4j() {
+        this.embeddedDatabaseServer = Neo4jBuilders.newInProcessBuilder()
+                .withDisabledServer()
+                .withFunction(SDateTimeOperation.class)
+                .withProcedure(TemporalIndexSeek.class)
+                .build();
+        this.driver = GraphDatabase.driver(embeddedDatabaseServer.boltURI());
+        this.session = driver.session();
+    }
+
+    @AfterAll
+    void closeNeo4j() {
+        this.driver.close();
+        this.embeddedDatabaseServer.close();
+    }
+
+    private List<Long> numbers(String query) {
+        List<Record> records = this.session.run(query).list();
+        System.out.println(records);
+        return records.stream().map(record -> record.get("number").asLong()).toList();
+    }
+
+    @Test
+    public void testTemporalIndexSeek() {
+        System.out.println("testTemporalIndexSeek");
+        // 每个节点有效一年，第0个节点一直有效
+        this.session.run("UNWIND range(0, 99) AS i " +
+                "CREATE (:Contract:Object {number: i, intervalFrom: scypher.timePoint(toString(1950 + i)), " +
+                "intervalTo: CASE WHEN i = 0 THEN scypher.timePoint('NOW') ELSE datetime(toString(1951 + i)) - duration('PT1S') END})");
+        this.session.run("MATCH (a:Contract {number: 0}), (b:Contract) WHERE b.number > 0 " +
+                "CREATE (a)-[:SIGNED {intervalFrom: b.intervalFrom, intervalTo: b.intervalTo}]->(b)");
+        String nodesValidAt = "CALL scypher.seekNodesValidAt('Contract', scypher.timePoint('2000-06-01')) YIELD node RETURN node.number AS number ORDER BY number";
+        String nodesValidDuring = "CALL scypher.seekNodesValidDuring('Contract', scypher.interval('2010-06-01', '2012-06-01')) YIELD node RETURN node.number AS number ORDER BY number";
+        String relationshipsValidAt = "CALL scypher.seekRelationshipsValidAt('SIGNED', scypher.timePoint('2000-06-01')) YIELD relationship RETURN endNode(relationship).number AS number";
+        // 没有索引时遍历查找
+        assertEquals(List.of(0L, 50L), numbers(nodesValidAt));
+        List<Record> records = this.session.run("CALL scypher.createTemporalIndexes()").list();
+        System.out.println(records);
+        assertEquals(6, records.stream().filter(record -> record.get("created").asBoolean()).count());
+        this.session.run("CALL db.awaitIndexes()");
+        records = this.session.run("CALL scypher.createTemporalIndexes()").list();
+        assertEquals(0, records.stream().filter(record -> record.get("created").asBoolean()).count());
+        assertEquals(List.of(0L, 50L), numbers(nodesValidAt));
+        assertEquals(List.of(0L, 60L, 61L, 62L), numbers(nodesValidDuring));
+        assertEquals(List.of(50L), numbers(relationshipsValidAt));
+        assertEquals(List.of(), numbers("CALL scypher.seekNodesValidAt('Missing', scypher.timePoint('2000-06-01')) YIELD node RETURN node.number AS number"));
+        // 索引查找包含当前事务中未提交的修改
+        try (Transaction transaction = this.session.beginTransaction()) {
+            transaction.run("MATCH (n:Contract {number: 50}) DETACH DELETE n");
+            transaction.run("CREATE (:Contract:Object {number: 100, intervalFrom: scypher.timePoint('2000-03-01'), intervalTo: scypher.timePoint('2000-09-01')})");
+            records = transaction.run(nodesValidAt).list();
+            System.out.println(records);
+            assertEquals(List.of(0L, 100L), records.stream().map(record -> record.get("number").asLong()).toList());
+            transaction.rollback();
+        }
+    }
+}
@@ -6,11 +6,16 @@ import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.TestInstance;
 import org.neo4j.driver.*;
 import org.neo4j.driver.Record;
+import org.neo4j.driver.exceptions.ClientException;
 import org.neo4j.harness.Neo4j;
 import org.neo4j.harness.Neo4jBuilders;
 
 import java.util.List;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
 @TestInstance(TestInstance.Lifecycle.PER_CLASS)
 public class TimeWindowLimitTest {
     private Driver driver;
@@ -61,19 +66,111 @@ public class TimeWindowLimitTest {
         }
     }
 
+    @Test
+    public void testCompiledTimeWindow() {
+        System.out.println("testCompiledTimeWindow");
+        this.session.run("UNWIND range(0, 9) AS i CREATE (:Sensor {number: i, intervalFrom: scypher.timePoint(toString(2000 + i)), " +
+                "intervalTo: datetime(toString(2001 + i)) - duration('PT1S')})");
+        // 同一查询中的时间窗口只编译一次，@T优先于at time/between
+        Record record = this.session.run("MATCH (n:Sensor) WHERE scypher.limitEffectiveTime([[n, NULL]], scypher.interval('2003', '2005')) RETURN count(n) AS count").single();
+        assertEquals(3, record.get("count").asInt());
+        record = this.session.run("MATCH (n:Sensor) WHERE scypher.limitEffectiveTime([[n, scypher.timePoint('2001-06-01')]], scypher.interval('2003', '2005')) RETURN collect(n.number) AS numbers").single();
+        assertEquals(List.of(1L), record.get("numbers").asList());
+        // 同一事务中修改snapshot/scope后重新编译时态上下文
+        try (Transaction transaction = this.session.beginTransaction()) {
+            String query = "MATCH (n:Sensor) WHERE scypher.limitEffectiveTime([[n, NULL]], NULL) WITH n ORDER BY n.number RETURN collect(n.number) AS numbers";
+            transaction.run("CALL scypher.snapshot(scypher.timePoint('2004-06-01'))");
+            assertEquals(List.of(4L), transaction.run(query).single().get("numbers").asList());
+            transaction.run("CALL scypher.snapshot(scypher.timePoint('2008-06-01'))");
+            assertEquals(List.of(8L), transaction.run(query).single().get("numbers").asList());
+            transaction.run("CALL scypher.scope(scypher.interval('2000', '2001-06-01'))");
+            assertEquals(List.of(0L, 1L, 8L), transaction.run(query).single().get("numbers").asList());
+            transaction.run("CALL scypher.snapshot(null)");
+            transaction.run("CALL scypher.scope(null)");
+            assertEquals(10, transaction.run(query).single().get("numbers").size());
+            transaction.commit();
+        }
+        // 有效时间的结束时间类型与时间窗口不一致时报错
+        this.session.run("CREATE (:Gadget {intervalFrom: scypher.timePoint('2000'), intervalTo: date('2001-01-01')})").consume();
+        ClientException exception = assertThrows(ClientException.class, () -> this.session.run("MATCH (n:Gadget) " +
+                "WHERE scypher.limitEffectiveTime([[n, NULL]], scypher.interval('2003', '2005')) RETURN count(n) AS count").single());
+        assertTrue(exception.getMessage().contains("Only the time points of the same type can be compared"));
+    }
+
+    @Test
+    public void testFilterValid() {
+        System.out.println("testFilterValid");
+        this.session.run("UNWIND range(0, 9) AS i CREATE (:Meter {number: i, intervalFrom: scypher.timePoint(toString(2000 + i)), " +
+                "intervalTo: datetime(toString(2001 + i)) - duration('PT1S')})");
+        this.session.run("MATCH (a:Meter), (b:Meter) WHERE b.number = a.number + 1 " +
+                "CREATE (a)-[:NEXT {intervalFrom: a.intervalFrom, intervalTo: b.intervalTo}]->(b)");
+        Record record = this.session.run("MATCH (n:Meter) WITH n ORDER BY n.number WITH collect(n) AS meters " +
+                "RETURN [n IN scypher.filterValid(meters, scypher.interval('2003', '2005')) | n.number] AS numbers").single();
+        System.out.println(record);
+        assertEquals(List.of(3L, 4L, 5L), record.get("numbers").asList());
+        // @T优先于at time/between
+        record = this.session.run("MATCH (n:Meter) WITH n ORDER BY n.number WITH collect(n) AS meters " +
+                "RETURN [n IN scypher.filterValid(meters, scypher.timePoint('2001-06-01'), scypher.interval('2003', '2005')) | n.number] AS numbers, " +
+                "[n IN scypher.filterValid(meters, NULL, scypher.interval('2003', '2005')) | n.number] AS clauseNumbers").single();
+        System.out.println(record);
+        assertEquals(List.of(1L), record.get("numbers").asList());
+        assertEquals(List.of(3L, 4L, 5L), record.get("clauseNumbers").asList());
+        // 变长路径的边需每条边都满足限制
+        List<Record> records = this.session.run("MATCH (a:Meter {number: 0})-[e:NEXT*1..9]->() WITH collect(e) AS paths " +
+                "CALL scypher.streamValid(paths, scypher.interval('2000', '2002-06-01')) YIELD element RETURN size(element) AS length").list();
+        System.out.println(records);
+        assertEquals(List.of(1L, 2L, 3L), records.stream().map(r -> r.get("length").asLong()).toList());
+    }
+
     @Test
     public void testSnapshot() {
         System.out.println("testSnapshot");
-        this.session.run("CALL scypher.snapshot(datetime('2015'))");
-        Record record = this.session.run("RETURN scypher.operateTime()").single();
-        System.out.println(record);
+        // 自动提交的查询结束时事务即关闭，snapshot无法生效，因此直接报错
+        ClientException exception = assertThrows(ClientException.class, () -> this.session.run("CALL scypher.snapshot(datetime('2015'))").consume());
+        System.out.println(exception.getMessage());
+        assertTrue(exception.getMessage().contains("explicit transaction"));
+        try (Transaction transaction = this.session.beginTransaction()) {
+            transaction.run("CALL scypher.snapshot(datetime('2015'))");
+            Record record = transaction.run("RETURN scypher.operateTime()").single();
+            System.out.println(record);
+            assertEquals(2015, record.get(0).asZonedDateTime().getYear());
+            transaction.commit();
+        }
     }
 
     @Test
     public void testScope() {
         System.out.println("testScope");
-        this.session.run("CALL scypher.scope({from: datetime('2015'),to: datetime('2023')})");
-        Record record = this.session.run("RETURN scypher.operateTime()").single();
-        System.out.println(record);
+        ClientException exception = assertThrows(ClientException.class, () -> this.session.run("CALL scypher.scope({from: datetime('2015'),to: datetime('2023')})").consume());
+        System.out.println(exception.getMessage());
+        assertTrue(exception.getMessage().contains("explicit transaction"));
+        try (Transaction transaction = this.session.beginTransaction()) {
+            transaction.run("CALL scypher.scope({from: datetime('2015'),to: datetime('2023')})");
+            Record record = transaction.run("RETURN scypher.operateTime()").single();
+            System.out.println(record);
+            transaction.commit();
+        }
+    }
+
+    @Test
+    public void testSnapshotInSessions() {
+        System.out.println("testSnapshotInSessions");
+        // snapshot只对设置它的事务有效，不影响其他会话和之后的事务
+        try (Session otherSession = this.driver.session();
+             Transaction transaction = this.session.beginTransaction();
+             Transaction otherTransaction = otherSession.beginTransaction()) {
+            transaction.run("CALL scypher.snapshot(datetime('2015'))");
+            otherTransaction.run("CALL scypher.snapshot(datetime('2020'))");
+            assertEquals(2015, transaction.run("RETURN scypher.operateTime() AS time").single().get("time").asZonedDateTime().getYear());
+            assertEquals(2020, otherTransaction.run("RETURN scypher.operateTime() AS time").single().get("time").asZonedDateTime().getYear());
+            otherTransaction.run("CALL scypher.snapshot(null)");
+            assertEquals(2015, transaction.run("RETURN scypher.operateTime() AS time").single().get("time").asZonedDateTime().getYear());
+            otherTransaction.commit();
+            transaction.rollback();
+        }
+        assertEquals(0, GlobalVariablesManager.getTransactionContextCount());
+        int year = this.session.run("RETURN scypher.operateTime() AS time").single().get("time").asZonedDateTime().getYear();
+        System.out.println(year);
+        assertTrue(year != 2015 && year != 2020);
     }
 }
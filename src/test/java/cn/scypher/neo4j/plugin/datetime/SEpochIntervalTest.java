@@ -0,0 +1,67 @@
+package cn.scypher.neo4j.plugin.datetime;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.*;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * 将SEpochInterval的运算结果与SInterval进行对比
+ */
+public class SEpochIntervalTest {
+    private static final int COUNT = 256;
+
+    @Test
+    public void testIntervalAlgebra() {
+        Random random = new Random(20231001L);
+        SInterval[] intervals = new SInterval[COUNT];
+        SEpochInterval[] epochIntervals = new SEpochInterval[COUNT];
+        long[] froms = new long[2 * COUNT];
+        long[] tos = new long[2 * COUNT];
+        for (int i = 0; i < COUNT; i++) {
+            intervals[i] = randomInterval(random);
+            epochIntervals[i] = new SEpochInterval(intervals[i]);
+            froms[2 * i] = epochIntervals[i].getFromEpoch();
+            froms[2 * i + 1] = epochIntervals[i].getFromNano();
+            tos[2 * i] = epochIntervals[i].getToEpoch();
+            tos[2 * i + 1] = epochIntervals[i].getToNano();
+        }
+        int[] matches = new int[COUNT];
+        for (int i = 0; i < COUNT; i++) {
+            STimePoint timePoint = intervals[(i + 1) % COUNT].getIntervalFrom();
+            assertEquals(intervals[i].contains(timePoint), epochIntervals[i].contains(timePoint.getEpochTimePoint()));
+            int matched = 0;
+            for (int j = 0; j < COUNT; j++) {
+                assertEquals(intervals[i].overlaps(intervals[j]), epochIntervals[i].overlaps(epochIntervals[j]));
+                assertEquals(intervals[i].contains(intervals[j]), epochIntervals[i].contains(epochIntervals[j]));
+                assertEquals(toEpochInterval(intervals[i].intersection(intervals[j])), epochIntervals[i].intersection(epochIntervals[j]));
+                assertEquals(toEpochInterval(intervals[i].range(intervals[j])), epochIntervals[i].range(epochIntervals[j]));
+                if (!intervals[i].overlaps(intervals[j])) {
+                    assertEquals(intervals[i].difference(intervals[j]), epochIntervals[i].difference(epochIntervals[j]));
+                } else {
+                    matched++;
+                }
+            }
+            assertEquals(matched, epochIntervals[i].overlaps(froms, tos, COUNT, matches));
+        }
+        SInterval intersection = intervals[0];
+        SInterval range = intervals[0];
+        for (int i = 1; i < 3; i++) {
+            intersection = intersection != null ? intersection.intersection(intervals[i]) : null;
+            range = range.range(intervals[i]);
+        }
+        assertEquals(toEpochInterval(intersection), SEpochInterval.intersection(SEpochTimePoint.DATETIME, froms, tos, 3));
+        assertEquals(toEpochInterval(range), SEpochInterval.range(SEpochTimePoint.DATETIME, froms, tos, 3));
+    }
+
+    private static SInterval randomInterval(Random random) {
+        ZonedDateTime from = ZonedDateTime.of(LocalDateTime.of(2023, 1, 1, 0, 0).plusSeconds(random.nextInt(100000)).withNano(random.nextInt(3)), ZoneOffset.UTC);
+        return new SInterval(new STimePoint(from), new STimePoint(from.plusSeconds(random.nextInt(10000)).plusNanos(random.nextInt(3))));
+    }
+
+    private static SEpochInterval toEpochInterval(SInterval interval) {
+        return interval != null ? new SEpochInterval(interval) : null;
+    }
+}
@@ -0,0 +1,49 @@
+package cn.scypher.neo4j.plugin.datetime;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.*;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 检查各时间点类型的MIN、NOW和MAX的编码顺序：MIN < 普通时间点 < NOW < MAX
+ */
+public class SEpochTimePointTest {
+    // 时区为-18:00时time类型的NOW与OffsetTime.MAX相同，无法区分
+    private static final String[] TIMEZONES = {"Z", "+08:00", "-05:00", "+18:00"};
+
+    @Test
+    public void testSentinelOrdering() {
+        Object[] values = {
+                LocalDate.of(2023, 10, 1),
+                OffsetTime.of(12, 0, 0, 0, ZoneOffset.ofHours(8)),
+                LocalTime.of(12, 0),
+                ZonedDateTime.of(2023, 10, 1, 12, 0, 0, 0, ZoneOffset.UTC),
+                LocalDateTime.of(2023, 10, 1, 12, 0)
+        };
+        String[] types = {"date", "time", "localtime", "datetime", "localdatetime"};
+        for (int i = 0; i < types.length; i++) {
+            SEpochTimePoint value = SEpochTimePoint.of(values[i]);
+            for (String timezone : TIMEZONES) {
+                SEpochTimePoint min = STimePoint.min(types[i], timezone).getEpochTimePoint();
+                SEpochTimePoint max = STimePoint.max(types[i], timezone).getEpochTimePoint();
+                SEpochTimePoint now = STimePoint.nowSentinel(types[i], timezone).getEpochTimePoint();
+                assertEquals(SEpochTimePoint.MIN_EPOCH, min.getEpoch());
+                assertEquals(SEpochTimePoint.NOW_EPOCH, now.getEpoch());
+                assertTrue(min.isBefore(value), types[i] + " " + timezone);
+                assertTrue(value.isBefore(now), types[i] + " " + timezone);
+                if (types[i].equals("localtime")) {
+                    // localtime的MAX与NOW都为LocalTime.MAX
+                    assertEquals(now, max);
+                } else {
+                    assertEquals(SEpochTimePoint.MAX_EPOCH, max.getEpoch());
+                    assertTrue(now.isBefore(max), types[i] + " " + timezone);
+                }
+            }
+        }
+        assertEquals(SEpochTimePoint.MAX_EPOCH, SEpochTimePoint.of(OffsetTime.MAX).getEpoch());
+        assertEquals(SEpochTimePoint.NOW_EPOCH, SEpochTimePoint.of(OffsetTime.of(LocalTime.MAX, ZoneOffset.ofHours(-17))).getEpoch());
+    }
+}
@@ -0,0 +1,114 @@
+package cn.scypher.neo4j.plugin.datetime;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.*;
+import java.util.*;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * 将STemporalParser与原有的正则表达式解析结果进行对比
+ */
+public class STemporalParserTest {
+    private static final Pattern DATE_PATTERN = Pattern.compile("((?<year>\\d{4})|(?<beyondYear>((\\+)|-)\\d{1,9}))((-?(?<ordinalDay>\\d{3})$)|" +
+            "(-?(?<month>\\d{1,2})(-?(?<day>\\d{1,2})?))|" +
+            "(-?W(?<week>\\d{1,2})(-?(?<dayOfWeek>\\d))?)|" +
+            "(-?Q(?<quarter>\\d)(-?(?<dayOfQuarter>\\d{1,2}))?))?");
+    private static final Pattern LOCALTIME_PATTERN = Pattern.compile("(?<hour>\\d{2})(:?(?<minute>\\d{2})((:?(?<second>\\d{2}))((.|,)(?<nanosecond>\\d{1,9}))?)?)?");
+    private static final Pattern TIMEZONE_PATTERN = Pattern.compile("(?<Z>Z)|(\\[(?<zoneName1>[\\w/]+)\\])|(((?<plus>\\+)|(?<minus>-))(?<hours>\\d{2})(:?(?<minutes>\\d{2}))?(\\[(?<zoneName2>[\\w/]+)\\])?)");
+    private static final Pattern TIME_PATTERN = Pattern.compile("T?(?<time>(" + LOCALTIME_PATTERN + "))[ ]*(?<timezone>(" + TIMEZONE_PATTERN + "))?");
+
+    private static final String[] SAMPLES = {"2015", "+2015", "-44", "+123456789012", "2015202", "2015-202", "20151001", "2015-10-01", "2015-1-1",
+            "2015-10-", "2015W30", "2015W302", "2015W30-2", "2015-W3-2", "2015W01-1", "2015Q260", "2015-Q2-60", "2015Q2", "12345",
+            "123-5", "x2015", "2015-", "2015123 ", "2015123\n", "12", "12:30", "1230", "12:30:45", "12:30:45.123", "12:30:45,5",
+            "12:30:4512", "T12:00Z", "12:00+08:00", "12:00 -0530", "12:00+08", "12:00+08:", "12:00[Asia/Shanghai]", "12:00+08:00[Asia/Shanghai]",
+            "12:30:45-0500", "25:00", "12:60", "12:00+19:00", "12:00:00.1234567890", "NOWISH", "", "W", "Q"};
+
+    private static final char[] ALPHABET = "00112233445566778899----++::..,,TWQZ[]/ a\n\u2028".toCharArray();
+
+    @Test
+    public void testParseDate() {
+        for (String sample : candidates()) {
+            assertEquals(outcome(() -> regexDate(sample.trim())), outcome(() -> STemporalParser.parseDate(sample.trim())), sample);
+        }
+    }
+
+    @Test
+    public void testParseLocalTime() {
+        for (String sample : candidates()) {
+            assertEquals(outcome(() -> regexLocalTime(sample.trim())), outcome(() -> STemporalParser.parseLocalTime(sample.trim())), sample);
+        }
+    }
+
+    @Test
+    public void testParseTime() {
+        for (String timezone : new String[]{"Z", "+08:00", "-05"}) {
+            for (String sample : candidates()) {
+                assertEquals(outcome(() -> regexTime(sample.trim(), timezone)), outcome(() -> STemporalParser.parseTime(sample.trim(), timezone)), sample);
+            }
+        }
+    }
+
+    private static List<String> candidates() {
+        List<String> candidates = new ArrayList<>(Arrays.asList(SAMPLES));
+        Random random = new Random(20231001L);
+        for (int i = 0; i < 50000; i++) {
+            StringBuilder builder = new StringBuilder();
+            int length = 1 + random.nextInt(16);
+            for (int j = 0; j < length; j++) {
+                builder.append(ALPHABET[random.nextInt(ALPHABET.length)]);
+            }
+            candidates.add(builder.toString());
+        }
+        return candidates;
+    }
+
+    private static Object outcome(java.util.function.Supplier<Object> parser) {
+        try {
+            return parser.get();
+        } catch (RuntimeException e) {
+            return e.getClass();
+        }
+    }
+
+    private static LocalDate regexDate(String dateString) {
+        Matcher matcher = DATE_PATTERN.matcher(dateString);
+        if (matcher.find()) {
+            int year = Integer.parseInt(matcher.group("year") != null ? matcher.group("year") : matcher.group("beyondYear"));
+            return SDate.parseDate(year, group(matcher, "month"), group(matcher, "day"), group(matcher, "week"), group(matcher, "dayOfWeek"),
+                    group(matcher, "quarter"), group(matcher, "dayOfQuarter"), group(matcher, "ordinalDay"));
+        }
+        throw new RuntimeException("The combination of the date components is incorrect.");
+    }
+
+    private static LocalTime regexLocalTime(String localtimeString) {
+        Matcher matcher = LOCALTIME_PATTERN.matcher(localtimeString);
+        if (matcher.find()) {
+            return LocalTime.of(Integer.parseInt(matcher.group("hour")), Math.max(group(matcher, "minute"), 0), Math.max(group(matcher, "second"), 0), nanosecond(matcher));
+        }
+        throw new RuntimeException("The combination of the time components is incorrect.");
+    }
+
+    private static OffsetTime regexTime(String timeString, String timezone) {
+        Matcher matcher = TIME_PATTERN.matcher(timeString);
+        if (matcher.find()) {
+            ZoneOffset offset = ZoneOffset.of(matcher.group("timezone") != null ? matcher.group("timezone") : timezone);
+            return OffsetTime.of(Integer.parseInt(matcher.group("hour")), Math.max(group(matcher, "minute"), 0), Math.max(group(matcher, "second"), 0), nanosecond(matcher), offset);
+        }
+        throw new RuntimeException("The combination of the time components is incorrect.");
+    }
+
+    private static int group(Matcher matcher, String component) {
+        return matcher.group(component) != null ? Integer.parseInt(matcher.group(component)) : STemporalParser.ABSENT;
+    }
+
+    private static int nanosecond(Matcher matcher) {
+        if (matcher.group("nanosecond") != null) {
+            return Integer.parseInt(String.format("%-9s", matcher.group("nanosecond")).replace(" ", "0"));
+        }
+        return 0;
+    }
+}